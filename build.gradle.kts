@@ -29,6 +29,13 @@ repositories {
 
 dependencies {
     implementation("org.jdom:jdom:1.1.3")
+    testImplementation("org.junit.jupiter:junit-jupiter:5.10.2")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    testRuntimeOnly("com.h2database:h2:2.2.224")
+}
+
+tasks.test {
+    useJUnitPlatform()
 }
 
 val documentJar by tasks.registering(Jar::class) {
@@ -27,11 +27,81 @@ public final class Bindery  {
 
     public void allocateGlobals(int n) {
         globalSpace = n;
-        globals = new Object[n];
-        busy = new boolean[n];
-        for (int i=0; i<n; i++) {
-            globals[i] = null;
-            busy[i] = false;
+        if (globals==null || globals.length!=n) {
+            globals = new Object[n];
+            busy = new boolean[n];
+        } else {
+            for (int i=0; i<n; i++) {
+                globals[i] = null;
+                busy[i] = false;
+            }
+        }
+    }
+
+    /**
+    * Discard the values of all variables and parameters, so that the Bindery can be used
+    * for another transformation. The space allocated for variables is retained.
+    */
+
+    public void clear() {
+        if (globals!=null) {
+            for (int i=0; i<globals.length; i++) {
+                globals[i] = null;
+                busy[i] = false;
+            }
+        }
+        for (int f=0; f<allocated; f++) {
+            Object[] frame = stack[f];
+            for (int i=0; i<frame.length; i++) {
+                frame[i] = null;
+            }
+        }
+        top = -1;
+        currentStackFrame = null;
+        globalParameters = null;
+    }
+
+    /**
+    * Create a Bindery for use on another thread. The new Bindery shares the global variables
+    * and parameters of this one, which must all have been evaluated already, and has its own
+    * stack for local variables.
+    */
+
+    public Bindery newThreadBindery() {
+        Bindery b = new Bindery();
+        b.globals = globals;
+        b.busy = busy;
+        b.globalParameters = globalParameters;
+        b.globalSpace = globalSpace;
+        b.localSpace = localSpace;
+        return b;
+    }
+
+    /**
+    * Prevent the evaluation of any global variable or parameter other than those in a given
+    * set. An attempt to evaluate any other will fail as if its definition were circular.
+    * Used when global variables are evaluated in advance, before the source document and
+    * parameters are known.
+    * @param allowed indexed by slot number: true for the variables that may be evaluated
+    */
+
+    public void restrictGlobals(boolean[] allowed) {
+        for (int i=0; i<globalSpace; i++) {
+            busy[i] = !allowed[i];
+        }
+    }
+
+    /**
+    * Supply values for global variables that have been evaluated in advance
+    * @param values indexed by slot number; null for variables that are to be evaluated
+    * in the usual way
+    */
+
+    public void defineSharedGlobals(Value[] values) {
+        for (int i=0; i<globalSpace && i<values.length; i++) {
+            if (values[i]!=null) {
+                globals[i] = values[i];
+            }
         }
     }
 
@@ -113,6 +183,7 @@ public final class Bindery  {
     public void allocateLocals(int n) {
         if (n>localSpace) {
             localSpace = n;
+            allocated = top+1;      // stack frames not in use will be reallocated at the new size
         }
     }
 
@@ -47,10 +47,12 @@ public final class Context implements XSLTContext, LastPositionFinder {
     private Stack groupActivationStack;     // holds stack of active saxon:group activations
     private StaticContext staticContext;
     private ParameterSet tailRecursion;     // set when a tail-recursive call is requested
+    private XSLTemplate tailCallTarget;     // template to be entered by a tail call, or null
     private NodeInfo lastRememberedNode = null;
     private int lastRememberedNumber = -1;
     private Value returnValue = null;
     private XPathException exception = null;
+    private boolean escaped = false;        // true if a reference may be retained elsewhere
 
     private static Controller defaultController = null;
 
@@ -87,22 +89,85 @@ public final class Context implements XSLTContext, LastPositionFinder {
 
     public Context newContext() {
         Context c = new Context(controller);
-        c.staticContext = staticContext;
-        c.currentNode = currentNode;
-        c.contextNode = contextNode;
-        c.position = position;
-        c.last = last;
-        c.lastPositionFinder = lastPositionFinder;
-        c.currentMode = currentMode;
-        c.currentTemplate = currentTemplate;
-        //c.bindery = bindery;
-        c.groupActivationStack = groupActivationStack;
-        c.lastRememberedNode = lastRememberedNode;
-        c.lastRememberedNumber = lastRememberedNumber;
-        c.returnValue = null;
+        c.copyFrom(this);
         return c;
     }
 
+    /**
+    * Construct a new context as a copy of this one, for use only until it is released
+    * by calling releaseContext(). The Context object may be taken from a pool maintained
+    * by the Controller, and is returned to the pool on release unless it has escaped.
+    * Callers must therefore ensure that the new context is used in a strictly nested way,
+    * and must not use it after releasing it.
+    */
+
+    public Context newReusableContext() {
+        if (controller==defaultController) {
+            // the default controller may be shared between threads, so don't use its pool
+            Context c = newContext();
+            c.escaped = true;
+            return c;
+        }
+        Context c = controller.allocateContext();
+        c.copyFrom(this);
+        if (controller.isTracing()) {
+            c.escaped = true;       // the TraceListener might keep a reference
+        }
+        return c;
+    }
+
+    /**
+    * Release a context obtained using newReusableContext(). If the context has not escaped,
+    * it is returned to the Controller's pool for reuse.
+    */
+
+    public void releaseContext() {
+        if (!escaped) {
+            // drop references to nodes and enumerations so they can be garbage collected
+            contextNode = null;
+            currentNode = null;
+            lastPositionFinder = this;
+            currentTemplate = null;
+            groupActivationStack = null;
+            lastRememberedNode = null;
+            returnValue = null;
+            controller.releaseContext(this);
+        }
+    }
+
+    /**
+    * Indicate that a reference to this Context may be retained beyond the instruction
+    * that created it, for example by an extension function or TraceListener that
+    * receives the Context as a parameter. A context that has escaped is never reused.
+    */
+
+    public void setEscaped() {
+        escaped = true;
+    }
+
+    /**
+    * Copy the properties of another context into this one
+    */
+
+    private void copyFrom(Context c) {
+        staticContext = c.staticContext;
+        currentNode = c.currentNode;
+        contextNode = c.contextNode;
+        position = c.position;
+        last = c.last;
+        lastPositionFinder = c.lastPositionFinder;
+        currentMode = c.currentMode;
+        currentTemplate = c.currentTemplate;
+        groupActivationStack = c.groupActivationStack;
+        lastRememberedNode = c.lastRememberedNode;
+        lastRememberedNumber = c.lastRememberedNumber;
+        tailRecursion = null;
+        tailCallTarget = null;
+        returnValue = null;
+        exception = null;
+        escaped = false;
+    }
+
     /**
     * Set the controller for this Context
     */
@@ -441,6 +506,28 @@ public final class Context implements XSLTContext, LastPositionFinder {
 
     public void setTailRecursion(ParameterSet p) {
         tailRecursion = p;
+        tailCallTarget = null;
+    }
+
+    /**
+    * Request a tail call: the template currently being expanded will be replaced
+    * by the target template, invoked with the given parameters
+    * @param target the template to be called, or null to call the current template again
+    * @param p the parameters to be passed
+    */
+
+    public void setTailCall(XSLTemplate target, ParameterSet p) {
+        tailRecursion = p;
+        tailCallTarget = target;
+    }
+
+    /**
+    * Get the template requested by a tail call, if any. This is null if there is no
+    * pending tail call, or if the current template is to be called again.
+    */
+
+    public XSLTemplate getTailCallTarget() {
+        return tailCallTarget;
     }
 
     /**
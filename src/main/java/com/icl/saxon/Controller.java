@@ -1,4 +1,5 @@
 package com.icl.saxon;
+import com.icl.saxon.dom.DocumentWrapper;
 import com.icl.saxon.expr.*;
 import com.icl.saxon.om.*;
 import com.icl.saxon.output.*;
@@ -6,10 +7,14 @@ import com.icl.saxon.pattern.AnyNodeTest;
 import com.icl.saxon.sort.NodeOrderComparer;
 import com.icl.saxon.style.TerminationException;
 import com.icl.saxon.style.XSLStyleSheet;
+import com.icl.saxon.style.XSLTemplate;
+import com.icl.saxon.style.XSLVariable;
 import com.icl.saxon.tinytree.TinyBuilder;
 import com.icl.saxon.trace.SaxonEventMulticaster;
 import com.icl.saxon.trace.TraceListener;
 import com.icl.saxon.tree.TreeBuilder;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.xml.sax.SAXParseException;
 
@@ -20,6 +25,11 @@ import javax.xml.transform.sax.TransformerHandler;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Properties;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 
 /**
@@ -71,6 +81,17 @@ public class Controller extends Transformer implements NodeOrderComparer {
     private boolean preview;
     private String diagnosticName = null;
 
+    private Context[] contextPool = new Context[20];    // reusable Context objects
+    private int contextPoolSize = 0;
+    private int asyncOutputThreads = 0;
+    private AsyncOutputManager asyncOutput = null;  // allocated on first use in a transformation
+    private int parallelThreads = 0;
+    private boolean explaining = false;             // true if plans of path expressions are displayed
+    private ForkJoinPool parallelPool = null;       // allocated on first use in a transformation
+    private boolean globalsEvaluated = false;       // true once the global variables are all evaluated
+    private boolean parallelWorker = false;         // true if working on behalf of another Controller
+    private Hashtable ancestorMatchTable = null;    // used by patterns of the form a//b
+
     /**
     * Default constructor is provided for Java-only programs, i.e. applications
     * that use the RuleManager to set up Java handlers for nodes, without using
@@ -118,6 +139,69 @@ public class Controller extends Transformer implements NodeOrderComparer {
             setTreeModel(model.intValue());
         }
 
+        Integer threads = (Integer)factory.getAttribute(FeatureKeys.ASYNC_OUTPUT_THREADS);
+        if (threads!=null) {
+            asyncOutputThreads = threads.intValue();
+        }
+
+        Integer parallel = (Integer)factory.getAttribute(FeatureKeys.PARALLEL_THREADS);
+        if (parallel!=null) {
+            parallelThreads = parallel.intValue();
+        }
+
+        Boolean explain = (Boolean)factory.getAttribute(FeatureKeys.EXPLAIN);
+        explaining = (explain!=null && explain.booleanValue());
+
+    }
+
+    /**
+    * Create a Controller to instantiate templates on a parallel thread on behalf of another
+    * Controller. It shares the stylesheet, the documents, and the values of global variables
+    * with its parent, but has its own local variables, Context objects, and output destination.
+    * Any error or warning is thrown, so that the parent can redo the work sequentially and
+    * report it in the normal way.
+    */
+
+    private Controller(Controller parent) {
+        factory = parent.factory;
+        namePool = parent.namePool;
+        standardURIResolver = parent.standardURIResolver;
+        userURIResolver = parent.userURIResolver;
+        errorListener = new FailingErrorListener();
+        preparedStyleSheet = parent.preparedStyleSheet;
+        styleSheetElement = parent.styleSheetElement;
+        ruleManager = parent.ruleManager;
+        decimalFormatManager = parent.decimalFormatManager;
+        bindery = parent.bindery.newThreadBindery();
+        parameters = parent.parameters;
+        outputProperties = parent.outputProperties;
+        recoveryPolicy = parent.recoveryPolicy;
+        treeModel = parent.treeModel;
+        disableStripping = parent.disableStripping;
+        lineNumbering = parent.lineNumbering;
+        explaining = parent.explaining;
+        sourceDocumentPool = parent.sourceDocumentPool;
+        userDataTable = parent.userDataTable;
+        diagnosticName = parent.diagnosticName;
+        parallelWorker = true;
+    }
+
+    /**
+    * An ErrorListener that throws every error and warning, used when work is done
+    * speculatively: if anything goes wrong, the work is abandoned, and done again later
+    * in the normal way.
+    */
+
+    private static class FailingErrorListener implements ErrorListener {
+        public void warning(TransformerException err) throws TransformerException {
+            throw err;
+        }
+        public void error(TransformerException err) throws TransformerException {
+            throw err;
+        }
+        public void fatalError(TransformerException err) throws TransformerException {
+            throw err;
+        }
     }
 
     /**
@@ -141,6 +225,9 @@ public class Controller extends Transformer implements NodeOrderComparer {
      * clear the document pool, then it is possible either (a) to call the {@link #clearDocumentPool()} method,
      * or (b) to create a new Transformer.
      *
+     * <p>Objects that can safely be reused, such as the Bindery and the pool of Context objects,
+     * are retained, so that a Transformer that is reset and reused costs less than a new one.
+     *
      * @since 1.5
      */
     public void reset() {
@@ -151,6 +238,17 @@ public class Controller extends Transformer implements NodeOrderComparer {
         currentOutputter = null;
         messageEmitter = null;
         outputProperties = null;
+        traceListener = null;
+        tracingIsSuspended = false;
+        recoveryPolicy = RECOVER_WITH_WARNINGS;
+        treeModel = Builder.TINY_TREE;
+        disableStripping = false;
+        lineNumbering = false;
+        diagnosticName = null;
+        ancestorMatchTable = null;
+        if (bindery!=null) {
+            bindery.clear();
+        }
 
         errorListener = factory.getErrorListener();
         if (errorListener instanceof StandardErrorListener) {
@@ -175,6 +273,15 @@ public class Controller extends Transformer implements NodeOrderComparer {
             setTreeModel(model.intValue());
         }
 
+        Integer threads = (Integer)factory.getAttribute(FeatureKeys.ASYNC_OUTPUT_THREADS);
+        asyncOutputThreads = (threads==null ? 0 : threads.intValue());
+
+        Integer parallel = (Integer)factory.getAttribute(FeatureKeys.PARALLEL_THREADS);
+        parallelThreads = (parallel==null ? 0 : parallel.intValue());
+
+        Boolean explain = (Boolean)factory.getAttribute(FeatureKeys.EXPLAIN);
+        explaining = (explain!=null && explain.booleanValue());
+
     }
 
     public TransformerFactoryImpl getTransformerFactory() {
@@ -248,6 +355,35 @@ public class Controller extends Transformer implements NodeOrderComparer {
             enm = select.enumerate(c, false);
         }
 
+        // if the stylesheet allows it, and there are enough nodes to make it worthwhile,
+        // instantiate the templates on parallel threads
+
+        if (parallelThreads>0 && globalsEvaluated && !preview && !isTracing() &&
+                styleSheetElement.isSideEffectFree()) {
+            NodeInfo[] nodes = new NodeInfo[20];
+            int count = 0;
+            int elements = 0;
+            while (enm.hasMoreElements()) {
+                if (count==nodes.length) {
+                    NodeInfo[] n2 = new NodeInfo[count*2];
+                    System.arraycopy(nodes, 0, n2, 0, count);
+                    nodes = n2;
+                }
+                NodeInfo node = enm.nextElement();
+                if (node.getNodeType()==NodeInfo.ELEMENT) {
+                    elements++;
+                }
+                nodes[count++] = node;
+            }
+            NodeInfo[] selection = new NodeInfo[count];
+            System.arraycopy(nodes, 0, selection, 0, count);
+            if (elements >= Math.max(2, parallelThreads)) {
+                applyTemplatesInParallel(c, selection, mode, parameters);
+                return;
+            }
+            enm = new NodeSetExtent(selection, this).enumerate();
+        }
+
         // if the enumerator can't calculate last() position, we wrap it in one that can.
 
         if (!(enm instanceof LastPositionFinder)) {
@@ -255,7 +391,7 @@ public class Controller extends Transformer implements NodeOrderComparer {
         }
 
         int position = 1;
-        Context context = c.newContext();
+        Context context = c.newReusableContext();
         context.setLastPositionFinder((LastPositionFinder)enm);
         context.setMode(mode);
         while(enm.hasMoreElements()) {
@@ -268,39 +404,184 @@ public class Controller extends Transformer implements NodeOrderComparer {
             context.setCurrentNode(node);
             context.setContextNode(node);
             context.setPosition(position++);
+            applyTemplate(node, context, mode, parameters);
+        }
+        context.releaseContext();
+    };
 
-            // find the node handler for this node
+    /**
+    * Find the template rule for a node, and instantiate it (or perform the built-in action)
+    */
 
-            NodeHandler eh = ruleManager.getHandler(node, mode, context);
+    private void applyTemplate(NodeInfo node, Context context, Mode mode, ParameterSet parameters)
+            throws TransformerException
+    {
+        // find the node handler for this node
+
+        NodeHandler eh = ruleManager.getHandler(node, mode, context);
 
-            if (eh==null) {             // Use the default action for the node
-                                        // No need to open a new stack frame!
-                defaultAction(node, context);
+        if (eh==null) {             // Use the default action for the node
+                                    // No need to open a new stack frame!
+            defaultAction(node, context);
 
+        } else {
+            if (!(eh instanceof XSLTemplate)) {
+                if (parallelWorker) {
+                    // a user-written handler might do anything: leave it to the parent
+                    throw new TransformerException("Node handler cannot be run on a parallel thread");
+                }
+                // a user-written handler might keep a reference to the context
+                context.setEscaped();
+            }
+            if (eh.needsStackFrame()) {
+                bindery.openStackFrame(parameters);
+                if (isTracing()) { // e.g.
+            	    traceListener.enterSource(eh, context);
+             	    eh.start(node, context);
+            	    traceListener.leaveSource(eh, context);
+            	} else {
+             	    eh.start(node, context);
+            	}
+                bindery.closeStackFrame();
             } else {
-                if (eh.needsStackFrame()) {
-                    bindery.openStackFrame(parameters);
-                    if (isTracing()) { // e.g.
-                	    traceListener.enterSource(eh, context);
-                 	    eh.start(node, context);
-                	    traceListener.leaveSource(eh, context);
-                	} else {
-                 	    eh.start(node, context);
-                	}
-                    bindery.closeStackFrame();
+                if (isTracing()) { // e.g.
+            	    traceListener.enterSource(eh, context);
+             	    eh.start(node, context);
+            	    traceListener.leaveSource(eh, context);
+            	} else {
+             	    eh.start(node, context);
+            	}
+            }
+        }
+    }
+
+    /**
+    * Instantiate the templates for a list of nodes on parallel threads. The nodes are divided
+    * into runs of adjacent nodes, and each run is processed by a separate worker Controller
+    * into a FragmentValue. The fragments are copied to the current output destination in order,
+    * as each becomes available. If the processing of any run fails, the nodes from the start
+    * of that run onwards are processed again sequentially, so that any error is reported
+    * exactly as it would have been without parallel processing.
+    */
+
+    private void applyTemplatesInParallel(final Context c, final NodeInfo[] nodes,
+                                          final Mode mode, final ParameterSet parameters)
+            throws TransformerException
+    {
+        if (parallelPool==null) {
+            parallelPool = new ForkJoinPool(parallelThreads);
+        }
+        int runs = Math.min(nodes.length, parallelThreads * 4);
+        int[] start = new int[runs+1];
+        for (int r=0; r<=runs; r++) {
+            start[r] = (int)((long)nodes.length * r / runs);
+        }
+        Future[] results = new Future[runs];
+        for (int r=0; r<runs; r++) {
+            final int from = start[r];
+            final int to = start[r+1];
+            results[r] = parallelPool.submit(new Callable() {
+                public Object call() throws TransformerException {
+                    return applyTemplatesToRun(c, nodes, from, to, mode, parameters);
+                }
+            });
+        }
+
+        int failedAt = -1;
+        try {
+            for (int r=0; r<runs && failedAt<0; r++) {
+                FragmentValue fragment = waitForRun(results[r]);
+                if (fragment==null) {
+                    failedAt = start[r];
                 } else {
-                    if (isTracing()) { // e.g.
-                	    traceListener.enterSource(eh, context);
-                 	    eh.start(node, context);
-                	    traceListener.leaveSource(eh, context);
-                	} else {
-                 	    eh.start(node, context);
-                	}
+                    results[r] = null;
+                    fragment.copy(currentOutputter);
                 }
             }
+        } finally {
+            for (int r=0; r<runs; r++) {
+                if (results[r]!=null) {
+                    results[r].cancel(false);
+                }
+            }
+        }
 
+        if (failedAt>=0) {
+            Context context = c.newReusableContext();
+            context.setLast(nodes.length);
+            context.setMode(mode);
+            for (int i=failedAt; i<nodes.length; i++) {
+                context.setCurrentNode(nodes[i]);
+                context.setContextNode(nodes[i]);
+                context.setPosition(i+1);
+                applyTemplate(nodes[i], context, mode, parameters);
+            }
+            context.releaseContext();
         }
-    };
+    }
+
+    /**
+    * Instantiate the templates for a run of nodes, using a worker Controller. This is called
+    * on one of the parallel threads.
+    * @return the output of the templates
+    */
+
+    private FragmentValue applyTemplatesToRun(Context c, NodeInfo[] nodes, int from, int to,
+                                              Mode mode, ParameterSet parameters)
+            throws TransformerException
+    {
+        Controller worker = new Controller(this);
+        FragmentValue fragment = new FragmentValue(this);
+        worker.changeOutputDestination(null, fragment.getEmitter());
+        Context context = c.newContext();
+        context.setController(worker);
+        context.setLast(nodes.length);
+        context.setMode(mode);
+        for (int i=from; i<to; i++) {
+            context.setCurrentNode(nodes[i]);
+            context.setContextNode(nodes[i]);
+            context.setPosition(i+1);
+            worker.applyTemplate(nodes[i], context, mode, parameters);
+        }
+        worker.resetOutputDestination(null);
+        return fragment;
+    }
+
+    /**
+    * Wait for a run of nodes to be processed on a parallel thread
+    * @return the output of the run, or null if it failed
+    */
+
+    private static FragmentValue waitForRun(Future run) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return (FragmentValue)run.get();
+                } catch (InterruptedException err) {
+                    interrupted = true;
+                } catch (ExecutionException err) {
+                    return null;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+    * Release the threads used for parallel processing, if any
+    */
+
+    private void finishParallel() {
+        globalsEvaluated = false;
+        if (parallelPool!=null) {
+            parallelPool.shutdown();
+            parallelPool = null;
+        }
+    }
 
     /**
     * Perform the built-in template action for a given node
@@ -448,6 +729,38 @@ public class Controller extends Transformer implements NodeOrderComparer {
         currentOutputter = out;
     }
 
+    /**
+    * Get the manager used to write secondary output files in the background.
+    * @return the AsyncOutputManager for the current transformation, or null if secondary
+    * output files are to be written synchronously
+    */
+
+    public AsyncOutputManager getAsyncOutputManager() {
+        if (asyncOutput==null && asyncOutputThreads>0) {
+            asyncOutput = new AsyncOutputManager(asyncOutputThreads);
+        }
+        return asyncOutput;
+    }
+
+    /**
+    * Wait for any secondary output files still being written in the background
+    * @param completed true if the transformation finished normally, in which case any
+    * failure to write a file is reported; false if it failed, in which case such failures
+    * are ignored in favour of the original error
+    */
+
+    private void finishAsyncOutput(boolean completed) throws TransformerException {
+        if (asyncOutput!=null) {
+            AsyncOutputManager manager = asyncOutput;
+            asyncOutput = null;
+            if (completed) {
+                manager.finish();
+            } else {
+                manager.abandon();
+            }
+        }
+    }
+
     /**
     * Set a simple StringBuffer output destination. Used during calls to
     * xsl:attribute, xsl:comment, xsl:processing-instruction
@@ -614,6 +927,15 @@ public class Controller extends Transformer implements NodeOrderComparer {
         return lineNumbering;
     }
 
+    /**
+    * Determine whether path expressions should display the way they are evaluated
+    * (see FeatureKeys.EXPLAIN)
+    */
+
+    public boolean isExplaining() {
+        return explaining;
+    }
+
     /**
     * Create a new context with a given node as the current node and the only node in the current
     * node list.
@@ -628,6 +950,36 @@ public class Controller extends Transformer implements NodeOrderComparer {
         return c;
     }
 
+    /**
+    * Allocate a Context, reusing one from the pool if possible. This is called
+    * by Context.newReusableContext().
+    */
+
+    Context allocateContext() {
+        if (contextPoolSize > 0) {
+            Context c = contextPool[--contextPoolSize];
+            contextPool[contextPoolSize] = null;
+            return c;
+        }
+        return new Context(this);
+    }
+
+    /**
+    * Return a Context to the pool. This is called by Context.releaseContext().
+    */
+
+    void releaseContext(Context c) {
+        if (contextPoolSize == contextPool.length) {
+            if (contextPoolSize >= 1000) {
+                return;     // let it be garbage collected
+            }
+            Context[] p2 = new Context[contextPoolSize*2];
+            System.arraycopy(contextPool, 0, p2, 0, contextPoolSize);
+            contextPool = p2;
+        }
+        contextPool[contextPoolSize++] = c;
+    }
+
     /**
     * Get the current bindery
     */
@@ -727,6 +1079,12 @@ public class Controller extends Transformer implements NodeOrderComparer {
         b.setTiming((timing==null ? false : timing.booleanValue()));
         b.setNamePool(namePool);
         b.setLineNumbering(lineNumbering);
+        Boolean share = (Boolean)factory.getAttribute(FeatureKeys.SHARE_VALUES);
+        b.setValueSharing((share==null ? false : share.booleanValue()));
+        Boolean cache = (Boolean)factory.getAttribute(FeatureKeys.CACHE_NUMERIC_VALUES);
+        b.setNumericValueCaching((cache==null ? false : cache.booleanValue()));
+        Boolean stats = (Boolean)factory.getAttribute(FeatureKeys.COLLECT_STATISTICS);
+        b.setStatisticsCollection((stats==null ? false : stats.booleanValue()));
         b.setErrorListener(errorListener);
 
         Stripper stripper = makeStripper(b);
@@ -803,6 +1161,32 @@ public class Controller extends Transformer implements NodeOrderComparer {
         // above line deleted for bug 490964 - may have side-effects
     }
 
+    /**
+    * Get the compiled stylesheet associated with this Controller
+    * @return the PreparedStyleSheet, or null if there is none
+    */
+
+    public PreparedStyleSheet getPreparedStyleSheet() {
+        return preparedStyleSheet;
+    }
+
+    /**
+    * Get the table in which patterns of the form a//b remember, during one transformation,
+    * which nodes have an ancestor matching the pattern a. The table maps each such pattern
+    * to an object owned by the pattern.
+    * @return the table, or null in preview mode, where the tree changes while it is processed
+    */
+
+    public Hashtable getAncestorMatchTable() {
+        if (preview) {
+            return null;
+        }
+        if (ancestorMatchTable==null) {
+            ancestorMatchTable = new Hashtable();
+        }
+        return ancestorMatchTable;
+    }
+
     /**
     * Does this transformation use preview mode?
     */
@@ -818,19 +1202,80 @@ public class Controller extends Transformer implements NodeOrderComparer {
     private void initializeController() {
         setRuleManager(styleSheetElement.getRuleManager());
         setDecimalFormatManager(styleSheetElement.getDecimalFormatManager());
+        ancestorMatchTable = null;
 
         if (traceListener!=null) {
             traceListener.open();
         }
 
-        // get a new bindery, to clear out any variables from previous runs
+        // clear out any variables from previous runs, reusing the bindery if there is one
 
-        bindery = new Bindery();
+        if (bindery==null) {
+            bindery = new Bindery();
+        } else {
+            bindery.clear();
+        }
         styleSheetElement.initialiseBindery(bindery);
 
         // if parameters were supplied, set them up
 
         bindery.defineGlobalParameters(parameters);
+
+        // use the values of global variables that were evaluated when the stylesheet was
+        // compiled, unless they might be different in this transformation
+
+        if (preparedStyleSheet!=null && !isTracing()) {
+            Value[] shared = preparedStyleSheet.getSharedGlobals();
+            if (shared!=null && userURIResolver==preparedStyleSheet.getSharedGlobalsResolver()) {
+                bindery.defineSharedGlobals(shared);
+                sourceDocumentPool.addNamedDocuments(preparedStyleSheet.getSharedDocumentPool());
+            }
+        }
+    }
+
+    /**
+    * Evaluate global variables whose values are the same in every transformation, in
+    * advance of any transformation. This is called once, when the stylesheet is compiled,
+    * on a Controller created for the purpose. Any variable whose evaluation fails, or needs
+    * the value of a global variable that is not in the list, is left to be evaluated at
+    * run-time in the usual way.
+    * @param variables the global variables to be evaluated, in order of declaration
+    * @return the values, indexed by slot number; null for those that were not evaluated
+    */
+
+    Value[] evaluateSharedGlobals(Vector variables) {
+        traceListener = null;
+        errorListener = new FailingErrorListener();
+        setRuleManager(styleSheetElement.getRuleManager());
+        setDecimalFormatManager(styleSheetElement.getDecimalFormatManager());
+        bindery = new Bindery();
+        styleSheetElement.initialiseBindery(bindery);
+        int slots = styleSheetElement.getNumberOfGlobalVariables();
+        boolean[] allowed = new boolean[slots];
+        for (int i=0; i<variables.size(); i++) {
+            allowed[((Binding)variables.elementAt(i)).getSlotNumber()] = true;
+        }
+        bindery.restrictGlobals(allowed);
+
+        // the context node is never used, since the variables don't depend on it
+        Context context = makeContext(preparedStyleSheet.getStyleSheetDocument());
+
+        Value[] values = new Value[slots];
+        for (int i=0; i<variables.size(); i++) {
+            XSLVariable var = (XSLVariable)variables.elementAt(i);
+            try {
+                var.process(context);
+                Value v = bindery.getValue(var);
+                if (v instanceof NodeSetIntent) {
+                    // fix the node-set now, rather than evaluating it again each time it is used
+                    v = new NodeSetExtent(((NodeSetIntent)v).enumerate(), this);
+                }
+                values[var.getSlotNumber()] = v;
+            } catch (TransformerException err) {
+                // leave it to be evaluated at run-time
+            }
+        }
+        return values;
     }
 
     /**
@@ -929,13 +1374,32 @@ public class Controller extends Transformer implements NodeOrderComparer {
                 if (preview) {
                     throw new TransformerException("Preview mode requires serial input");
                 }
-                if (disableStripping || !styleSheetElement.stripsWhitespace()) {
+                boolean stripping = !disableStripping && styleSheetElement.stripsWhitespace();
+                if ( ds.getNode() instanceof NodeInfo ) {
+                    NodeInfo startNode = (NodeInfo)ds.getNode();
+                    if (stripping) {
+
+                        // strip whitespace by navigating a view of the tree, rather than
+                        // building a new copy of it
+
+                        Stripper stripper = styleSheetElement.newStripper();
+                        stripper.setController(this);
+                        StrippedDocument view =
+                            new StrippedDocument(startNode.getDocumentRoot(), stripper);
+                        startNode = view.wrap(startNode);
+                    }
 
-                    if ( ds.getNode() instanceof NodeInfo ) {
+                    // bypass the tree building stage, and work on the tree as supplied
 
-                        // bypass the tree building stage, and work on the tree as supplied
+                    transformDocument(startNode, result);
+                    return;
+                } else {
 
-                        transformDocument((NodeInfo)ds.getNode(), result);
+                    // wrap the DOM so that it can be navigated without building a copy
+
+                    NodeInfo startNode = wrapDOMNode(ds.getNode(), ds.getSystemId(), stripping);
+                    if (startNode!=null) {
+                        transformDocument(startNode, result);
                         return;
                     }
                 }
@@ -1007,6 +1471,40 @@ public class Controller extends Transformer implements NodeOrderComparer {
         }
     }
 
+    /**
+    * Wrap a node in a W3C DOM so that it can be used directly as the start node of
+    * a transformation. Whitespace stripping, if required, is applied by the wrapper.
+    * @return the wrapped node, or null if the node is not contained in a Document
+    */
+
+    private NodeInfo wrapDOMNode(Node node, String systemId, boolean stripping) {
+        Document doc;
+        if (node.getNodeType()==Node.DOCUMENT_NODE) {
+            doc = (Document)node;
+        } else {
+            doc = node.getOwnerDocument();
+            Node n = node;
+            while (n!=null && n!=doc) {
+                n = (n.getNodeType()==Node.ATTRIBUTE_NODE ?
+                        ((Attr)n).getOwnerElement() : n.getParentNode());
+            }
+            if (n==null) {
+                return null;
+            }
+        }
+        if (systemId==null) {
+            systemId = doc.getDocumentURI();
+        }
+        DocumentWrapper wrapper = new DocumentWrapper(doc, systemId);
+        wrapper.setNamePool(namePool);
+        if (stripping) {
+            Stripper stripper = styleSheetElement.newStripper();
+            stripper.setController(this);
+            wrapper.setStripper(stripper);
+        }
+        return wrapper.wrap(node);
+    }
+
     /**
     * Get an XPath expression referencing a node in a DOM
     */
@@ -1118,11 +1616,19 @@ public class Controller extends Transformer implements NodeOrderComparer {
         // process the stylesheet document
         // (The main function of this phase is to evaluate global variables)
 
-        styleSheetElement.process(context);
+        boolean completed = false;
+        try {
+            styleSheetElement.process(context);
+            globalsEvaluated = true;
 
-        // Process the source document using the handlers that have been set up
+            // Process the source document using the handlers that have been set up
 
-        run(startNode);
+            run(startNode);
+            completed = true;
+        } finally {
+            finishParallel();
+            finishAsyncOutput(completed);
+        }
 
         if (traceListener!=null) {
             traceListener.close();
@@ -1141,15 +1647,12 @@ public class Controller extends Transformer implements NodeOrderComparer {
     private Result prepareNextStylesheet(String href, String baseURI, Result result)
     throws TransformerException {
 
-        //TODO: should cache the results, we are recompiling the referenced
-        //stylesheet each time it's used
-
         //TODO: combine with similar method in XSLGeneralOutput
 
         Source source = getURIResolver().resolve(href, baseURI);
         SAXSource saxSource = factory.getSAXSource(source, true);
 
-        Templates next = factory.newTemplates(source);
+        Templates next = factory.getCachedTemplates(source);
         TransformerHandler nextTransformer = factory.newTransformerHandler(next);
 
         ContentHandlerProxy emitter = new ContentHandlerProxy();
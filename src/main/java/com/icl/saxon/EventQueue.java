@@ -0,0 +1,370 @@
+package com.icl.saxon;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+* An EventQueue carries a stream of SAX events from one thread to another. The producing
+* thread writes to it as a ContentHandler and LexicalHandler; the events are collected into
+* batches, and each full batch is placed on a bounded queue. The consuming thread takes the
+* batches off the queue and replays the events to another ContentHandler.<p>
+*
+* If the producer gets too far ahead of the consumer it is blocked until space becomes
+* available. Either side gives up if the Pipeline that owns the queue has been aborted.
+*/
+
+final class EventQueue implements ContentHandler, LexicalHandler {
+
+    private static final byte START_DOCUMENT = 1;
+    private static final byte END_DOCUMENT = 2;
+    private static final byte START_PREFIX_MAPPING = 3;     // prefix, uri
+    private static final byte END_PREFIX_MAPPING = 4;       // prefix
+    private static final byte START_ELEMENT = 5;            // uri, local, qname, atts
+    private static final byte END_ELEMENT = 6;              // uri, local, qname
+    private static final byte CHARACTERS = 7;               // length
+    private static final byte IGNORABLE_WHITESPACE = 8;     // length
+    private static final byte PROCESSING_INSTRUCTION = 9;   // target, data
+    private static final byte SKIPPED_ENTITY = 10;          // name
+    private static final byte COMMENT = 11;                 // length
+    private static final byte START_DTD = 12;               // name, publicId, systemId
+    private static final byte END_DTD = 13;
+    private static final byte START_ENTITY = 14;            // name
+    private static final byte END_ENTITY = 15;              // name
+    private static final byte START_CDATA = 16;
+    private static final byte END_CDATA = 17;
+
+    private static final Attributes NO_ATTRIBUTES = new AttributesImpl();
+
+    private ArrayBlockingQueue queue;
+    private Pipeline.Run run;
+    private int batchSize;
+    private Batch current;
+
+    /**
+    * Create an EventQueue
+    * @param run the pipeline execution to which the queue belongs
+    * @param batchSize the number of events in each batch
+    * @param capacity the number of batches that may be waiting on the queue
+    */
+
+    EventQueue(Pipeline.Run run, int batchSize, int capacity) {
+        this.run = run;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue(capacity);
+        current = new Batch(batchSize);
+    }
+
+    //////////////////////////////////////////////////////////////////
+    // Producer side
+    //////////////////////////////////////////////////////////////////
+
+    public void setDocumentLocator(Locator locator) {
+        // a locator is only meaningful within the producing thread
+    }
+
+    public void startDocument() throws SAXException {
+        add(START_DOCUMENT);
+    }
+
+    public void endDocument() throws SAXException {
+        add(END_DOCUMENT);
+        current.last = true;
+        flush();
+    }
+
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+        add(START_PREFIX_MAPPING);
+        current.addObject(prefix);
+        current.addObject(uri);
+    }
+
+    public void endPrefixMapping(String prefix) throws SAXException {
+        add(END_PREFIX_MAPPING);
+        current.addObject(prefix);
+    }
+
+    public void startElement(String uri, String localName, String qName, Attributes atts)
+    throws SAXException {
+        add(START_ELEMENT);
+        current.addObject(uri);
+        current.addObject(localName);
+        current.addObject(qName);
+        // the caller may reuse the attribute list, so we must take a copy
+        current.addObject(atts.getLength()==0 ? NO_ATTRIBUTES : new AttributesImpl(atts));
+    }
+
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        add(END_ELEMENT);
+        current.addObject(uri);
+        current.addObject(localName);
+        current.addObject(qName);
+    }
+
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        addChars(CHARACTERS, ch, start, length);
+    }
+
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        addChars(IGNORABLE_WHITESPACE, ch, start, length);
+    }
+
+    public void processingInstruction(String target, String data) throws SAXException {
+        add(PROCESSING_INSTRUCTION);
+        current.addObject(target);
+        current.addObject(data);
+    }
+
+    public void skippedEntity(String name) throws SAXException {
+        add(SKIPPED_ENTITY);
+        current.addObject(name);
+    }
+
+    public void comment(char[] ch, int start, int length) throws SAXException {
+        addChars(COMMENT, ch, start, length);
+    }
+
+    public void startDTD(String name, String publicId, String systemId) throws SAXException {
+        add(START_DTD);
+        current.addObject(name);
+        current.addObject(publicId);
+        current.addObject(systemId);
+    }
+
+    public void endDTD() throws SAXException {
+        add(END_DTD);
+    }
+
+    public void startEntity(String name) throws SAXException {
+        add(START_ENTITY);
+        current.addObject(name);
+    }
+
+    public void endEntity(String name) throws SAXException {
+        add(END_ENTITY);
+        current.addObject(name);
+    }
+
+    public void startCDATA() throws SAXException {
+        add(START_CDATA);
+    }
+
+    public void endCDATA() throws SAXException {
+        add(END_CDATA);
+    }
+
+    /**
+    * Add an event to the current batch, first sending the batch if it is full
+    * @param op the event type
+    */
+
+    private void add(byte op) throws SAXException {
+        if (current.used == batchSize) {
+            flush();
+        }
+        current.ops[current.used++] = op;
+    }
+
+    /**
+    * Add an event that carries character data
+    */
+
+    private void addChars(byte op, char[] ch, int start, int length) throws SAXException {
+        if (current.used == batchSize || current.charsUsed + length > current.chars.length) {
+            if (current.used > 0) {
+                flush();
+            }
+            if (length > current.chars.length) {
+                current.chars = new char[length];
+            }
+        }
+        current.ops[current.used] = op;
+        current.lengths[current.used++] = length;
+        System.arraycopy(ch, start, current.chars, current.charsUsed, length);
+        current.charsUsed += length;
+    }
+
+    /**
+    * Send the current batch to the consumer and start a new one
+    */
+
+    private void flush() throws SAXException {
+        Batch b = current;
+        current = new Batch(batchSize);
+        try {
+            while (!queue.offer(b, 100, TimeUnit.MILLISECONDS)) {
+                if (run.isAborted()) {
+                    throw new SAXException("Pipeline aborted");
+                }
+            }
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new SAXException("Pipeline interrupted");
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////
+    // Consumer side
+    //////////////////////////////////////////////////////////////////
+
+    /**
+    * Take events off the queue and pass them to a ContentHandler, until the end of the
+    * document has been reached
+    * @param handler the destination of the events. If it is also a LexicalHandler,
+    * lexical events are passed to it; otherwise they are discarded.
+    */
+
+    void replay(ContentHandler handler) throws SAXException {
+        LexicalHandler lexical = (handler instanceof LexicalHandler ? (LexicalHandler)handler : null);
+        while (true) {
+            Batch b;
+            try {
+                b = (Batch)queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException err) {
+                Thread.currentThread().interrupt();
+                throw new SAXException("Pipeline interrupted");
+            }
+            if (b==null) {
+                if (run.isAborted()) {
+                    throw new SAXException("Pipeline aborted");
+                }
+                continue;
+            }
+
+            Object[] objects = b.objects;
+            char[] chars = b.chars;
+            int o = 0;
+            int c = 0;
+            for (int i=0; i<b.used; i++) {
+                switch (b.ops[i]) {
+                    case START_DOCUMENT:
+                        handler.startDocument();
+                        break;
+                    case END_DOCUMENT:
+                        handler.endDocument();
+                        break;
+                    case START_PREFIX_MAPPING:
+                        handler.startPrefixMapping((String)objects[o], (String)objects[o+1]);
+                        o += 2;
+                        break;
+                    case END_PREFIX_MAPPING:
+                        handler.endPrefixMapping((String)objects[o++]);
+                        break;
+                    case START_ELEMENT:
+                        handler.startElement((String)objects[o], (String)objects[o+1],
+                                             (String)objects[o+2], (Attributes)objects[o+3]);
+                        o += 4;
+                        break;
+                    case END_ELEMENT:
+                        handler.endElement((String)objects[o], (String)objects[o+1],
+                                           (String)objects[o+2]);
+                        o += 3;
+                        break;
+                    case CHARACTERS:
+                        handler.characters(chars, c, b.lengths[i]);
+                        c += b.lengths[i];
+                        break;
+                    case IGNORABLE_WHITESPACE:
+                        handler.ignorableWhitespace(chars, c, b.lengths[i]);
+                        c += b.lengths[i];
+                        break;
+                    case PROCESSING_INSTRUCTION:
+                        handler.processingInstruction((String)objects[o], (String)objects[o+1]);
+                        o += 2;
+                        break;
+                    case SKIPPED_ENTITY:
+                        handler.skippedEntity((String)objects[o++]);
+                        break;
+                    case COMMENT:
+                        if (lexical!=null) {
+                            lexical.comment(chars, c, b.lengths[i]);
+                        }
+                        c += b.lengths[i];
+                        break;
+                    case START_DTD:
+                        if (lexical!=null) {
+                            lexical.startDTD((String)objects[o], (String)objects[o+1],
+                                             (String)objects[o+2]);
+                        }
+                        o += 3;
+                        break;
+                    case END_DTD:
+                        if (lexical!=null) lexical.endDTD();
+                        break;
+                    case START_ENTITY:
+                        if (lexical!=null) lexical.startEntity((String)objects[o]);
+                        o++;
+                        break;
+                    case END_ENTITY:
+                        if (lexical!=null) lexical.endEntity((String)objects[o]);
+                        o++;
+                        break;
+                    case START_CDATA:
+                        if (lexical!=null) lexical.startCDATA();
+                        break;
+                    case END_CDATA:
+                        if (lexical!=null) lexical.endCDATA();
+                        break;
+                }
+            }
+            if (b.last) {
+                return;
+            }
+        }
+    }
+
+    /**
+    * A batch of events. Each event has an entry in ops; its string and attribute arguments
+    * are held in sequence in objects, and its character data (if any) in chars.
+    */
+
+    private static final class Batch {
+        byte[] ops;
+        int[] lengths;              // length of character data, indexed like ops
+        int used = 0;
+        Object[] objects;
+        int objectsUsed = 0;
+        char[] chars = new char[4096];
+        int charsUsed = 0;
+        boolean last = false;       // true if this batch ends the document
+
+        Batch(int size) {
+            ops = new byte[size];
+            lengths = new int[size];
+            objects = new Object[size * 2];
+        }
+
+        void addObject(Object o) {
+            if (objectsUsed == objects.length) {
+                Object[] o2 = new Object[objectsUsed * 2];
+                System.arraycopy(objects, 0, o2, 0, objectsUsed);
+                objects = o2;
+            }
+            objects[objectsUsed++] = o;
+        }
+    }
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael Kay
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
@@ -76,6 +76,86 @@ public class FeatureKeys {
     public final static String STYLE_PARSER_CLASS =
             "http://icl.com/saxon/feature/styleParserClass";
 
+    /**
+    * TEMPLATES_CACHE_SIZE must be an Integer: the number of compiled stylesheets loaded
+    * during transformations (e.g. by saxon:next-in-chain) that are retained for reuse.
+    * Zero disables the cache.
+    */
+
+    public final static String TEMPLATES_CACHE_SIZE =
+            "http://icl.com/saxon/feature/templatesCacheSize";
+
+    /**
+    * ASYNC_OUTPUT_THREADS must be an Integer: the number of background threads used to
+    * write the files produced by xsl:document. Zero (the default) means the files are
+    * written synchronously.
+    */
+
+    public final static String ASYNC_OUTPUT_THREADS =
+            "http://icl.com/saxon/feature/asyncOutputThreads";
+
+    /**
+    * PARALLEL_THREADS must be an Integer: the number of threads on which xsl:apply-templates
+    * may instantiate templates for the selected nodes concurrently. This is done only if the
+    * stylesheet has no side effects (see XSLStyleSheet.isSideEffectFree()). Zero (the default)
+    * means templates are always instantiated sequentially.
+    */
+
+    public final static String PARALLEL_THREADS =
+            "http://icl.com/saxon/feature/parallelThreads";
+
+    /**
+    * TRANSFORMER_POOL_SIZE must be an Integer: the maximum number of idle Transformers that
+    * a compiled stylesheet keeps for reuse (see PreparedStyleSheet.getPooledTransformer()).
+    * The default is 16. Zero means Transformers are never retained.
+    */
+
+    public final static String TRANSFORMER_POOL_SIZE =
+            "http://icl.com/saxon/feature/transformerPoolSize";
+
+    /**
+    * SHARE_VALUES must be a Boolean: if true, source documents built as a tiny tree store
+    * each distinct attribute value, and each distinct short text node, only once. This saves
+    * memory for data-oriented documents with many repeated values, at some cost in build time.
+    * The default is false.
+    */
+
+    public final static String SHARE_VALUES =
+            "http://icl.com/saxon/feature/shareValues";
+
+    /**
+    * CACHE_NUMERIC_VALUES must be a Boolean: if true, source documents built as a tiny tree
+    * remember the numeric value of each node and attribute once it has been computed, for
+    * example in a comparison with a number, in sum(), or when sorting with data-type="number".
+    * This saves time when the same values are converted repeatedly, at a cost of eight bytes
+    * for each node and each attribute of a document in which any value is converted.
+    * The default is false.
+    */
+
+    public final static String CACHE_NUMERIC_VALUES =
+            "http://icl.com/saxon/feature/cacheNumericValues";
+
+    /**
+    * COLLECT_STATISTICS must be a Boolean: if true, source documents built as a tiny tree
+    * record statistics about their contents while they are built (the number of elements and
+    * attributes with each name, the number of distinct values of each attribute, and the
+    * average number of children of an element). Path expressions use them to choose how to
+    * evaluate predicates and whether to keep their results. The default is false.
+    */
+
+    public final static String COLLECT_STATISTICS =
+            "http://icl.com/saxon/feature/collectStatistics";
+
+    /**
+    * EXPLAIN must be a Boolean: if true, each path expression that the tiny tree evaluates a
+    * set of nodes at a time (such as //a[@id='x'] or a//b/c) writes a description of the way
+    * it was evaluated to System.err, together with the statistics of the document if they were
+    * collected (see COLLECT_STATISTICS), the first time it is used. The default is false.
+    */
+
+    public final static String EXPLAIN =
+            "http://icl.com/saxon/feature/explain";
+
 
 }
 
@@ -0,0 +1,235 @@
+package com.icl.saxon;
+import com.icl.saxon.output.ContentHandlerProxy;
+import org.xml.sax.SAXException;
+
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.sax.TransformerHandler;
+import java.util.Vector;
+
+/**
+* A <B>Pipeline</B> applies a sequence of stylesheets to a source document, the output of
+* each stylesheet being the input to the next. Unlike a chain of XMLFilters or
+* saxon:next-in-chain, each stage runs in its own thread: the SAX events written by one stage
+* are passed in batches through a bounded queue to the thread of the next stage, which builds
+* its source tree while the previous stage is still running, and starts its transformation
+* as soon as the tree is complete.<p>
+*
+* A Pipeline may be used for any number of transformations, one at a time; each
+* transformation uses new Transformer instances.
+*/
+
+public class Pipeline {
+
+    private Vector stages = new Vector();
+    private int batchSize = 1024;
+    private int queueCapacity = 16;
+
+    /**
+    * Add a stage to the end of the pipeline
+    * @param templates the compiled stylesheet used by this stage. This must have been created
+    * by the Saxon TransformerFactory.
+    */
+
+    public void addStage(Templates templates) throws TransformerConfigurationException {
+        if (!(templates instanceof PreparedStyleSheet)) {
+            throw new TransformerConfigurationException("Templates object was not created by Saxon");
+        }
+        stages.addElement(templates);
+    }
+
+    /**
+    * Get the number of stages in the pipeline
+    */
+
+    public int getNumberOfStages() {
+        return stages.size();
+    }
+
+    /**
+    * Set the number of events passed between threads as a single unit. Default 1024.
+    */
+
+    public void setBatchSize(int events) {
+        if (events < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        batchSize = events;
+    }
+
+    /**
+    * Set the number of batches that one stage may produce before it waits for the
+    * next stage to catch up. Default 16.
+    */
+
+    public void setQueueCapacity(int batches) {
+        if (batches < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive");
+        }
+        queueCapacity = batches;
+    }
+
+    /**
+    * Run the pipeline. The method returns when the last stage has finished writing
+    * the result.
+    * @param source the input to the first stage
+    * @param result the destination of the output of the last stage
+    * @throws TransformerException if any stage fails. The remaining stages are abandoned.
+    */
+
+    public void transform(Source source, Result result) throws TransformerException {
+        int n = stages.size();
+        if (n==0) {
+            throw new TransformerException("The pipeline has no stages");
+        }
+        Controller first = (Controller)((Templates)stages.elementAt(0)).newTransformer();
+        if (n==1) {
+            first.transform(source, result);
+            return;
+        }
+
+        Run run = new Run();
+        Thread[] threads = new Thread[n];
+        Result output = result;
+
+        // set up the stages from the last to the first, so each knows its destination
+
+        for (int i=n-1; i>0; i--) {
+            PreparedStyleSheet sheet = (PreparedStyleSheet)stages.elementAt(i);
+            TransformerHandler handler =
+                sheet.getTransformerFactory().newTransformerHandler(sheet);
+            handler.setResult(output);
+            handler.setSystemId(source.getSystemId());
+            EventQueue queue = new EventQueue(run, batchSize, queueCapacity);
+            threads[i] = new Thread(new Stage(queue, handler, run),
+                                    "Saxon pipeline stage " + (i+1));
+            threads[i].setDaemon(true);
+            output = makeEmitter(queue, source);
+        }
+
+        for (int i=1; i<n; i++) {
+            threads[i].start();
+        }
+        try {
+            first.transform(source, output);
+        } catch (Throwable err) {
+            run.fail(err);
+        }
+
+        boolean interrupted = false;
+        for (int i=1; i<n; i++) {
+            while (threads[i].isAlive()) {
+                try {
+                    threads[i].join();
+                } catch (InterruptedException err) {
+                    interrupted = true;
+                    run.fail(new TransformerException("Pipeline interrupted"));
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        run.check();
+    }
+
+    /**
+    * Make the emitter that writes the output of one stage to the queue of the next.
+    * This is set up in the same way as for saxon:next-in-chain.
+    */
+
+    private static Result makeEmitter(EventQueue queue, Source source) {
+        ContentHandlerProxy emitter = new ContentHandlerProxy();
+        emitter.setUnderlyingContentHandler(queue);
+        emitter.setSystemId(source.getSystemId());
+        emitter.setRequireWellFormed(false);
+        return emitter;
+    }
+
+    /**
+    * Inner class: the body of a thread that runs one stage after the first. The events
+    * taken from the queue build the source tree, and the transformation is run when the
+    * end of the document is reached.
+    */
+
+    private static final class Stage implements Runnable {
+        private EventQueue input;
+        private TransformerHandler handler;
+        private Run run;
+
+        Stage(EventQueue input, TransformerHandler handler, Run run) {
+            this.input = input;
+            this.handler = handler;
+            this.run = run;
+        }
+
+        public void run() {
+            try {
+                input.replay(handler);
+            } catch (Throwable err) {
+                run.fail(err);
+            }
+        }
+    }
+
+    /**
+    * Inner class: the state of one execution of the pipeline, shared by all its threads.
+    * The first failure in any stage is retained and causes the other stages to give up.
+    */
+
+    static final class Run {
+        private volatile Throwable failure = null;
+
+        synchronized void fail(Throwable err) {
+            if (failure==null) {
+                failure = err;
+            }
+        }
+
+        boolean isAborted() {
+            return failure!=null;
+        }
+
+        void check() throws TransformerException {
+            Throwable err = failure;
+            if (err==null) {
+                return;
+            }
+            if (err instanceof SAXException && ((SAXException)err).getException()!=null) {
+                err = ((SAXException)err).getException();
+            }
+            if (err instanceof TransformerException) {
+                throw (TransformerException)err;
+            }
+            if (err instanceof RuntimeException) {
+                throw (RuntimeException)err;
+            }
+            if (err instanceof Error) {
+                throw (Error)err;
+            }
+            throw new TransformerException(err);
+        }
+    }
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael Kay
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
@@ -1,7 +1,11 @@
 package com.icl.saxon;
 import com.icl.saxon.om.Builder;
+import com.icl.saxon.expr.Value;
 import com.icl.saxon.om.DocumentInfo;
+import com.icl.saxon.om.DocumentPool;
 import com.icl.saxon.om.NamePool;
+import com.icl.saxon.om.StrippedDocument;
+import com.icl.saxon.om.Stripper;
 import com.icl.saxon.style.LiteralResultElement;
 import com.icl.saxon.style.StyleElement;
 import com.icl.saxon.style.StyleNodeFactory;
@@ -15,6 +19,8 @@ import javax.xml.transform.*;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.sax.SAXSource;
 import java.util.Properties;
+import java.util.Stack;
+import java.util.Vector;
 
 /**
   * This <B>PreparedStyleSheet</B> class represents a StyleSheet that has been
@@ -28,6 +34,11 @@ public class PreparedStyleSheet implements Templates {
     private NamePool namePool;
     private StyleNodeFactory nodeFactory;
     private int errorCount = 0;
+    private Stack idleTransformers = new Stack();   // Controllers available for reuse
+    private int transformerPoolSize;
+    private Value[] sharedGlobals = null;           // global variables evaluated at compile time
+    private URIResolver sharedGlobalsResolver;      // the URIResolver used to evaluate them
+    private DocumentPool sharedDocumentPool;        // documents they loaded
 
     /**
     * Constructor: deliberately protected
@@ -35,6 +46,8 @@ public class PreparedStyleSheet implements Templates {
 
     protected PreparedStyleSheet(TransformerFactoryImpl factory) {
         this.factory = factory;
+        transformerPoolSize =
+            ((Integer)factory.getAttribute(FeatureKeys.TRANSFORMER_POOL_SIZE)).intValue();
     }
 
     /**
@@ -47,6 +60,48 @@ public class PreparedStyleSheet implements Templates {
         return c;
     }
 
+    /**
+    * Get a Transformer for this stylesheet, reusing one that has been released by a
+    * previous user if there is one available. This is cheaper than newTransformer() when
+    * many small transformations are run using the same stylesheet. The method may be
+    * called by several threads at once; each Transformer obtained must be used by only
+    * one thread at a time, and should be given back using releaseTransformer() when
+    * it is no longer needed.
+    */
+
+    public Transformer getPooledTransformer() {
+        synchronized(idleTransformers) {
+            if (!idleTransformers.isEmpty()) {
+                return (Transformer)idleTransformers.pop();
+            }
+        }
+        return newTransformer();
+    }
+
+    /**
+    * Give back a Transformer obtained using getPooledTransformer(), so that it can be reused.
+    * The Transformer is reset to its initial state, and its document pool is cleared.
+    * It must not be used again by the caller. If enough Transformers are already
+    * available for reuse (see FeatureKeys.TRANSFORMER_POOL_SIZE), it is discarded.
+    * @param transformer the Transformer being released. It must have been created from this
+    * PreparedStyleSheet.
+    */
+
+    public void releaseTransformer(Transformer transformer) {
+        if (!(transformer instanceof Controller) ||
+                ((Controller)transformer).getPreparedStyleSheet()!=this) {
+            throw new IllegalArgumentException("Transformer was not created from this stylesheet");
+        }
+        Controller c = (Controller)transformer;
+        c.reset();
+        c.clearDocumentPool();
+        synchronized(idleTransformers) {
+            if (idleTransformers.size() < transformerPoolSize) {
+                idleTransformers.push(c);
+            }
+        }
+    }
+
     /**
     * Get the TransformerFactory used to create this PreparedStyleSheet
     */
@@ -172,6 +227,58 @@ public class PreparedStyleSheet implements Templates {
 
         top.setPreparedStyleSheet(this);
         top.preprocess();
+
+        if (errorCount==0) {
+            evaluateSharedGlobals(top);
+        }
+    }
+
+    /**
+    * Evaluate the global variables whose values are the same in every transformation,
+    * such as look-up tables written in the stylesheet, so that this is done once only.
+    * The values are shared by all the Transformers created from this stylesheet, which
+    * may run concurrently.
+    */
+
+    private void evaluateSharedGlobals(XSLStyleSheet top) {
+        Vector variables = top.getDocumentIndependentVariables();
+        if (variables.size()==0) {
+            return;
+        }
+        Controller c = new Controller(factory);
+        c.setPreparedStyleSheet(this);
+        sharedGlobalsResolver = factory.getURIResolver();
+        sharedGlobals = c.evaluateSharedGlobals(variables);
+        sharedDocumentPool = c.getDocumentPool();
+    }
+
+    /**
+    * Get the values of global variables evaluated when the stylesheet was compiled
+    * @return an array indexed by slot number, in which the variables that have not been
+    * evaluated are null; or null if no variables have been evaluated
+    */
+
+    public Value[] getSharedGlobals() {
+        return sharedGlobals;
+    }
+
+    /**
+    * Get the URIResolver that was used when evaluating the shared global variables. The values
+    * are not used by a Transformer with a different URIResolver, since they might then be
+    * different.
+    */
+
+    public URIResolver getSharedGlobalsResolver() {
+        return sharedGlobalsResolver;
+    }
+
+    /**
+    * Get the pool holding the documents loaded (using the document() function) while
+    * evaluating the shared global variables
+    */
+
+    public DocumentPool getSharedDocumentPool() {
+        return sharedDocumentPool;
     }
 
     /**
@@ -225,15 +332,21 @@ public class PreparedStyleSheet implements Templates {
 
     /**
     * Use the xsl:strip-space directives in this stylesheet to strip spaces from a
-    * source document. The rest of the stylesheet is ignored.
+    * source document. The rest of the stylesheet is ignored. If the document is a Saxon
+    * tree, the result is a view of that tree in which the whitespace text nodes are
+    * skipped; the tree itself is not copied or modified.
     */
 
     public DocumentInfo stripWhitespace(Document doc) throws TransformerException {
         XSLStyleSheet top = (XSLStyleSheet)styleDoc.getDocumentElement();
-        if (top.stripsWhitespace() || (!(doc instanceof DocumentInfo))) {
+        if (!(doc instanceof DocumentInfo)) {
             Builder b = ((Controller)newTransformer()).makeBuilder();
             b.setNamePool(namePool);
             return b.build(factory.getSAXSource(new DOMSource(doc), false));
+        } else if (top.stripsWhitespace()) {
+            Stripper stripper = top.newStripper();
+            stripper.setController((Controller)newTransformer());
+            return new StrippedDocument((DocumentInfo)doc, stripper);
         } else {
             return (DocumentInfo)doc;
         }
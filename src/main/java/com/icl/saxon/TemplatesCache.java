@@ -0,0 +1,172 @@
+package com.icl.saxon;
+import org.xml.sax.InputSource;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamSource;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+* A TemplatesCache holds compiled stylesheets, keyed by the absolute URI of the principal
+* stylesheet module. It is used by a TransformerFactoryImpl for stylesheets that are loaded
+* during a transformation, for example by saxon:next-in-chain, so that they are compiled once
+* rather than once for each source document.<p>
+*
+* The cache holds a limited number of entries; when it is full, the least recently used entry
+* is discarded. If the stylesheet is a file, its modification time is checked on each use,
+* and the stylesheet is recompiled if it has changed. (Changes to included or imported
+* modules are not detected.) The cache may be used by several threads at once.
+*/
+
+final class TemplatesCache {
+
+    private int maxSize;
+    private LinkedHashMap map;
+
+    /**
+    * Create a TemplatesCache
+    * @param maxSize the maximum number of compiled stylesheets to be retained
+    */
+
+    TemplatesCache(int maxSize) {
+        this.maxSize = maxSize;
+        map = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > TemplatesCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+    * Change the maximum number of entries. A size of zero disables the cache.
+    */
+
+    synchronized void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        if (maxSize==0) {
+            map.clear();
+        }
+    }
+
+    synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+    * Discard all the entries, for example because the configuration of the factory has changed
+    */
+
+    synchronized void clear() {
+        map.clear();
+    }
+
+    /**
+    * Get the compiled stylesheet for a Source, compiling it if it is not already in the cache
+    * @param source the stylesheet source, as returned by a URIResolver
+    * @param factory the factory used to compile the stylesheet
+    */
+
+    Templates getTemplates(Source source, TransformerFactoryImpl factory)
+    throws TransformerConfigurationException {
+
+        String uri = source.getSystemId();
+
+        // a SAXSource with its own XMLReader may deliver something other than the whole
+        // document at that URI (for example, an embedded stylesheet selected by an IDFilter)
+
+        if (uri==null || getMaxSize()==0 ||
+                (source instanceof SAXSource && ((SAXSource)source).getXMLReader()!=null)) {
+            return factory.newTemplates(source);
+        }
+
+        long modified = lastModified(uri);
+        Entry entry;
+        synchronized(this) {
+            entry = (Entry)map.get(uri);
+        }
+        if (entry != null && entry.lastModified == modified) {
+            closeInput(source);
+            return entry.templates;
+        }
+
+        // compile outside the lock: two threads may occasionally compile the same stylesheet,
+        // but neither holds up users of other stylesheets
+
+        entry = new Entry();
+        entry.templates = factory.newTemplates(source);
+        entry.lastModified = modified;
+        synchronized(this) {
+            if (maxSize > 0) {
+                map.put(uri, entry);
+            }
+        }
+        return entry.templates;
+    }
+
+    /**
+    * Get the modification time of the resource at a given URI, or -1 if it is not a file
+    */
+
+    private static long lastModified(String uri) {
+        if (!uri.startsWith("file:")) {
+            return -1;
+        }
+        try {
+            return new File(new URI(uri)).lastModified();
+        } catch (Exception err) {
+            return -1;
+        }
+    }
+
+    /**
+    * Close any stream or reader supplied with a Source that is not going to be parsed
+    */
+
+    private static void closeInput(Source source) {
+        try {
+            if (source instanceof StreamSource) {
+                StreamSource ss = (StreamSource)source;
+                if (ss.getInputStream()!=null) ss.getInputStream().close();
+                if (ss.getReader()!=null) ss.getReader().close();
+            } else if (source instanceof SAXSource) {
+                InputSource is = ((SAXSource)source).getInputSource();
+                if (is!=null) {
+                    if (is.getByteStream()!=null) is.getByteStream().close();
+                    if (is.getCharacterStream()!=null) is.getCharacterStream().close();
+                }
+            }
+        } catch (IOException err) {
+            // ignore: the stream was not needed anyway
+        }
+    }
+
+    private static final class Entry {
+        Templates templates;
+        long lastModified;
+    }
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael Kay
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
@@ -46,6 +46,14 @@ public class TransformerFactoryImpl extends SAXTransformerFactory {
 	private String styleParserClass;
 	private boolean timing = false;
 	private boolean allowExternalFunctions = true;
+	private TemplatesCache templatesCache = new TemplatesCache(20);
+	private int asyncOutputThreads = 0;
+	private int parallelThreads = 0;
+	private int transformerPoolSize = 16;
+	private boolean shareValues = false;
+	private boolean cacheNumericValues = false;
+	private boolean collectStatistics = false;
+	private boolean explain = false;
 
     /**
      * Default constructor.
@@ -121,6 +129,19 @@ public class TransformerFactoryImpl extends SAXTransformerFactory {
         return pss;
 	}
 
+    /**
+    * Get a Templates object for a stylesheet that is loaded during a transformation, for
+    * example by saxon:next-in-chain. Unlike newTemplates(), this returns a previously
+    * compiled stylesheet with the same system ID if there is one and it is still current.
+    * @param source the stylesheet, typically as returned by the URIResolver
+    * @return A Templates object, which may be shared with other callers
+    */
+
+    public Templates getCachedTemplates(Source source)
+        throws TransformerConfigurationException {
+        return templatesCache.getTemplates(source, this);
+    }
+
 
     /**
     * Convert a supplied Source to a SAXSource
@@ -313,6 +334,7 @@ public class TransformerFactoryImpl extends SAXTransformerFactory {
 
     public void setURIResolver(URIResolver resolver) {
     	this.resolver = resolver;
+    	templatesCache.clear();
     }
 
     /**
@@ -407,6 +429,9 @@ public class TransformerFactoryImpl extends SAXTransformerFactory {
 
     public void setAttribute(String name, Object value)
         							throws IllegalArgumentException {
+        // stylesheets compiled under the old settings are no longer reusable
+        templatesCache.clear();
+
         if (name.equals(FeatureKeys.TREE_MODEL)) {
         	if (!(value instanceof Integer)) {
         		throw new IllegalArgumentException("Tree model must be an Integer");
@@ -461,6 +486,54 @@ public class TransformerFactoryImpl extends SAXTransformerFactory {
         	}
         	styleParserClass = (String)value;
 
+        } else if (name.equals(FeatureKeys.TEMPLATES_CACHE_SIZE)) {
+        	if (!(value instanceof Integer) || ((Integer)value).intValue() < 0) {
+        		throw new IllegalArgumentException("Templates cache size must be a non-negative Integer");
+        	}
+        	templatesCache.setMaxSize(((Integer)value).intValue());
+
+        } else if (name.equals(FeatureKeys.ASYNC_OUTPUT_THREADS)) {
+        	if (!(value instanceof Integer) || ((Integer)value).intValue() < 0) {
+        		throw new IllegalArgumentException("Number of output threads must be a non-negative Integer");
+        	}
+        	asyncOutputThreads = ((Integer)value).intValue();
+
+        } else if (name.equals(FeatureKeys.PARALLEL_THREADS)) {
+        	if (!(value instanceof Integer) || ((Integer)value).intValue() < 0) {
+        		throw new IllegalArgumentException("Number of parallel threads must be a non-negative Integer");
+        	}
+        	parallelThreads = ((Integer)value).intValue();
+
+        } else if (name.equals(FeatureKeys.TRANSFORMER_POOL_SIZE)) {
+        	if (!(value instanceof Integer) || ((Integer)value).intValue() < 0) {
+        		throw new IllegalArgumentException("Transformer pool size must be a non-negative Integer");
+        	}
+        	transformerPoolSize = ((Integer)value).intValue();
+
+        } else if (name.equals(FeatureKeys.SHARE_VALUES)) {
+        	if (!(value instanceof Boolean)) {
+        		throw new IllegalArgumentException("shareValues must be a boolean");
+        	}
+        	shareValues = ((Boolean)value).booleanValue();
+
+        } else if (name.equals(FeatureKeys.CACHE_NUMERIC_VALUES)) {
+        	if (!(value instanceof Boolean)) {
+        		throw new IllegalArgumentException("cacheNumericValues must be a boolean");
+        	}
+        	cacheNumericValues = ((Boolean)value).booleanValue();
+
+        } else if (name.equals(FeatureKeys.COLLECT_STATISTICS)) {
+        	if (!(value instanceof Boolean)) {
+        		throw new IllegalArgumentException("collectStatistics must be a boolean");
+        	}
+        	collectStatistics = ((Boolean)value).booleanValue();
+
+        } else if (name.equals(FeatureKeys.EXPLAIN)) {
+        	if (!(value instanceof Boolean)) {
+        		throw new IllegalArgumentException("explain must be a boolean");
+        	}
+        	explain = ((Boolean)value).booleanValue();
+
         } else {
 	        throw new IllegalArgumentException("Unknown attribute " + name);
 	    }
@@ -503,6 +576,30 @@ public class TransformerFactoryImpl extends SAXTransformerFactory {
         } else if (name.equals(FeatureKeys.STYLE_PARSER_CLASS)) {
         	return styleParserClass;
 
+        } else if (name.equals(FeatureKeys.TEMPLATES_CACHE_SIZE)) {
+        	return new Integer(templatesCache.getMaxSize());
+
+        } else if (name.equals(FeatureKeys.ASYNC_OUTPUT_THREADS)) {
+        	return new Integer(asyncOutputThreads);
+
+        } else if (name.equals(FeatureKeys.PARALLEL_THREADS)) {
+        	return new Integer(parallelThreads);
+
+        } else if (name.equals(FeatureKeys.TRANSFORMER_POOL_SIZE)) {
+        	return new Integer(transformerPoolSize);
+
+        } else if (name.equals(FeatureKeys.SHARE_VALUES)) {
+        	return new Boolean(shareValues);
+
+        } else if (name.equals(FeatureKeys.CACHE_NUMERIC_VALUES)) {
+        	return new Boolean(cacheNumericValues);
+
+        } else if (name.equals(FeatureKeys.COLLECT_STATISTICS)) {
+        	return new Boolean(collectStatistics);
+
+        } else if (name.equals(FeatureKeys.EXPLAIN)) {
+        	return new Boolean(explain);
+
         } else {
 	        throw new IllegalArgumentException("Unknown attribute " + name);
 	    }
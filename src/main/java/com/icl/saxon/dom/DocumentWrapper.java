@@ -0,0 +1,266 @@
+package com.icl.saxon.dom;
+import com.icl.saxon.KeyManager;
+import com.icl.saxon.om.DocumentInfo;
+import com.icl.saxon.om.NamePool;
+import com.icl.saxon.om.Namespace;
+import com.icl.saxon.om.NodeInfo;
+import com.icl.saxon.om.Stripper;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.Entity;
+import org.w3c.dom.Node;
+
+import java.util.Hashtable;
+
+
+/**
+  * The root node of an XPath tree that wraps a W3C DOM Document. This allows a DOM that
+  * is already in memory to be used as the source of a transformation without copying it
+  * into a Saxon tree.<P>
+  * If a Stripper is supplied, whitespace text nodes are stripped as the stylesheet
+  * requires, but this is done during navigation: the DOM itself is not changed, so the
+  * same DOM can be wrapped for stylesheets with different xsl:strip-space rules.
+  */
+
+public class DocumentWrapper extends NodeWrapper implements DocumentInfo {
+
+    protected Hashtable keyTable = new Hashtable();
+    protected NamePool namePool;
+    protected String baseURI;
+    private Stripper stripper = null;
+    private Hashtable preserving = null;        // name code -> Boolean, from the stripper
+    private SiblingPosition[] recentPositions = new SiblingPosition[32];
+
+    /**
+    * Create a wrapper for a DOM document
+    * @param doc the DOM document
+    * @param baseURI the base URI of the document, used for resolving relative URIs
+    */
+
+    public DocumentWrapper(Document doc, String baseURI) {
+        super(doc, NodeInfo.ROOT, null, null);
+        docWrapper = this;
+        this.baseURI = baseURI;
+        namePool = NamePool.getDefaultNamePool();
+    }
+
+	/**
+	* Set the name pool used for all names in this document
+	*/
+
+	public void setNamePool(NamePool pool) {
+	    namePool = pool;
+	}
+
+	/**
+	* Get the name pool used for the names in this document
+	*/
+
+	public NamePool getNamePool() {
+	    return namePool;
+	}
+
+    /**
+    * Set the Stripper that determines which whitespace text nodes are to be treated
+    * as absent. The Stripper must have been initialized with setController().
+    * @param stripper the Stripper, or null if no whitespace is to be stripped
+    */
+
+    public void setStripper(Stripper stripper) {
+        this.stripper = (stripper==null || stripper.getPreserveAll() ? null : stripper);
+        preserving = null;
+    }
+
+    /**
+    * Get the wrapper for a node in the DOM
+    * @param node a node in the wrapped document. If this is a text node, the result
+    * represents all the adjacent text.
+    * @return the corresponding node in the XPath tree
+    */
+
+    public NodeInfo wrap(Node node) {
+        switch (node.getNodeType()) {
+            case Node.DOCUMENT_NODE:
+                if (node != this.node) {
+                    throw new IllegalArgumentException("Node is not in the wrapped document");
+                }
+                return this;
+            case Node.TEXT_NODE:
+            case Node.CDATA_SECTION_NODE:
+                // the text node is represented by the first of the adjacent text nodes
+                for (Node prev = previous(node); prev!=null && isText(prev); prev = previous(node)) {
+                    node = prev;
+                }
+                break;
+            default:
+        }
+        if (node.getOwnerDocument() != this.node) {
+            throw new IllegalArgumentException("Node is not in the wrapped document");
+        }
+        return makeWrapper(node, null);
+    }
+
+    /**
+    * Determine whether whitespace stripping is in force
+    */
+
+    final boolean isStripping() {
+        return stripper!=null;
+    }
+
+    /**
+    * Determine whether whitespace-only text nodes that are children of a given node
+    * are stripped
+    */
+
+    boolean isStripped(NodeWrapper parent) {
+        if (stripper==null || parent.getNodeType()!=ELEMENT) {
+            return false;
+        }
+        if (!stripper.getStripAll()) {
+            if (preserving==null) {
+                preserving = new Hashtable();
+            }
+            Integer key = new Integer(parent.getNameCode());
+            Boolean b = (Boolean)preserving.get(key);
+            if (b==null) {
+                b = new Boolean(stripper.isSpacePreserving(parent.getNameCode()));
+                preserving.put(key, b);
+            }
+            if (b.booleanValue()) {
+                return false;
+            }
+        }
+        for (Node e = parent.node; e!=null && e.getNodeType()==Node.ELEMENT_NODE; e = parentNode(e)) {
+            Attr space = ((Element)e).getAttributeNodeNS(Namespace.XML, "space");
+            if (space==null) {
+                space = ((Element)e).getAttributeNode("xml:space");
+            }
+            if (space!=null) {
+                String value = space.getValue();
+                if (value.equals("preserve")) return false;
+                if (value.equals("default")) return true;
+            }
+        }
+        return true;
+    }
+
+    /**
+    * Get the position of a node among its siblings, for use by generateId(). A small
+    * table remembers the last position found under each of a few parents, so that
+    * visiting the children of an element in order does not count the preceding
+    * siblings of each one again; the table does not grow with the document. The
+    * entries are immutable, so threads sharing the table see either an entry that is
+    * correct or one that does not help. Without a helpful entry the preceding siblings
+    * are counted, so that finding the positions of n siblings in other than document
+    * order (for example in reverse order) costs O(n^2).
+    */
+
+    int getSiblingPosition(Node node) {
+        int slot = System.identityHashCode(parentNode(node)) & (recentPositions.length-1);
+        SiblingPosition known = recentPositions[slot];
+        int position = 0;
+        Node s = node;
+        while (true) {
+            if (known!=null && s==known.node) {
+                position += known.position;
+                break;
+            }
+            s = previous(s);
+            if (s==null) {
+                break;
+            }
+            position++;
+        }
+        recentPositions[slot] = new SiblingPosition(node, position);
+        return position;
+    }
+
+    private static final class SiblingPosition {
+        final Node node;
+        final int position;
+
+        SiblingPosition(Node node, int position) {
+            this.node = node;
+            this.position = position;
+        }
+    }
+
+    /**
+    * Get the element with a given ID, if any
+    * @param id the required ID value
+    * @return the element whose ID attribute has the given value, if the DOM knows which
+    * attributes are IDs; otherwise null
+    */
+
+    public NodeInfo selectID(String id) {
+        Element e = ((Document)node).getElementById(id);
+        return (e==null ? null : wrap(e));
+    }
+
+    /**
+    * Get the index for a given key
+    * @param keymanager The key manager managing this key
+    * @param fingerprint The fingerprint of the name of the key (unique with the key manager)
+    * @return The index, if one has been built, in the form of a Hashtable that
+    * maps the key value to a list of nodes having that key value. If no index
+    * has been built, returns null.
+    */
+
+    public Hashtable getKeyIndex(KeyManager keyManager, int fingerprint) {
+        String key = keyManager.hashCode() + "#" + fingerprint;
+        return (Hashtable)keyTable.get(key);
+    }
+
+    /**
+    * Set the index for a given key
+    * @param keymanager The key manager managing this key
+    * @param fingerprint The fingerprint of the name of the key (unique with the key manager)
+    * @param index the index, in the form of a Hashtable that
+    * maps the key value to a list of nodes having that key value
+    */
+
+    public void setKeyIndex(KeyManager keyManager, int fingerprint, Hashtable index) {
+        String key = keyManager.hashCode() + "#" + fingerprint;
+        keyTable.put(key, index);
+    }
+
+    /**
+    * Get the unparsed entity with a given name
+    * @param name the name of the entity
+    * @return the URI of the entity if there is one, or empty string if not
+    */
+
+    public String getUnparsedEntity(String name) {
+        DocumentType doctype = ((Document)node).getDoctype();
+        if (doctype!=null) {
+            Entity entity = (Entity)doctype.getEntities().getNamedItem(name);
+            if (entity!=null && entity.getNotationName()!=null && entity.getSystemId()!=null) {
+                return entity.getSystemId();
+            }
+        }
+        return "";
+    }
+
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael H. Kay.
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
@@ -0,0 +1,1567 @@
+package com.icl.saxon.dom;
+import com.icl.saxon.om.*;
+import com.icl.saxon.output.Outputter;
+import com.icl.saxon.pattern.AnyNodeTest;
+import com.icl.saxon.pattern.NodeTest;
+import org.w3c.dom.Attr;
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.ProcessingInstruction;
+
+import javax.xml.transform.TransformerException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+  * A node in the XPath tree, implemented as a wrapper around a node in a W3C DOM. The
+  * DOM is navigated in place: no copy of it is made. The wrapper presents the DOM as
+  * the XPath data model sees it: adjacent Text and CDATASection nodes form a single
+  * text node, the children of an EntityReference node appear in place of the
+  * reference, xmlns attributes appear as namespace nodes, and (if the DocumentWrapper
+  * has a Stripper) whitespace text nodes that the stylesheet strips are skipped as if
+  * they were not there.<P>
+  * Entity references are not expanded by the wrapper: if the DOM was built without
+  * expanding them, the EntityReference nodes usually have no children, and their
+  * replacement text does not appear in the XPath tree.<P>
+  * A text node is represented by the first DOM node of the run of adjacent text.
+  */
+
+public class NodeWrapper implements NodeInfo {
+
+    protected Node node;                // for a namespace node, the element it belongs to
+    protected short nodeType;
+    protected NodeWrapper parent;       // computed lazily when not known
+    protected DocumentWrapper docWrapper;
+    private int nameCode = -2;          // -2 means not yet computed
+    private String nsPrefix;            // namespace nodes only
+    private String nsURI;               // namespace nodes only
+    private int nsIndex;                // namespace nodes only
+
+    protected NodeWrapper(Node node, short nodeType, NodeWrapper parent, DocumentWrapper docWrapper) {
+        this.node = node;
+        this.nodeType = nodeType;
+        this.parent = parent;
+        this.docWrapper = docWrapper;
+    }
+
+    /**
+    * Make a wrapper for a DOM node that is an element, attribute, text, comment or
+    * processing instruction node
+    * @param node the DOM node (for a text node, the first node in a run of text)
+    * @param parent the wrapper for the parent node, or null if not known
+    */
+
+    protected NodeWrapper makeWrapper(Node node, NodeWrapper parent) {
+        short type;
+        switch (node.getNodeType()) {
+            case Node.DOCUMENT_NODE:
+                return docWrapper;
+            case Node.ELEMENT_NODE:
+                type = ELEMENT;
+                break;
+            case Node.ATTRIBUTE_NODE:
+                type = ATTRIBUTE;
+                break;
+            case Node.TEXT_NODE:
+            case Node.CDATA_SECTION_NODE:
+                type = TEXT;
+                break;
+            case Node.COMMENT_NODE:
+                type = COMMENT;
+                break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                type = PI;
+                break;
+            default:
+                throw new IllegalArgumentException("Bad node type in DOM: " + node.getNodeType());
+        }
+        return new NodeWrapper(node, type, parent, docWrapper);
+    }
+
+    /**
+    * Get the underlying DOM node. For a namespace node, this is the element
+    * node to which the namespace node belongs.
+    */
+
+    public Node getNode() {
+        return node;
+    }
+
+    /**
+    * Return the type of node.
+    * @return one of the values Node.ELEMENT, Node.TEXT, Node.ATTRIBUTE, etc.
+    */
+
+    public short getNodeType() {
+        return nodeType;
+    }
+
+    /**
+    * Determine whether this is the same node as another node. <br />
+    * Note: a.isSameNode(b) if and only if generateId(a)==generateId(b)
+    * @return true if this Node object and the supplied Node object represent the
+    * same node in the tree.
+    */
+
+    public boolean isSameNodeInfo(NodeInfo other) {
+        if (!(other instanceof NodeWrapper)) {
+            return false;
+        }
+        NodeWrapper ow = (NodeWrapper)other;
+        if (node != ow.node || nodeType != ow.nodeType) {
+            return false;
+        }
+        return nodeType != NAMESPACE || nsPrefix.equals(ow.nsPrefix);
+    }
+
+    /**
+    * Get the System ID for the node.
+    */
+
+    public String getSystemId() {
+        return docWrapper.baseURI;
+    }
+
+    public void setSystemId(String uri) {
+        docWrapper.baseURI = uri;
+    }
+
+    /**
+    * Get the Base URI for the node, that is, the URI used for resolving a relative URI contained
+    * in the node. This will be the same as the System ID unless xml:base has been used.
+    */
+
+    public String getBaseURI() {
+        return docWrapper.baseURI;
+    }
+
+    /**
+    * Get line number
+    * @return -1: the DOM does not hold line numbers
+    */
+
+    public int getLineNumber() {
+        return -1;
+    }
+
+    /**
+    * Determine the relative position of this node and another node, in document order.
+    * The other node will always be in the same document.
+    * @param other The other node, whose position is to be compared with this node
+    * @return -1 if this node precedes the other node, +1 if it follows the other
+    * node, or 0 if they are the same node.
+    */
+
+    public int compareOrder(NodeInfo other) {
+
+        if (isSameNodeInfo(other)) {
+            return 0;
+        }
+
+        // find the depths of both nodes in the tree
+
+        int depth1 = 0;
+        int depth2 = 0;
+        NodeInfo p1 = this;
+        NodeInfo p2 = other;
+        while (p1 != null) {
+            depth1++;
+            p1 = p1.getParent();
+        }
+        while (p2 != null) {
+            depth2++;
+            p2 = p2.getParent();
+        }
+
+        // move up one branch of the tree so we have two nodes on the same level
+
+        p1 = this;
+        while (depth1>depth2) {
+            p1 = p1.getParent();
+            if (p1.isSameNodeInfo(other)) {
+                return +1;
+            }
+            depth1--;
+        }
+
+        p2 = other;
+        while (depth2>depth1) {
+            p2 = p2.getParent();
+            if (p2.isSameNodeInfo(this)) {
+                return -1;
+            }
+            depth2--;
+        }
+
+        // now move up both branches in sync until we find a common parent
+        while (true) {
+            NodeInfo par1 = p1.getParent();
+            NodeInfo par2 = p2.getParent();
+            if (par1==null || par2==null) {
+                throw new NullPointerException("DOM tree compare - internal error");
+            }
+            if (par1.isSameNodeInfo(par2)) {
+                return compareSiblings((NodeWrapper)p1, (NodeWrapper)p2);
+            }
+            p1 = par1;
+            p2 = par2;
+        }
+    }
+
+    /**
+    * Compare two different nodes having the same parent. Namespace nodes come first,
+    * then attributes, then children. Two children are compared by walking the sibling
+    * list, which costs time proportional to the distance between them: sorting all the
+    * children of an element with n children into document order is therefore O(n^2)
+    * in the worst case. Node-sets are usually produced in document order, so that such
+    * sorts are rare.
+    */
+
+    private static int compareSiblings(NodeWrapper n1, NodeWrapper n2) {
+        int rank1 = siblingRank(n1.nodeType);
+        int rank2 = siblingRank(n2.nodeType);
+        if (rank1 != rank2) {
+            return rank1 - rank2;
+        }
+        switch (n1.nodeType) {
+            case NAMESPACE:
+                return n1.nsIndex - n2.nsIndex;
+            case ATTRIBUTE:
+                NamedNodeMap atts = ((Attr)n1.node).getOwnerElement().getAttributes();
+                for (int i=0; i<atts.getLength(); i++) {
+                    Node a = atts.item(i);
+                    if (a==n1.node) return -1;
+                    if (a==n2.node) return +1;
+                }
+                return 0;
+            default:
+                // walk forwards from both nodes in step: a node that reaches the other
+                // precedes it, and a node that runs off the end follows it
+                Node a = n1.node;
+                Node b = n2.node;
+                while (true) {
+                    a = next(a);
+                    if (a==n2.node) return -1;
+                    if (a==null) return +1;
+                    b = next(b);
+                    if (b==n1.node) return +1;
+                    if (b==null) return -1;
+                }
+        }
+    }
+
+    private static int siblingRank(short type) {
+        return (type==NAMESPACE ? 0 : (type==ATTRIBUTE ? 1 : 2));
+    }
+
+    /**
+    * Return the string value of the node. The interpretation of this depends on the type
+    * of node. For an element it is the accumulated character content of the element,
+    * including descendant elements.
+    * @return the string value of the node
+    */
+
+    public String getStringValue() {
+        switch (nodeType) {
+            case ROOT:
+            case ELEMENT:
+                if (!docWrapper.isStripping()) {
+                    Node top = node;
+                    if (nodeType==ROOT) {
+                        top = ((org.w3c.dom.Document)node).getDocumentElement();
+                        if (top==null) return "";
+                    }
+                    String s = top.getTextContent();
+                    return (s==null ? "" : s);
+                }
+                StringBuffer sb = new StringBuffer();
+                expandStringValue(this, sb);
+                return sb.toString();
+
+            case ATTRIBUTE:
+                return ((Attr)node).getValue();
+
+            case TEXT:
+                Node n = next(node);
+                if (n==null || !isText(n)) {
+                    return ((CharacterData)node).getData();
+                }
+                StringBuffer sb2 = new StringBuffer();
+                appendText(node, sb2);
+                return sb2.toString();
+
+            case COMMENT:
+                return ((CharacterData)node).getData();
+
+            case PI:
+                return ((ProcessingInstruction)node).getData();
+
+            case NAMESPACE:
+                return nsURI;
+
+            default:
+                return "";
+        }
+    }
+
+    private static void expandStringValue(NodeWrapper parent, StringBuffer sb) {
+        Node n = parent.firstChildNode();
+        while (n!=null) {
+            if (n.getNodeType()==Node.ELEMENT_NODE) {
+                expandStringValue(parent.makeWrapper(n, parent), sb);
+            } else if (isText(n)) {
+                appendText(n, sb);
+            }
+            n = parent.nextChildNode(n);
+        }
+    }
+
+    /**
+    * Append the value of a run of adjacent text nodes to a buffer
+    */
+
+    private static void appendText(Node first, StringBuffer sb) {
+        for (Node n = first; n!=null && isText(n); n = next(n)) {
+            sb.append(((CharacterData)n).getData());
+        }
+    }
+
+	/**
+	* Get name code. The name code is a coded form of the node name: two nodes
+	* with the same name code have the same namespace URI, the same local name,
+	* and the same prefix. By masking the name code with &0xfffff, you get a
+	* fingerprint: two nodes with the same fingerprint have the same local name
+	* and namespace URI.
+    * @see com.icl.saxon.om.NamePool#allocate allocate
+	*/
+
+	public int getNameCode() {
+	    if (nameCode==-2) {
+	        NamePool pool = docWrapper.getNamePool();
+    	    switch (nodeType) {
+    	        case ELEMENT:
+    	        case ATTRIBUTE:
+    	            String qname = node.getNodeName();
+    	            int colon = qname.indexOf(':');
+    	            String prefix = (colon<0 ? "" : qname.substring(0, colon));
+    	            nameCode = pool.allocate(prefix, getURIForPrefix(prefix), qname.substring(colon+1));
+    	            break;
+    	        case PI:
+    	            nameCode = pool.allocate("", "", ((ProcessingInstruction)node).getTarget());
+    	            break;
+                case NAMESPACE:
+                    nameCode = (nsPrefix.equals("") ? -1 : pool.allocate("", "", nsPrefix));
+                    break;
+    	        default:
+    	            nameCode = -1;
+    	    }
+    	}
+	    return nameCode;
+	}
+
+    /**
+    * Get the namespace URI for the prefix of this element or attribute
+    */
+
+    private String getURIForPrefix(String prefix) {
+        String uri = node.getNamespaceURI();
+        if (uri!=null) {
+            return uri;
+        }
+        if (node.getLocalName()!=null) {
+            // a namespace-aware DOM: the name is in no namespace
+            return "";
+        }
+        // not a namespace-aware DOM: look for the namespace declaration
+        if (nodeType==ATTRIBUTE && prefix.equals("")) {
+            return "";
+        }
+        Node element = (nodeType==ATTRIBUTE ? ((Attr)node).getOwnerElement() : node);
+        uri = resolvePrefix(element, prefix);
+        if (uri==null) {
+            throw new IllegalStateException("Undeclared namespace prefix in " + node.getNodeName());
+        }
+        return uri;
+    }
+
+    /**
+    * Find the namespace URI bound to a prefix in the scope of an element
+    * @return the URI, or null if the prefix is not declared
+    */
+
+    private static String resolvePrefix(Node element, String prefix) {
+        if (prefix.equals("xml")) {
+            return Namespace.XML;
+        }
+        String attName = (prefix.equals("") ? "xmlns" : "xmlns:" + prefix);
+        for (Node e = element; e!=null && e.getNodeType()==Node.ELEMENT_NODE; e = parentNode(e)) {
+            Attr decl = ((Element)e).getAttributeNode(attName);
+            if (decl!=null) {
+                return decl.getValue();
+            }
+        }
+        return (prefix.equals("") ? "" : null);
+    }
+
+	/**
+	* Get fingerprint. The fingerprint is a coded form of the expanded name
+	* of the node: two nodes
+	* with the same name code have the same namespace URI and the same local name.
+	* A fingerprint of -1 should be returned for a node with no name.
+	*/
+
+	public int getFingerprint() {
+	    int nc = getNameCode();
+	    return (nc==-1 ? -1 : nc&0xfffff);
+	}
+
+    /**
+    * Get the local part of the name of this node. This is the name after the ":" if any.
+    * @return the local part of the name. For an unnamed node, return an empty string.
+    */
+
+    public String getLocalName() {
+        int nc = getNameCode();
+        return (nc==-1 ? "" : docWrapper.getNamePool().getLocalName(nc));
+    }
+
+    /**
+    * Get the prefix part of the name of this node. This is the name before the ":" if any.
+    * @return the prefix part of the name. For an unnamed node, return an empty string.
+    */
+
+    public String getPrefix() {
+        int nc = getNameCode();
+        return (nc==-1 ? "" : docWrapper.getNamePool().getPrefix(nc));
+    }
+
+    /**
+    * Get the URI part of the name of this node. This is the URI corresponding to the
+    * prefix, or the URI of the default namespace if appropriate.
+    * @return The URI of the namespace of this node. For an unnamed node, or for
+    * a node with an empty prefix, return an empty string.
+    */
+
+    public String getURI() {
+        int nc = getNameCode();
+        return (nc==-1 ? "" : docWrapper.getNamePool().getURI(nc));
+    }
+
+    /**
+    * Get the display name of this node. For elements and attributes this is [prefix:]localname.
+    * For unnamed nodes, it is an empty string.
+    * @return The display name of this node.
+    * For a node with no name, return an empty string.
+    */
+
+    public String getDisplayName() {
+        int nc = getNameCode();
+        return (nc==-1 ? "" : docWrapper.getNamePool().getDisplayName(nc));
+    }
+
+    /**
+    * Get the NodeInfo object representing the parent of this node
+    */
+
+    public NodeInfo getParent() {
+        if (parent==null && nodeType!=ROOT) {
+            Node p = (nodeType==ATTRIBUTE ? ((Attr)node).getOwnerElement() : parentNode(node));
+            parent = (NodeWrapper)docWrapper.wrap(p);
+        }
+        return parent;
+    }
+
+    /**
+    * Return an enumeration over the nodes reached by the given axis from this node
+    * @param nodeTest A pattern to be matched by the returned nodes
+    * @return a NodeEnumeration that scans the nodes reached by the axis in turn.
+    */
+
+    public AxisEnumeration getEnumeration(byte axisNumber, NodeTest nodeTest) {
+        switch (axisNumber) {
+            case Axis.ANCESTOR:
+                if (nodeType==ROOT) return EmptyEnumeration.getInstance();
+                return new FilterEnumeration(
+                            new AncestorEnumeration(this, false),
+                            nodeTest);
+
+            case Axis.ANCESTOR_OR_SELF:
+                return new FilterEnumeration(
+                            new AncestorEnumeration(this, true),
+                            nodeTest);
+
+            case Axis.ATTRIBUTE:
+                if (nodeType!=ELEMENT) return EmptyEnumeration.getInstance();
+                return new FilterEnumeration(
+                            new AttributeEnumeration(this),
+                            nodeTest);
+
+            case Axis.CHILD:
+                if (hasChildNodes()) {
+                    return new FilterEnumeration(
+                            new ChildEnumeration(this, true, true),
+                            nodeTest);
+                } else {
+                    return EmptyEnumeration.getInstance();
+                }
+
+            case Axis.DESCENDANT:
+                if (hasChildNodes()) {
+                    return new FilterEnumeration(
+                            new DescendantEnumeration(this, false, true),
+                            nodeTest);
+                } else {
+                    return EmptyEnumeration.getInstance();
+                }
+
+            case Axis.DESCENDANT_OR_SELF:
+                 return new FilterEnumeration(
+                            new DescendantEnumeration(this, true, true),
+                            nodeTest);
+
+            case Axis.FOLLOWING:
+                 return new FilterEnumeration(
+                            new FollowingEnumeration(this),
+                            nodeTest);
+
+            case Axis.FOLLOWING_SIBLING:
+                 switch (nodeType) {
+                    case ROOT:
+                    case ATTRIBUTE:
+                    case NAMESPACE:
+                        return EmptyEnumeration.getInstance();
+                    default:
+                        return new FilterEnumeration(
+                            new ChildEnumeration(this, false, true),
+                            nodeTest);
+                 }
+
+            case Axis.NAMESPACE:
+                 if (nodeType!=ELEMENT) return EmptyEnumeration.getInstance();
+                 return new FilterEnumeration(
+                                new NamespaceEnumeration(this),
+                                nodeTest);
+
+            case Axis.PARENT:
+                 NodeInfo p = getParent();
+                 if (p==null) return EmptyEnumeration.getInstance();
+                 if (nodeTest.matches(p)) return new SingletonEnumeration(p);
+                 return EmptyEnumeration.getInstance();
+
+            case Axis.PRECEDING:
+                 return new FilterEnumeration(
+                            new PrecedingEnumeration(this, false),
+                            nodeTest);
+
+            case Axis.PRECEDING_SIBLING:
+                 switch (nodeType) {
+                    case ROOT:
+                    case ATTRIBUTE:
+                    case NAMESPACE:
+                        return EmptyEnumeration.getInstance();
+                    default:
+                        return new FilterEnumeration(
+                            new ChildEnumeration(this, false, false),
+                            nodeTest);
+                 }
+
+            case Axis.SELF:
+                 if (nodeTest.matches(this)) return new SingletonEnumeration(this);
+                 return EmptyEnumeration.getInstance();
+
+            case Axis.PRECEDING_OR_ANCESTOR:
+                 return new FilterEnumeration(
+                            new PrecedingEnumeration(this, true),
+                            nodeTest);
+
+            default:
+                 throw new IllegalArgumentException("Unknown axis number " + axisNumber);
+        }
+    }
+
+    /**
+     * Find the value of a given attribute of this node. <BR>
+     * This method is defined on all nodes to meet XSL requirements, but for nodes
+     * other than elements it will always return null.
+     * @param uri the namespace uri of an attribute ("" if no namespace)
+     * @param localName the local name of the attribute
+     * @return the value of the attribute, if it exists, otherwise null
+     */
+
+    public String getAttributeValue(String uri, String localName) {
+        if (nodeType!=ELEMENT) {
+            return null;
+        }
+        if (uri.equals("")) {
+            Attr att = ((Element)node).getAttributeNode(localName);
+            return (att==null ? null : att.getValue());
+        }
+        NamedNodeMap atts = node.getAttributes();
+        for (int i=0; i<atts.getLength(); i++) {
+            Node att = atts.item(i);
+            if (!isNamespaceDeclaration(att)) {
+                NodeWrapper w = makeWrapper(att, this);
+                if (w.getLocalName().equals(localName) && w.getURI().equals(uri)) {
+                    return w.getStringValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+    * Get the value of a given attribute of this node
+    * @param fingerprint The fingerprint of the attribute name
+    * @return the attribute value if it exists or null if not
+    */
+
+    public String getAttributeValue(int fingerprint) {
+        NamePool pool = docWrapper.getNamePool();
+        return getAttributeValue(pool.getURI(fingerprint), pool.getLocalName(fingerprint));
+    }
+
+    /**
+    * Get the root (document) node
+    * @return the DocumentInfo representing the containing document
+    */
+
+    public DocumentInfo getDocumentRoot() {
+        return docWrapper;
+    }
+
+    /**
+    * Determine whether the node has any children. <br />
+    * Note: the result is equivalent to <br />
+    * getEnumeration(Axis.CHILD, AnyNodeTest.getInstance()).hasMoreElements()
+    */
+
+    public boolean hasChildNodes() {
+        switch (nodeType) {
+            case ROOT:
+            case ELEMENT:
+                return firstChildNode()!=null;
+            default:
+                return false;
+        }
+    }
+
+    /**
+    * Get a character string that uniquely identifies this node.<br />
+    * Note: a.isSameNode(b) if and only if generateId(a)==generateId(b)
+    * @return a string that uniquely identifies this node, within this
+    * document. The calling code prepends information to make the result
+    * unique across all documents. The identifier is the path from the root to
+    * the node, as positions among the children, attributes or namespaces of each
+    * ancestor, so that nothing needs to be remembered about the nodes already seen.
+    * Finding a child's position may mean counting its preceding siblings (see
+    * DocumentWrapper.getSiblingPosition()), so that calling generate-id() on all the
+    * children of a wide element in other than document order costs O(n^2).
+    */
+
+    public String generateId() {
+        switch (nodeType) {
+            case ROOT:
+                return "w";
+            case NAMESPACE:
+                return getParent().generateId() + "n" + nsIndex;
+            case ATTRIBUTE:
+                NamedNodeMap atts = ((Attr)node).getOwnerElement().getAttributes();
+                int a = 0;
+                while (atts.item(a)!=node) {
+                    a++;
+                }
+                return getParent().generateId() + "a" + a;
+            default:
+                return getParent().generateId() + "c" + docWrapper.getSiblingPosition(node);
+        }
+    }
+
+    /**
+    * Copy this node to a given outputter (deep copy)
+    */
+
+    public void copy(Outputter out) throws TransformerException {
+
+        switch (nodeType) {
+            case ROOT:
+                AxisEnumeration children0 = getEnumeration(Axis.CHILD, AnyNodeTest.getInstance());
+                while (children0.hasMoreElements()) {
+                    children0.nextElement().copy(out);
+                }
+                return;
+
+            case ELEMENT:
+        		int nc = getNameCode();
+                out.writeStartTag(nc);
+
+                // output the namespaces
+
+                outputNamespaceNodes(out, true);
+
+                // output the attributes
+
+                AxisEnumeration attributes = getEnumeration(Axis.ATTRIBUTE, AnyNodeTest.getInstance());
+                while (attributes.hasMoreElements()) {
+                    attributes.nextElement().copy(out);
+                }
+
+                // output the children
+
+                AxisEnumeration children = getEnumeration(Axis.CHILD, AnyNodeTest.getInstance());
+                while (children.hasMoreElements()) {
+                    children.nextElement().copy(out);
+                }
+
+                // finally the end tag
+
+                out.writeEndTag(nc);
+                return;
+
+            case ATTRIBUTE:
+                out.writeAttribute(getNameCode(), getStringValue());
+                return;
+
+            case TEXT:
+                out.writeContent(getStringValue());
+                return;
+
+            case COMMENT:
+                out.writeComment(getStringValue());
+                return;
+
+            case PI:
+                out.writePI(getLocalName(), getStringValue());
+                return;
+
+            case NAMESPACE:
+                out.copyNamespaceNode(
+                    docWrapper.getNamePool().allocateNamespaceCode(nsPrefix, nsURI));
+                return;
+
+            default:
+
+        }
+    }
+
+    /**
+    * Copy the string-value of this node to a given outputter
+    */
+
+    public void copyStringValue(Outputter out) throws TransformerException {
+        out.writeContent(getStringValue());
+    }
+
+    /**
+    * Output all namespace nodes associated with this element. Does nothing if
+    * the node is not an element.
+    * @param out The relevant outputter
+    * @param includeAncestors True if namespaces declared on ancestor elements must
+    * be output; false if it is known that these are already on the result tree
+    */
+
+    public void outputNamespaceNodes(Outputter out, boolean includeAncestors)
+        throws TransformerException {
+        if (nodeType==ELEMENT) {
+            NamePool pool = docWrapper.getNamePool();
+            AxisEnumeration enm = getEnumeration(Axis.NAMESPACE,
+                                                  AnyNodeTest.getInstance());
+            while (enm.hasMoreElements()) {
+                NodeWrapper ns = (NodeWrapper)enm.nextElement();
+                out.writeNamespaceDeclaration(pool.allocateNamespaceCode(ns.nsPrefix, ns.nsURI));
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////
+    // Navigation of the DOM in terms of the XPath model
+    ///////////////////////////////////////////////////////////////////////////////
+
+    // The static methods navigate the DOM as if each EntityReference node were replaced by
+    // its children (an EntityReference with no children contributes nothing) and nodes with
+    // no XPath equivalent (such as the DocumentType) were absent.
+    // The instance methods firstChildNode() etc. additionally treat each run of text nodes
+    // as a single node, and skip text nodes that are empty or are stripped whitespace.
+
+    static boolean isText(Node n) {
+        short type = n.getNodeType();
+        return type==Node.TEXT_NODE || type==Node.CDATA_SECTION_NODE;
+    }
+
+    private static boolean isNamespaceDeclaration(Node att) {
+        String name = att.getNodeName();
+        return name.startsWith("xmlns") && (name.length()==5 || name.charAt(5)==':');
+    }
+
+    /**
+    * Get the parent of a node, skipping entity references
+    */
+
+    static Node parentNode(Node n) {
+        Node p = n.getParentNode();
+        while (p!=null && p.getNodeType()==Node.ENTITY_REFERENCE_NODE) {
+            p = p.getParentNode();
+        }
+        return p;
+    }
+
+    static Node firstChild(Node n) {
+        return forwards(n.getFirstChild());
+    }
+
+    static Node next(Node n) {
+        return forwards(nextInParent(n));
+    }
+
+    static Node previous(Node n) {
+        return backwards(previousInParent(n));
+    }
+
+    private static Node nextInParent(Node n) {
+        Node s = n.getNextSibling();
+        while (s==null) {
+            n = n.getParentNode();
+            if (n==null || n.getNodeType()!=Node.ENTITY_REFERENCE_NODE) {
+                return null;
+            }
+            s = n.getNextSibling();
+        }
+        return s;
+    }
+
+    private static Node previousInParent(Node n) {
+        Node s = n.getPreviousSibling();
+        while (s==null) {
+            n = n.getParentNode();
+            if (n==null || n.getNodeType()!=Node.ENTITY_REFERENCE_NODE) {
+                return null;
+            }
+            s = n.getPreviousSibling();
+        }
+        return s;
+    }
+
+    /**
+    * Starting at a given node, find the first node in document order that is visible
+    * in the XPath model, descending into entity references
+    */
+
+    private static Node forwards(Node n) {
+        while (n!=null) {
+            switch (n.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                case Node.TEXT_NODE:
+                case Node.CDATA_SECTION_NODE:
+                case Node.COMMENT_NODE:
+                case Node.PROCESSING_INSTRUCTION_NODE:
+                    return n;
+                case Node.ENTITY_REFERENCE_NODE:
+                    if (n.getFirstChild()!=null) {
+                        n = n.getFirstChild();
+                        continue;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            n = nextInParent(n);
+        }
+        return null;
+    }
+
+    /**
+    * Starting at a given node, find the first node in reverse document order that is visible
+    * in the XPath model, descending into entity references
+    */
+
+    private static Node backwards(Node n) {
+        while (n!=null) {
+            switch (n.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                case Node.TEXT_NODE:
+                case Node.CDATA_SECTION_NODE:
+                case Node.COMMENT_NODE:
+                case Node.PROCESSING_INSTRUCTION_NODE:
+                    return n;
+                case Node.ENTITY_REFERENCE_NODE:
+                    if (n.getLastChild()!=null) {
+                        n = n.getLastChild();
+                        continue;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            n = previousInParent(n);
+        }
+        return null;
+    }
+
+    /**
+    * Get the first child of this node, in the XPath model
+    */
+
+    private Node firstChildNode() {
+        return skipForwards(firstChild(node));
+    }
+
+    /**
+    * Get the last child of this node, in the XPath model
+    */
+
+    private Node lastChildNode() {
+        return skipBackwards(backwards(node.getLastChild()));
+    }
+
+    /**
+    * Get the child of this node that follows a given child, in the XPath model
+    */
+
+    private Node nextChildNode(Node child) {
+        Node n = next(child);
+        if (isText(child)) {
+            while (n!=null && isText(n)) {
+                n = next(n);
+            }
+        }
+        return skipForwards(n);
+    }
+
+    /**
+    * Get the child of this node that precedes a given child, in the XPath model
+    */
+
+    private Node previousChildNode(Node child) {
+        return skipBackwards(previous(child));
+    }
+
+    /**
+    * Starting at a visible child of this node, skip forwards past any text that
+    * is not present in the XPath model
+    */
+
+    private Node skipForwards(Node n) {
+        while (n!=null && isText(n) && isIgnorable(n)) {
+            do {
+                n = next(n);
+            } while (n!=null && isText(n));
+        }
+        return n;
+    }
+
+    /**
+    * Starting at a visible child of this node, skip backwards past any text that
+    * is not present in the XPath model. If the node is text, the result is the first
+    * node of its run of text.
+    */
+
+    private Node skipBackwards(Node n) {
+        while (n!=null && isText(n)) {
+            Node p = previous(n);
+            while (p!=null && isText(p)) {
+                n = p;
+                p = previous(p);
+            }
+            if (!isIgnorable(n)) {
+                return n;
+            }
+            n = p;
+        }
+        return n;
+    }
+
+    /**
+    * Determine whether a run of text within this node is absent from the XPath model,
+    * either because it is empty or because it is whitespace that is stripped
+    */
+
+    private boolean isIgnorable(Node first) {
+        boolean white = true;
+        boolean empty = true;
+        for (Node n = first; n!=null && isText(n); n = next(n)) {
+            String s = ((CharacterData)n).getData();
+            if (s.length()>0) {
+                empty = false;
+                if (white && !Navigator.isWhite(s)) {
+                    white = false;
+                    break;
+                }
+            }
+        }
+        return empty || (white && docWrapper.isStripped(this));
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////
+    // Axis enumeration classes
+    ///////////////////////////////////////////////////////////////////////////////
+
+    private class FilterEnumeration implements AxisEnumeration {
+        private BaseEnumeration base;
+        private NodeTest nodeTest;
+        private NodeInfo next;
+        private int last = -1;
+
+        public FilterEnumeration(BaseEnumeration base, NodeTest test) {
+            this.base = base;
+            this.nodeTest = test;
+            advance();
+        }
+
+        public void advance() {
+            while (base.hasMoreElements()) {
+    	        next = base.nextElement();
+    	        if (nodeTest.matches(next)) return;
+    	    }
+    	    next = null;
+    	}
+
+    	public NodeInfo nextElement() {
+    	    NodeInfo n = next;
+    	    advance();
+    	    return n;
+        }
+
+    	public boolean hasMoreElements() {
+    	    return next!=null;
+    	}
+
+    	public int getLastPosition() {
+
+    	    // To find out how many nodes there are in the axis, we
+    	    // make a copy of the original node enumeration, and run through
+    	    // the whole thing again, counting how many nodes match the filter.
+
+    	    if (last>=0) {
+    	        return last;
+    	    }
+    	    last = 0;
+    	    BaseEnumeration b = base.copy();
+    	    while (b.hasMoreElements()) {
+    	        NodeInfo n = b.nextElement();
+    	        if (nodeTest.matches(n)) {
+    	            last++;
+    	        }
+    	    }
+    	    return last;
+    	}
+
+    	public boolean isSorted() {
+    	    return base.isSorted();
+    	}
+
+        public boolean isReverseSorted() {
+            return base.isReverseSorted();
+        }
+
+    	public boolean isPeer() {
+    	    return base.isPeer();
+    	}
+	}
+
+	private abstract class BaseEnumeration implements AxisEnumeration {
+
+        protected NodeWrapper next;
+
+        public final boolean hasMoreElements() {
+            return next!=null;
+        }
+
+        public final NodeInfo nextElement() {
+            NodeInfo n = next;
+            advance();
+            return n;
+        }
+
+        public abstract void advance();
+
+	    public abstract BaseEnumeration copy();
+
+	    public final int getLastPosition() {// not used
+	        return 1;
+	    }
+
+	    public boolean isSorted() {
+	        return true;
+	    }
+
+	    public final boolean isReverseSorted() {
+	        return !isSorted();
+	    }
+
+	    public boolean isPeer() {
+	        return false;
+	    }
+	}
+
+
+    final class AncestorEnumeration extends BaseEnumeration {
+
+        private boolean includeSelf;
+        private NodeWrapper start;
+
+        public AncestorEnumeration(NodeWrapper start, boolean includeSelf) {
+            this.start = start;
+            this.includeSelf = includeSelf;
+            this.next = start;
+            if (!includeSelf) {
+                advance();
+            }
+        }
+
+        public void advance() {
+            next=(NodeWrapper)next.getParent();
+        }
+
+	    public boolean isSorted() {
+	        return false;
+	    }
+
+	    public boolean isPeer() {
+	        return false;
+	    }
+
+        public BaseEnumeration copy() {
+            return new AncestorEnumeration(start, includeSelf);
+        }
+
+    } // end of class AncestorEnumeration
+
+    private final class AttributeEnumeration extends BaseEnumeration {
+
+        private NamedNodeMap atts;
+        private int ix = 0;
+        private NodeWrapper start;
+
+        public AttributeEnumeration(NodeWrapper start) {
+            this.start = start;
+            atts = start.node.getAttributes();
+            advance();
+        }
+
+        public void advance() {
+            while (ix < atts.getLength()) {
+                Node att = atts.item(ix++);
+                if (!isNamespaceDeclaration(att)) {
+                    next = makeWrapper(att, start);
+                    return;
+                }
+            }
+            next = null;
+        }
+
+	    public boolean isPeer() {
+	        return true;
+	    }
+
+        public BaseEnumeration copy() {
+            return new AttributeEnumeration(start);
+        }
+
+    }  // end of class AttributeEnumeration
+
+    private final class NamespaceEnumeration extends BaseEnumeration {
+
+        private Iterator namespaces;
+        private int ix = 0;
+        private NodeWrapper start;
+
+        public NamespaceEnumeration(NodeWrapper start) {
+            this.start = start;
+
+            // build the complete list of namespaces. The DOM may not contain namespace
+            // declaration attributes for all the namespaces used, so the names of elements
+            // and attributes are treated as implicit declarations.
+
+            LinkedHashMap nslist = new LinkedHashMap();
+            Node curr = start.node;
+            do {
+                declare(nslist, curr);
+                NamedNodeMap atts = curr.getAttributes();
+                for (int i=0; i<atts.getLength(); i++) {
+                    Node att = atts.item(i);
+                    String name = att.getNodeName();
+                    if (name.equals("xmlns")) {
+                        if (!nslist.containsKey("")) {
+                            nslist.put("", att.getNodeValue());
+                        }
+                    } else if (name.startsWith("xmlns:")) {
+                        String prefix = name.substring(6);
+                        if (!nslist.containsKey(prefix)) {
+                            nslist.put(prefix, att.getNodeValue());
+                        }
+                    } else if (name.indexOf(':')>=0) {
+                        declare(nslist, att);
+                    }
+                }
+                curr = parentNode(curr);
+            } while (curr!=null && curr.getNodeType()==Node.ELEMENT_NODE);
+
+            nslist.put("xml", Namespace.XML);
+            namespaces = nslist.entrySet().iterator();
+            advance();
+        }
+
+        private void declare(Map nslist, Node named) {
+            String uri = named.getNamespaceURI();
+            if (uri!=null) {
+                String prefix = named.getPrefix();
+                if (prefix==null) {
+                    prefix = "";
+                }
+                if (!nslist.containsKey(prefix)) {
+                    nslist.put(prefix, uri);
+                }
+            }
+        }
+
+        public void advance() {
+            while (namespaces.hasNext()) {
+                Map.Entry e = (Map.Entry)namespaces.next();
+                String uri = (String)e.getValue();
+                if (!uri.equals("")) {      // omit undeclarations
+                    NodeWrapper ns = new NodeWrapper(start.node, NAMESPACE, start, docWrapper);
+                    ns.nsPrefix = (String)e.getKey();
+                    ns.nsURI = uri;
+                    ns.nsIndex = ix++;
+                    next = ns;
+                    return;
+                }
+            }
+            next = null;
+        }
+
+	    public boolean isPeer() {
+	        return true;
+	    }
+
+        public BaseEnumeration copy() {
+            return new NamespaceEnumeration(start);
+        }
+
+    }  // end of class NamespaceEnumeration
+
+
+    /**
+    * The class ChildEnumeration handles not only the child axis, but also the
+    * following-sibling and preceding-sibling axes. It can also enumerate the children
+    * of the start node in reverse order, something that is needed to support the
+    * preceding and preceding-or-ancestor axes (the latter being used by xsl:number)
+    */
+
+    private class ChildEnumeration extends BaseEnumeration {
+
+        private NodeWrapper start;
+        private NodeWrapper commonParent;
+        private Node current;
+        private boolean downwards;  // enumerate children of start node (not siblings)
+        private boolean forwards;   // enumerate in document order (not reverse order)
+
+        public ChildEnumeration(NodeWrapper start,
+                                boolean downwards, boolean forwards) {
+            this.start = start;
+            this.downwards = downwards;
+            this.forwards = forwards;
+
+            if (downwards) {
+                commonParent = start;
+                current = (forwards ? start.firstChildNode() : start.lastChildNode());
+            } else {
+                commonParent = (NodeWrapper)start.getParent();
+                current = (forwards ? commonParent.nextChildNode(start.node)
+                                    : commonParent.previousChildNode(start.node));
+            }
+            next = (current==null ? null : makeWrapper(current, commonParent));
+        }
+
+        public void advance() {
+            if (current!=null) {
+                current = (forwards ? commonParent.nextChildNode(current)
+                                    : commonParent.previousChildNode(current));
+            }
+            next = (current==null ? null : makeWrapper(current, commonParent));
+        }
+
+        public boolean isSorted() {
+            return forwards;
+        }
+
+        public boolean isPeer() {
+            return true;
+        }
+
+        public BaseEnumeration copy() {
+            return new ChildEnumeration(start, downwards, forwards);
+        }
+
+    } // end of class ChildEnumeration
+
+    /**
+    * The DescendantEnumeration class supports the XPath descendant axis.
+    * But it also has the option to return the descendants in reverse document order;
+    * this is used when evaluating the preceding axis. Note that the includeSelf option
+    * should not be used when scanning in reverse order, as the self node will always be
+    * returned first.
+    */
+
+    private final class DescendantEnumeration extends BaseEnumeration {
+
+        private AxisEnumeration children = null;
+        private AxisEnumeration descendants = null;
+        private NodeWrapper start;
+        private boolean includeSelf;
+        private boolean forwards;
+        private boolean atEnd = false;
+
+        public DescendantEnumeration(NodeWrapper start,
+                                 boolean includeSelf, boolean forwards) {
+            this.start = start;
+            this.includeSelf = includeSelf;
+            this.forwards = forwards;
+            advance();
+        }
+
+        public void advance() {
+            if (descendants!=null) {
+                if (descendants.hasMoreElements()) {
+                    next = (NodeWrapper)descendants.nextElement();
+                    return;
+                } else {
+                    descendants = null;
+                }
+            }
+            if (children!=null) {
+                if (children.hasMoreElements()) {
+                    NodeWrapper n = (NodeWrapper)children.nextElement();
+                    if (n.hasChildNodes()) {
+                        if (forwards) {
+                            descendants = new DescendantEnumeration(n,
+                                             false, forwards);
+                            next = n;
+                        } else {
+                            descendants = new DescendantEnumeration(n, true, forwards);
+                            advance();
+                        }
+                    } else {
+                        next = n;
+                    }
+                } else {
+                    if (forwards || !includeSelf) {
+                        next = null;
+                    } else {
+                        atEnd = true;
+                        children = null;
+                        next = start;
+                    }
+                }
+            } else if (atEnd) {
+                // we're just finishing a backwards scan
+                next = null;
+            } else {
+                // we're just starting...
+                if (start.hasChildNodes()) {
+                    children = new ChildEnumeration(start, true, forwards);
+                } else {
+                    children = EmptyEnumeration.getInstance();
+                }
+                if (forwards && includeSelf) {
+                    next = start;
+                } else {
+                    advance();
+                }
+            }
+        }
+
+        public boolean isSorted() {
+            return forwards;
+        }
+
+        public boolean isPeer() {
+            return false;
+        }
+
+        public BaseEnumeration copy() {
+            return new DescendantEnumeration(start, includeSelf, forwards);
+        }
+
+    } // end of class DescendantEnumeration
+
+    private class FollowingEnumeration extends BaseEnumeration {
+
+        private NodeWrapper start;
+        private AxisEnumeration ancestorEnum = null;
+        private AxisEnumeration siblingEnum = null;
+        private AxisEnumeration descendEnum = null;
+
+        public FollowingEnumeration(NodeWrapper start) {
+            this.start = start;
+            ancestorEnum = new AncestorEnumeration(start, false);
+            switch (start.getNodeType()) {
+                case ELEMENT:
+                case TEXT:
+                case COMMENT:
+                case PI:
+                    siblingEnum = new ChildEnumeration(start, false, true);
+                    break;
+                case ATTRIBUTE:
+                case NAMESPACE:
+                    siblingEnum = new ChildEnumeration((NodeWrapper)start.getParent(), true, true);
+                        // gets children of the attribute's parent node
+                    break;
+                default:
+                    siblingEnum = EmptyEnumeration.getInstance();
+            }
+            advance();
+        }
+
+        public void advance() {
+            if (descendEnum!=null) {
+                if (descendEnum.hasMoreElements()) {
+                    next = (NodeWrapper)descendEnum.nextElement();
+                    return;
+                } else {
+                    descendEnum = null;
+                }
+            }
+            if (siblingEnum!=null) {
+                if (siblingEnum.hasMoreElements()) {
+                    next = (NodeWrapper)siblingEnum.nextElement();
+                    if (next.hasChildNodes()) {
+                        descendEnum = new DescendantEnumeration(next, false, true);
+                    } else {
+                        descendEnum = null;
+                    }
+                    return;
+                } else {
+                    descendEnum = null;
+                    siblingEnum = null;
+                }
+            }
+            if (ancestorEnum.hasMoreElements()) {
+                next = (NodeWrapper)ancestorEnum.nextElement();
+                if (next.getNodeType() == ROOT) {
+                    siblingEnum = EmptyEnumeration.getInstance();
+                } else {
+                    siblingEnum = new ChildEnumeration(next, false, true);
+                }
+                advance();
+            } else {
+                next = null;
+            }
+        }
+
+        public boolean isSorted() {
+            return true;
+        }
+
+        public boolean isPeer() {
+            return false;
+        }
+
+        public BaseEnumeration copy() {
+            return new FollowingEnumeration(start);
+        }
+
+    } // end of class FollowingEnumeration
+
+    private class PrecedingEnumeration extends BaseEnumeration {
+
+        private NodeWrapper start;
+        private AxisEnumeration ancestorEnum = null;
+        private AxisEnumeration siblingEnum = null;
+        private AxisEnumeration descendEnum = null;
+        private boolean includeAncestors;
+
+        public PrecedingEnumeration(NodeWrapper start, boolean includeAncestors) {
+            this.start = start;
+            this.includeAncestors = includeAncestors;
+            ancestorEnum = new AncestorEnumeration(start, false);
+            switch (start.getNodeType()) {
+                case ELEMENT:
+                case TEXT:
+                case COMMENT:
+                case PI:
+                    // get preceding-sibling enumeration
+                    siblingEnum = new ChildEnumeration(start, false, false);
+                    break;
+                default:
+                    siblingEnum = EmptyEnumeration.getInstance();
+            }
+            advance();
+        }
+
+        public void advance() {
+            if (descendEnum!=null) {
+                if (descendEnum.hasMoreElements()) {
+                    next = (NodeWrapper)descendEnum.nextElement();
+                    return;
+                } else {
+                    descendEnum = null;
+                }
+            }
+            if (siblingEnum!=null) {
+                if (siblingEnum.hasMoreElements()) {
+                    NodeWrapper sib = (NodeWrapper)siblingEnum.nextElement();
+                    if (sib.hasChildNodes()) {
+                        descendEnum = new DescendantEnumeration(sib, true, false);
+                        advance();
+                    } else {
+                        descendEnum = null;
+                        next = sib;
+                    }
+                    return;
+                } else {
+                    descendEnum = null;
+                    siblingEnum = null;
+                }
+            }
+            if (ancestorEnum.hasMoreElements()) {
+                next = (NodeWrapper)ancestorEnum.nextElement();
+                if (next.getNodeType() == ROOT) {
+                    siblingEnum = EmptyEnumeration.getInstance();
+                } else {
+                    siblingEnum = new ChildEnumeration(next, false, false);
+                }
+                if (!includeAncestors) {
+                    advance();
+                }
+            } else {
+                next = null;
+            }
+        }
+
+        public boolean isSorted() {
+            return false;
+        }
+
+        public boolean isPeer() {
+            return false;
+        }
+
+        public BaseEnumeration copy() {
+            return new PrecedingEnumeration(start, includeAncestors);
+        }
+
+    } // end of class PrecedingEnumeration
+
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael H. Kay.
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
@@ -22,7 +22,7 @@ class ArithmeticExpression extends BinaryExpression {
     */
 
     public Value evaluate(Context c) throws XPathException {
-        return new NumericValue(evaluateAsNumber(c));
+        return NumericValue.get(evaluateAsNumber(c));
     }
 
     /**
@@ -51,6 +51,17 @@ class ArithmeticExpression extends BinaryExpression {
         }
     }
 
+    /**
+    * Evaluate an expression as a Boolean.
+    * @param context The context in which the expression is to be evaluated
+    * @return true if the numeric value is neither zero nor NaN
+    */
+
+    public boolean evaluateAsBoolean(Context c) throws XPathException {
+        double d = evaluateAsNumber(c);
+        return (d!=0.0 && !Double.isNaN(d));
+    }
+
     /**
     * Determine the data type of the expression, if possible
     * @return Value.NUMBER
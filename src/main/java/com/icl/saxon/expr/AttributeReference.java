@@ -34,6 +34,22 @@ class AttributeReference extends SingletonExpression {
         boundParentNode = node;
     }
 
+    /**
+    * Get the fingerprint of the attribute name
+    */
+
+    int getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+    * Determine whether the reference has been bound to a particular node
+    */
+
+    boolean isBound() {
+        return boundParentNode != null;
+    }
+
     /**
     * Get the parent node
     */
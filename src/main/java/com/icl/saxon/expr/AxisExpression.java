@@ -33,6 +33,30 @@ final class AxisExpression extends NodeSetExpression {
         this.test = nodeTest;
     }
 
+    /**
+    * Get the axis
+    */
+
+    byte getAxis() {
+        return axis;
+    }
+
+    /**
+    * Get the node test
+    */
+
+    NodeTest getNodeTest() {
+        return test;
+    }
+
+    /**
+    * Get the node to which the expression has been bound, or null if it uses the context node
+    */
+
+    NodeInfo getContextNode() {
+        return contextNode;
+    }
+
     /**
     * Simplify an expression
     * @return the simplified expression
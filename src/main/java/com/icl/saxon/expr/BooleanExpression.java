@@ -41,7 +41,7 @@ class BooleanExpression extends BinaryExpression {
     }
 
     public Value evaluate(Context c) throws XPathException {
-        return new BooleanValue(evaluateAsBoolean(c));
+        return BooleanValue.get(evaluateAsBoolean(c));
     }
 
     public boolean evaluateAsBoolean(Context c) throws XPathException {
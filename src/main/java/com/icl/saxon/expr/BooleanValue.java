@@ -9,6 +9,28 @@ import com.icl.saxon.*;
 public final class BooleanValue extends Value {
     private boolean value;
 
+    /**
+    * The shared instance representing the value true
+    */
+
+    public static final BooleanValue TRUE = new BooleanValue(true);
+
+    /**
+    * The shared instance representing the value false
+    */
+
+    public static final BooleanValue FALSE = new BooleanValue(false);
+
+    /**
+    * Factory method: get a BooleanValue. Since BooleanValues are immutable,
+    * this returns one of the two shared instances rather than creating a new object
+    * @param value the required value, true or false
+    */
+
+    public static BooleanValue get(boolean value) {
+        return (value ? TRUE : FALSE);
+    }
+
     /**
     * Constructor: create a boolean value
     * @param value the initial value, true or false
@@ -25,7 +25,10 @@ public abstract class Expression  {
     public static Expression make(String expression, StaticContext env) throws XPathException {
         try {
             Expression exp = (new ExpressionParser()).parse(expression, env).simplify();
-            exp.staticContext = env;
+            if (!(exp instanceof Value)) {
+                // values may be shared instances, and do not need a static context
+                exp.staticContext = env;
+            }
             return exp;
         } catch (XPathException err) {
             if (env.forwardsCompatibleModeIsEnabled()) {
@@ -117,6 +120,20 @@ public abstract class Expression  {
         return evaluate(context).asString();
     }
 
+    /**
+    * Evaluate an expression as a sequence of characters.<br>
+    * The result of x.evaluateAsCharSequence(c) must contain the same characters as
+    * x.evaluateAsString(c); but when the value is the string value of a node, the characters
+    * may be read from the tree in place, without first being copied into a String. The result
+    * should be used straight away, and not retained.
+    * @param context The context in which the expression is to be evaluated
+    * @return the value of the expression, evaluated in the current context
+    */
+
+    public CharSequence evaluateAsCharSequence(Context context) throws XPathException {
+        return evaluateAsString(context);
+    }
+
     /**
     * Evaluate an expression as a String and write the result to the
     * specified outputter.<br>
@@ -125,7 +142,7 @@ public abstract class Expression  {
     */
 
     public void outputStringValue(Outputter out, Context context) throws TransformerException {
-        out.writeContent(evaluateAsString(context));
+        out.writeContent(evaluateAsCharSequence(context));
     }
 
     /**
@@ -27,6 +27,22 @@ class FilterExpression extends NodeSetExpression {
         this.filter = filter;
     }
 
+    /**
+    * Get the expression whose nodes are filtered
+    */
+
+    Expression getBase() {
+        return start;
+    }
+
+    /**
+    * Get the filter predicate
+    */
+
+    Expression getFilter() {
+        return filter;
+    }
+
     /**
     * Simplify an expression
     */
@@ -58,6 +74,24 @@ class FilterExpression extends NodeSetExpression {
             filter = new IsLastExpression(true);
         }
 
+        // in a[expensive][cheap], apply the cheap filter first if neither is positional
+        // nor calls an extension function: see Step.reorderFilters()
+
+        if (start instanceof FilterExpression &&
+                Step.isCheap(filter) && Step.isReorderable(filter)) {
+            FilterExpression inner = (FilterExpression)start;
+            if (!Step.isCheap(inner.filter) && Step.isReorderable(inner.filter)) {
+                Expression first = new FilterExpression(inner.start, filter);
+                first.setStaticContext(getStaticContext());
+                start = first.simplify();
+                filter = inner.filter;
+                dependencies = -1;
+                if (start instanceof EmptyNodeSet) {
+                    return start;
+                }
+            }
+        }
+
         // following code is designed to catch the case where we recurse over a node-set
         // setting $ns := $ns[position()>1]. The effect is to combine the accumulating
         // filters, for example on the third iteration the filter will be effectively
@@ -5,39 +5,46 @@ import com.icl.saxon.InternalSaxonError;
 import com.icl.saxon.om.*;
 import com.icl.saxon.output.Emitter;
 import com.icl.saxon.output.Outputter;
+import com.icl.saxon.tinytree.TinyBuilder;
 import com.icl.saxon.tree.AttributeCollection;
-import com.icl.saxon.tree.TreeBuilder;
 import org.xml.sax.Attributes;
 
 import javax.xml.transform.TransformerException;
-import java.util.Enumeration;
-import java.util.Vector;
 
 
 /**
 * This class represents a Value of type result tree fragment. <BR>
 * A Result Tree Fragment can be created by defining a variable in XSL whose value is defined by
 * the contents of the xsl:variable element, possibly including start and end element tags. <BR>
+* The events that make up the fragment are recorded in a compact form, using arrays of
+* integers; a tree is built only if the fragment is used as a node-set (for example
+* via saxon:node-set()).
 */
 
 public final class FragmentValue extends SingletonNodeSet  {
 
-    private char[] buffer = new char[4096];
+    private char[] buffer = new char[128];      // text content of the fragment
     private int used = 0;
-    private Vector events = new Vector(20);
+    private int[] events = new int[32];         // opcodes followed by their integer operands
+    private int eventsUsed = 0;
+    private Object[] objects = null;            // attributes, namespaces, comments, and PIs
+    private int objectsUsed = 0;
     private String baseURI = null;
     private FragmentEmitter emitter = new FragmentEmitter();
     private Controller controller;
 
     private static AttributeCollection emptyAttributeCollection = new AttributeCollection((NamePool)null);
+    private static int[] emptyNamespaceList = new int[0];
 
-    private static Integer START_ELEMENT = new Integer(1);
-    private static Integer END_ELEMENT = new Integer(2);
-    private static Integer CHARACTERS = new Integer(5);
-    private static Integer PROCESSING_INSTRUCTION = new Integer(6);
-    private static Integer COMMENT = new Integer(7);
-    private static Integer ESCAPING_ON = new Integer(8);
-    private static Integer ESCAPING_OFF = new Integer(9);
+    // Opcodes, and the operands that follow them in the events array
+
+    private static final int START_ELEMENT = 1;            // nameCode, attributes, namespaces
+    private static final int END_ELEMENT = 2;              // nameCode
+    private static final int CHARACTERS = 5;               // start, length
+    private static final int PROCESSING_INSTRUCTION = 6;   // name, data
+    private static final int COMMENT = 7;                  // content
+    private static final int ESCAPING_ON = 8;
+    private static final int ESCAPING_OFF = 9;
 
     public FragmentValue(Controller c) {
         controller = c;
@@ -53,14 +60,6 @@ public final class FragmentValue extends SingletonNodeSet  {
         baseURI = uri;
     }
 
-	/**
-	* Provide a namepool
-	*/
-
-	//public void setNamePool(NamePool pool) {
-	//	namePool = pool;
-	//}
-
     /**
     * Get an Emitter that can be used to feed data to this result tree fragment
     */
@@ -77,6 +76,15 @@ public final class FragmentValue extends SingletonNodeSet  {
         return new String(buffer, 0, used);
     }
 
+    /**
+    * Evaluate as a sequence of characters: the text of the fragment, read in place
+    * without building a tree
+    */
+
+    public CharSequence evaluateAsCharSequence(Context context) {
+        return new CharSlice(buffer, 0, used);
+    }
+
     /**
     * Evaluate an expression as a String and write the result to the
     * specified outputter.<br>
@@ -187,15 +195,16 @@ public final class FragmentValue extends SingletonNodeSet  {
     }
 
     /**
-    * Get the root (document) node
+    * Get the root (document) node. The tree is built (as a TinyTree) the first time
+    * this method is called.
     */
 
-    public DocumentInfo getRootNode() {
+    public synchronized DocumentInfo getRootNode() {
         if (node!=null) {        // only do it once
             return (DocumentInfo)node;
         }
         try {
-            Builder builder = new TreeBuilder();
+            Builder builder = new TinyBuilder();
             builder.setSystemId(baseURI);
             builder.setNamePool(controller.getNamePool());
             builder.startDocument();
@@ -223,47 +232,53 @@ public final class FragmentValue extends SingletonNodeSet  {
     */
 
     public void replay(Emitter emitter) throws TransformerException {
-        Enumeration enm = events.elements();
-
-        while (enm.hasMoreElements()) {
-            Object e = enm.nextElement();
-            Object e1;
-            Object e2;
-            Object e3;
-            if (e==START_ELEMENT) {
-                e1 = enm.nextElement();
-                e2 = enm.nextElement();
-                e3 = enm.nextElement();
-                int[] namespaces = (int[])e3;
-                emitter.startElement(((Integer)e1).intValue(),
-                					 (AttributeCollection)e2,
-                					 namespaces, namespaces.length);
-
-            } else if (e==END_ELEMENT) {
-                e1 = enm.nextElement();
-                emitter.endElement(((Integer)e1).intValue());
-
-            } else if (e==CHARACTERS) {
-                e1 = enm.nextElement();
-                emitter.characters(buffer, ((int[])e1)[0], ((int[])e1)[1]);
-
-            } else if (e==PROCESSING_INSTRUCTION) {
-                e1 = enm.nextElement();
-                e2 = enm.nextElement();
-                emitter.processingInstruction((String)e1, (String)e2);
-
-            } else if (e==COMMENT) {
-                e1 = enm.nextElement();
-                emitter.comment(((String)e1).toCharArray(), 0, ((String)e1).length());
-
-            } else if (e==ESCAPING_ON) {
-                emitter.setEscaping(true);
-
-            } else if (e==ESCAPING_OFF) {
-                emitter.setEscaping(false);
-
-            } else {
-                throw new InternalSaxonError("Corrupt data in temporary tree: " + e);
+        int[] events = this.events;
+        Object[] objects = this.objects;
+        int i = 0;
+        while (i < eventsUsed) {
+            switch (events[i++]) {
+                case START_ELEMENT:
+                    int nameCode = events[i++];
+                    int atts = events[i++];
+                    int ns = events[i++];
+                    int[] namespaces = (ns<0 ? emptyNamespaceList : (int[])objects[ns]);
+                    emitter.startElement(nameCode,
+                    					 (atts<0 ? emptyAttributeCollection
+                    					         : (AttributeCollection)objects[atts]),
+                    					 namespaces, namespaces.length);
+                    break;
+
+                case END_ELEMENT:
+                    emitter.endElement(events[i++]);
+                    break;
+
+                case CHARACTERS:
+                    int start = events[i++];
+                    int len = events[i++];
+                    emitter.characters(buffer, start, len);
+                    break;
+
+                case PROCESSING_INSTRUCTION:
+                    String target = (String)objects[events[i++]];
+                    String data = (String)objects[events[i++]];
+                    emitter.processingInstruction(target, data);
+                    break;
+
+                case COMMENT:
+                    char[] comment = (char[])objects[events[i++]];
+                    emitter.comment(comment, 0, comment.length);
+                    break;
+
+                case ESCAPING_ON:
+                    emitter.setEscaping(true);
+                    break;
+
+                case ESCAPING_OFF:
+                    emitter.setEscaping(false);
+                    break;
+
+                default:
+                    throw new InternalSaxonError("Corrupt data in temporary tree: " + events[i-1]);
             }
         }
 
@@ -277,6 +292,36 @@ public final class FragmentValue extends SingletonNodeSet  {
         System.err.println(indent(level) + "** result tree fragment **");
     }
 
+    /**
+    * Append an opcode to the event list, making room for the n operands that follow it
+    */
+
+    private void addEvent(int opcode, int n) {
+        if (eventsUsed + n + 1 > events.length) {
+            int[] e2 = new int[events.length * 2];
+            System.arraycopy(events, 0, e2, 0, eventsUsed);
+            events = e2;
+        }
+        events[eventsUsed++] = opcode;
+    }
+
+    /**
+    * Add an object to the object list
+    * @return the index of the object in the list
+    */
+
+    private int addObject(Object obj) {
+        if (objects==null) {
+            objects = new Object[10];
+        } else if (objectsUsed == objects.length) {
+            Object[] o2 = new Object[objectsUsed * 2];
+            System.arraycopy(objects, 0, o2, 0, objectsUsed);
+            objects = o2;
+        }
+        objects[objectsUsed] = obj;
+        return objectsUsed++;
+    }
+
     //////////////////////////////////////////////////////////////////////////////////
     // Implement the Emitter interface
     //////////////////////////////////////////////////////////////////////////////////
@@ -312,26 +357,25 @@ public final class FragmentValue extends SingletonNodeSet  {
 
         public void startElement(int name, Attributes attributes,
         						 int[] namespaces, int nscount) {
-            events.addElement(START_ELEMENT);
-            events.addElement(new Integer(name));
-
-
 
             // copy the attribute collection
-            AttributeCollection atts;
-            int numAtts = attributes.getLength();
-            if (numAtts==0) {
-                atts = emptyAttributeCollection;
-            } else {
-                atts = new AttributeCollection((AttributeCollection)attributes);
+            int atts = -1;
+            if (attributes.getLength() > 0) {
+                atts = addObject(new AttributeCollection((AttributeCollection)attributes));
             }
 
-            events.addElement(atts);
-
             // copy the namespaces
-            int[] ns = new int[nscount];
-            System.arraycopy(namespaces, 0, ns, 0, nscount);
-            events.addElement(ns);
+            int ns = -1;
+            if (nscount > 0) {
+                int[] nsCopy = new int[nscount];
+                System.arraycopy(namespaces, 0, nsCopy, 0, nscount);
+                ns = addObject(nsCopy);
+            }
+
+            addEvent(START_ELEMENT, 3);
+            events[eventsUsed++] = name;
+            events[eventsUsed++] = atts;
+            events[eventsUsed++] = ns;
 
             previousCharacters = false;
         }
@@ -343,8 +387,8 @@ public final class FragmentValue extends SingletonNodeSet  {
         */
 
         public void endElement(int name) {
-            events.addElement(END_ELEMENT);
-            events.addElement(new Integer(name));
+            addEvent(END_ELEMENT, 1);
+            events[eventsUsed++] = name;
             previousCharacters = false;
         }
 
@@ -353,20 +397,23 @@ public final class FragmentValue extends SingletonNodeSet  {
         */
 
         public void characters(char[] chars, int start, int len) {
-            while (used + len >= buffer.length) {
-                char[] newbuffer = new char[buffer.length * 2];
+            if (used + len > buffer.length) {
+                int newlen = buffer.length * 2;
+                while (used + len > newlen) {
+                    newlen *= 2;
+                }
+                char[] newbuffer = new char[newlen];
                 System.arraycopy(buffer, 0, newbuffer, 0, used);
                 buffer = newbuffer;
             }
             System.arraycopy(chars, start, buffer, used, len);
             if (previousCharacters) {
                 // concatenate with the previous text node
-                int[] v = (int[])events.elementAt(events.size()-1);
-                v[1] += len;
+                events[eventsUsed-1] += len;
             } else {
-                events.addElement(CHARACTERS);
-                int[] val = {used, len};        // objects are expensive so we only create one
-                events.addElement(val);
+                addEvent(CHARACTERS, 2);
+                events[eventsUsed++] = used;
+                events[eventsUsed++] = len;
             }
             used += len;
             previousCharacters = true;
@@ -377,9 +424,11 @@ public final class FragmentValue extends SingletonNodeSet  {
         */
 
         public void processingInstruction(String name, String data) {
-            events.addElement(PROCESSING_INSTRUCTION);
-            events.addElement(name);
-            events.addElement(data);
+            int target = addObject(name);
+            int content = addObject(data);
+            addEvent(PROCESSING_INSTRUCTION, 2);
+            events[eventsUsed++] = target;
+            events[eventsUsed++] = content;
             previousCharacters = false;
         }
 
@@ -388,8 +437,11 @@ public final class FragmentValue extends SingletonNodeSet  {
         */
 
         public void comment (char[] chars, int start, int length) {
-            events.addElement(COMMENT);
-            events.addElement(new String(chars, start, length));
+            char[] content = new char[length];
+            System.arraycopy(chars, start, content, 0, length);
+            int index = addObject(content);
+            addEvent(COMMENT, 1);
+            events[eventsUsed++] = index;
             previousCharacters = false;
         }
 
@@ -399,7 +451,7 @@ public final class FragmentValue extends SingletonNodeSet  {
         */
 
         public void setEscaping(boolean escaping) throws TransformerException {
-            events.addElement((escaping ? ESCAPING_ON : ESCAPING_OFF));
+            addEvent((escaping ? ESCAPING_ON : ESCAPING_OFF), 0);
             previousCharacters = false;
         }
 
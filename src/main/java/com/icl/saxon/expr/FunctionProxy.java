@@ -7,6 +7,9 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.w3c.xsl.XSLTContext;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -27,6 +30,8 @@ public class FunctionProxy extends Function {
     private XPathException theException = null;
     private String name;
     private Class resultClass = null;
+    private Binding fixedBinding = null;            // method chosen at compile time
+    private volatile Binding lastBinding = null;    // method chosen for the most recent call
 
     /**
     * Constructor: creates an uncommitted FunctionProxy
@@ -289,6 +294,7 @@ public class FunctionProxy extends Function {
                 }
             }
         }
+        bindStatically();
         return this;
     }
 
@@ -333,10 +339,13 @@ public class FunctionProxy extends Function {
             fp.candidateMethods = candidateMethods;
             fp.theException = theException;
             fp.name = name;
+            fp.resultClass = resultClass;
+            fp.lastBinding = lastBinding;
             fp.argument = new Expression[getNumberOfArguments()];
             for (int a=0; a<getNumberOfArguments(); a++) {
                 fp.addArgument(argument[a].reduce(dependencies, context));
             }
+            fp.bindStatically();
             return fp;
         }
     }
@@ -422,7 +431,8 @@ public class FunctionProxy extends Function {
 
     public String evaluateAsString(Context context) throws XPathException {
         if (resultClass==String.class) {
-            return (String)call(context);
+            String s = (String)call(context);
+            return (s==null ? "" : s);
         } else if (resultClass==NodeEnumeration.class) {
             NodeEnumeration enm = enumerate(context, true);
             if (enm.hasMoreElements()) {
@@ -441,7 +451,7 @@ public class FunctionProxy extends Function {
         } else if (resultClass==NodeEnumeration.class) {
             NodeEnumeration enm = enumerate(context, true);
             if (enm.hasMoreElements()) {
-                return Value.stringToNumber(enm.nextElement().getStringValue());
+                return Value.nodeToNumber(enm.nextElement());
             } else {
                 return Double.NaN;
             }
@@ -489,128 +499,276 @@ public class FunctionProxy extends Function {
         }
         context.setException(null);
 
+        // if the method was chosen at compile time, evaluate the arguments directly
+        // into the form the method requires
+
+        Binding binding = fixedBinding;
+        if (binding != null) {
+            return invoke(binding, null, context);
+        }
+
         Value[] argValues = new Value[getNumberOfArguments()];
         for (int a=0; a<getNumberOfArguments(); a++) {
             argValues[a] = argument[a].evaluate(context);
         }
 
-        // find the best fit method
-
-        Object theMethod = getBestFit(argValues);
-                            // could be an AccessibleObject in JDK 1.2
+        // find the best fit method: reuse the previous choice if the actual arguments
+        // are of the same classes as last time
 
-        // now call it
-
-        Class[] theParameterTypes;
+        binding = lastBinding;
+        if (binding == null || !binding.matches(argValues)) {
+            binding = makeBinding(getBestFit(argValues), argValues);
+            lastBinding = binding;
+        }
 
-        if (theMethod instanceof Constructor) {
-            Constructor constructor = (Constructor)theMethod;
-            theParameterTypes = constructor.getParameterTypes();
-            Object[] params = new Object[theParameterTypes.length];
+        return invoke(binding, argValues, context);
+    }
 
-            setupParams(argValues, params, theParameterTypes, 0, 0);
+    /**
+    * Choose the method at compile time, if there is only one candidate
+    */
 
+    private void bindStatically() {
+        if (theException==null && candidateMethods.size() == 1) {
             try {
-                Object obj = constructor.newInstance(params);
-                if (context.getException() != null) {
-                    throw context.getException();
-                }
-                return obj;
-                //return new ObjectValue(obj);
-            } catch (InstantiationException err0) {
-                throw new XPathException ("Cannot instantiate class", err0);
-            } catch (IllegalAccessException err1) {
-                throw new XPathException ("Constructor access is illegal", err1);
-            } catch (IllegalArgumentException err2) {
-                throw new XPathException ("Argument is of wrong type", err2);
-            } catch (InvocationTargetException err3) {
-                Throwable ex = err3.getTargetException();
-                if (ex instanceof XPathException) {
-                    throw (XPathException)ex;
-                } else {
-                	if (context.getController().isTracing()) {
-                		err3.getTargetException().printStackTrace();
-                	}
-                    throw new XPathException ("Exception in extension function " +
-                                            err3.getTargetException().toString());
-                }
+                fixedBinding = makeBinding(candidateMethods.elementAt(0), null);
+            } catch (XPathException err) {
+                theException = err;     // reported only if the function is called
             }
-        } else {
-            Method method = (Method)theMethod;
-            boolean isStatic = Modifier.isStatic(method.getModifiers());
-            Object theInstance;
-            theParameterTypes = method.getParameterTypes();
-            boolean usesContext = theParameterTypes.length > 0 &&
-                                  (theParameterTypes[0] == Context.class ||
-                                   theParameterTypes[0] == XSLTContext.class);
-            if (isStatic) {
-                theInstance = null;
-            } else {
-                int actualArgs = getNumberOfArguments();
-                if (actualArgs==0) {
-                    throw new XPathException("Must supply an argument for an instance-level extension function");
-                }
-                Value arg0 = argument[0].evaluate(context);
-                if (arg0 instanceof ObjectValue) {
-                    // TODO: check it's the right type for this method
-                    theInstance = ((ObjectValue)arg0).getObject();
-                } else if (theClass==String.class) {
-                    theInstance = arg0.asString();
-                } else if (theClass==Boolean.class) {
-                    theInstance = new Boolean(arg0.asBoolean());
-                } else if (theClass==Double.class) {
-                    theInstance = new Double(arg0.asNumber());
-                } else {
-                    throw new XPathException("First argument is not an object instance");
-                }
+        }
+    }
 
+    /**
+    * Create a Binding for a chosen method or constructor
+    * @param theMethod the Method or Constructor
+    * @param argValues the actual argument values for which the method was chosen; null
+    * if the method was chosen at compile time
+    */
+
+    private Binding makeBinding(Object theMethod, Value[] argValues) throws XPathException {
+        Binding binding = new Binding();
+        binding.method = theMethod;
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        MethodHandle handle;
+
+        try {
+            if (theMethod instanceof Constructor) {
+                Constructor constructor = (Constructor)theMethod;
+                binding.parameterTypes = constructor.getParameterTypes();
+                binding.isStatic = true;
+                handle = lookup.unreflectConstructor(constructor);
+            } else {
+                Method method = (Method)theMethod;
+                binding.parameterTypes = method.getParameterTypes();
+                binding.isStatic = Modifier.isStatic(method.getModifiers());
+                binding.usesContext = binding.parameterTypes.length > 0 &&
+                                  (binding.parameterTypes[0] == Context.class ||
+                                   binding.parameterTypes[0] == XSLTContext.class);
+                binding.returnsVoid = method.getReturnType()==Void.TYPE;
+                handle = lookup.unreflect(method);
             }
+            binding.arity = handle.type().parameterCount();
+            handle = handle.asType(MethodType.genericMethodType(binding.arity));
+        } catch (IllegalAccessException err) {
+            // fall back to reflection, which will report the error if it is real
+            handle = null;
+            binding.arity = binding.parameterTypes.length + (binding.isStatic ? 0 : 1);
+        }
+        binding.handle = handle;
 
-            int requireArgs = theParameterTypes.length -
-                                 (usesContext ? 1 : 0) +
-                                 (isStatic ? 0 : 1);
+        int requireArgs = binding.parameterTypes.length -
+                             (binding.usesContext ? 1 : 0) +
+                             (binding.isStatic ? 0 : 1);
+        checkArgumentCount(requireArgs, requireArgs);
 
-            checkArgumentCount(requireArgs, requireArgs);
-            Object[] params = new Object[theParameterTypes.length];
+        if (argValues != null) {
+            binding.key = new Class[argValues.length];
+            for (int a=0; a<argValues.length; a++) {
+                binding.key[a] = Binding.keyClass(argValues[a]);
+            }
+        } else {
+            binding.converters = new int[getNumberOfArguments()];
+            int firstParam = (binding.usesContext ? 1 : 0) - (binding.isStatic ? 0 : 1);
+            for (int a=(binding.isStatic ? 0 : 1); a<getNumberOfArguments(); a++) {
+                binding.converters[a] =
+                    Binding.converterFor(binding.parameterTypes[a+firstParam],
+                                         argument[a].getDataType());
+            }
+        }
+        return binding;
+    }
 
-            if (usesContext) {
-                params[0] = context;
+    /**
+    * Invoke the method or constructor identified by a binding
+    * @param binding the chosen method
+    * @param argValues the values of the arguments, already evaluated, or null if
+    * they are to be evaluated as required using the converters in the binding
+    * @param context the dynamic context
+    */
+
+    private Object invoke(Binding binding, Value[] argValues, Context context)
+    throws XPathException {
+
+        // evaluate the arguments first, so that errors in evaluating them are not
+        // reported as errors in the extension function
+
+        int arity = binding.arity;
+        Object a0 = null, a1 = null, a2 = null, a3 = null;
+        Object[] actuals = null;
+        if (binding.handle != null && arity <= 4) {
+            // avoid allocating a parameter array for the common cases
+            if (arity > 0) a0 = getActualArgument(binding, 0, argValues, context);
+            if (arity > 1) a1 = getActualArgument(binding, 1, argValues, context);
+            if (arity > 2) a2 = getActualArgument(binding, 2, argValues, context);
+            if (arity > 3) a3 = getActualArgument(binding, 3, argValues, context);
+        } else {
+            actuals = new Object[arity];
+            for (int k=0; k<arity; k++) {
+                actuals[k] = getActualArgument(binding, k, argValues, context);
             }
+        }
 
-            setupParams(argValues, params, theParameterTypes,
-                            (usesContext ? 1 : 0),
-                            (isStatic ? 0 : 1)
-                        );
+        // the arguments have already been converted, so any exception thrown by a method
+        // handle comes from the method itself; only errors are allowed to propagate
 
+        Object result;
+        if (binding.handle != null) {
             try {
-                Object result = method.invoke(theInstance, params);
-                if (context.getException() != null) {
-                    throw context.getException();
-                }
-                if (method.getReturnType().toString().equals("void")) {
-                    // method returns void:
-                    // tried (method.getReturnType()==Void.class) unsuccessfully
-                    return new EmptyNodeSet();
+                if (actuals == null) {
+                    switch (arity) {
+                        case 0:
+                            result = (Object)binding.handle.invokeExact();
+                            break;
+                        case 1:
+                            result = (Object)binding.handle.invokeExact(a0);
+                            break;
+                        case 2:
+                            result = (Object)binding.handle.invokeExact(a0, a1);
+                            break;
+                        case 3:
+                            result = (Object)binding.handle.invokeExact(a0, a1, a2);
+                            break;
+                        default:
+                            result = (Object)binding.handle.invokeExact(a0, a1, a2, a3);
+                    }
+                } else {
+                    result = binding.handle.invokeWithArguments(actuals);
                 }
-                return result;
-
-            } catch (IllegalAccessException err1) {
-                throw new XPathException ("Method access is illegal", err1);
-            } catch (IllegalArgumentException err2) {
-                throw new XPathException ("Argument is of wrong type", err2);
+            } catch (XPathException err) {
+                throw err;
+            } catch (Error err) {
+                throw err;
+            } catch (Throwable err) {
+                throw wrapException(err, context);
+            }
+        } else {
+            try {
+                result = invokeReflectively(binding, actuals);
             } catch (InvocationTargetException err3) {
                 Throwable ex = err3.getTargetException();
                 if (ex instanceof XPathException) {
                     throw (XPathException)ex;
-                } else {
-                	if (context.getController().isTracing()) {
-                		err3.getTargetException().printStackTrace();
-                	}
-                    throw new XPathException ("Exception in extension function " +
-                                            err3.getTargetException().toString());
                 }
+                throw wrapException(ex, context);
+            } catch (IllegalAccessException err1) {
+                throw new XPathException ("Method access is illegal", err1);
+            } catch (InstantiationException err0) {
+                throw new XPathException ("Cannot instantiate class", err0);
+            } catch (IllegalArgumentException err2) {
+                throw new XPathException ("Argument is of wrong type", err2);
             }
         }
+
+        if (context.getException() != null) {
+            throw context.getException();
+        }
+        if (binding.returnsVoid) {
+            return new EmptyNodeSet();
+        }
+        return result;
+    }
+
+    /**
+    * Call the method using the reflection API, in the case where a method handle
+    * could not be obtained
+    */
+
+    private Object invokeReflectively(Binding binding, Object[] actuals)
+    throws InvocationTargetException, IllegalAccessException, InstantiationException {
+        if (binding.method instanceof Constructor) {
+            return ((Constructor)binding.method).newInstance(actuals);
+        }
+        Object theInstance = null;
+        Object[] params = actuals;
+        if (!binding.isStatic) {
+            theInstance = actuals[0];
+            params = new Object[actuals.length - 1];
+            System.arraycopy(actuals, 1, params, 0, params.length);
+        }
+        return ((Method)binding.method).invoke(theInstance, params);
+    }
+
+    private XPathException wrapException(Throwable ex, Context context) {
+    	if (context.getController().isTracing()) {
+    		ex.printStackTrace();
+    	}
+        return new XPathException ("Exception in extension function " + ex.toString());
+    }
+
+    /**
+    * Get the k'th argument to be passed to the method handle. For an instance-level method
+    * this is the instance, followed by the Context if required, followed by the converted
+    * values of the remaining XPath arguments.
+    */
+
+    private Object getActualArgument(Binding binding, int k, Value[] argValues, Context context)
+    throws XPathException {
+        if (!binding.isStatic) {
+            if (k==0) {
+                return getInstance(argValues==null ? argument[0].evaluate(context) : argValues[0]);
+            }
+            k--;
+        }
+        if (binding.usesContext && k==0) {
+            context.setEscaped();       // the method might keep a reference to it
+            return context;
+        }
+        int a = k - (binding.usesContext ? 1 : 0) + (binding.isStatic ? 0 : 1);
+        Class required = binding.parameterTypes[k];
+        if (argValues != null) {
+            return argValues[a].convertToJava(required);
+        }
+        switch (binding.converters[a]) {
+            case Binding.CONVERT_NUMBER:
+                return new Double(argument[a].evaluateAsNumber(context));
+            case Binding.CONVERT_BOOLEAN:
+                return Boolean.valueOf(argument[a].evaluateAsBoolean(context));
+            case Binding.CONVERT_STRING:
+                return argument[a].evaluateAsString(context);
+            case Binding.CONVERT_ENUMERATION:
+                return argument[a].enumerate(context, false);
+            default:
+                return argument[a].evaluate(context).convertToJava(required);
+        }
+    }
+
+    /**
+    * Get the object instance on which an instance-level method is to be invoked
+    */
+
+    private Object getInstance(Value arg0) throws XPathException {
+        if (arg0 instanceof ObjectValue) {
+            // TODO: check it's the right type for this method
+            return ((ObjectValue)arg0).getObject();
+        } else if (theClass==String.class) {
+            return arg0.asString();
+        } else if (theClass==Boolean.class) {
+            return new Boolean(arg0.asBoolean());
+        } else if (theClass==Double.class) {
+            return new Double(arg0.asNumber());
+        } else {
+            throw new XPathException("First argument is not an object instance");
+        }
     }
 
     /**
@@ -628,7 +786,7 @@ public class FunctionProxy extends Function {
             return new StringValue((String)result);
 
         } else if (result instanceof Boolean) {
-            return new BooleanValue(((Boolean)result).booleanValue());
+            return BooleanValue.get(((Boolean)result).booleanValue());
 
         } else if (result instanceof Double) {
             return new NumericValue(((Double)result).doubleValue());
@@ -703,7 +861,8 @@ public class FunctionProxy extends Function {
         }
         int firstParam = 0;
 
-        if (params[0] == Context.class || params[0] == XSLTContext.class) {
+        if (params.length > 0 &&
+                (params[0] == Context.class || params[0] == XSLTContext.class)) {
             firstParam = 1;
         }
 
@@ -727,6 +886,84 @@ public class FunctionProxy extends Function {
         }
     }
 
+
+    /**
+    * A Binding represents a method or constructor chosen for a call, together with a
+    * MethodHandle that accepts and returns Objects. Calling through the handle avoids the
+    * cost of reflective dispatch and, for up to four parameters, of allocating a parameter
+    * array.
+    */
+
+    private static final class Binding {
+
+        static final int CONVERT_GENERIC = 0;
+        static final int CONVERT_NUMBER = 1;
+        static final int CONVERT_BOOLEAN = 2;
+        static final int CONVERT_STRING = 3;
+        static final int CONVERT_ENUMERATION = 4;
+
+        Object method;              // Method or Constructor
+        Class[] parameterTypes;
+        MethodHandle handle;        // null if only reflective access is possible
+        int arity;                  // number of parameters of the handle
+        boolean isStatic;
+        boolean usesContext;
+        boolean returnsVoid;
+        Class[] key;                // classes of the arguments the method was chosen for
+        int[] converters;           // how to evaluate each argument, when chosen statically
+
+        /**
+        * Test whether this binding was chosen for arguments of the same classes as those supplied
+        */
+
+        boolean matches(Value[] argValues) {
+            if (key == null || key.length != argValues.length) {
+                return false;
+            }
+            for (int a=0; a<argValues.length; a++) {
+                if (key[a] != keyClass(argValues[a])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+        * Get the class that determines the choice of method for a given argument value. For
+        * an external object this is the class of the wrapped object.
+        */
+
+        static Class keyClass(Value val) {
+            if (val instanceof ObjectValue) {
+                Object obj = ((ObjectValue)val).getObject();
+                return (obj==null ? Void.TYPE : obj.getClass());
+            }
+            return val.getClass();
+        }
+
+        /**
+        * Decide how an argument of a given static type can be converted directly to the
+        * required parameter type, without first constructing a Value
+        */
+
+        static int converterFor(Class required, int dataType) {
+            if ((required==double.class || required==Double.class) && dataType==Value.NUMBER) {
+                return CONVERT_NUMBER;
+            }
+            if ((required==boolean.class || required==Boolean.class) && dataType==Value.BOOLEAN) {
+                return CONVERT_BOOLEAN;
+            }
+            if (required==String.class && (dataType==Value.STRING || dataType==Value.NUMBER ||
+                                           dataType==Value.BOOLEAN || dataType==Value.NODESET)) {
+                return CONVERT_STRING;
+            }
+            if (required==NodeEnumeration.class && dataType==Value.NODESET) {
+                return CONVERT_ENUMERATION;
+            }
+            return CONVERT_GENERIC;
+        }
+    }
+
 }
 
 //
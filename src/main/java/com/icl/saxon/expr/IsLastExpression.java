@@ -28,7 +28,7 @@ public final class IsLastExpression extends Expression {
     }
 
     public Value evaluate(Context c) throws XPathException {
-        return new BooleanValue(evaluateAsBoolean(c));
+        return BooleanValue.get(evaluateAsBoolean(c));
     }
 
     public boolean evaluateAsBoolean(Context c) throws XPathException {
@@ -63,7 +63,7 @@ public final class IsLastExpression extends Expression {
 
     public Expression reduce(int dependencies, Context context) throws XPathException {
         if (((Context.LAST | Context.POSITION) & dependencies) != 0 ) {
-            return new BooleanValue(context.isAtLast());
+            return BooleanValue.get(context.isAtLast());
         } else {
             return this;
         }
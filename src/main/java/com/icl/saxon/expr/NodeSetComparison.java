@@ -37,7 +37,7 @@ public class NodeSetComparison extends Expression {
     */
 
     public Value evaluate(Context c) throws XPathException {
-        return new BooleanValue(evaluateAsBoolean(c));
+        return BooleanValue.get(evaluateAsBoolean(c));
     }
 
     /**
@@ -54,7 +54,7 @@ public class NodeSetComparison extends Expression {
                     double n1 = value.asNumber();
                     while (enm.hasMoreElements()) {
                         NodeInfo node = enm.nextElement();
-                        if (Value.stringToNumber(node.getStringValue()) == n1) {
+                        if (Value.nodeToNumber(node) == n1) {
                             return true;
                         }
                     }
@@ -63,7 +63,7 @@ public class NodeSetComparison extends Expression {
                     String s1 = value.asString();
                     while (enm.hasMoreElements()) {
                         NodeInfo node = enm.nextElement();
-                        if (node.getStringValue().equals(s1)) {
+                        if (StringValue.contentEquals(Value.nodeToCharSequence(node), s1)) {
                             return true;
                         }
                     }
@@ -75,7 +75,7 @@ public class NodeSetComparison extends Expression {
                     double n2 = value.asNumber();
                     while (enm.hasMoreElements()) {
                         NodeInfo node = enm.nextElement();
-                        if (Value.stringToNumber(node.getStringValue()) != n2) {
+                        if (Value.nodeToNumber(node) != n2) {
                             return true;
                         }
                     }
@@ -84,7 +84,7 @@ public class NodeSetComparison extends Expression {
                     String s2 = value.asString();
                     while (enm.hasMoreElements()) {
                         NodeInfo node = enm.nextElement();
-                        if (!node.getStringValue().equals(s2)) {
+                        if (!StringValue.contentEquals(Value.nodeToCharSequence(node), s2)) {
                             return true;
                         }
                     }
@@ -95,7 +95,7 @@ public class NodeSetComparison extends Expression {
                 double n1 = value.asNumber();
                 while (enm.hasMoreElements()) {
                     NodeInfo node = enm.nextElement();
-                    if (Value.stringToNumber(node.getStringValue()) <= n1) {
+                    if (Value.nodeToNumber(node) <= n1) {
                         return true;
                     }
                 }
@@ -105,7 +105,7 @@ public class NodeSetComparison extends Expression {
                 double n2 = value.asNumber();
                 while (enm.hasMoreElements()) {
                     NodeInfo node = enm.nextElement();
-                    if (Value.stringToNumber(node.getStringValue()) < n2) {
+                    if (Value.nodeToNumber(node) < n2) {
                         return true;
                     }
                 }
@@ -115,7 +115,7 @@ public class NodeSetComparison extends Expression {
                 double n3 = value.asNumber();
                 while (enm.hasMoreElements()) {
                     NodeInfo node = enm.nextElement();
-                    if (Value.stringToNumber(node.getStringValue()) >= n3) {
+                    if (Value.nodeToNumber(node) >= n3) {
                         return true;
                     }
                 }
@@ -125,7 +125,7 @@ public class NodeSetComparison extends Expression {
                 double n4 = value.asNumber();
                 while (enm.hasMoreElements()) {
                     NodeInfo node = enm.nextElement();
-                    if (Value.stringToNumber(node.getStringValue()) > n4) {
+                    if (Value.nodeToNumber(node) > n4) {
                         return true;
                     }
                 }
@@ -184,7 +184,7 @@ public class NodeSetComparison extends Expression {
                 e.setStaticContext(getStaticContext());
                 return e.simplify();
             } else if (e instanceof NodeSetValue) {
-                return new BooleanValue(((NodeSetValue)e).compare(operator, value));
+                return BooleanValue.get(((NodeSetValue)e).compare(operator, value));
             } else {
                 throw new XPathException("Failed to reduce NodeSetComparison: returned " + e.getClass());
             }
@@ -95,6 +95,19 @@ public abstract class NodeSetExpression extends Expression {
         return e.getStringValue();
     }
 
+    /**
+    * Evaluate as a sequence of characters. Returns the string value of the first node
+    * selected by the NodeSetExpression, read in place where the tree allows it
+    * @param context The context in which the expression is to be evaluated
+    * @return the string value of the first node, or an empty string if there is none
+    */
+
+    public CharSequence evaluateAsCharSequence(Context context) throws XPathException {
+        NodeInfo e = selectFirst(context);
+        if (e==null) return "";
+        return Value.nodeToCharSequence(e);
+    }
+
     /**
     * Evaluate an expression as a String and write the result to the
     * specified outputter.<br>
@@ -120,6 +133,20 @@ public abstract class NodeSetExpression extends Expression {
         return enumerate(context, false).hasMoreElements();
     }
 
+    /**
+    * Evaluate as a number. Returns the numeric value of the first node
+    * selected by the NodeSetExpression, without first constructing a node-set value
+    * @param context The context in which the expression is to be evaluated
+    * @return the string value of the first node converted to a number, or NaN
+    * if there are no nodes selected
+    */
+
+    public double evaluateAsNumber(Context context) throws XPathException {
+        NodeInfo e = selectFirst(context);
+        if (e==null) return Double.NaN;
+        return Value.nodeToNumber(e);
+    }
+
     /**
     * Evaluate an expression as a NodeSet.
     * @param context The context in which the expression is to be evaluated
@@ -185,7 +185,7 @@ public final class NodeSetExtent extends NodeSetValue
     * make sure there are no duplicates.
     */
 
-    public int getCount() {
+    public synchronized int getCount() {
         sort();
         return length;
     }
@@ -195,10 +195,12 @@ public final class NodeSetExtent extends NodeSetValue
     * This does nothing if the nodes are already known to be sorted; to force a sort,
     * call setSorted(false)
     * @return the same NodeSetValue, after sorting. (The reason for returning this is that
-    * it makes life easier for the XSL compiler).
+    * it makes life easier for the XSL compiler).<br>
+    * The nodes are sorted in a new array, so that enumerations already in progress (perhaps
+    * on other threads, if the node-set is the value of a global variable) are not disturbed.
     */
 
-    public NodeSetValue sort() {
+    public synchronized NodeSetValue sort() {
         if (length<2) sorted=true;
         if (sorted) return this;
 
@@ -213,8 +215,11 @@ public final class NodeSetExtent extends NodeSetValue
             reverseSorted = false;
 
         } else {
-            // sort the array
+            // sort a copy of the array
 
+            NodeInfo[] array = new NodeInfo[length];
+            System.arraycopy(value, 0, array, 0, length);
+            value = array;
             QuickSort.sort(this, 0, length-1);
 
             // need to eliminate duplicate nodes. Note that we cannot compare the node
@@ -240,7 +245,7 @@ public final class NodeSetExtent extends NodeSetValue
     * @return the first node, or null if the nodeset is empty
     */
 
-    public NodeInfo getFirst() {
+    public synchronized NodeInfo getFirst() {
         if (length==0) return null;
         if (sorted) return value[0];
 
@@ -269,7 +274,7 @@ public final class NodeSetExtent extends NodeSetValue
     * Return an enumeration of this nodeset value.
     */
 
-    public NodeEnumeration enumerate() {
+    public synchronized NodeEnumeration enumerate() {
         return new NodeSetValueEnumeration();
     }
 
@@ -287,7 +292,7 @@ public final class NodeSetExtent extends NodeSetValue
     * Return the n'th item in the list (DOM method)
     */
 
-    public Node item(int index) {
+    public synchronized Node item(int index) {
         sort();
         if (length>index && (value[index] instanceof Node)) {
             return (Node)(value[index]);
@@ -316,12 +321,17 @@ public final class NodeSetExtent extends NodeSetValue
     }
 
     /**
-    * Inner class NodeSetValueEnumeration
+    * Inner class NodeSetValueEnumeration. This works on a snapshot of the node-set as it
+    * was when the enumeration was created.
     */
 
     private class NodeSetValueEnumeration implements AxisEnumeration, LastPositionFinder {
 
         int index=0;
+        NodeInfo[] nodes = value;
+        int size = length;
+        boolean isSorted = sorted;
+        boolean isReverseSorted = reverseSorted;
 
         public NodeSetValueEnumeration() {
             index = 0;
@@ -330,20 +340,20 @@ public final class NodeSetExtent extends NodeSetValue
 
         public boolean hasMoreElements() {
             //System.err.println("NSV hasMoreElements?: " + index + " of " + length);
-            return index<length;
+            return index<size;
         }
 
         public NodeInfo nextElement() {
             //System.err.println("NSV enumeration: " + index + " of " + length);
-            return value[index++];
+            return nodes[index++];
         }
 
         public boolean isSorted() {
-            return sorted;
+            return isSorted;
         }
 
         public boolean isReverseSorted() {
-            return reverseSorted;
+            return isReverseSorted;
         }
 
         public boolean isPeer() {
@@ -351,7 +361,7 @@ public final class NodeSetExtent extends NodeSetValue
         }
 
         public int getLastPosition() {
-            return length;
+            return size;
         }
     }
 
@@ -17,6 +17,9 @@ public class NodeSetIntent extends NodeSetValue {
     private boolean sorted = false;
     private int useCount = 0;
 
+    // the largest estimated number of nodes held in memory on first use
+    private static final int SMALL = 100;
+
     /**
     * Construct a node-set containing all the nodes in a NodeEnumeration
     */
@@ -104,7 +107,7 @@ public class NodeSetIntent extends NodeSetValue {
     * make sure there are no duplicates.
     */
 
-    public int getCount() throws XPathException {
+    public synchronized int getCount() throws XPathException {
         if (extent == null) {
             NodeEnumeration enumeration = expression.enumerate(makeContext(), false);
             if (enumeration instanceof LastPositionFinder && enumeration.isSorted()) {
@@ -115,7 +118,7 @@ public class NodeSetIntent extends NodeSetValue {
         return extent.getCount();
     }
 
-    private void fix() throws XPathException {
+    private synchronized void fix() throws XPathException {
         if (extent == null) {
             NodeEnumeration enumeration = expression.enumerate(makeContext(), false);
             extent = new NodeSetExtent(enumeration, controller);
@@ -129,7 +132,7 @@ public class NodeSetIntent extends NodeSetValue {
     * @return the same NodeSetValue, after sorting.
     */
 
-    public NodeSetValue sort() throws XPathException {
+    public synchronized NodeSetValue sort() throws XPathException {
         if (sorted) return this;
         fix();
         return extent.sort();
@@ -140,7 +143,7 @@ public class NodeSetIntent extends NodeSetValue {
     * @return the first node
     */
 
-    public NodeInfo getFirst() throws XPathException {
+    public synchronized NodeInfo getFirst() throws XPathException {
         if (extent!=null) return extent.getFirst();
 
         NodeEnumeration enumeration = expression.enumerate(makeContext(), false);
@@ -178,14 +181,16 @@ public class NodeSetIntent extends NodeSetValue {
     * Return an enumeration of this nodeset value.
     */
 
-    public NodeEnumeration enumerate() throws XPathException {
+    public synchronized NodeEnumeration enumerate() throws XPathException {
         if (extent!=null) {
             return extent.enumerate();
         } else {
             // arbitrarily, we decide that the third time the expression is used,
             // we will allocate it some memory for faster access on future occasions.
+            // If the document's statistics show that it selects only a few nodes, this
+            // is done the first time, since holding them costs little.
             useCount++;
-            if (useCount < 3) {
+            if (useCount < 3 && !isSmall()) {
                 return expression.enumerate(makeContext(), false);
             } else {
                 fix();
@@ -194,6 +199,19 @@ public class NodeSetIntent extends NodeSetValue {
         }
     }
 
+    /**
+    * Determine whether the expression is expected to select few enough nodes that they
+    * should be held in memory as soon as they are first used
+    */
+
+    private boolean isSmall() throws XPathException {
+        if (useCount==1 && expression instanceof PathExpression) {
+            int estimate = ((PathExpression)expression).estimateCount(makeContext());
+            return (estimate >= 0 && estimate <= SMALL);
+        }
+        return false;
+    }
+
 }
 
 //
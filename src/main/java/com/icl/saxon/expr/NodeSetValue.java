@@ -97,7 +97,18 @@ public abstract class NodeSetValue extends Value {
     */
 
     public double asNumber() throws XPathException {
-        return (new StringValue(asString())).asNumber();
+        return Value.stringToNumber(asString());
+    }
+
+    /**
+    * Evaluate as a sequence of characters.
+    * @return the string value of the first node in the node-set, read in place where the
+    * tree allows it, or an empty string if there is no first node
+    */
+
+    public CharSequence evaluateAsCharSequence(Context context) throws XPathException {
+        NodeInfo first = getFirst();
+        return (first==null ? "" : Value.nodeToCharSequence(first));
     }
 
     /**
@@ -179,7 +190,7 @@ public abstract class NodeSetValue extends Value {
             NodeEnumeration e1 = this.enumerate();
             while (e1.hasMoreElements()) {
                 NodeInfo node = e1.nextElement();
-                if (Value.stringToNumber(node.getStringValue())==other.asNumber()) return true;
+                if (Value.nodeToNumber(node)==other.asNumber()) return true;
             }
             return false;
 
@@ -188,7 +199,7 @@ public abstract class NodeSetValue extends Value {
                 NodeEnumeration e1 = this.enumerate();
                 while (e1.hasMoreElements()) {
                     NodeInfo node = e1.nextElement();
-                    if (node.getStringValue().equals(other.asString())) return true;
+                    if (StringValue.contentEquals(Value.nodeToCharSequence(node), other.asString())) return true;
                 }
                 return false;
             } else {
@@ -242,7 +253,7 @@ public abstract class NodeSetValue extends Value {
             NodeEnumeration e1 = this.enumerate();
             while (e1.hasMoreElements()) {
                 NodeInfo node = e1.nextElement();
-                if (Value.stringToNumber(node.getStringValue())!=other.asNumber()) return true;
+                if (Value.nodeToNumber(node)!=other.asNumber()) return true;
             }
             return false;
 
@@ -250,7 +261,7 @@ public abstract class NodeSetValue extends Value {
             NodeEnumeration e1 = this.enumerate();
             while (e1.hasMoreElements()) {
                 NodeInfo node = e1.nextElement();
-                if (!(node.getStringValue().equals(other.asString()))) return true;
+                if (!StringValue.contentEquals(Value.nodeToCharSequence(node), other.asString())) return true;
             }
             return false;
 
@@ -296,7 +307,7 @@ public abstract class NodeSetValue extends Value {
 
             NodeEnumeration e1 = enumerate();
             while (e1.hasMoreElements()) {
-                double val = Value.stringToNumber(e1.nextElement().getStringValue());
+                double val = Value.nodeToNumber(e1.nextElement());
                 if (val<thismin) thismin = val;
                 if (val>thismax) thismax = val;
                 thisIsEmpty = false;
@@ -312,7 +323,7 @@ public abstract class NodeSetValue extends Value {
 
             NodeEnumeration e2 = ((NodeSetValue)other).enumerate();
             while (e2.hasMoreElements()) {
-                double val = Value.stringToNumber(e2.nextElement().getStringValue());
+                double val = Value.nodeToNumber(e2.nextElement());
                 if (val<othermin) othermin = val;
                 if (val>othermax) othermax = val;
                 otherIsEmpty = false;
@@ -339,15 +350,15 @@ public abstract class NodeSetValue extends Value {
                 while (e1.hasMoreElements()) {
                     NodeInfo node = e1.nextElement();
                     if (numericCompare(operator,
-                                 Value.stringToNumber(node.getStringValue()),
+                                 Value.nodeToNumber(node),
                                  other.asNumber()))
                         return true;
                 }
                 return false;
             } else if (other instanceof BooleanValue) {
                 return numericCompare(operator,
-                                    new BooleanValue(this.asBoolean()).asNumber(),
-                                    new BooleanValue(other.asBoolean()).asNumber());
+                                    BooleanValue.get(this.asBoolean()).asNumber(),
+                                    BooleanValue.get(other.asBoolean()).asNumber());
             } else {
                 throw new InternalSaxonError("Unknown data type in a relational expression");
             }
@@ -11,6 +11,32 @@ import java.text.*;
 public final class NumericValue extends Value {
     private double value;
 
+    private static final int MIN_CACHED = -128;
+    private static final int MAX_CACHED = 1023;
+    private static final NumericValue[] smallIntegers =
+                        new NumericValue[MAX_CACHED - MIN_CACHED + 1];
+    static {
+        for (int i=MIN_CACHED; i<=MAX_CACHED; i++) {
+            smallIntegers[i - MIN_CACHED] = new NumericValue((double)i);
+        }
+    }
+
+    /**
+    * Factory method: get a NumericValue. Small integers (the usual results of count(),
+    * position(), last() and string-length()) are taken from a cache of shared instances,
+    * which is possible because NumericValues are immutable.
+    * @param value the required value
+    */
+
+    public static NumericValue get(double value) {
+        int i = (int)value;
+        if (i == value && i >= MIN_CACHED && i <= MAX_CACHED && (i != 0 || 1/value > 0)) {
+            // the last test excludes negative zero
+            return smallIntegers[i - MIN_CACHED];
+        }
+        return new NumericValue(value);
+    }
+
     /**
     * Constructor supplying a double
     * @value the value of the NumericValue
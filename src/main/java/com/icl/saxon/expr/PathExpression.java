@@ -1,10 +1,15 @@
 package com.icl.saxon.expr;
 import com.icl.saxon.Context;
+import com.icl.saxon.Controller;
+import com.icl.saxon.om.AbstractNode;
 import com.icl.saxon.om.Axis;
+import com.icl.saxon.om.AxisEnumeration;
+import com.icl.saxon.om.DocumentStatistics;
 import com.icl.saxon.om.NodeInfo;
 import com.icl.saxon.om.NodeEnumeration;
 import com.icl.saxon.pattern.AnyNodeTest;
 import com.icl.saxon.pattern.NameTest;
+import com.icl.saxon.pattern.NodeTest;
 import com.icl.saxon.sort.NodeOrderComparer;
 import com.icl.saxon.sort.LocalOrderComparer;
 
@@ -21,6 +26,18 @@ public class PathExpression extends NodeSetExpression {
     private Step step;
     int dependencies = -1;
 
+    // For a path such as a//b/c, //p/a, //a[@x] or //a[@id='x'], made up of child and
+    // descendant steps from a single node, each selecting elements by name with only
+    // attribute predicates: the expression giving the node, and for each step the axis, the
+    // element name, the attribute names and the attribute values (null if any value will do).
+    // Set by simplify() if the path has this form, otherwise joinStart is null.
+    private Expression joinStart = null;
+    private byte[] joinAxes;
+    private int[] joinNames;
+    private int[][] joinAttributes;
+    private String[][] joinValues;
+    private boolean explained = false;
+
     /**
     * Constructor
     * @param start A node-set expression denoting the absolute or relative set of nodes from which the
@@ -34,6 +51,22 @@ public class PathExpression extends NodeSetExpression {
         this.step = step;
     }
 
+    /**
+    * Get the start expression
+    */
+
+    Expression getStart() {
+        return start;
+    }
+
+    /**
+    * Get the step applied to the nodes selected by the start expression
+    */
+
+    Step getStep() {
+        return step;
+    }
+
     /**
     * Simplify an expression
     * @return the simplified expression
@@ -105,15 +138,167 @@ public class PathExpression extends NodeSetExpression {
             //
             //} else {
 
-                return new PathExpression(
+                PathExpression path = new PathExpression(
                     ((PathExpression)start).start,
                     new Step(Axis.DESCENDANT, step.getNodeTest()));
+                path.planJoin();
+                return path;
             //}
         }
 
+        planJoin();
         return this;
     }
 
+    /**
+    * Determine whether the path is made up of child and descendant steps from a single node
+    * (such as the root or the context node), each selecting elements by name and having no
+    * predicates other than tests for the existence of attributes or for their being equal to
+    * a string. If so, the tree may be able to evaluate the whole path a set of nodes at a
+    * time, rather than one node at a time. This is done only when it avoids a sort (because
+    * a descendant step is followed by another step) or when there are attribute predicates,
+    * which can be evaluated using an index.
+    */
+
+    private void planJoin() {
+
+        // work back from the last step to the start of the path
+
+        byte[] axes = new byte[4];
+        int[] names = new int[4];
+        int[][] attributes = new int[4][];
+        String[][] values = new String[4][];
+        int steps = 0;
+        boolean useful = false;
+        Expression exp = this;
+
+        while (!(exp instanceof SingletonExpression || exp instanceof SingletonNodeSet)) {
+            byte axis;
+            NodeTest test;
+            int[] atts = new int[0];
+            String[] vals = new String[0];
+            if (exp instanceof PathExpression) {
+                Step s = ((PathExpression)exp).step;
+                axis = s.getAxis();
+                test = s.getNodeTest();
+                Expression[] filters = s.getFilters();
+                atts = new int[s.getNumberOfFilters()];
+                vals = new String[atts.length];
+                for (int f=0; f<atts.length; f++) {
+                    Expression filter = filters[f];
+                    if (filter instanceof SingletonComparison &&
+                            ((SingletonComparison)filter).operator==Tokenizer.EQUALS &&
+                            ((SingletonComparison)filter).value instanceof StringValue) {
+                        vals[f] = ((StringValue)((SingletonComparison)filter).value).asString();
+                        filter = ((SingletonComparison)filter).node;
+                    }
+                    if (!(filter instanceof AttributeReference) ||
+                            ((AttributeReference)filter).isBound()) {
+                        return;
+                    }
+                    atts[f] = ((AttributeReference)filter).getFingerprint();
+                    useful = true;
+                }
+                exp = ((PathExpression)exp).start;
+
+                // a//b comes from the parser as a/descendant-or-self::node()/child::b
+                if (axis==Axis.CHILD) {
+                    Expression origin = getDescendantOrSelfOrigin(exp);
+                    if (origin!=null) {
+                        axis = Axis.DESCENDANT;
+                        exp = origin;
+                    }
+                }
+            } else if (exp instanceof AxisExpression) {
+                axis = ((AxisExpression)exp).getAxis();
+                test = ((AxisExpression)exp).getNodeTest();
+                exp = makeOrigin(((AxisExpression)exp).getContextNode());
+            } else {
+                return;
+            }
+            if (!(axis==Axis.CHILD || axis==Axis.DESCENDANT) ||
+                    !(test instanceof NameTest && test.getNodeType()==NodeInfo.ELEMENT)) {
+                return;
+            }
+            if (steps>0 && axis==Axis.DESCENDANT) {
+                useful = true;
+            }
+            if (steps==axes.length) {
+                byte[] a2 = new byte[steps*2];
+                System.arraycopy(axes, 0, a2, 0, steps);
+                axes = a2;
+                int[] n2 = new int[steps*2];
+                System.arraycopy(names, 0, n2, 0, steps);
+                names = n2;
+                int[][] t2 = new int[steps*2][];
+                System.arraycopy(attributes, 0, t2, 0, steps);
+                attributes = t2;
+                String[][] v2 = new String[steps*2][];
+                System.arraycopy(values, 0, v2, 0, steps);
+                values = v2;
+            }
+            axes[steps] = axis;
+            names[steps] = test.getFingerprint();
+            attributes[steps] = atts;
+            values[steps] = vals;
+            steps++;
+        }
+
+        if (!useful || (exp instanceof SingletonNodeSet &&
+                            !((SingletonNodeSet)exp).isGeneralUseAllowed())) {
+            return;
+        }
+
+        // the steps were found in reverse order
+
+        joinAxes = new byte[steps];
+        joinNames = new int[steps];
+        joinAttributes = new int[steps][];
+        joinValues = new String[steps][];
+        for (int i=0; i<steps; i++) {
+            joinAxes[i] = axes[steps-1-i];
+            joinNames[i] = names[steps-1-i];
+            joinAttributes[i] = attributes[steps-1-i];
+            joinValues[i] = values[steps-1-i];
+        }
+        joinStart = exp;
+    }
+
+    /**
+    * If an expression selects the descendant-or-self nodes of some node, get an expression for
+    * that node; otherwise return null
+    */
+
+    private static Expression getDescendantOrSelfOrigin(Expression exp) {
+        if (exp instanceof PathExpression) {
+            Step s = ((PathExpression)exp).step;
+            if (s.getAxis()==Axis.DESCENDANT_OR_SELF && s.getNumberOfFilters()==0 &&
+                    s.getNodeTest() instanceof AnyNodeTest) {
+                return ((PathExpression)exp).start;
+            }
+        } else if (exp instanceof AxisExpression) {
+            if (((AxisExpression)exp).getAxis()==Axis.DESCENDANT_OR_SELF &&
+                    ((AxisExpression)exp).getNodeTest() instanceof AnyNodeTest) {
+                return makeOrigin(((AxisExpression)exp).getContextNode());
+            }
+        }
+        return null;
+    }
+
+    /**
+    * Make an expression for the node at which an AxisExpression starts
+    * @param node the node to which the AxisExpression is bound, or null if it uses the
+    * context node
+    */
+
+    private static Expression makeOrigin(NodeInfo node) {
+        if (node==null) {
+            return new ContextNodeExpression();
+        } else {
+            return new SingletonNodeSet(node);
+        }
+    }
+
     /**
     * Determine which aspects of the context the expression depends on. The result is
     * a bitwise-or'ed value composed from constants such as Context.VARIABLES and
@@ -199,6 +384,28 @@ public class PathExpression extends NodeSetExpression {
     */
 
     public NodeEnumeration enumerate(Context context, boolean sort) throws XPathException {
+        // if the path is made up of simple steps from a single node, the tree may be able to
+        // evaluate it a set of nodes at a time
+
+        if (joinStart!=null) {
+            NodeInfo origin = getJoinOrigin(context);
+            if (origin instanceof AbstractNode) {
+                Controller controller = context.getController();
+                StringBuffer explain = null;
+                if (!explained && controller!=null && controller.isExplaining()) {
+                    explain = new StringBuffer();
+                }
+                AxisEnumeration enm = ((AbstractNode)origin).selectElements(
+                                        joinAxes, joinNames, joinAttributes, joinValues, explain);
+                if (enm!=null) {
+                    if (explain!=null) {
+                        explain(((AbstractNode)origin).getDocumentStatistics(), explain);
+                    }
+                    return enm;
+                }
+            }
+        }
+
     	// if the expression references variables, or depends on other aspects of
     	// the XSLT context, then resolve these dependencies now. Also, if the nodes
     	// are all known to be in the context document, then any dependency on the
@@ -238,6 +445,65 @@ public class PathExpression extends NodeSetExpression {
         return enm;
     }
 
+    /**
+    * Get the node at which a path evaluated by selectElements() starts
+    */
+
+    private NodeInfo getJoinOrigin(Context context) throws XPathException {
+        return (joinStart instanceof SingletonExpression ?
+                    ((SingletonExpression)joinStart).getNode(context) :
+                    ((SingletonNodeSet)joinStart).getFirst());
+    }
+
+    /**
+    * Estimate the number of nodes the expression will select, using the statistics collected
+    * when the document was built. This is possible only for a path evaluated by selectElements()
+    * @return the estimate, or -1 if no estimate can be made
+    */
+
+    public int estimateCount(Context context) throws XPathException {
+        if (joinStart==null) {
+            return -1;
+        }
+        NodeInfo origin = getJoinOrigin(context);
+        if (!(origin instanceof AbstractNode)) {
+            return -1;
+        }
+        DocumentStatistics stats = ((AbstractNode)origin).getDocumentStatistics();
+        if (stats==null) {
+            return -1;
+        }
+
+        // the elements selected by the last step, reduced by the most selective attribute test
+        int last = joinNames.length - 1;
+        int estimate = stats.getElementCount(joinNames[last]);
+        for (int a=0; a<joinAttributes[last].length; a++) {
+            int att = joinAttributes[last][a];
+            int count = stats.getAttributeCount(att);
+            if (joinValues[last][a]!=null && count>0) {
+                count = count / stats.getDistinctValues(att);
+            }
+            estimate = Math.min(estimate, count);
+        }
+        return estimate;
+    }
+
+    /**
+    * Report, once, how the path was evaluated by selectElements(). The report is written to
+    * System.err, in the same way as display().
+    */
+
+    private void explain(DocumentStatistics stats, StringBuffer steps) {
+        explained = true;
+        synchronized (System.err) {
+            System.err.println("Plan for path expression:");
+            display(1);
+            System.err.println("Document statistics: " +
+                                (stats==null ? "not collected" : stats.toString()));
+            System.err.print(steps.toString());
+        }
+    }
+
     /**
     * Diagnostic print of expression structure
     */
@@ -38,7 +38,7 @@ class PositionRange extends Expression {
     */
 
     public Value evaluate(Context c) throws XPathException {
-        return new BooleanValue(evaluateAsBoolean(c));
+        return BooleanValue.get(evaluateAsBoolean(c));
     }
 
     /**
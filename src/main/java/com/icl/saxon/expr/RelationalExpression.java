@@ -10,6 +10,13 @@ import com.icl.saxon.functions.*;
 
 final class RelationalExpression extends BinaryExpression {
 
+    // the type to which both operands are converted for comparison, if this can be
+    // decided statically: one of Value.BOOLEAN, Value.NUMBER, or Value.STRING; Value.ANY
+    // if it depends on the run-time values; or NOT_YET_KNOWN.
+
+    private static final int NOT_YET_KNOWN = -2;
+    private int comparisonType = NOT_YET_KNOWN;
+
     /**
     * Default constructor
     */
@@ -112,10 +119,10 @@ final class RelationalExpression extends BinaryExpression {
         		return fn;
         	} else if (operator == Tokenizer.GE) {
         		// rewrite count(x)>=0 as true()
-        		return new BooleanValue(true);
+        		return BooleanValue.get(true);
         	} else {  // operator == Tokenizer.LT
         		// rewrite count(x)<0 as false()
-        		return new BooleanValue(false);
+        		return BooleanValue.get(false);
         	}
         }
 
@@ -156,10 +163,10 @@ final class RelationalExpression extends BinaryExpression {
         		return fn;
         	} else if (operator == Tokenizer.GE) {
         		// rewrite string-length(x)>=0 as true()
-        		return new BooleanValue(true);
+        		return BooleanValue.get(true);
         	} else /* if (operator == Tokenizer.LT) */ {
         		// rewrite string-length(x)<0 as false()
-        		return new BooleanValue(false);
+        		return BooleanValue.get(false);
         	}
         }
 
@@ -220,9 +227,9 @@ final class RelationalExpression extends BinaryExpression {
                 case Tokenizer.LT:
                     return new IsLastExpression(false);
                 case Tokenizer.GT:
-                    return new BooleanValue(false);
+                    return BooleanValue.get(false);
                 case Tokenizer.LE:
-                    return new BooleanValue(true);
+                    return BooleanValue.get(true);
             }
         }
         if ((p1 instanceof Last) && (p2 instanceof Position)) {
@@ -234,9 +241,9 @@ final class RelationalExpression extends BinaryExpression {
                 case Tokenizer.GT:
                     return new IsLastExpression(false);
                 case Tokenizer.LT:
-                    return new BooleanValue(false);
+                    return BooleanValue.get(false);
                 case Tokenizer.GE:
-                    return new BooleanValue(true);
+                    return BooleanValue.get(true);
             }
         }
         return this;
@@ -249,7 +256,7 @@ final class RelationalExpression extends BinaryExpression {
     */
 
     public Value evaluate(Context c) throws XPathException {
-        return new BooleanValue(evaluateAsBoolean(c));
+        return BooleanValue.get(evaluateAsBoolean(c));
     }
 
     /**
@@ -259,9 +266,69 @@ final class RelationalExpression extends BinaryExpression {
     */
 
     public boolean evaluateAsBoolean(Context c) throws XPathException {
-        Value s1 = p1.evaluate(c);
-        Value s2 = p2.evaluate(c);
-        return s1.compare(operator, s2);
+        int type = comparisonType;
+        if (type == NOT_YET_KNOWN) {
+            type = getComparisonType();
+            comparisonType = type;
+        }
+
+        // if neither operand is a node-set, we can compare the primitive values
+        // without constructing intermediate Value objects
+
+        switch (type) {
+            case Value.BOOLEAN:
+                boolean b1 = p1.evaluateAsBoolean(c);
+                boolean b2 = p2.evaluateAsBoolean(c);
+                return (operator==Tokenizer.EQUALS ? b1==b2 : b1!=b2);
+            case Value.NUMBER:
+                double d1 = p1.evaluateAsNumber(c);
+                double d2 = p2.evaluateAsNumber(c);
+                switch (operator) {
+                    case Tokenizer.EQUALS:
+                        return d1 == d2;
+                    case Tokenizer.NE:
+                        return d1 != d2;
+                    default:
+                        return Value.numericCompare(operator, d1, d2);
+                }
+            case Value.STRING:
+                String s1 = p1.evaluateAsString(c);
+                String s2 = p2.evaluateAsString(c);
+                return (operator==Tokenizer.EQUALS ? s1.equals(s2) : !s1.equals(s2));
+            default:
+                Value v1 = p1.evaluate(c);
+                Value v2 = p2.evaluate(c);
+                return v1.compare(operator, v2);
+        }
+    }
+
+    /**
+    * Decide statically how the operands are to be compared, following the rules in
+    * Value.equals() and Value.compare()
+    * @return Value.BOOLEAN, Value.NUMBER, or Value.STRING if both operands have a known
+    * type other than node-set; otherwise Value.ANY
+    */
+
+    private int getComparisonType() {
+        int t1 = p1.getDataType();
+        int t2 = p2.getDataType();
+        if (!isPrimitive(t1) || !isPrimitive(t2)) {
+            return Value.ANY;
+        }
+        if (operator==Tokenizer.EQUALS || operator==Tokenizer.NE) {
+            if (t1==Value.BOOLEAN || t2==Value.BOOLEAN) {
+                return Value.BOOLEAN;
+            }
+            if (t1==Value.NUMBER || t2==Value.NUMBER) {
+                return Value.NUMBER;
+            }
+            return Value.STRING;
+        }
+        return Value.NUMBER;
+    }
+
+    private static boolean isPrimitive(int type) {
+        return type==Value.BOOLEAN || type==Value.NUMBER || type==Value.STRING;
     }
 
     /**
@@ -13,10 +13,16 @@ public class SingletonComparison extends Expression {
     int operator;
     Value value;
 
-    public SingletonComparison(SingletonExpression p1, int op, Value p2) {
+    // the constant operand converted to a string and to a number
+    private String stringValue;
+    private double numericValue;
+
+    public SingletonComparison(SingletonExpression p1, int op, Value p2) throws XPathException {
         node = p1;
         operator = op;
         value = p2;
+        stringValue = p2.asString();
+        numericValue = p2.asNumber();
     }
 
     /**
@@ -35,7 +41,7 @@ public class SingletonComparison extends Expression {
     */
 
     public Value evaluate(Context c) throws XPathException {
-        return new BooleanValue(evaluateAsBoolean(c));
+        return BooleanValue.get(evaluateAsBoolean(c));
     }
 
     /**
@@ -52,34 +58,34 @@ public class SingletonComparison extends Expression {
                             value instanceof TextFragmentValue ) {
                 switch (operator) {
                     case Tokenizer.EQUALS:
-                        return node.evaluateAsString(c).equals(value.asString());
+                        return node.evaluateAsString(c).equals(stringValue);
                     case Tokenizer.NE:
-                        return !node.evaluateAsString(c).equals(value.asString());
+                        return !node.evaluateAsString(c).equals(stringValue);
                     case Tokenizer.LT:
-                        return node.evaluateAsNumber(c) < value.asNumber();
+                        return node.evaluateAsNumber(c) < numericValue;
                     case Tokenizer.LE:
-                        return node.evaluateAsNumber(c) <= value.asNumber();
+                        return node.evaluateAsNumber(c) <= numericValue;
                     case Tokenizer.GT:
-                        return node.evaluateAsNumber(c) > value.asNumber();
+                        return node.evaluateAsNumber(c) > numericValue;
                     case Tokenizer.GE:
-                        return node.evaluateAsNumber(c) >= value.asNumber();
+                        return node.evaluateAsNumber(c) >= numericValue;
                     default:
                         throw new XPathException("Bad operator in singleton comparison");
                 }
             } else if (value instanceof NumericValue) {
                 switch(operator) {
                     case Tokenizer.EQUALS:
-                        return node.evaluateAsNumber(c) == value.asNumber();
+                        return node.evaluateAsNumber(c) == numericValue;
                     case Tokenizer.NE:
-                        return node.evaluateAsNumber(c) != value.asNumber();
+                        return node.evaluateAsNumber(c) != numericValue;
                     case Tokenizer.LT:
-                        return node.evaluateAsNumber(c) < value.asNumber();
+                        return node.evaluateAsNumber(c) < numericValue;
                     case Tokenizer.LE:
-                        return node.evaluateAsNumber(c) <= value.asNumber();
+                        return node.evaluateAsNumber(c) <= numericValue;
                     case Tokenizer.GT:
-                        return node.evaluateAsNumber(c) > value.asNumber();
+                        return node.evaluateAsNumber(c) > numericValue;
                     case Tokenizer.GE:
-                        return node.evaluateAsNumber(c) >= value.asNumber();
+                        return node.evaluateAsNumber(c) >= numericValue;
                     default:
                         throw new XPathException("Bad operator in singleton comparison");
                 }
@@ -131,7 +137,7 @@ public class SingletonComparison extends Expression {
                 e.setStaticContext(getStaticContext());
                 return e.simplify();
             } else if (e instanceof NodeSetValue) {
-                return new BooleanValue(((NodeSetValue)e).compare(operator, value));
+                return BooleanValue.get(((NodeSetValue)e).compare(operator, value));
             } else {
                 throw new XPathException("Failed to reduce SingletonComparison: returned " + e.getClass());
             }
@@ -167,7 +167,7 @@ public class SingletonNodeSet extends NodeSetValue implements NodeList {
         		other instanceof FragmentValue ||
         		other instanceof TextFragmentValue ||
         		other instanceof ObjectValue) {
-            return node.getStringValue().equals(other.asString());
+            return StringValue.contentEquals(Value.nodeToCharSequence(node), other.asString());
 
         } else if (other instanceof NodeSetValue) {
 
@@ -185,7 +185,7 @@ public class SingletonNodeSet extends NodeSetValue implements NodeList {
             }
 
         } else if (other instanceof NumericValue) {
-                 return Value.stringToNumber(node.getStringValue())==other.asNumber();
+                 return Value.nodeToNumber(node)==other.asNumber();
 
         } else if (other instanceof BooleanValue) {
                  return other.asBoolean();
@@ -213,7 +213,7 @@ public class SingletonNodeSet extends NodeSetValue implements NodeList {
         		other instanceof FragmentValue ||
         		other instanceof TextFragmentValue ||
         		other instanceof ObjectValue) {
-            return !node.getStringValue().equals(other.asString());
+            return !StringValue.contentEquals(Value.nodeToCharSequence(node), other.asString());
 
         } else if (other instanceof NodeSetValue) {
 
@@ -230,7 +230,7 @@ public class SingletonNodeSet extends NodeSetValue implements NodeList {
             }
 
         } else if (other instanceof NumericValue) {
-             return Value.stringToNumber(node.getStringValue())!=other.asNumber();
+             return Value.nodeToNumber(node)!=other.asNumber();
 
         } else if (other instanceof BooleanValue) {
              return !other.asBoolean();
@@ -143,7 +143,18 @@ public final class SortKeyEnumeration
             int k = count*recordSize;
             nodeKeys[k] = node;
             for (int n=0; n<sortkeys.length; n++) {
-                nodeKeys[k+n+1] = sortkeys[n].getSortKey().evaluateAsString(context);
+                Expression key = sortkeys[n].getSortKey();
+                if (keyComparers[n].isNumeric()) {
+                    // convert the key to a number once, rather than at every comparison. A
+                    // node-set is converted directly from its first node; other values are
+                    // converted from their string value, as the rules require
+                    double d = (key.getDataType()==Value.NODESET ?
+                                    key.evaluateAsNumber(context) :
+                                    Value.stringToNumber(key.evaluateAsString(context)));
+                    nodeKeys[k+n+1] = new Double(d);
+                } else {
+                    nodeKeys[k+n+1] = key.evaluateAsString(context);
+                }
             }
             count++;
         }
@@ -87,9 +87,127 @@ public final class Step {
             }
 
         }
+        reorderFilters();
         return this;
     }
 
+    /**
+    * Apply cheap filters before expensive ones. A boolean filter that does not depend on the
+    * position of the node selects the same nodes whichever filters have been applied before
+    * it, so within a run of such filters the cheap ones (tests on attributes of the node)
+    * are moved in front of the others, which then have fewer nodes to examine. The order is
+    * otherwise unchanged. Positional filters, and filters that call extension functions,
+    * are never moved, nor moved across.
+    */
+
+    private void reorderFilters() {
+        int i = 0;
+        while (i < numberOfFilters) {
+            int end = i;
+            while (end < numberOfFilters && isReorderable(filters[end])) {
+                end++;
+            }
+            // filters i to end-1 can be applied in any order: move the cheap ones forward
+            int cheap = i;
+            for (int f=i; f<end; f++) {
+                if (isCheap(filters[f])) {
+                    Expression exp = filters[f];
+                    System.arraycopy(filters, cheap, filters, cheap+1, f-cheap);
+                    filters[cheap++] = exp;
+                }
+            }
+            i = Math.max(end, i+1);
+        }
+    }
+
+    /**
+    * Determine whether a filter can be applied in a different position relative to other
+    * filters: that is, whether it is a boolean filter that does not use position() or last(),
+    * and does not call extension functions (which might have side-effects, so must be called
+    * for the nodes and in the order the user wrote)
+    */
+
+    static boolean isReorderable(Expression filter) {
+        int type = filter.getDataType();
+        return type!=Value.NUMBER && type!=Value.ANY &&
+                (filter.getDependencies() & (Context.POSITION | Context.LAST)) == 0 &&
+                !mayCallExtensions(filter);
+    }
+
+    /**
+    * Determine whether evaluating an expression might call an extension function, either
+    * directly or through a stylesheet function. Expressions of kinds not examined here are
+    * assumed to.
+    */
+
+    private static boolean mayCallExtensions(Expression exp) {
+        if (exp instanceof FunctionProxy || exp instanceof StyleSheetFunctionCall) {
+            return true;
+        }
+        if (exp instanceof Function) {
+            Function f = (Function)exp;
+            for (int a=0; a<f.getNumberOfArguments(); a++) {
+                if (mayCallExtensions(f.argument[a])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (exp instanceof BinaryExpression) {
+            return mayCallExtensions(((BinaryExpression)exp).p1) ||
+                    mayCallExtensions(((BinaryExpression)exp).p2);
+        }
+        if (exp instanceof UnionExpression) {
+            return mayCallExtensions(((UnionExpression)exp).p1) ||
+                    mayCallExtensions(((UnionExpression)exp).p2);
+        }
+        if (exp instanceof SingletonComparison) {
+            return mayCallExtensions(((SingletonComparison)exp).node);
+        }
+        if (exp instanceof NodeSetComparison) {
+            return mayCallExtensions(((NodeSetComparison)exp).nodeset);
+        }
+        if (exp instanceof PathExpression) {
+            return mayCallExtensions(((PathExpression)exp).getStart()) ||
+                    ((PathExpression)exp).getStep().mayCallExtensions();
+        }
+        if (exp instanceof FilterExpression) {
+            return mayCallExtensions(((FilterExpression)exp).getBase()) ||
+                    mayCallExtensions(((FilterExpression)exp).getFilter());
+        }
+        return !(exp instanceof Value ||
+                    exp instanceof SingletonExpression ||
+                    exp instanceof AxisExpression ||
+                    exp instanceof VariableReference ||
+                    exp instanceof IsLastExpression ||
+                    exp instanceof PositionRange);
+    }
+
+    /**
+    * Determine whether any filter of this step might call an extension function
+    */
+
+    private boolean mayCallExtensions() {
+        for (int f=0; f<numberOfFilters; f++) {
+            if (mayCallExtensions(filters[f])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+    * Determine whether a filter is cheap to evaluate: a test on the existence or value
+    * of an attribute of the node, such as [@x] or [@x='1']
+    */
+
+    static boolean isCheap(Expression filter) {
+        if (filter instanceof SingletonComparison) {
+            filter = ((SingletonComparison)filter).node;
+        }
+        return filter instanceof AttributeReference;
+    }
+
     /**
     * Enumerate this step.
     * @param node: The node from which we want to make the step
@@ -68,14 +68,78 @@ public final class StringValue extends Value {
     */
 
     public static int getLength(String s) {
+        return getLength((CharSequence)s);
+    }
+
+    /**
+    * Get the length of a sequence of characters, as defined in XPath
+    * @param s The characters whose length is required
+    */
+
+    public static int getLength(CharSequence s) {
         int n = 0;
-        for (int i=0; i<s.length(); i++) {
+        int len = s.length();
+        for (int i=0; i<len; i++) {
             int c = (int)s.charAt(i);
             if (c<55296 || c>56319) n++;    // don't count high surrogates, i.e. D800 to DBFF
         }
         return n;
     }
 
+    /**
+    * Find the first occurrence of a string within a sequence of characters
+    * @param s The characters to be searched
+    * @param sub The string to be found
+    * @return the offset of the first occurrence, or -1 if there is none
+    */
+
+    public static int indexOf(CharSequence s, String sub) {
+        if (s instanceof String) {
+            return ((String)s).indexOf(sub);
+        }
+        int sublen = sub.length();
+        if (sublen==0) {
+            return 0;
+        }
+        char first = sub.charAt(0);
+        int last = s.length() - sublen;
+        for (int i=0; i<=last; i++) {
+            if (s.charAt(i)==first) {
+                int j = 1;
+                while (j<sublen && s.charAt(i+j)==sub.charAt(j)) {
+                    j++;
+                }
+                if (j==sublen) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+    * Test whether a sequence of characters is the same as a string
+    * @param s The characters to be compared
+    * @param str The string to compare them with
+    * @return true if they are the same characters
+    */
+
+    public static boolean contentEquals(CharSequence s, String str) {
+        if (s instanceof String) {
+            return s.equals(str);
+        }
+        int len = str.length();
+        if (s.length()!=len) {
+            return false;
+        }
+        for (int i=0; i<len; i++) {
+            if (s.charAt(i)!=str.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
     * Expand a string containing surrogate pairs into an array of 32-bit characters
     */
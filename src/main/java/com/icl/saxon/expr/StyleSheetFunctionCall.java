@@ -127,9 +127,12 @@ public class StyleSheetFunctionCall extends Function {
     */
 
     public Value evaluate(Context c) throws XPathException {
-        Context context = c.newContext();
+        Context context;
         if (boundController!=null) {
+            context = c.newContext();
             context.setController(boundController);
+        } else {
+            context = c.newReusableContext();
         }
         if (boundContextNode!=null) {
             context.setCurrentNode(boundContextNode);
@@ -151,7 +154,11 @@ public class StyleSheetFunctionCall extends Function {
             ps.put(param, argument[i].evaluate(c));
         }
         try {
-            return function.call(ps, context);
+            Value result = function.call(ps, context);
+            if (boundController==null) {
+                context.releaseContext();
+            }
+            return result;
         } catch (TransformerException err) {
             throw new XPathException(err);
         }
@@ -38,6 +38,14 @@ public final class TextFragmentValue extends SingletonNodeSet  {
         return text;
     }
 
+    /**
+    * Evaluate as a sequence of characters: the text, without building a tree
+    */
+
+    public CharSequence evaluateAsCharSequence(Context context) {
+        return text;
+    }
+
     /**
     * Evaluate an expression as a String and write the result to the
     * specified outputter.<br>
@@ -151,7 +159,7 @@ public final class TextFragmentValue extends SingletonNodeSet  {
     * Get the root (document) node
     */
 
-    public DocumentInfo getRootNode() {
+    public synchronized DocumentInfo getRootNode() {
         if (node!=null) {        // only do it once
             return (DocumentInfo)node;
         }
@@ -1,5 +1,7 @@
 package com.icl.saxon.expr;
 import com.icl.saxon.Context;
+import com.icl.saxon.om.AbstractNode;
+import com.icl.saxon.om.NodeInfo;
 
 /**
 * A value is the result of an expression but it is also an expression in its own right
@@ -28,6 +30,34 @@ public abstract class Value extends Expression {
         }
     }
 
+    /**
+    * Static method to get the numeric value of a node, that is, its string value converted
+    * to a number. The node's own remembered value is used if it has one.
+    * @param node the node whose value is required
+    * @return a double representing the value of the node, or NaN if it is not a number
+    */
+
+    public static double nodeToNumber(NodeInfo node) {
+        if (node instanceof AbstractNode) {
+            return ((AbstractNode)node).getNumericValue();
+        }
+        return stringToNumber(node.getStringValue());
+    }
+
+    /**
+    * Static method to get the string value of a node as a sequence of characters, which
+    * may be read from the tree in place rather than copied into a String
+    * @param node the node whose value is required
+    * @return the string value of the node. This should be used straight away, and not retained.
+    */
+
+    public static CharSequence nodeToCharSequence(NodeInfo node) {
+        if (node instanceof AbstractNode) {
+            return ((AbstractNode)node).getStringValueCS();
+        }
+        return node.getStringValue();
+    }
+
     /**
     * Constants denoting the data types of an expression or value
     */
@@ -171,7 +201,7 @@ public abstract class Value extends Expression {
     }
 
 
-    protected final boolean numericCompare(int operator, double x, double y) {
+    protected static final boolean numericCompare(int operator, double x, double y) {
         switch(operator) {
             case Tokenizer.LT:
                 return x < y;
@@ -112,6 +112,15 @@ public class VariableReference extends Expression {
     }
 
 
+    /**
+    * Get the value of this variable as a sequence of characters. If the value is a node-set,
+    * the string value of its first node may be read in place.
+    */
+
+    public CharSequence evaluateAsCharSequence(Context c) throws XPathException {
+        return evaluate(c).evaluateAsCharSequence(c);
+    }
+
     /**
     * Get the object bound to the variable
     */
@@ -20,7 +20,7 @@ public abstract class Math  {
     public static double max (NodeEnumeration nsv) throws XPathException {
         double max = Double.NEGATIVE_INFINITY;
         while (nsv.hasMoreElements()) {
-            double x = Value.stringToNumber(nsv.nextElement().getStringValue());
+            double x = Value.nodeToNumber(nsv.nextElement());
             if (Double.isNaN(x)) return x;
             if (x>max) max = x;
         }
@@ -35,7 +35,7 @@ public abstract class Math  {
     public static double min (NodeEnumeration nsv) throws XPathException {
         double min = Double.POSITIVE_INFINITY;
         while (nsv.hasMoreElements()) {
-            double x = Value.stringToNumber(nsv.nextElement().getStringValue());
+            double x = Value.nodeToNumber(nsv.nextElement());
             if (Double.isNaN(x)) return x;
             if (x<min) min = x;
         }
@@ -52,7 +52,7 @@ public abstract class Math  {
         Vector highest = new Vector();
         while (nsv.hasMoreElements()) {
             NodeInfo node = nsv.nextElement();
-            double x = Value.stringToNumber(node.getStringValue());
+            double x = Value.nodeToNumber(node);
             if (Double.isNaN(x)) return new EmptyNodeSet();
             if (x==max) {
                 highest.addElement(node);
@@ -76,7 +76,7 @@ public abstract class Math  {
         Vector lowest = new Vector();
         while (nsv.hasMoreElements()) {
             NodeInfo node = nsv.nextElement();
-            double x = Value.stringToNumber(node.getStringValue());
+            double x = Value.nodeToNumber(node);
             if (Double.isNaN(x)) return new EmptyNodeSet();
             if (x==min) {
                 lowest.addElement(node);
@@ -38,7 +38,7 @@ public class BooleanFn extends Function {
             return argument[0];
         }
         if (argument[0] instanceof Value) {
-            return new BooleanValue(((Value)argument[0]).asBoolean());
+            return BooleanValue.get(((Value)argument[0]).asBoolean());
         }
         return this;
     }
@@ -56,7 +56,7 @@ public class BooleanFn extends Function {
     */
 
     public Value evaluate(Context c) throws XPathException {
-        return new BooleanValue(evaluateAsBoolean(c));
+        return BooleanValue.get(evaluateAsBoolean(c));
     }
 
     /**
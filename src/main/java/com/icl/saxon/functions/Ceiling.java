@@ -55,7 +55,7 @@ public class Ceiling extends Function {
     */
 
     public Value evaluate(Context c) throws XPathException {
-        return new NumericValue(evaluateAsNumber(c));
+        return NumericValue.get(evaluateAsNumber(c));
     }
 
     /**
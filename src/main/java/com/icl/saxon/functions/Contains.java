@@ -41,7 +41,7 @@ public class Contains extends Function {
 
         if (argument[1] instanceof Value &&
                  ((Value)argument[1]).asString().equals("")) {
-            return new BooleanValue(true);
+            return BooleanValue.get(true);
         }
 
         return this;
@@ -52,9 +52,9 @@ public class Contains extends Function {
     */
 
     public boolean evaluateAsBoolean(Context c) throws XPathException {
-        String arg0 = argument[0].evaluateAsString(c);
+        CharSequence arg0 = argument[0].evaluateAsCharSequence(c);
         String arg1 = argument[1].evaluateAsString(c);
-        return arg0.indexOf(arg1) >= 0;
+        return StringValue.indexOf(arg0, arg1) >= 0;
     }
 
     /**
@@ -62,7 +62,7 @@ public class Contains extends Function {
     */
 
     public Value evaluate(Context c) throws XPathException {
-        return new BooleanValue(evaluateAsBoolean(c));
+        return BooleanValue.get(evaluateAsBoolean(c));
     }
 
     /**
@@ -1,5 +1,6 @@
 package com.icl.saxon.functions;
 import com.icl.saxon.Context;
+import com.icl.saxon.om.AxisEnumeration;
 import com.icl.saxon.om.NodeEnumeration;
 import com.icl.saxon.expr.*;
 
@@ -43,6 +44,10 @@ public class Count extends Function {
     public double evaluateAsNumber(Context c) throws XPathException {
         int n = 0;
         NodeEnumeration enm = argument[0].enumerate(c, true);
+        if (enm instanceof AxisEnumeration) {
+            // an axis can often count its nodes without enumerating them
+            return (double)((AxisEnumeration)enm).getLastPosition();
+        }
         while (enm.hasMoreElements()) {
             enm.nextElement();
             n++;
@@ -55,7 +60,7 @@ public class Count extends Function {
     */
 
     public Value evaluate(Context c) throws XPathException {
-        return new NumericValue(evaluateAsNumber(c));
+        return NumericValue.get(evaluateAsNumber(c));
     }
 
     /**
@@ -4,6 +4,7 @@ import com.icl.saxon.Controller;
 import com.icl.saxon.expr.*;
 import com.icl.saxon.om.Builder;
 import com.icl.saxon.om.DocumentInfo;
+import com.icl.saxon.om.DocumentPool;
 import com.icl.saxon.om.NodeEnumeration;
 import com.icl.saxon.om.NodeInfo;
 
@@ -188,59 +189,64 @@ public class Document extends Function {
             throw new XPathException("Internal error: no controller available for document() function");
         }
 
-        // see if the document is already loaded
+        // the pool is locked while the document is loaded, so that templates being
+        // instantiated on parallel threads load each document only once
 
+        DocumentPool pool = controller.getDocumentPool();
+        synchronized(pool) {
+            // see if the document is already loaded
 
-        DocumentInfo doc = controller.getDocumentPool().find(documentKey);
-        if (doc!=null) return getFragment(doc, fragmentId);
+            DocumentInfo doc = pool.find(documentKey);
+            if (doc!=null) return getFragment(doc, fragmentId);
 
-        try {
-            // Get a Source from the URIResolver
+            try {
+                // Get a Source from the URIResolver
 
-            URIResolver r = controller.getURIResolver();
-            Source source = r.resolve(href, baseURL);
+                URIResolver r = controller.getURIResolver();
+                Source source = r.resolve(href, baseURL);
 
-            // if a user URI resolver returns null, try the standard one
-            // (Note, the standard URI resolver never returns null)
-            if (source==null) {
-                r = controller.getStandardURIResolver();
-                source = r.resolve(href, baseURL);
-            }
+                // if a user URI resolver returns null, try the standard one
+                // (Note, the standard URI resolver never returns null)
+                if (source==null) {
+                    r = controller.getStandardURIResolver();
+                    source = r.resolve(href, baseURL);
+                }
 
-            DocumentInfo newdoc = null;
-            if (source instanceof DocumentInfo) {
-                newdoc = (DocumentInfo)source;
-            } else {
-                if (source instanceof DOMSource) {
-                    DOMSource ds = (DOMSource)source;
-                    if (ds.getNode() instanceof DocumentInfo) {
-                        // If the URIResolver returns a DocumentInfo, it is
-                        // responsible for doing any stripping of whitespace
-                        newdoc = (DocumentInfo)ds.getNode();
+                DocumentInfo newdoc = null;
+                if (source instanceof DocumentInfo) {
+                    newdoc = (DocumentInfo)source;
+                } else {
+                    if (source instanceof DOMSource) {
+                        DOMSource ds = (DOMSource)source;
+                        if (ds.getNode() instanceof DocumentInfo) {
+                            // If the URIResolver returns a DocumentInfo, it is
+                            // responsible for doing any stripping of whitespace
+                            newdoc = (DocumentInfo)ds.getNode();
+                        }
                     }
-                }
-                if (newdoc==null) {
-                    // Build a new tree
-                    SAXSource saxSource =
-                        controller.getTransformerFactory().getSAXSource(source, false);
+                    if (newdoc==null) {
+                        // Build a new tree
+                        SAXSource saxSource =
+                            controller.getTransformerFactory().getSAXSource(source, false);
 
-                    Builder b = controller.makeBuilder();
-                    newdoc = b.build(saxSource);
+                        Builder b = controller.makeBuilder();
+                        newdoc = b.build(saxSource);
+                    }
                 }
-            }
 
-            // add the document to the pool
-            controller.getDocumentPool().add(newdoc, documentKey);
+                // add the document to the pool
+                pool.add(newdoc, documentKey);
 
-            return getFragment(newdoc, fragmentId);
+                return getFragment(newdoc, fragmentId);
 
-        } catch (TransformerException err) {
-            try {
-                controller.reportRecoverableError(err);
-            } catch (TransformerException err2) {
-                throw new XPathException(err);
+            } catch (TransformerException err) {
+                try {
+                    controller.reportRecoverableError(err);
+                } catch (TransformerException err2) {
+                    throw new XPathException(err);
+                }
+                return null;
             }
-            return null;
         }
     }
 
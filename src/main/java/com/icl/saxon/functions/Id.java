@@ -5,6 +5,7 @@ import com.icl.saxon.om.DocumentInfo;
 import com.icl.saxon.om.NodeEnumeration;
 import com.icl.saxon.om.NodeInfo;
 import com.icl.saxon.sort.LocalOrderComparer;
+import com.icl.saxon.tinytree.TinyDocumentImpl;
 
 import java.util.StringTokenizer;
 import java.util.Vector;
@@ -111,6 +112,9 @@ public class Id extends Function {
             doc = boundDocument;
         }
 
+        // collect the ID values
+
+        Vector ids = new Vector();
         if ((arg0 instanceof NodeSetValue) &&
         		!(arg0 instanceof FragmentValue || arg0 instanceof FragmentValue)) {
 
@@ -120,13 +124,7 @@ public class Id extends Function {
                 String s = node.getStringValue();
                 StringTokenizer st = new StringTokenizer(s);
                 while (st.hasMoreTokens()) {
-                    NodeInfo el = doc.selectID(st.nextToken());
-                    if (el!=null) {
-                        if (idrefresult==null) {
-                            idrefresult = new Vector(2);
-                        }
-                        idrefresult.addElement(el);
-                    }
+                    ids.addElement(st.nextToken());
                 }
             }
 
@@ -135,13 +133,32 @@ public class Id extends Function {
             String s = arg0.asString();
             StringTokenizer st = new StringTokenizer(s);
             while (st.hasMoreTokens()) {
-                NodeInfo el = doc.selectID(st.nextToken());
-                if (el!=null) {
-                    if (idrefresult==null) {
-                        idrefresult = new Vector(2);
-                    }
-                    idrefresult.addElement(el);
+                ids.addElement(st.nextToken());
+            }
+        }
+
+        // the tiny tree can look them all up at once, and return the elements in document order
+
+        if (doc instanceof TinyDocumentImpl && ids.size() > 1) {
+            NodeInfo[] nodes = ((TinyDocumentImpl)doc).selectIDs(ids);
+            if (nodes.length==0) {
+                return new EmptyNodeSet();
+            }
+            if (nodes.length==1) {
+                return new SingletonNodeSet(nodes[0]);
+            }
+            NodeSetExtent result = new NodeSetExtent(nodes, LocalOrderComparer.getInstance());
+            result.setSorted(true);
+            return result;
+        }
+
+        for (int i=0; i<ids.size(); i++) {
+            NodeInfo el = doc.selectID((String)ids.elementAt(i));
+            if (el!=null) {
+                if (idrefresult==null) {
+                    idrefresult = new Vector(2);
                 }
+                idrefresult.addElement(el);
             }
         }
 
@@ -47,7 +47,7 @@ public class Last extends Function {
     */
 
     public Value evaluate(Context c) throws XPathException {
-        return new NumericValue(evaluateAsNumber(c));
+        return NumericValue.get(evaluateAsNumber(c));
     }
 
     /**
@@ -64,7 +64,7 @@ public class Last extends Function {
 
     public Expression reduce(int dep, Context c) throws XPathException {
         if ((dep & Context.LAST) != 0) {
-            return new NumericValue(c.getLast());
+            return NumericValue.get(c.getLast());
         } else {
             return this;
         }
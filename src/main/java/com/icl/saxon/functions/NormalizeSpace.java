@@ -48,9 +48,9 @@ public class NormalizeSpace extends Function {
 
     public String evaluateAsString(Context c) throws XPathException {
         if (getNumberOfArguments()==1) {
-            return normalize(argument[0].evaluateAsString(c));
+            return normalize(argument[0].evaluateAsCharSequence(c));
         } else {
-            return normalize((c.getContextNodeInfo()).getStringValue());
+            return normalize(Value.nodeToCharSequence(c.getContextNodeInfo()));
         }
     }
 
@@ -97,12 +97,27 @@ public class NormalizeSpace extends Function {
     * The algorithm that does the work
     */
 
-    private static String normalize(String s) {
-        StringBuffer sb = new StringBuffer();
-        StringTokenizer st = new StringTokenizer(s);
-        while (st.hasMoreTokens()) {
-            sb.append(st.nextToken());
-            if (st.hasMoreTokens()) sb.append(" ");
+    private static String normalize(CharSequence s) {
+        StringBuffer sb = new StringBuffer(s.length());
+        boolean space = false;      // true if whitespace has been skipped since the last token
+        int len = s.length();
+        for (int i=0; i<len; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case ' ':
+                case '\t':
+                case '\n':
+                case '\r':
+                case '\f':
+                    space = true;
+                    break;
+                default:
+                    if (space && sb.length()>0) {
+                        sb.append(' ');
+                    }
+                    space = false;
+                    sb.append(c);
+            }
         }
         return sb.toString();
     }
@@ -35,7 +35,7 @@ public class Not extends Function {
         argument[0] = argument[0].simplify();
 
         if (argument[0] instanceof Value) {
-            return new BooleanValue(!((Value)argument[0]).asBoolean());
+            return BooleanValue.get(!((Value)argument[0]).asBoolean());
         }
         return this;
     }
@@ -53,7 +53,7 @@ public class Not extends Function {
     */
 
     public Value evaluate(Context c) throws XPathException {
-        return new BooleanValue(evaluateAsBoolean(c));
+        return BooleanValue.get(evaluateAsBoolean(c));
     }
 
     /**
@@ -40,7 +40,7 @@ public class NumberFn extends Function {
                 return argument[0];
             }
             if (argument[0] instanceof Value) {
-                return new NumericValue(((Value)argument[0]).asNumber());
+                return NumericValue.get(((Value)argument[0]).asNumber());
             }
         }
         return this;
@@ -54,8 +54,7 @@ public class NumberFn extends Function {
         if (getNumberOfArguments()==1) {
             return argument[0].evaluateAsNumber(c);
         } else {
-            return Value.stringToNumber(
-                    (c.getContextNodeInfo()).getStringValue());
+            return Value.nodeToNumber(c.getContextNodeInfo());
         }
     }
 
@@ -64,7 +63,7 @@ public class NumberFn extends Function {
     */
 
     public Value evaluate(Context c) throws XPathException {
-        return new NumericValue(evaluateAsNumber(c));
+        return NumericValue.get(evaluateAsNumber(c));
     }
 
     /**
@@ -46,7 +46,7 @@ public class Position extends Function {
     */
 
     public Value evaluate(Context c) throws XPathException {
-        return new NumericValue(evaluateAsNumber(c));
+        return NumericValue.get(evaluateAsNumber(c));
     }
 
     /**
@@ -63,7 +63,7 @@ public class Position extends Function {
 
     public Expression reduce(int dep, Context c) throws XPathException {
         if ((dep & Context.POSITION) != 0) {
-            return new NumericValue(c.getContextPosition());
+            return NumericValue.get(c.getContextPosition());
         } else {
             return this;
         }
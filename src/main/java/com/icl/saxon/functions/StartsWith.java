@@ -42,7 +42,7 @@ public class StartsWith extends Function {
 
         if (argument[1] instanceof Value &&
                  ((Value)argument[1]).asString().equals("")) {
-            return new BooleanValue(true);
+            return BooleanValue.get(true);
         }
 
         return this;
@@ -53,9 +53,25 @@ public class StartsWith extends Function {
     */
 
     public boolean evaluateAsBoolean(Context c) throws XPathException {
-        String arg0 = argument[0].evaluateAsString(c);
+        CharSequence arg0 = argument[0].evaluateAsCharSequence(c);
         String arg1 = argument[1].evaluateAsString(c);
-        return arg0.startsWith(arg1);
+        return startsWith(arg0, arg1);
+    }
+
+    private static boolean startsWith(CharSequence s, String prefix) {
+        if (s instanceof String) {
+            return ((String)s).startsWith(prefix);
+        }
+        int len = prefix.length();
+        if (s.length() < len) {
+            return false;
+        }
+        for (int i=0; i<len; i++) {
+            if (s.charAt(i)!=prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -63,7 +79,7 @@ public class StartsWith extends Function {
     */
 
     public Value evaluate(Context c) throws XPathException {
-        return new BooleanValue(evaluateAsBoolean(c));
+        return BooleanValue.get(evaluateAsBoolean(c));
     }
 
     /**
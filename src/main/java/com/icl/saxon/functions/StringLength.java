@@ -46,10 +46,10 @@ public class StringLength extends Function {
     public double evaluateAsNumber(Context c) throws XPathException {
         if (getNumberOfArguments()==1) {
             return StringValue.getLength(
-                    argument[0].evaluateAsString(c));
+                    argument[0].evaluateAsCharSequence(c));
         } else {
             return StringValue.getLength(
-                    (c.getContextNodeInfo()).getStringValue());
+                    Value.nodeToCharSequence(c.getContextNodeInfo()));
         }
     }
 
@@ -58,7 +58,7 @@ public class StringLength extends Function {
     */
 
     public Value evaluate(Context c) throws XPathException {
-        return new NumericValue(evaluateAsNumber(c));
+        return NumericValue.get(evaluateAsNumber(c));
     }
 
     /**
@@ -66,27 +66,26 @@ public class Substring extends Function {
 
     /**
     * Implement substring function. This follows the algorithm in the spec precisely.
+    * Since the position counter never decreases, the characters selected form a
+    * contiguous range, which is returned using String.substring() rather than being
+    * copied one at a time.
     */
 
     private static String substring(String s, double start) {
         int slength = s.length();
-        int estlength = slength - (int)start+1;
-        if (estlength < 0) estlength = 1;
-        if (estlength > slength) estlength = slength;
-        StringBuffer sb = new StringBuffer(estlength);
         int pos=1;
         int cpos=0;
         double rstart = Round.round(start);
 
         while (cpos<slength) {
             if (pos >= rstart) {
-                sb.append(s.charAt(cpos));
+                return (cpos==0 ? s : s.substring(cpos));
             }
 
             int ch = (int)s.charAt(cpos++);
             if (ch<55296 || ch>56319) pos++;    // don't count high surrogates, i.e. D800 to DBFF
         }
-        return sb.toString();
+        return "";
     }
 
     /**
@@ -96,21 +95,19 @@ public class Substring extends Function {
 
     private static String substring(String s, double start, double len) {
         int slength = s.length();
-        int estlength = (int)len;
-        if (estlength < 0) estlength = 1;
-        if (estlength > slength) estlength = slength;
-
-        StringBuffer sb = new StringBuffer(estlength);
         int pos=1;
         int cpos=0;
+        int begin=-1;
+        int end=slength;
         double rstart = Round.round(start);
         double rlen = Round.round(len);
 
         while (cpos<slength) {
             if (pos >= rstart) {
                 if (pos < rstart + rlen) {
-                    sb.append(s.charAt(cpos));
+                    if (begin<0) begin = cpos;
                 } else {
+                    end = cpos;
                     break;
                 }
             }
@@ -119,7 +116,7 @@ public class Substring extends Function {
             if (ch<55296 || ch>56319) pos++;    // don't count high surrogates, i.e. D800 to DBFF
         }
 
-        return sb.toString();
+        return (begin<0 ? "" : s.substring(begin, end));
     }
 
     /**
@@ -54,7 +54,7 @@ public class Sum extends Function {
     */
 
     public Value evaluate(Context c) throws XPathException {
-        return new NumericValue(evaluateAsNumber(c));
+        return NumericValue.get(evaluateAsNumber(c));
     }
 
     /**
@@ -84,8 +84,7 @@ public class Sum extends Function {
 
         double sum = 0.0;
         while (enm.hasMoreElements()) {
-            String val = enm.nextElement().getStringValue();
-            sum += Value.stringToNumber(val);
+            sum += Value.nodeToNumber(enm.nextElement());
         }
         return sum;
     }
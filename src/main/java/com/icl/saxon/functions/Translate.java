@@ -49,7 +49,7 @@ public class Translate extends Function {
 
     public String evaluateAsString(Context context) throws XPathException {
 
-        String s1 = argument[0].evaluateAsString(context);
+        CharSequence s1 = argument[0].evaluateAsCharSequence(context);
         String s2 = argument[1].evaluateAsString(context);
         String s3 = argument[2].evaluateAsString(context);
 
@@ -91,7 +91,7 @@ public class Translate extends Function {
     * Perform the translate function
     */
 
-    private static String translate(String s0, String s1, String s2) {
+    private static String translate(CharSequence s0, String s1, String s2) {
 
         // check for surrogate pairs
         int len0 = StringValue.getLength(s0);
@@ -100,12 +100,13 @@ public class Translate extends Function {
         if (s0.length()!=len0 ||
                 s1.length()!=len1 ||
                 s2.length()!=len2 ) {
-            return slowTranslate(s0, s1, s2);
+            return slowTranslate(s0.toString(), s1, s2);
         }
 
         StringBuffer sb = new StringBuffer();
         int s2len = s2.length();
-        for (int i=0; i<s0.length(); i++) {
+        int s0len = s0.length();
+        for (int i=0; i<s0len; i++) {
             char c = s0.charAt(i);
             int j = s1.indexOf(c);
             if (j<s2len) {
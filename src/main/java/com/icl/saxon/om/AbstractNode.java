@@ -1,5 +1,6 @@
 package com.icl.saxon.om;
 import com.icl.saxon.expr.NodeSetExtent;
+import com.icl.saxon.expr.Value;
 import com.icl.saxon.expr.XPathException;
 import com.icl.saxon.output.Outputter;
 import com.icl.saxon.pattern.AnyNodeTest;
@@ -231,6 +232,100 @@ public abstract class AbstractNode implements Node, NodeInfo, SourceLocator, DOM
         return null;
     }
 
+    /**
+    * Get a number that identifies an element or document node uniquely within its
+    * document. The numbers are small non-negative integers suitable for indexing a bitmap.
+    * The default implementation returns -1, meaning that no such number is available
+    */
+
+    public int getNodeNumber() {
+        return -1;
+    }
+
+    /**
+    * Get the position of an element among the element children of its parent, counting from one.
+    * The default implementation returns -1, meaning that the position is not known without
+    * enumerating the siblings
+    * @param sameName true to count only the siblings with the same name as this element
+    */
+
+    public int getSiblingPosition(boolean sameName) {
+        return -1;
+    }
+
+    /**
+    * Get the number of element children of the parent of an element, or with sameName set,
+    * the number having the same name as this element. The default implementation returns -1,
+    * meaning that the number is not known without enumerating the siblings
+    * @param sameName true to count only the siblings with the same name as this element
+    */
+
+    public int getSiblingCount(boolean sameName) {
+        return -1;
+    }
+
+    /**
+    * Count the nodes that satisfy a node test on the preceding and ancestor axes of this node,
+    * as required by xsl:number level="any". The default implementation returns -1, meaning
+    * that the number is not known without enumerating the nodes
+    * @param test the node test
+    */
+
+    public int countPrecedingOrAncestor(NodeTest test) {
+        return -1;
+    }
+
+    /**
+    * Select the elements reached from this node by a sequence of child and descendant steps,
+    * each of which selects the elements with a given name that have all of a given set of
+    * attributes, possibly with given values: as required by path expressions such as a//b/c,
+    * //p/a, //a[@x] and //a[@id='x']. The default implementation returns null, meaning that
+    * the elements must be found by navigating the tree one step at a time
+    * @param axes for each step, the axis: Axis.CHILD or Axis.DESCENDANT
+    * @param names for each step, the fingerprint of the element name
+    * @param attributes for each step, the fingerprints of the attributes that the elements
+    * must have
+    * @param values for each step, the value that each of those attributes must have, or null
+    * if any value will do
+    * @param explain if not null, a description of how the elements were found is appended
+    * to it, one line per step
+    * @return the selected elements, in document order, or null
+    */
+
+    public AxisEnumeration selectElements(byte[] axes, int[] names, int[][] attributes,
+                                          String[][] values, StringBuffer explain) {
+        return null;
+    }
+
+    /**
+    * Get the statistics collected while the document containing this node was built.
+    * The default implementation returns null, meaning that none were collected.
+    */
+
+    public DocumentStatistics getDocumentStatistics() {
+        return null;
+    }
+
+    /**
+    * Get the numeric value of the node: that is, its string value converted to a number.
+    * An implementation may remember the values it has computed.
+    * @return the numeric value, which is NaN if the string value is not a number
+    */
+
+    public double getNumericValue() {
+        return Value.stringToNumber(getStringValue());
+    }
+
+    /**
+    * Get the string value of the node as a sequence of characters. An implementation may
+    * return a view of characters held in the tree, rather than copying them into a String.
+    * The result should be used straight away, and not retained.
+    */
+
+    public CharSequence getStringValueCS() {
+        return getStringValue();
+    }
+
     /**
     * Return an enumeration over the nodes reached by the given axis from this node
     * @param axisNumber The axis to be used (a constant in class {@link Axis})
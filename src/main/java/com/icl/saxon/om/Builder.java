@@ -51,6 +51,9 @@ public abstract class Builder extends Emitter
 
     protected boolean inDTD = false;
     protected boolean lineNumbering = false;
+    protected boolean shareValues = false;        // true if repeated values should be stored once
+    protected boolean cacheNumbers = false;       // true if numeric values should be remembered
+    protected boolean collectStatistics = false;  // true if document statistics are wanted
     protected int lineNumber = -1;
     protected int columnNumber = -1;
 
@@ -108,6 +111,33 @@ public abstract class Builder extends Emitter
         lineNumbering = onOrOff;
     }
 
+    /**
+    * Request that repeated attribute values and short text nodes be stored only once.
+    * This is a hint: a Builder may ignore it.
+    */
+
+    public void setValueSharing(boolean onOrOff) {
+        shareValues = onOrOff;
+    }
+
+    /**
+    * Request that the numeric values of nodes and attributes be remembered once they have
+    * been computed. This is a hint: a Builder may ignore it.
+    */
+
+    public void setNumericValueCaching(boolean onOrOff) {
+        cacheNumbers = onOrOff;
+    }
+
+    /**
+    * Request that statistics about the contents of the document be collected while it is
+    * built. This is a hint: a Builder may ignore it.
+    */
+
+    public void setStatisticsCollection(boolean onOrOff) {
+        collectStatistics = onOrOff;
+    }
+
     /**
     * Set the Stripper to use
     */
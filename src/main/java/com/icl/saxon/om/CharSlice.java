@@ -0,0 +1,172 @@
+package com.icl.saxon.om;
+import com.icl.saxon.output.Outputter;
+
+import javax.xml.transform.TransformerException;
+
+/**
+* A CharSlice is a CharSequence made up of one or more ranges of a character array, read in
+* place. It is used to present the string value of a node without first copying its
+* characters into a String: for example the string value of an element in the tiny tree,
+* which is the concatenation of its descendant text nodes.<P>
+* The characters are not copied, so a CharSlice should be used straight away, and not
+* retained while the array might change.
+*/
+
+public final class CharSlice implements CharSequence {
+
+    private char[] array;
+    private int[] starts;       // the start of each range in the array
+    private int[] ends;         // the offset in this sequence at which each range ends
+    private int ranges;
+    private int length;
+
+    // the range that contained the last character read: its first and last offsets in
+    // this sequence, and the position in the array that corresponds to offset zero
+    private int current = 0;
+    private int low;
+    private int high;
+    private int base;
+
+    /**
+    * Create a CharSlice holding one range of an array
+    * @param array the character array
+    * @param start the offset of the first character
+    * @param length the number of characters
+    */
+
+    public CharSlice(char[] array, int start, int length) {
+        this.array = array;
+        this.starts = new int[] {start};
+        this.ends = new int[] {length};
+        this.ranges = 1;
+        this.length = length;
+        select(0);
+    }
+
+    /**
+    * Create a CharSlice holding several ranges of an array, one after the other
+    * @param array the character array
+    * @param starts the offset of the first character of each range
+    * @param lengths the number of characters in each range
+    * @param ranges the number of ranges, at least one: the arrays of starts and lengths
+    * may be longer
+    */
+
+    public CharSlice(char[] array, int[] starts, int[] lengths, int ranges) {
+        this.array = array;
+        this.starts = starts;
+        this.ends = new int[ranges];
+        int end = 0;
+        for (int r=0; r<ranges; r++) {
+            end += lengths[r];
+            ends[r] = end;
+        }
+        this.ranges = ranges;
+        this.length = end;
+        select(0);
+    }
+
+    /**
+    * Get the number of characters
+    */
+
+    public int length() {
+        return length;
+    }
+
+    /**
+    * Get the character at a given offset. Reading the characters in order is fast, whatever
+    * the number of ranges.
+    */
+
+    public char charAt(int index) {
+        if (index>=low && index<high) {
+            return array[base + index];
+        }
+        if (index<0 || index>=length) {
+            throw new IndexOutOfBoundsException(index + "");
+        }
+        int r = (index<low ? 0 : current);
+        while (index>=ends[r]) {
+            r++;
+        }
+        select(r);
+        return array[base + index];
+    }
+
+    private void select(int r) {
+        current = r;
+        low = rangeStart(r);
+        high = ends[r];
+        base = starts[r] - low;
+    }
+
+    private int rangeStart(int r) {
+        return (r==0 ? 0 : ends[r-1]);
+    }
+
+    /**
+    * Get a range of the characters, as a String
+    */
+
+    public CharSequence subSequence(int start, int end) {
+        if (start<0 || end>length || start>end) {
+            throw new IndexOutOfBoundsException(start + ", " + end);
+        }
+        char[] chars = new char[end-start];
+        int o = 0;
+        for (int r=0; r<ranges && o<chars.length; r++) {
+            int from = Math.max(start, rangeStart(r));
+            int to = Math.min(end, ends[r]);
+            if (from<to) {
+                System.arraycopy(array, starts[r] + from - rangeStart(r), chars, o, to-from);
+                o += to-from;
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+    * Write the characters to an Outputter, one range at a time
+    */
+
+    public void write(Outputter out) throws TransformerException {
+        for (int r=0; r<ranges; r++) {
+            int len = ends[r] - rangeStart(r);
+            if (len>0) {
+                out.writeContent(array, starts[r], len);
+            }
+        }
+    }
+
+    /**
+    * Copy the characters into a String
+    */
+
+    public String toString() {
+        if (ranges==1) {
+            return new String(array, starts[0], length);
+        }
+        return (String)subSequence(0, length);
+    }
+
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael H. Kay.
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
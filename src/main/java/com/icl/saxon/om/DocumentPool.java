@@ -1,4 +1,5 @@
 package com.icl.saxon.om;
+import java.util.Enumeration;
 import java.util.Hashtable;
 
 /**
@@ -31,7 +32,7 @@ public final class DocumentPool {
     * @return the document number, unique within this document pool
     */
 
-    public int add(DocumentInfo doc, String name) {
+    public synchronized int add(DocumentInfo doc, String name) {
 
         Integer hash = new Integer(doc.hashCode());
         Integer nr = (Integer)documentNumberMap.get(hash);
@@ -57,7 +58,7 @@ public final class DocumentPool {
     * @return the document number
     */
 
-    public int getDocumentNumber(DocumentInfo doc) {
+    public synchronized int getDocumentNumber(DocumentInfo doc) {
         Integer hash = new Integer(doc.hashCode());
         Integer nr = (Integer)documentNumberMap.get(hash);
         if (nr==null) {
@@ -78,11 +79,32 @@ public final class DocumentPool {
         return (DocumentInfo)documentNameMap.get(name);
     }
 
+    /**
+    * Add to this pool all the documents in another pool that were loaded using the
+    * document() function, unless this pool already holds a document with the same name
+    */
+
+    public void addNamedDocuments(DocumentPool other) {
+        Hashtable names;
+        synchronized(other) {
+            names = (Hashtable)other.documentNameMap.clone();
+        }
+        Enumeration e = names.keys();
+        while (e.hasMoreElements()) {
+            String name = (String)e.nextElement();
+            synchronized(this) {
+                if (documentNameMap.get(name)==null) {
+                    add((DocumentInfo)names.get(name), name);
+                }
+            }
+        }
+    }
+
     /**
     * Get the number of documents in the pool
     */
 
-    public int getNumberOfDocuments() {
+    public synchronized int getNumberOfDocuments() {
         return numberOfDocuments;
     }
 
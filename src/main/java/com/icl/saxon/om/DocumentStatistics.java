@@ -0,0 +1,197 @@
+package com.icl.saxon.om;
+
+/**
+* DocumentStatistics holds statistics about the contents of one document, collected while it
+* is built: the number of elements with each name, the number of attributes with each name,
+* an estimate of the number of distinct values of each attribute, and the average number of
+* children of a node that has children. They are used to choose how path expressions are
+* evaluated, and are only collected when requested (see FeatureKeys.COLLECT_STATISTICS).<P>
+* The number of distinct values is estimated by linear counting: each value sets one bit,
+* chosen by its hash code, in a bitmap of fixed size kept for each attribute name, and the
+* number of bits still clear gives the estimate. It is accurate to a few percent up to a
+* few thousand distinct values.<P>
+* Once the document has been built the statistics do not change, so they can be read by
+* several threads.
+*/
+
+public final class DocumentStatistics {
+
+    private static final int SKETCH_BITS = 4096;            // a power of two
+    private static final int ATTRIBUTE = 0x100000;          // added to the key of an attribute name
+
+    private int[] keys = new int[64];           // name key+1 in each used slot, 0 if empty
+    private int[] counts = new int[64];
+    private long[][] sketches = new long[64][]; // for attribute names only
+    private int used = 0;
+
+    private int elements = 0;
+    private int attributes = 0;
+    private int nodes = 0;
+    private int parents = 0;
+
+    /**
+    * Record an element. Called while the document is being built.
+    * @param fingerprint the fingerprint of the element name
+    */
+
+    public void addElement(int fingerprint) {
+        elements++;
+        counts[slot(fingerprint, true)]++;
+    }
+
+    /**
+    * Record an attribute. Called while the document is being built.
+    * @param fingerprint the fingerprint of the attribute name
+    * @param value the attribute value
+    */
+
+    public void addAttribute(int fingerprint, String value) {
+        attributes++;
+        int s = slot(fingerprint | ATTRIBUTE, true);
+        counts[s]++;
+        if (sketches[s]==null) {
+            sketches[s] = new long[SKETCH_BITS / 64];
+        }
+        int h = value.hashCode() * 0x9e3779b1;
+        int bit = (h ^ (h >>> 15)) & (SKETCH_BITS - 1);
+        sketches[s][bit >>> 6] |= (1L << (bit & 63));
+    }
+
+    /**
+    * Record the size of the document. Called when the document has been built.
+    * @param nodes the number of nodes in the document, excluding attributes and namespaces
+    * @param parents the number of those nodes that have children
+    */
+
+    public void setNodeCounts(int nodes, int parents) {
+        this.nodes = nodes;
+        this.parents = parents;
+    }
+
+    /**
+    * Get the number of nodes in the document, excluding attributes and namespaces
+    */
+
+    public int getNumberOfNodes() {
+        return nodes;
+    }
+
+    /**
+    * Get the number of elements in the document
+    */
+
+    public int getNumberOfElements() {
+        return elements;
+    }
+
+    /**
+    * Get the number of elements with a given name
+    */
+
+    public int getElementCount(int fingerprint) {
+        return counts[slot(fingerprint, false)];
+    }
+
+    /**
+    * Get the number of attributes with a given name
+    */
+
+    public int getAttributeCount(int fingerprint) {
+        return counts[slot(fingerprint | ATTRIBUTE, false)];
+    }
+
+    /**
+    * Get an estimate of the number of distinct values of the attributes with a given name
+    * @return the estimate, which is at least one unless there are no such attributes, and
+    * never more than the number of attributes
+    */
+
+    public int getDistinctValues(int fingerprint) {
+        int s = slot(fingerprint | ATTRIBUTE, false);
+        if (counts[s]==0) {
+            return 0;
+        }
+        long[] sketch = sketches[s];
+        int set = 0;
+        for (int i=0; i<sketch.length; i++) {
+            set += Long.bitCount(sketch[i]);
+        }
+        int clear = SKETCH_BITS - set;
+        if (clear==0) {
+            return counts[s];           // too many values to estimate
+        }
+        double estimate = SKETCH_BITS * Math.log((double)SKETCH_BITS / clear);
+        return (int)Math.max(1, Math.min(counts[s], Math.round(estimate)));
+    }
+
+    /**
+    * Get the average number of children of a node that has children
+    */
+
+    public double getAverageFanOut() {
+        return (parents==0 ? 0 : (double)(nodes - 1) / parents);
+    }
+
+    /**
+    * Describe the statistics, for diagnostics
+    */
+
+    public String toString() {
+        return nodes + " nodes, " + elements + " elements, " + attributes + " attributes, " +
+                (Math.round(getAverageFanOut() * 10) / 10.0) + " children per parent";
+    }
+
+    private int slot(int key, boolean add) {
+        if (add && (used+1)*2 > keys.length) {
+            rehash();
+        }
+        int mask = keys.length - 1;
+        int h = key * 0x9e3779b1;
+        int s = (h ^ (h >>> 16)) & mask;
+        while (keys[s]!=0 && keys[s]!=key+1) {
+            s = (s + 1) & mask;
+        }
+        if (add && keys[s]==0) {
+            keys[s] = key + 1;
+            used++;
+        }
+        return s;
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        int[] oldCounts = counts;
+        long[][] oldSketches = sketches;
+        keys = new int[oldKeys.length * 2];
+        counts = new int[keys.length];
+        sketches = new long[keys.length][];
+        used = 0;
+        for (int s=0; s<oldKeys.length; s++) {
+            if (oldKeys[s]!=0) {
+                int n = slot(oldKeys[s]-1, true);
+                counts[n] = oldCounts[s];
+                sketches[n] = oldSketches[s];
+            }
+        }
+    }
+
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael H. Kay.
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
@@ -239,6 +239,15 @@ public class Navigator {
             num = 1;
         }
 
+        // The tree may be able to count the nodes without enumerating them
+
+        if (from==null && count instanceof NodeTest && node instanceof AbstractNode) {
+            int before = ((AbstractNode)node).countPrecedingOrAncestor((NodeTest)count);
+            if (before>=0) {
+                return num + before;
+            }
+        }
+
         // We use a special axis invented for the purpose: the union of the preceding and
         // ancestor axes, but in reverse document order
 
@@ -0,0 +1,125 @@
+package com.icl.saxon.om;
+
+/**
+* SiblingPositions records, for each element of a document, its position among the element
+* children of its parent and among the children of its parent that have the same name,
+* together with the number of such siblings. The positions are held in arrays indexed
+* by node number (see {@link AbstractNode#getNodeNumber}), so that positional patterns such
+* as tr[position() mod 2 = 0] or para[last()] can be matched without enumerating the siblings.<P>
+* The index is filled by the tree implementation, one parent at a time, and is not modified
+* afterwards, so it can be read by several threads at once.
+*/
+
+public final class SiblingPositions {
+
+    private int[] elementPosition;
+    private int[] elementCount;
+    private int[] namePosition;
+    private int[] nameCount;
+
+    // work space used while the index is built: an open-addressing table from fingerprint
+    // to the number of children seen so far with that fingerprint
+
+    private int[] keys = new int[16];
+    private int[] counts = new int[16];
+    private int[] slots = new int[8];       // the slot used by each child of the current parent
+
+    /**
+    * Create an index
+    * @param size one more than the highest node number in the document
+    */
+
+    public SiblingPositions(int size) {
+        elementPosition = new int[size];
+        elementCount = new int[size];
+        namePosition = new int[size];
+        nameCount = new int[size];
+    }
+
+    /**
+    * Record the element children of one parent node
+    * @param nodeNr the node numbers of the element children, in document order
+    * @param fingerprint the name fingerprints of the element children
+    * @param n the number of element children
+    */
+
+    public void addChildren(int[] nodeNr, int[] fingerprint, int n) {
+        if (keys.length < n*2) {
+            int capacity = keys.length;
+            while (capacity < n*2) {
+                capacity <<= 1;
+            }
+            keys = new int[capacity];
+            counts = new int[capacity];
+            slots = new int[capacity/2];
+        }
+        int mask = keys.length - 1;
+        for (int i=0; i<n; i++) {
+            int slot = find(fingerprint[i], mask);
+            keys[slot] = fingerprint[i] + 1;        // zero marks an empty slot
+            counts[slot]++;
+            slots[i] = slot;
+            elementPosition[nodeNr[i]] = i + 1;
+            elementCount[nodeNr[i]] = n;
+            namePosition[nodeNr[i]] = counts[slot];
+        }
+        for (int i=0; i<n; i++) {
+            nameCount[nodeNr[i]] = counts[slots[i]];
+        }
+        // clear only the slots that were used, so that a parent with few children costs little
+        for (int i=0; i<n; i++) {
+            keys[slots[i]] = 0;
+            counts[slots[i]] = 0;
+        }
+    }
+
+    private int find(int fingerprint, int mask) {
+        int slot = (fingerprint * 0x9E3779B1 >>> 16) & mask;
+        while (keys[slot]!=0 && keys[slot]!=fingerprint+1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+    * Get the position of an element among its siblings, counting from one
+    * @param nodeNr the node number of the element
+    * @param sameName true to count only the siblings with the same name as the element,
+    * false to count all element siblings
+    */
+
+    public int getPosition(int nodeNr, boolean sameName) {
+        return (sameName ? namePosition[nodeNr] : elementPosition[nodeNr]);
+    }
+
+    /**
+    * Get the number of siblings of an element, including the element itself
+    * @param nodeNr the node number of the element
+    * @param sameName true to count only the siblings with the same name as the element,
+    * false to count all element siblings
+    */
+
+    public int getCount(int nodeNr, boolean sameName) {
+        return (sameName ? nameCount[nodeNr] : elementCount[nodeNr]);
+    }
+
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael H. Kay.
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
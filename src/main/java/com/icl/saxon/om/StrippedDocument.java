@@ -0,0 +1,209 @@
+package com.icl.saxon.om;
+import com.icl.saxon.KeyManager;
+
+import java.util.BitSet;
+import java.util.Hashtable;
+
+
+/**
+  * A StrippedDocument is a view of an existing document in which whitespace text nodes
+  * are stripped according to the rules of a Stripper (that is, the xsl:strip-space and
+  * xsl:preserve-space elements of a stylesheet, together with any xml:space attributes
+  * in the document). The underlying document is not modified, so the same document can
+  * be used concurrently by stylesheets having different stripping rules.<P>
+  * Whether an element's whitespace children are stripped is decided the first time it
+  * is needed, and remembered in a bitmap indexed by the node number of the element, for
+  * trees that provide one (the standard tree and the tiny tree).
+  */
+
+public class StrippedDocument extends StrippedNode implements DocumentInfo {
+
+    private DocumentInfo document;
+    private Stripper stripper;
+    private Hashtable preserving = new Hashtable();     // name code -> Boolean, from the stripper
+    private BitSet known = new BitSet();                // elements whose status has been computed
+    private BitSet stripped = new BitSet();             // elements whose whitespace children are stripped
+    private Hashtable keyTable = new Hashtable();
+
+    /**
+    * Create a stripped view of a document
+    * @param doc the underlying document
+    * @param stripper the Stripper that defines which whitespace text nodes are stripped.
+    * The Stripper must have been initialized with setController().
+    */
+
+    public StrippedDocument(DocumentInfo doc, Stripper stripper) {
+        super(doc, null, null);
+        this.root = this;
+        this.document = doc;
+        this.stripper = (stripper==null || stripper.getPreserveAll() ? null : stripper);
+    }
+
+    /**
+    * Get the view of a node in the underlying document
+    * @param node a node in the underlying document
+    * @return the corresponding node in the stripped view. (The result is unpredictable
+    * if the node is a whitespace text node that is stripped.)
+    */
+
+    public NodeInfo wrap(NodeInfo node) {
+        return wrap(node, null);
+    }
+
+    final StrippedNode wrap(NodeInfo node, StrippedNode parent) {
+        if (node instanceof StrippedNode) {
+            node = ((StrippedNode)node).node;
+        }
+        if (node.getNodeType()==ROOT) {
+            if (!node.isSameNodeInfo(document)) {
+                throw new IllegalArgumentException("Node is not in the underlying document");
+            }
+            return this;
+        }
+        return new StrippedNode(node, parent, this);
+    }
+
+    /**
+    * Determine whether any whitespace is stripped
+    */
+
+    final boolean isStripping() {
+        return stripper!=null;
+    }
+
+    /**
+    * Determine whether whitespace-only text nodes that are children of a given node
+    * in the underlying document are stripped
+    */
+
+    boolean stripsChildren(NodeInfo parent) {
+        if (stripper==null || parent==null || parent.getNodeType()!=ELEMENT) {
+            return false;
+        }
+        int nr = (parent instanceof AbstractNode ? ((AbstractNode)parent).getNodeNumber() : -1);
+        if (nr>=0) {
+            synchronized(this) {
+                if (known.get(nr)) {
+                    return stripped.get(nr);
+                }
+            }
+        }
+        boolean strip = computeStripping(parent);
+        if (nr>=0) {
+            synchronized(this) {
+                known.set(nr);
+                if (strip) {
+                    stripped.set(nr);
+                }
+            }
+        }
+        return strip;
+    }
+
+    private boolean computeStripping(NodeInfo parent) {
+        if (!stripper.getStripAll()) {
+            Integer key = new Integer(parent.getNameCode());
+            Boolean b = (Boolean)preserving.get(key);
+            if (b==null) {
+                b = new Boolean(stripper.isSpacePreserving(parent.getNameCode()));
+                preserving.put(key, b);
+            }
+            if (b.booleanValue()) {
+                return false;
+            }
+        }
+        for (NodeInfo e = parent; e!=null && e.getNodeType()==ELEMENT; e = e.getParent()) {
+            String value = e.getAttributeValue(Namespace.XML, "space");
+            if (value!=null) {
+                if (value.equals("preserve")) return false;
+                if (value.equals("default")) return true;
+            }
+        }
+        return true;
+    }
+
+	/**
+	* Set the name pool used for all names in this document
+	*/
+
+	public void setNamePool(NamePool pool) {
+	    document.setNamePool(pool);
+	}
+
+	/**
+	* Get the name pool used for the names in this document
+	*/
+
+	public NamePool getNamePool() {
+	    return document.getNamePool();
+	}
+
+    /**
+    * Get the element with a given ID, if any
+    * @param id the required ID value
+    * @return the element with the given ID, or null if there is no such ID present
+    */
+
+    public NodeInfo selectID(String id) {
+        NodeInfo e = document.selectID(id);
+        return (e==null ? null : wrap(e, null));
+    }
+
+    /**
+    * Get the index for a given key. The index is held in the view rather than the
+    * underlying document, since it refers to nodes in the view.
+    * @param keymanager The key manager managing this key
+    * @param fingerprint The fingerprint of the name of the key (unique with the key manager)
+    * @return The index, if one has been built, in the form of a Hashtable that
+    * maps the key value to a list of nodes having that key value. If no index
+    * has been built, returns null.
+    */
+
+    public Hashtable getKeyIndex(KeyManager keyManager, int fingerprint) {
+        String key = keyManager.hashCode() + "#" + fingerprint;
+        return (Hashtable)keyTable.get(key);
+    }
+
+    /**
+    * Set the index for a given key
+    * @param keymanager The key manager managing this key
+    * @param fingerprint The fingerprint of the name of the key (unique with the key manager)
+    * @param index the index, in the form of a Hashtable that
+    * maps the key value to a list of nodes having that key value
+    */
+
+    public void setKeyIndex(KeyManager keyManager, int fingerprint, Hashtable index) {
+        String key = keyManager.hashCode() + "#" + fingerprint;
+        keyTable.put(key, index);
+    }
+
+    /**
+    * Get the unparsed entity with a given name
+    * @param name the name of the entity
+    * @return the URI of the entity if there is one, or empty string if not
+    */
+
+    public String getUnparsedEntity(String name) {
+        return document.getUnparsedEntity(name);
+    }
+
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael H. Kay.
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
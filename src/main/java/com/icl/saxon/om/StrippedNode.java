@@ -0,0 +1,328 @@
+package com.icl.saxon.om;
+import com.icl.saxon.output.Outputter;
+import com.icl.saxon.pattern.AnyNodeTest;
+import com.icl.saxon.pattern.NodeTest;
+import com.icl.saxon.pattern.NodeTypeTest;
+
+import javax.xml.transform.TransformerException;
+
+/**
+  * A StrippedNode is a view of a node in an existing tree, in which whitespace text
+  * nodes are stripped according to the rules held by a StrippedDocument. Navigation
+  * simply skips the text nodes that are stripped; the underlying tree is not changed.
+  * @see StrippedDocument
+  */
+
+public class StrippedNode implements NodeInfo {
+
+    private static final NodeTest TEXT_TEST = new NodeTypeTest(NodeInfo.TEXT);
+
+    protected NodeInfo node;
+    protected StrippedNode parent;      // null if not yet known
+    protected StrippedDocument root;
+
+    protected StrippedNode(NodeInfo node, StrippedNode parent, StrippedDocument root) {
+        this.node = node;
+        this.parent = parent;
+        this.root = root;
+    }
+
+    /**
+    * Get the node in the underlying tree
+    */
+
+    public NodeInfo getUnderlyingNode() {
+        return node;
+    }
+
+    public short getNodeType() {
+        return node.getNodeType();
+    }
+
+    /**
+    * Determine whether this is the same node as another node
+    */
+
+    public boolean isSameNodeInfo(NodeInfo other) {
+        return (other instanceof StrippedNode) &&
+                node.isSameNodeInfo(((StrippedNode)other).node);
+    }
+
+    public String getSystemId() {
+        return node.getSystemId();
+    }
+
+    public void setSystemId(String uri) {
+        node.setSystemId(uri);
+    }
+
+    public String getBaseURI() {
+        return node.getBaseURI();
+    }
+
+    public int getLineNumber() {
+        return node.getLineNumber();
+    }
+
+    /**
+    * Determine the relative position of this node and another node, in document order.
+    * Stripping does not affect the order of the remaining nodes.
+    */
+
+    public int compareOrder(NodeInfo other) {
+        return node.compareOrder(((StrippedNode)other).node);
+    }
+
+    /**
+    * Return the string value of the node. For an element or root node this is the
+    * concatenation of the text nodes that have not been stripped.
+    */
+
+    public String getStringValue() {
+        short type = node.getNodeType();
+        if (type!=ELEMENT && type!=ROOT) {
+            return node.getStringValue();
+        }
+        StringBuffer sb = new StringBuffer();
+        AxisEnumeration texts = getEnumeration(Axis.DESCENDANT, TEXT_TEST);
+        while (texts.hasMoreElements()) {
+            sb.append(texts.nextElement().getStringValue());
+        }
+        return sb.toString();
+    }
+
+	public int getNameCode() {
+	    return node.getNameCode();
+	}
+
+	public int getFingerprint() {
+	    return node.getFingerprint();
+	}
+
+    public String getLocalName() {
+        return node.getLocalName();
+    }
+
+    public String getPrefix() {
+        return node.getPrefix();
+    }
+
+    public String getURI() {
+        return node.getURI();
+    }
+
+    public String getDisplayName() {
+        return node.getDisplayName();
+    }
+
+    public NodeInfo getParent() {
+        if (parent==null) {
+            NodeInfo p = node.getParent();
+            if (p!=null) {
+                parent = root.wrap(p, null);
+            }
+        }
+        return parent;
+    }
+
+    /**
+    * Return an enumeration over the nodes reached by the given axis from this node.
+    * Text nodes that are stripped are omitted.
+    */
+
+    public AxisEnumeration getEnumeration(byte axisNumber, NodeTest nodeTest) {
+        AxisEnumeration base = node.getEnumeration(axisNumber, nodeTest);
+        StrippedNode commonParent = null;
+        switch (axisNumber) {
+            case Axis.ANCESTOR:
+            case Axis.ANCESTOR_OR_SELF:
+            case Axis.ATTRIBUTE:
+            case Axis.NAMESPACE:
+            case Axis.PARENT:
+            case Axis.SELF:
+                // these axes never contain a text node that might be stripped
+                return new StrippedEnumeration(base, axisNumber, nodeTest, false, null);
+            case Axis.CHILD:
+                commonParent = this;
+                break;
+            case Axis.FOLLOWING_SIBLING:
+            case Axis.PRECEDING_SIBLING:
+                commonParent = (StrippedNode)getParent();
+                break;
+            default:
+        }
+        boolean filter = root.isStripping() && nodeTest.matches(TEXT, -1);
+        return new StrippedEnumeration(base, axisNumber, nodeTest, filter, commonParent);
+    }
+
+    public String getAttributeValue(String uri, String localName) {
+        return node.getAttributeValue(uri, localName);
+    }
+
+    public String getAttributeValue(int fingerprint) {
+        return node.getAttributeValue(fingerprint);
+    }
+
+    public DocumentInfo getDocumentRoot() {
+        return root;
+    }
+
+    public boolean hasChildNodes() {
+        return node.hasChildNodes() &&
+                getEnumeration(Axis.CHILD, AnyNodeTest.getInstance()).hasMoreElements();
+    }
+
+    public String generateId() {
+        return node.generateId();
+    }
+
+    /**
+    * Copy this node to a given outputter (deep copy), omitting stripped text nodes
+    */
+
+    public void copy(Outputter out) throws TransformerException {
+        short type = node.getNodeType();
+        if (type==ELEMENT) {
+            int nc = node.getNameCode();
+            out.writeStartTag(nc);
+            node.outputNamespaceNodes(out, true);
+            AxisEnumeration atts = node.getEnumeration(Axis.ATTRIBUTE, AnyNodeTest.getInstance());
+            while (atts.hasMoreElements()) {
+                atts.nextElement().copy(out);
+            }
+            copyChildren(out);
+            out.writeEndTag(nc);
+        } else if (type==ROOT) {
+            copyChildren(out);
+        } else {
+            node.copy(out);
+        }
+    }
+
+    private void copyChildren(Outputter out) throws TransformerException {
+        AxisEnumeration children = getEnumeration(Axis.CHILD, AnyNodeTest.getInstance());
+        while (children.hasMoreElements()) {
+            children.nextElement().copy(out);
+        }
+    }
+
+    public void copyStringValue(Outputter out) throws TransformerException {
+        out.writeContent(getStringValue());
+    }
+
+    public void outputNamespaceNodes(Outputter out, boolean includeAncestors)
+        throws TransformerException {
+        node.outputNamespaceNodes(out, includeAncestors);
+    }
+
+    /**
+    * Enumeration over an axis of the underlying tree, returning StrippedNodes and
+    * omitting any text nodes that are stripped
+    */
+
+    private final class StrippedEnumeration implements AxisEnumeration {
+
+        private AxisEnumeration base;
+        private byte axis;
+        private NodeTest nodeTest;
+        private boolean filter;             // true if text nodes may need to be removed
+        private StrippedNode commonParent;  // parent of all the nodes, if known
+        private boolean parentStrips;       // true if commonParent strips whitespace children
+        private NodeInfo next;
+        private int last = -1;
+
+        public StrippedEnumeration(AxisEnumeration base, byte axis, NodeTest nodeTest,
+                                   boolean filter, StrippedNode commonParent) {
+            this.base = base;
+            this.axis = axis;
+            this.nodeTest = nodeTest;
+            this.filter = filter;
+            this.commonParent = commonParent;
+            if (filter && commonParent!=null) {
+                parentStrips = root.stripsChildren(commonParent.node);
+                if (!parentStrips) {
+                    this.filter = false;
+                }
+            }
+            advance();
+        }
+
+        private void advance() {
+            while (base.hasMoreElements()) {
+                NodeInfo n = base.nextElement();
+                if (filter && n.getNodeType()==TEXT && isStripped(n)) {
+                    continue;
+                }
+                next = root.wrap(n, commonParent);
+                return;
+            }
+            next = null;
+        }
+
+        private boolean isStripped(NodeInfo text) {
+            if (commonParent!=null) {
+                return parentStrips && Navigator.isWhite(text.getStringValue());
+            }
+            return root.stripsChildren(text.getParent()) &&
+                    Navigator.isWhite(text.getStringValue());
+        }
+
+        public boolean hasMoreElements() {
+            return next!=null;
+        }
+
+        public NodeInfo nextElement() {
+            NodeInfo n = next;
+            advance();
+            return n;
+        }
+
+        public int getLastPosition() {
+            if (!filter) {
+                return base.getLastPosition();
+            }
+            if (last<0) {
+                StrippedEnumeration copy = new StrippedEnumeration(
+                    node.getEnumeration(axis, nodeTest), axis, nodeTest, filter, commonParent);
+                last = 0;
+                while (copy.hasMoreElements()) {
+                    copy.nextElement();
+                    last++;
+                }
+            }
+            return last;
+        }
+
+        public boolean isSorted() {
+            return base.isSorted();
+        }
+
+        public boolean isReverseSorted() {
+            return base.isReverseSorted();
+        }
+
+        public boolean isPeer() {
+            return base.isPeer();
+        }
+    }
+
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael H. Kay.
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
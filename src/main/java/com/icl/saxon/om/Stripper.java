@@ -117,10 +117,12 @@ public class Stripper extends ProxyEmitter
     * Decide whether an element is in the set of white-space preserving element types
     * @param uri The namespace URI of the element name
     * @param localname The local part of the element name
-    * @return true if the element is in the set of white-space preserving element types
+    * @return true if the element is in the set of white-space preserving element types.
+    * The method is synchronized because the rules are matched against a single dummy
+    * element, and a stripped view of a document may be navigated by several threads.
     */
 
-    public boolean isSpacePreserving(int nameCode) {
+    public synchronized boolean isSpacePreserving(int nameCode) {
     	try {
 	    	if (preserveAll) return true;
 	    	if (stripAll) return false;
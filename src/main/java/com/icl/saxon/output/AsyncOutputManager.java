@@ -0,0 +1,195 @@
+package com.icl.saxon.output;
+import javax.xml.transform.TransformerException;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+* An AsyncOutputManager writes the secondary output files of a transformation
+* (those produced by xsl:document) on a small pool of background threads. The output is
+* serialized into memory by the transformation, and the manager then creates the file and
+* writes the bytes while the transformation carries on.<p>
+*
+* The number of files waiting to be written is bounded: when the queue is full, the
+* file is written by the calling thread instead. Writes to the same file are performed in the
+* order they were requested. The first failure is reported by the next call on write(), or
+* by finish(), which must be called at the end of the transformation.
+*/
+
+public class AsyncOutputManager {
+
+    private ThreadPoolExecutor pool;
+    private HashMap pending = new HashMap();    // file name -> Future of the latest write
+    private volatile TransformerException failure = null;
+
+    /**
+    * Create an AsyncOutputManager
+    * @param threads the number of threads used for writing files
+    */
+
+    public AsyncOutputManager(int threads) {
+        pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue(threads * 4),
+                    new ThreadFactory() {
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "Saxon output writer");
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    },
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+    * Write a file asynchronously. Any directories needed are created.
+    * @param file the file to be written
+    * @param content the serialized content of the file. This must not be modified by the caller
+    * after this call.
+    * @throws TransformerException if an earlier write has failed
+    */
+
+    public void write(final File file, final ByteArrayOutputStream content)
+    throws TransformerException {
+        checkFailure();
+        String key = file.getAbsolutePath();
+        Future previous = (Future)pending.get(key);
+        if (previous != null) {
+            // the file is being written already: wait for that to finish, so that the last
+            // write wins, as it would if the files were written synchronously
+            waitFor(previous);
+            checkFailure();
+        }
+        Future f = pool.submit(new Runnable() {
+            public void run() {
+                if (failure != null) {
+                    return;
+                }
+                try {
+                    writeFile(file, content);
+                } catch (IOException err) {
+                    fail(new TransformerException("Failed to write output file " + file, err));
+                } catch (RuntimeException err) {
+                    // for example a SecurityException: a Future holding it is never examined
+                    fail(new TransformerException("Failed to write output file " + file, err));
+                }
+            }
+        });
+        pending.put(key, f);
+        if (pending.size() > 1000) {
+            Iterator iter = pending.values().iterator();
+            while (iter.hasNext()) {
+                if (((Future)iter.next()).isDone()) {
+                    iter.remove();
+                }
+            }
+        }
+    }
+
+    /**
+    * Wait for all outstanding writes to complete, and release the threads.
+    * @throws TransformerException if any of the writes failed
+    */
+
+    public void finish() throws TransformerException {
+        shutdown();
+        checkFailure();
+    }
+
+    /**
+    * Wait for all outstanding writes to complete, and release the threads, without
+    * reporting any failure. Used when the transformation itself has failed.
+    */
+
+    public void abandon() {
+        shutdown();
+    }
+
+    private void shutdown() {
+        pool.shutdown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException err) {
+                interrupted = true;
+            }
+        }
+        pending.clear();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void waitFor(Future f) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                f.get();
+                break;
+            } catch (InterruptedException err) {
+                interrupted = true;
+            } catch (ExecutionException err) {
+                fail(new TransformerException(err.getCause()));
+                break;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void fail(TransformerException err) {
+        if (failure == null) {
+            failure = err;
+        }
+    }
+
+    private void checkFailure() throws TransformerException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static void writeFile(File file, ByteArrayOutputStream content) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        FileOutputStream stream = new FileOutputStream(file);
+        try {
+            content.writeTo(stream);
+        } finally {
+            stream.close();
+        }
+    }
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael Kay
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
@@ -1,5 +1,6 @@
 package com.icl.saxon.output;
 import com.icl.saxon.*;
+import com.icl.saxon.om.CharSlice;
 import org.xml.sax.Attributes;
 import java.util.Properties;
 import javax.xml.transform.TransformerException;
@@ -90,6 +91,22 @@ public abstract class Outputter {
     public abstract void writeContent(char[] chars, int start, int length)
         throws TransformerException;
 
+    /**
+    * Produce text content output from a sequence of characters. <BR>
+    * Characters that are held in place in the tree are written without first being
+    * copied into a String.
+    * @param chars The characters to be output
+    * @exception TransformerException for any failure
+    */
+
+    public void writeContent(CharSequence chars) throws TransformerException {
+        if (chars instanceof CharSlice) {
+            ((CharSlice)chars).write(this);
+        } else {
+            writeContent(chars.toString());
+        }
+    }
+
     /**
     * Output an element start tag. <br>
     * The actual output of the tag is deferred until all attributes have been output
@@ -0,0 +1,85 @@
+package com.icl.saxon.pattern;
+import com.icl.saxon.om.DocumentInfo;
+
+import java.util.BitSet;
+import java.util.WeakHashMap;
+
+/**
+* An AncestorMemo remembers, for one pattern of the form a//b and one transformation, which
+* nodes have an ancestor-or-self that matches a. The results are held in bitmaps indexed by
+* node number, one pair for each document. A document that is no longer in use is dropped
+* automatically. An AncestorMemo belongs to one Controller, and is not thread-safe.
+*/
+
+final class AncestorMemo {
+
+    private WeakHashMap documents = new WeakHashMap();   // DocumentInfo -> BitSet[] {known, matched}
+    private DocumentInfo lastDocument = null;
+    private BitSet known = null;
+    private BitSet matched = null;
+    int[] path = new int[20];                            // work space for LocationPathPattern
+
+    /**
+    * Get the remembered result for a node
+    * @param doc the document containing the node
+    * @param nodeNr the node number of an element or document node
+    * @return 1 if the node has an ancestor-or-self matching the pattern, 0 if it does not,
+    * -1 if this is not yet known
+    */
+
+    int get(DocumentInfo doc, int nodeNr) {
+        select(doc);
+        if (!known.get(nodeNr)) {
+            return -1;
+        }
+        return (matched.get(nodeNr) ? 1 : 0);
+    }
+
+    /**
+    * Remember the result for a node
+    * @param doc the document containing the node
+    * @param nodeNr the node number of an element or document node
+    * @param match true if the node has an ancestor-or-self matching the pattern
+    */
+
+    void put(DocumentInfo doc, int nodeNr, boolean match) {
+        select(doc);
+        known.set(nodeNr);
+        if (match) {
+            matched.set(nodeNr);
+        }
+    }
+
+    private void select(DocumentInfo doc) {
+        if (doc!=lastDocument) {
+            BitSet[] entry = (BitSet[])documents.get(doc);
+            if (entry==null) {
+                entry = new BitSet[] {new BitSet(), new BitSet()};
+                documents.put(doc, entry);
+            }
+            lastDocument = doc;
+            known = entry[0];
+            matched = entry[1];
+        }
+    }
+
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael H. Kay.
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
@@ -5,6 +5,8 @@ import com.icl.saxon.om.*;
 import com.icl.saxon.om.Axis;
 import com.icl.saxon.expr.XPathException;
 
+import java.util.Hashtable;
+
 /**
 * A LocationPathPattern represents a path, e.g. of the form A/B/C... The components are represented
 * as a linked list, each component pointing to its predecessor
@@ -23,6 +25,9 @@ public final class LocationPathPattern extends Pattern {
     protected boolean firstElementPattern = false;
     protected boolean lastElementPattern = false;
     protected boolean specialFilter = false;
+    protected boolean usePositions = false;     // positions can be taken from the document
+    protected boolean sameNamePositions = false;
+    protected boolean memoizeAncestors = false; // results for the ancestor pattern can be remembered
 
     /**
     * Add a filter to the pattern (while under construction)
@@ -58,7 +63,10 @@ public final class LocationPathPattern extends Pattern {
         // simplify each component of the pattern
 
         if (parentPattern != null) parentPattern = parentPattern.simplify();
-        if (ancestorPattern != null) ancestorPattern = ancestorPattern.simplify();
+        if (ancestorPattern != null) {
+            ancestorPattern = ancestorPattern.simplify();
+            memoizeAncestors = isContextFree(ancestorPattern);
+        }
         if (filters != null) {
 	        for (int i=numberOfFilters-1; i>=0; i--) {
 	            Expression filter = filters[i].simplify();
@@ -102,6 +110,19 @@ public final class LocationPathPattern extends Pattern {
             specialFilter = true;
         }
 
+        // if the positions are counted among element siblings, or among element siblings
+        // of the same name, and there is at most one predicate, the position of the node can
+        // be taken from the sibling index of the document
+
+        if (specialFilter && numberOfFilters<=1 && nodeTest.getNodeType()==NodeInfo.ELEMENT) {
+            if (nodeTest instanceof NameTest) {
+                usePositions = true;
+                sameNamePositions = true;
+            } else if (nodeTest instanceof NodeTypeTest) {
+                usePositions = true;
+            }
+        }
+
         return this;
     }
 
@@ -146,14 +167,40 @@ public final class LocationPathPattern extends Pattern {
 
         if (ancestorPattern!=null) {
             NodeInfo anc = node.getParent();
-            while (true) {
-                if (ancestorPattern.matches(anc, context)) break;
-                anc = anc.getParent();
-                if (anc==null) return false;
+            Controller controller = context.getController();
+            Hashtable table = (memoizeAncestors && anc instanceof AbstractNode && controller!=null ?
+                                    controller.getAncestorMatchTable() : null);
+            if (table!=null) {
+                AncestorMemo memo = (AncestorMemo)table.get(this);
+                if (memo==null) {
+                    memo = new AncestorMemo();
+                    table.put(this, memo);
+                }
+                if (!hasMatchingAncestor(anc, context, memo)) return false;
+            } else {
+                while (true) {
+                    if (ancestorPattern.matches(anc, context)) break;
+                    anc = anc.getParent();
+                    if (anc==null) return false;
+                }
             }
         }
 
         if (specialFilter) {
+            if (usePositions && node instanceof AbstractNode) {
+                int pos = ((AbstractNode)node).getSiblingPosition(sameNamePositions);
+                if (pos>0) {
+                    int last = ((AbstractNode)node).getSiblingCount(sameNamePositions);
+                    if (firstElementPattern) {
+                        return pos==1;
+                    }
+                    if (lastElementPattern) {
+                        return pos==last;
+                    }
+                    return matchesAtPosition(node, pos, last, context);
+                }
+            }
+
             if (firstElementPattern) {
                 NodeEnumeration enm = node.getEnumeration(Axis.PRECEDING_SIBLING, nodeTest);
                 return !enm.hasMoreElements();
@@ -170,35 +217,154 @@ public final class LocationPathPattern extends Pattern {
                 // node is a member of the nodeset obtained by evaluating the
                 // equivalent expression
 
-                Context c = context.newContext();
+                Context c = context.newReusableContext();
                 c.setContextNode(node);
                 c.setPosition(1);
                 c.setLast(1);
                 NodeEnumeration nsv = equivalentExpr.enumerate(c, false);
+                boolean found = false;
                 while (nsv.hasMoreElements()) {
                 	NodeInfo n = nsv.nextElement();
                 	if (n.isSameNodeInfo(node)) {
-                		return true;
+                		found = true;
+                		break;
                 	}
                 }
-                return false;
+                c.releaseContext();
+                return found;
             }
         }
 
         if (filters!=null) {
-            Context c = context.newContext();
+            Context c = context.newReusableContext();
             c.setContextNode(node);
             c.setPosition(1);       // the filters aren't positional
             c.setLast(1);
 
             for (int i=0; i<numberOfFilters; i++) {
-                if (!filters[i].evaluateAsBoolean(c)) return false;
+                if (!filters[i].evaluateAsBoolean(c)) {
+                    c.releaseContext();
+                    return false;
+                }
             }
+            c.releaseContext();
         }
 
         return true;
     }
 
+    /**
+    * Determine whether a node or one of its ancestors matches the ancestor pattern, using and
+    * updating the results remembered for previous nodes. All the nodes visited on the way up are
+    * given the same result as the first node whose result is known, so each element of the
+    * document is tested against the pattern at most once in a transformation.
+    */
+
+    private boolean hasMatchingAncestor(NodeInfo anc, Context context, AncestorMemo memo)
+    throws XPathException {
+        DocumentInfo doc = anc.getDocumentRoot();
+        int[] path = memo.path;
+        int n = 0;
+        boolean match = false;
+        NodeInfo a = anc;
+        while (a!=null) {
+            int nr = (a instanceof AbstractNode ? ((AbstractNode)a).getNodeNumber() : -1);
+            if (nr<0) {
+                // no node number: search the rest of the way without remembering
+                while (a!=null && !match) {
+                    match = ancestorPattern.matches(a, context);
+                    a = a.getParent();
+                }
+                break;
+            }
+            int known = memo.get(doc, nr);
+            if (known>=0) {
+                match = (known==1);
+                break;
+            }
+            if (n==path.length) {
+                int[] p2 = new int[n*2];
+                System.arraycopy(path, 0, p2, 0, n);
+                path = p2;
+                memo.path = p2;
+            }
+            path[n++] = nr;
+            if (ancestorPattern.matches(a, context)) {
+                match = true;
+                break;
+            }
+            a = a.getParent();
+        }
+        for (int i=0; i<n; i++) {
+            memo.put(doc, path[i], match);
+        }
+        return match;
+    }
+
+    /**
+    * Determine whether the result of matching a pattern depends only on the node, so that it
+    * can be remembered for the rest of the transformation: that is, whether it is a node test,
+    * or a path pattern whose predicates do not use variables.
+    */
+
+    private static boolean isContextFree(Pattern pat) throws XPathException {
+        if (pat instanceof NodeTest) {
+            return true;
+        }
+        if (!(pat instanceof LocationPathPattern)) {
+            return false;
+        }
+        LocationPathPattern lpp = (LocationPathPattern)pat;
+        for (int i=0; i<lpp.numberOfFilters; i++) {
+            if ((lpp.filters[i].getDependencies() & (Context.VARIABLES | Context.CURRENT_NODE)) != 0) {
+                return false;
+            }
+        }
+        if (lpp.equivalentExpr!=null &&
+                (lpp.equivalentExpr.getDependencies() & (Context.VARIABLES | Context.CURRENT_NODE)) != 0) {
+            return false;
+        }
+        return (lpp.parentPattern==null || isContextFree(lpp.parentPattern)) &&
+                (lpp.ancestorPattern==null || isContextFree(lpp.ancestorPattern));
+    }
+
+    /**
+    * Evaluate the single predicate of a positional pattern, knowing the position of the node
+    * among its siblings. The rules are the same as for a predicate in a path expression (see
+    * FilterEnumerator).
+    * @param node the node to be tested
+    * @param pos the position of the node among the siblings that satisfy the node test
+    * @param last the number of siblings that satisfy the node test
+    */
+
+    private boolean matchesAtPosition(NodeInfo node, int pos, int last, Context context)
+    throws XPathException {
+        Expression filter = filters[0];
+        if (filter instanceof NumericValue) {
+            return (double)pos==((NumericValue)filter).asNumber();
+        }
+        Context c = context.newReusableContext();
+        c.setContextNode(node);
+        c.setPosition(pos);
+        c.setLast(last);
+        boolean found;
+        int dataType = filter.getDataType();
+        if (dataType==Value.NUMBER) {
+            found = ((double)pos==(int)filter.evaluateAsNumber(c));
+        } else if (dataType==Value.ANY) {
+            Value val = filter.evaluate(c);
+            if (val instanceof NumericValue) {
+                found = ((double)pos==val.asNumber());
+            } else {
+                found = val.asBoolean();
+            }
+        } else {
+            found = filter.evaluateAsBoolean(c);
+        }
+        c.releaseContext();
+        return found;
+    }
+
     /**
     * Determine the types of nodes to which this pattern applies. Used for optimisation.
     * For patterns that match nodes of several types, return Node.NODE
@@ -35,4 +35,13 @@ public abstract class Comparer {
         return (isAscending ? this : new DescendingComparer(this) );
     }
 
+    /**
+    * Determine whether this Comparer compares keys as numbers. If so, a caller may
+    * supply the keys as Double objects rather than as Strings.
+    */
+
+    public boolean isNumeric() {
+        return false;
+    }
+
 }
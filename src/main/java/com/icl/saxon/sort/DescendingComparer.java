@@ -27,4 +27,12 @@ public class DescendingComparer extends Comparer {
         return 0 - baseComparer.compare(a, b);
     }
 
+    /**
+    * Determine whether the keys are compared as numbers
+    */
+
+    public boolean isNumeric() {
+        return baseComparer.isNumeric();
+    }
+
 }
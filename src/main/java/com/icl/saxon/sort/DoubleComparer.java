@@ -11,14 +11,14 @@ import com.icl.saxon.expr.*;
 public class DoubleComparer extends Comparer {
 
     /**
-    * Compare two String objects according to their numeric values
+    * Compare two String or Double objects according to their numeric values
     * @return <0 if a<b, 0 if a=b, >0 if a>b
     * @throws ClassCastException if the objects are of the wrong type for this Comparer
     */
 
     public int compare(Object a, Object b) {
-        double a1 = Value.stringToNumber((String)a);
-        double b1 = Value.stringToNumber((String)b);
+        double a1 = toNumber(a);
+        double b1 = toNumber(b);
         if (Double.isNaN(a1)) {
             if (Double.isNaN(b1)) {
                 return 0;
@@ -34,5 +34,21 @@ public class DoubleComparer extends Comparer {
         return +1;
     }
 
+    private static double toNumber(Object key) {
+        if (key instanceof Double) {
+            return ((Double)key).doubleValue();
+        }
+        return Value.stringToNumber((String)key);
+    }
+
+    /**
+    * Determine whether the keys are compared as numbers: they are, so the keys may be
+    * supplied as Doubles, converted once, rather than as Strings converted at every comparison
+    */
+
+    public boolean isNumeric() {
+        return true;
+    }
+
 
 }
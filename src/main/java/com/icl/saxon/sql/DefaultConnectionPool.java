@@ -0,0 +1,178 @@
+package com.icl.saxon.sql;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.Stack;
+
+/**
+* The default SQLConnectionPool. Connections are obtained from the JDBC DriverManager, and
+* when released they are kept for reuse by a later sql:connect to the same database as the
+* same user. A limited number of idle connections is kept for each database and user; any
+* more are closed. Idle connections that are found to have been closed are discarded.<P>
+* Passwords are not kept: a connection is reused only by a request whose password has the
+* same digest as the one used to open it. The pool is locked only while its tables are
+* read or changed, never while connections are opened, checked or closed.
+*/
+
+public class DefaultConnectionPool implements SQLConnectionPool {
+
+    private int maxIdle;
+    private Hashtable idle = new Hashtable();               // key -> Stack of idle PooledConnections
+    private IdentityHashMap inUse = new IdentityHashMap();  // connection -> PooledConnection
+
+    /**
+    * Create a pool that keeps up to four idle connections for each database
+    */
+
+    public DefaultConnectionPool() {
+        this(4);
+    }
+
+    /**
+    * Create a pool
+    * @param maxIdle the number of idle connections kept for each database and user
+    */
+
+    public DefaultConnectionPool(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    public Connection getConnection(
+            String driver, String database, String user, String password)
+    throws SQLException {
+        String key = database + ' ' + user;
+        byte[] digest = digest(password);
+        while (true) {
+            PooledConnection p;
+            synchronized(this) {
+                Stack stack = (Stack)idle.get(key);
+                if (stack==null || stack.isEmpty()) {
+                    break;
+                }
+                p = (PooledConnection)stack.pop();
+            }
+            if (!MessageDigest.isEqual(p.digest, digest)) {
+                close(p.connection);
+            } else if (isUsable(p.connection)) {
+                synchronized(this) {
+                    inUse.put(p.connection, p);
+                }
+                return p.connection;
+            }
+        }
+
+        try {
+            // the following hack is necessary to load JDBC drivers
+            Class.forName(driver);
+        } catch (ClassNotFoundException err) {
+            throw new SQLException("JDBC driver " + driver + " not found");
+        }
+        Connection c = DriverManager.getConnection(database, user, password);
+        synchronized(this) {
+            inUse.put(c, new PooledConnection(c, key, digest));
+        }
+        return c;
+    }
+
+    public void releaseConnection(Connection connection) throws SQLException {
+        PooledConnection p;
+        synchronized(this) {
+            p = (PooledConnection)inUse.remove(connection);
+        }
+        if (p==null || connection.isClosed()) {
+            connection.close();
+            return;
+        }
+        if (!connection.getAutoCommit()) {
+            connection.rollback();      // discard anything not committed by the stylesheet
+        }
+        synchronized(this) {
+            Stack stack = (Stack)idle.get(p.key);
+            if (stack==null) {
+                stack = new Stack();
+                idle.put(p.key, stack);
+            }
+            if (stack.size() < maxIdle) {
+                stack.push(p);
+                return;
+            }
+        }
+        connection.close();
+    }
+
+    private static boolean isUsable(Connection c) {
+        try {
+            return c.isValid(5);
+        } catch (Throwable err) {
+            // older drivers do not implement isValid()
+            try {
+                return !c.isClosed();
+            } catch (SQLException err2) {
+                return false;
+            }
+        }
+    }
+
+    private static void close(Connection c) {
+        try {
+            c.close();
+        } catch (SQLException err) {
+            // the connection is being discarded anyway
+        }
+    }
+
+    /**
+    * Compute a digest of a password, so that the password itself need not be kept
+    */
+
+    private static byte[] digest(String password) throws SQLException {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return md.digest((password==null ? "" : password).getBytes("UTF-8"));
+        } catch (NoSuchAlgorithmException err) {
+            throw new SQLException("Cannot compute password digest: " + err.getMessage());
+        } catch (UnsupportedEncodingException err) {
+            throw new SQLException("Cannot compute password digest: " + err.getMessage());
+        }
+    }
+
+    /**
+    * A connection managed by the pool, with the key and password digest it was opened with
+    */
+
+    private static class PooledConnection {
+        Connection connection;
+        String key;
+        byte[] digest;
+
+        PooledConnection(Connection connection, String key, byte[] digest) {
+            this.connection = connection;
+            this.key = key;
+            this.digest = digest;
+        }
+    }
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael Kay
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
@@ -0,0 +1,112 @@
+package com.icl.saxon.sql;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+* An InsertBatch holds the prepared INSERT statement for one sql:insert element, together
+* with the rows that have been added to it but not yet sent to the database. Rows are sent
+* using JDBC batch updates when the batch is full, and committed (if the connection is not
+* in auto-commit mode) every so many rows. Any rows still pending are sent and committed
+* by sql:close.
+*/
+
+final class InsertBatch {
+
+    private SQLInsert owner;
+    private Connection connection;
+    private PreparedStatement statement;
+    private int batchSize;
+    private int commitInterval;
+    private int pending = 0;            // rows added to the batch but not yet executed
+    private int uncommitted = 0;        // rows executed but not yet committed
+
+    InsertBatch(SQLInsert owner, Connection connection, PreparedStatement statement,
+                int batchSize, int commitInterval) {
+        this.owner = owner;
+        this.connection = connection;
+        this.statement = statement;
+        this.batchSize = batchSize;
+        this.commitInterval = commitInterval;
+    }
+
+    SQLInsert getOwner() {
+        return owner;
+    }
+
+    PreparedStatement getStatement() {
+        return statement;
+    }
+
+    /**
+    * Add a row, whose column values have already been set on the statement
+    */
+
+    void addRow() throws SQLException {
+        if (batchSize <= 1) {
+            statement.executeUpdate();
+            uncommitted++;
+            commitIfDue();
+        } else {
+            statement.addBatch();
+            if (++pending >= batchSize) {
+                flush();
+                commitIfDue();
+            }
+        }
+    }
+
+    /**
+    * Send any pending rows to the database
+    */
+
+    void flush() throws SQLException {
+        if (pending > 0) {
+            statement.executeBatch();
+            uncommitted += pending;
+            pending = 0;
+        }
+    }
+
+    private void commitIfDue() throws SQLException {
+        if (uncommitted >= commitInterval && !connection.getAutoCommit()) {
+            connection.commit();
+            uncommitted = 0;
+        }
+    }
+
+    /**
+    * Send and commit any pending rows, and release the statement
+    */
+
+    void close() throws SQLException {
+        try {
+            flush();
+            if (uncommitted > 0 && !connection.getAutoCommit()) {
+                connection.commit();
+            }
+            uncommitted = 0;
+        } finally {
+            statement.close();
+        }
+    }
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael Kay
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
@@ -0,0 +1,169 @@
+package com.icl.saxon.sql;
+import com.icl.saxon.expr.XPathException;
+import com.icl.saxon.om.NamePool;
+import com.icl.saxon.om.NodeEnumeration;
+import com.icl.saxon.om.NodeInfo;
+import com.icl.saxon.tree.AttributeCollection;
+import com.icl.saxon.tree.DocumentImpl;
+import com.icl.saxon.tree.TreeBuilder;
+
+import javax.xml.transform.TransformerException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+* A ResultSetEnumeration presents the rows of a JDBC ResultSet as a sequence of element nodes.
+* Each row becomes a small tree of its own, consisting of a row element containing one
+* element for each column, whose content is the value of the column as a string (a null
+* value gives an empty element). Rows are fetched from the ResultSet only as they are
+* requested, so the result of a query is never held in memory as a whole.
+*/
+
+final class ResultSetEnumeration implements NodeEnumeration {
+
+    private static final int[] NO_NAMESPACES = new int[0];
+
+    private ResultSet resultSet;
+    private NamePool namePool;
+    private AttributeCollection noAttributes;
+    private int rowNameCode;
+    private int columnNameCode;
+    private int columns;
+    private boolean advanced = false;   // true if resultSet is positioned on the next row to return
+    private boolean more = false;
+    private SQLException error = null;
+
+    /**
+    * Create a ResultSetEnumeration. The ResultSet and its Statement are closed when the
+    * last row has been read, or when close() is called.
+    * @param resultSet the rows to be returned
+    * @param namePool the name pool used for the element names
+    * @param rowNameCode the name of the element representing each row
+    * @param columnNameCode the name of the element representing each column
+    */
+
+    ResultSetEnumeration(ResultSet resultSet, NamePool namePool,
+                         int rowNameCode, int columnNameCode) throws SQLException {
+        this.resultSet = resultSet;
+        this.namePool = namePool;
+        this.rowNameCode = rowNameCode;
+        this.columnNameCode = columnNameCode;
+        noAttributes = new AttributeCollection(namePool);
+        columns = resultSet.getMetaData().getColumnCount();
+    }
+
+    public boolean hasMoreElements() {
+        if (!advanced) {
+            advanced = true;
+            if (resultSet==null) {
+                more = false;
+            } else {
+                try {
+                    more = resultSet.next();
+                } catch (SQLException err) {
+                    error = err;
+                    more = true;        // so that nextElement() reports the error
+                }
+                if (!more) {
+                    close();
+                }
+            }
+        }
+        return more;
+    }
+
+    public NodeInfo nextElement() throws XPathException {
+        if (!hasMoreElements()) {
+            return null;
+        }
+        advanced = false;
+        try {
+            if (error!=null) {
+                throw error;
+            }
+            return makeRow();
+        } catch (SQLException err) {
+            close();
+            more = false;
+            throw new XPathException("(SQL) " + err.getMessage());
+        } catch (TransformerException err) {
+            close();
+            more = false;
+            throw new XPathException(err);
+        }
+    }
+
+    /**
+    * Build the tree for the current row of the ResultSet
+    */
+
+    private NodeInfo makeRow() throws SQLException, TransformerException {
+        TreeBuilder builder = new TreeBuilder();
+        builder.setNamePool(namePool);
+        builder.startDocument();
+        builder.startElement(rowNameCode, noAttributes, NO_NAMESPACES, 0);
+        for (int i=1; i<=columns; i++) {
+            builder.startElement(columnNameCode, noAttributes, NO_NAMESPACES, 0);
+            String value = resultSet.getString(i);
+            if (value!=null && value.length()>0) {
+                char[] chars = value.toCharArray();
+                builder.characters(chars, 0, chars.length);
+            }
+            builder.endElement(columnNameCode);
+        }
+        builder.endElement(rowNameCode);
+        builder.endDocument();
+        return (NodeInfo)((DocumentImpl)builder.getCurrentDocument()).getDocumentElement();
+    }
+
+    /**
+    * Release the ResultSet and its Statement. This may be called at any time.
+    */
+
+    void close() {
+        if (resultSet!=null) {
+            try {
+                Statement statement = resultSet.getStatement();
+                resultSet.close();
+                if (statement!=null) {
+                    statement.close();
+                }
+            } catch (SQLException err) {
+                // ignore: we have finished with it
+            }
+            resultSet = null;
+        }
+    }
+
+    public boolean isSorted() {
+        return false;
+    }
+
+    public boolean isReverseSorted() {
+        return false;
+    }
+
+    public boolean isPeer() {
+        return true;
+    }
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael Kay
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
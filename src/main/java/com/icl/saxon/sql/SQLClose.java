@@ -6,11 +6,14 @@ import com.icl.saxon.expr.*;
 import org.xml.sax.SAXException;
 import org.xml.sax.AttributeList;
 import java.sql.*;
+import java.util.Vector;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerConfigurationException;
 
 /**
 * An sql:close element in the stylesheet.<BR>
+* Any rows still waiting in sql:insert batches are written and committed, and the
+* connection is returned to the connection pool.
 */
 
 public class SQLClose extends StyleElement {
@@ -49,15 +52,35 @@ public class SQLClose extends StyleElement {
 
         // Prepare the SQL statement
 
+        Controller controller = context.getController();
 		NodeInfo sourceDoc = (context.getCurrentNodeInfo()).getDocumentRoot();
-        Connection connection = (Connection)context.getController().getUserData(
+        Connection connection = (Connection)controller.getUserData(
                                               sourceDoc, "sql:connection");
         if (connection==null) {
             throw styleError("No SQL connection has been established");
         }
+        Statement statement = (Statement)controller.getUserData(sourceDoc, "sql:statement");
+        Vector batches = (Vector)controller.getUserData(sourceDoc, "sql:batches");
+
+        controller.setUserData(sourceDoc, "sql:connection", null);
+        controller.setUserData(sourceDoc, "sql:statement", null);
+        controller.setUserData(sourceDoc, "sql:batches", null);
 
 		try {
-            connection.close();
+		    try {
+		        if (batches!=null) {
+		            for (int i=0; i<batches.size(); i++) {
+		                InsertBatch batch = (InsertBatch)batches.elementAt(i);
+		                controller.setUserData(batch.getOwner(), "sql:batch", null);
+		                batch.close();
+		            }
+		        }
+		        if (statement!=null) {
+		            statement.close();
+		        }
+		    } finally {
+                SQLConnect.getConnectionPool().releaseConnection(connection);
+            }
 	    } catch (SQLException ex) {
 			throw styleError("(SQL) Failed to close connection: " + ex.getMessage());
         }
@@ -11,10 +11,13 @@ import javax.xml.transform.TransformerConfigurationException;
 
 /**
 * An sql:connect element in the stylesheet.<BR>
+* The connection is obtained from a SQLConnectionPool, and returned to it by sql:close.
 */
 
 public class SQLConnect extends StyleElement {
 
+    private static SQLConnectionPool connectionPool = new DefaultConnectionPool();
+
     Expression database;
     Expression driver;
     Expression user;
@@ -83,6 +86,23 @@ public class SQLConnect extends StyleElement {
         checkWithinTemplate();
     }
 
+    /**
+    * Set the pool from which sql:connect obtains its connections. This affects all
+    * stylesheets subsequently executed in the Java VM.
+    */
+
+    public static synchronized void setConnectionPool(SQLConnectionPool pool) {
+        connectionPool = pool;
+    }
+
+    /**
+    * Get the pool from which sql:connect obtains its connections
+    */
+
+    public static synchronized SQLConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
     public void process( Context context ) throws TransformerException {
 
         // Establish the JDBC connection
@@ -96,10 +116,8 @@ public class SQLConnect extends StyleElement {
         String pwdString = password.evaluateAsString(context);
 
         try {
-            // the following hack is necessary to load JDBC drivers
-	        Class.forName(dbDriverString);
-
-            connection = DriverManager.getConnection(dbString, userString, pwdString);
+            connection = getConnectionPool().getConnection(
+                                dbDriverString, dbString, userString, pwdString);
             sql = connection.createStatement();
         } catch (Exception ex) {
             throw new TransformerException("JDBC Connection Failure: " + ex.getMessage());
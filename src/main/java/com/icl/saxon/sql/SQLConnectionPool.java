@@ -0,0 +1,51 @@
+package com.icl.saxon.sql;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+* A SQLConnectionPool supplies the JDBC connections used by sql:connect, and takes them back
+* when sql:close is executed. The pool in use can be changed by calling
+* SQLConnect.setConnectionPool(), for example to obtain connections from an application
+* server's DataSource.
+*/
+
+public interface SQLConnectionPool {
+
+    /**
+    * Get a connection to a database
+    * @param driver the class name of the JDBC driver
+    * @param database the JDBC URL of the database
+    * @param user the user name
+    * @param password the password
+    */
+
+    public Connection getConnection(String driver, String database, String user, String password)
+    throws SQLException;
+
+    /**
+    * Return a connection to the pool. The connection must not be used by the caller after
+    * this call.
+    */
+
+    public void releaseConnection(Connection connection) throws SQLException;
+
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael Kay
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
@@ -21,6 +21,7 @@ public class SQLElementFactory implements ExtensionElementFactory {
         if (localname.equals("insert")) return SQLInsert.class;
         if (localname.equals("column")) return SQLColumn.class;
         if (localname.equals("close")) return SQLClose.class;
+        if (localname.equals("query")) return SQLQuery.class;
         return null;
     }
 
@@ -7,16 +7,22 @@ import org.xml.sax.SAXException;
 import org.xml.sax.AttributeList;
 import org.w3c.dom.Node;
 import java.sql.*;
-//import java.util.*;
+import java.util.Vector;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 /**
 * An sql:insert element in the stylesheet.<BR>
+* The optional batch-size attribute causes rows to be sent to the database in batches of
+* that size; commit-interval gives the number of rows between commits when the connection
+* is not in auto-commit mode (default: the batch size). Rows still pending are written
+* by sql:close.
 */
 
 public class SQLInsert extends StyleElement {
 
     String table;
+    int batchSize = 1;
+    int commitInterval = -1;
 
     /**
     * Determine whether this node is an instruction.
@@ -42,6 +48,26 @@ public class SQLInsert extends StyleElement {
 		table = getAttribute("table");
 		if (table==null) reportAbsence("table");
 
+        batchSize = getPositiveInteger("batch-size", 1);
+        commitInterval = getPositiveInteger("commit-interval", batchSize);
+    }
+
+    private int getPositiveInteger(String name, int defaultValue)
+    throws TransformerConfigurationException {
+        String att = attributeList.getValue(name);
+        if (att==null) {
+            return defaultValue;
+        }
+        try {
+            int n = Integer.parseInt(att.trim());
+            if (n > 0) {
+                return n;
+            }
+        } catch (NumberFormatException err) {
+            // fall through
+        }
+        compileError(name + " must be a positive integer");
+        return defaultValue;
     }
 
     public void validate() throws TransformerConfigurationException {
@@ -60,11 +86,10 @@ public class SQLInsert extends StyleElement {
             throw styleError("No SQL connection has been established");
         }
 
-        PreparedStatement ps =(PreparedStatement)controller.getUserData(
-                                              this, "sql:statement");
+        InsertBatch batch = (InsertBatch)controller.getUserData(this, "sql:batch");
 
         try {
-            if (ps==null) {
+            if (batch==null) {
 
                 StringBuffer statement = new StringBuffer();
                 statement.append("INSERT INTO " + table + " (");
@@ -95,9 +120,20 @@ public class SQLInsert extends StyleElement {
 
                 // Prepare the SQL statement
 
-            	ps=connection.prepareStatement(statement.toString());
-            	controller.setUserData(this, "sql:statement", ps);
+            	PreparedStatement stmt = connection.prepareStatement(statement.toString());
+            	batch = new InsertBatch(this, connection, stmt, batchSize, commitInterval);
+            	controller.setUserData(this, "sql:batch", batch);
+
+                // register the batch with the connection, so that sql:close can flush it
+
+                Vector batches = (Vector)controller.getUserData(sourceDoc, "sql:batches");
+                if (batches==null) {
+                    batches = new Vector();
+                    controller.setUserData(sourceDoc, "sql:batches", batches);
+                }
+                batches.addElement(batch);
             }
+            PreparedStatement ps = batch.getStatement();
 
             // Add the actual column values to be inserted
 
@@ -122,10 +158,7 @@ public class SQLInsert extends StyleElement {
     			child2 = child2.getNextSibling();
     		}
 
-			int num = ps.executeUpdate();
-			if (!connection.getAutoCommit()) {
-                connection.commit();
-            }
+			batch.addRow();
 
 	    } catch (SQLException ex) {
 			throw styleError("(SQL) " + ex.getMessage());
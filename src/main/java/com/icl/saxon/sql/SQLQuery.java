@@ -0,0 +1,196 @@
+package com.icl.saxon.sql;
+import com.icl.saxon.*;
+import com.icl.saxon.om.Name;
+import com.icl.saxon.om.NodeEnumeration;
+import com.icl.saxon.om.NodeInfo;
+import com.icl.saxon.style.*;
+import com.icl.saxon.expr.*;
+import com.icl.saxon.output.Outputter;
+import org.w3c.dom.Node;
+import java.sql.*;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerConfigurationException;
+
+/**
+* An sql:query element in the stylesheet.<BR>
+* The element executes the statement SELECT column FROM table WHERE where, using the connection
+* established by sql:connect. The attributes table, column (default "*") and where (optional) are
+* attribute value templates. Each row of the result is represented by an element named by the
+* row-tag attribute (default "row"), containing one element for each column, named by the
+* column-tag attribute (default "col").<BR>
+* If the sql:query element has content, the content is instantiated once for each row, with
+* the row element as the current node; otherwise the row elements are copied to the result tree.
+* Rows are read from the database as they are processed, fetch-size rows at a time (default 100).
+*/
+
+public class SQLQuery extends StyleElement {
+
+    Expression table;
+    Expression column;
+    Expression where;
+    int rowNameCode;
+    int columnNameCode;
+    int fetchSize = 100;
+    boolean hasBody = false;
+
+    /**
+    * Determine whether this node is an instruction.
+    * @return true - it is an instruction
+    */
+
+    public boolean isInstruction() {
+        return true;
+    }
+
+    /**
+    * Determine whether this type of element is allowed to contain a template-body
+    * @return true: yes, it may contain a template-body
+    */
+
+    public boolean mayContainTemplateBody() {
+        return true;
+    }
+
+    public void prepareAttributes() throws TransformerConfigurationException {
+
+        String tableAtt = attributeList.getValue("table");
+        if (tableAtt==null) {
+            reportAbsence("table");
+        } else {
+            table = makeAttributeValueTemplate(tableAtt);
+        }
+
+        String columnAtt = attributeList.getValue("column");
+        column = makeAttributeValueTemplate(columnAtt==null ? "*" : columnAtt);
+
+        String whereAtt = attributeList.getValue("where");
+        where = makeAttributeValueTemplate(whereAtt==null ? "" : whereAtt);
+
+        rowNameCode = makeTagName("row-tag", "row");
+        columnNameCode = makeTagName("column-tag", "col");
+
+        String fetchAtt = attributeList.getValue("fetch-size");
+        if (fetchAtt!=null) {
+            try {
+                fetchSize = Integer.parseInt(fetchAtt.trim());
+            } catch (NumberFormatException err) {
+                fetchSize = -1;
+            }
+            if (fetchSize < 0) {
+                compileError("fetch-size must be a non-negative integer");
+            }
+        }
+    }
+
+    private int makeTagName(String attName, String defaultName)
+    throws TransformerConfigurationException {
+        String tag = attributeList.getValue(attName);
+        if (tag==null) {
+            tag = defaultName;
+        } else if (!Name.isNCName(tag)) {
+            compileError(attName + " must be a valid element name without a prefix");
+        }
+        return getNamePool().allocate("", "", tag);
+    }
+
+    public void validate() throws TransformerConfigurationException {
+        checkWithinTemplate();
+        Node child = getFirstChild();
+        while (child!=null) {
+            if (!(child instanceof XSLFallback)) {
+                hasBody = true;
+            }
+            child = child.getNextSibling();
+        }
+    }
+
+    public void process( Context context ) throws TransformerException {
+
+        Controller controller = context.getController();
+		NodeInfo sourceDoc = (context.getCurrentNodeInfo()).getDocumentRoot();
+        Connection connection = (Connection)controller.getUserData(
+                                              sourceDoc, "sql:connection");
+        if (connection==null) {
+            throw styleError("No SQL connection has been established");
+        }
+
+        StringBuffer statement = new StringBuffer();
+        statement.append("SELECT " + column.evaluateAsString(context) +
+                         " FROM " + table.evaluateAsString(context));
+        String condition = where.evaluateAsString(context);
+        if (condition.length() > 0) {
+            statement.append(" WHERE " + condition);
+        }
+
+        ResultSetEnumeration rows;
+        try {
+            Statement stmt = connection.createStatement(
+                                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            try {
+                stmt.setFetchSize(fetchSize);
+                rows = new ResultSetEnumeration(stmt.executeQuery(statement.toString()),
+                            controller.getNamePool(), rowNameCode, columnNameCode);
+            } catch (SQLException ex) {
+                stmt.close();
+                throw ex;
+            }
+	    } catch (SQLException ex) {
+			throw styleError("(SQL) " + ex.getMessage());
+        }
+
+        try {
+            if (hasBody) {
+                processRows(rows, context);
+            } else {
+                Outputter out = controller.getOutputter();
+                while (rows.hasMoreElements()) {
+                    rows.nextElement().copy(out);
+                }
+            }
+        } finally {
+            rows.close();
+        }
+    }
+
+    /**
+    * Instantiate the content of the element for each row, as xsl:for-each does
+    */
+
+    private void processRows(NodeEnumeration rows, Context context) throws TransformerException {
+        XSLTemplate saveCurrent = context.getCurrentTemplate();
+        context.setCurrentTemplate(null);
+        LookaheadEnumerator selection = new LookaheadEnumerator(rows);
+        Context c = context.newReusableContext();
+        c.setLastPositionFinder(selection);
+        int position = 1;
+        while (selection.hasMoreElements()) {
+            NodeInfo row = selection.nextElement();
+            c.setPosition(position++);
+            c.setCurrentNode(row);
+            c.setContextNode(row);
+            processChildren(c);
+            context.setReturnValue(c.getReturnValue());
+        }
+        c.releaseContext();
+        context.setCurrentTemplate(saveCurrent);
+    }
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael Kay
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
@@ -19,6 +19,14 @@ public class AbsentExtensionElement extends StyleElement {
         return true;
     }
 
+    /**
+    * The effect of an unavailable extension element is not known
+    */
+
+    public boolean hasSideEffects() {
+        return true;
+    }
+
     public void prepareAttributes() throws TransformerConfigurationException {
     }
 
@@ -221,6 +221,12 @@ public class ExpressionContext implements StaticContext {
     */
 
     public Class getExternalJavaClass(String uri) throws TransformerException {
+        // this is called when an extension function call is compiled
+        element.getPrincipalStyleSheet().setUsesExtensionFunctions();
+        return findExternalJavaClass(uri);
+    }
+
+    private Class findExternalJavaClass(String uri) throws TransformerException {
 
         // First try to use an xsl:script element if there is one
 
@@ -315,7 +321,7 @@ public class ExpressionContext implements StaticContext {
     			if (f!=null) return true;
     		}
 
-          	Class theClass = getExternalJavaClass(uri);
+          	Class theClass = findExternalJavaClass(uri);
           	if (theClass==null) {
           	    return false;
           	}
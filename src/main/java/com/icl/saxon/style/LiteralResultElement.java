@@ -252,6 +252,23 @@ public class LiteralResultElement extends StyleElement {
         }
     }
 
+    /**
+    * Determine whether the output is the same in every transformation. This is true if the
+    * attributes and the content are, and no attribute sets are used.
+    */
+
+    public boolean isDocumentIndependent() {
+        if (attributeSets!=null) {
+            return false;
+        }
+        for (int i=0; i<numberOfAttributes; i++) {
+            if (!isDocumentIndependent(attributeValues[i])) {
+                return false;
+            }
+        }
+        return childrenAreDocumentIndependent();
+    }
+
 	/**
 	* Process the literal result element by copying it to the result tree
 	*/
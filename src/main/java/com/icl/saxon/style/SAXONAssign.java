@@ -23,6 +23,14 @@ public class SAXONAssign extends XSLGeneralVariable {
         return true;
     }
 
+    /**
+    * saxon:assign changes the value of a variable, so it has side effects
+    */
+
+    public boolean hasSideEffects() {
+        return true;
+    }
+
 
     public void validate() throws TransformerConfigurationException {
         checkWithinTemplate();
@@ -26,6 +26,15 @@ public class SAXONGroup extends XSLForEach {
         return true;
     }
 
+    /**
+    * saxon:group maintains a stack of group activations in the Context, which is shared
+    * with any templates it invokes; treat it as having side effects
+    */
+
+    public boolean hasSideEffects() {
+        return true;
+    }
+
 
     public void prepareAttributes() throws TransformerConfigurationException {
 
@@ -68,6 +68,14 @@ public class SAXONHandler extends XSLTemplate {
     public void process(Context context) throws TransformerException {
     }
 
+    /**
+    * The user-written node handler may do anything, so assume it has side effects
+    */
+
+    public boolean hasSideEffects() {
+        return true;
+    }
+
     /**
     * Invoke the node handler. Called directly only when doing XSLCallTemplate
     */
@@ -118,6 +118,72 @@ public abstract class StyleElement extends ElementWithAttributes
         return false;
     }
 
+    /**
+    * Determine whether instantiating this element, or any element it contains, can do
+    * anything other than write to the current output destination: for example, assign a
+    * variable, write a message, or call a user-written node handler. Extension elements
+    * are assumed to have side effects. The default implementation examines the children.
+    */
+
+    public boolean hasSideEffects() {
+        if (!(this instanceof LiteralResultElement)) {
+            short uriCode = getNamePool().getURICode(getNameCode());
+            if (uriCode!=Namespace.XSLT_CODE && uriCode!=Namespace.SAXON_CODE &&
+                    uriCode!=Namespace.EXSLT_FUNCTIONS_CODE) {
+                return true;
+            }
+        }
+        NodeImpl child = (NodeImpl)getFirstChild();
+        while (child != null) {
+            if (child instanceof StyleElement && ((StyleElement)child).hasSideEffects()) {
+                return true;
+            }
+            child = (NodeImpl)child.getNextSibling();
+        }
+        return false;
+    }
+
+    /**
+    * Determine whether the output of this element is the same in every transformation that
+    * uses the stylesheet: that is, whether it depends only on the stylesheet, and not on the
+    * source document, the context, or the global parameters. Global variables referenced
+    * are allowed, since they are checked separately. The default implementation returns
+    * false; only a few instructions are examined.
+    */
+
+    public boolean isDocumentIndependent() {
+        return false;
+    }
+
+    /**
+    * Determine whether all the children of this element are document-independent
+    * (see isDocumentIndependent()). Text nodes are.
+    */
+
+    protected boolean childrenAreDocumentIndependent() {
+        NodeImpl child = (NodeImpl)getFirstChild();
+        while (child != null) {
+            if (child instanceof StyleElement) {
+                if (!((StyleElement)child).isDocumentIndependent()) {
+                    return false;
+                }
+            } else if (child.getNodeType()!=NodeInfo.TEXT) {
+                return false;
+            }
+            child = (NodeImpl)child.getNextSibling();
+        }
+        return true;
+    }
+
+    /**
+    * Determine whether the value of an expression is the same in every transformation:
+    * that is, whether it depends on nothing other than variables and the Controller
+    */
+
+    protected static boolean isDocumentIndependent(Expression exp) {
+        return (exp.getDependencies() & ~(Context.VARIABLES | Context.CONTROLLER)) == 0;
+    }
+
 	/**
 	* Get the containing XSLStyleSheet element
 	*/
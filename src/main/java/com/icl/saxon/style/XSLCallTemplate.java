@@ -1,11 +1,11 @@
 package com.icl.saxon.style;
 import com.icl.saxon.Bindery;
 import com.icl.saxon.Context;
+import com.icl.saxon.FeatureKeys;
 import com.icl.saxon.ParameterSet;
 import com.icl.saxon.expr.Expression;
 import com.icl.saxon.om.Name;
 import com.icl.saxon.om.NamespaceException;
-import com.icl.saxon.om.Navigator;
 import com.icl.saxon.tree.AttributeCollection;
 import com.icl.saxon.tree.NodeImpl;
 
@@ -21,7 +21,7 @@ public class XSLCallTemplate extends StyleElement {
 
     private int calledTemplateFingerprint = -1;   // the fingerprint of the called template
     private XSLTemplate template = null;
-    private boolean useTailRecursion = false;
+    private XSLTemplate enclosingTemplate = null;   // set if the call is in tail position
     private Expression calledTemplateExpression;    // allows name to be an AVT
     private String calledTemplateName = null;       // used only for diagnostics
 
@@ -90,27 +90,33 @@ public class XSLCallTemplate extends StyleElement {
 
         if (calledTemplateExpression==null) {
             template = findTemplate(calledTemplateFingerprint);
+        }
 
-            // Use tail recursion if the template is calling itself, and if neither this instruction
-            // nor any ancestor instruction has a following sibling. Avoid tail recursion if called
-            // within any element that needs to do further processing after instantiating its children,
-            // e.g. a literal result element, which needs to write out the end tag
-
-            if (Navigator.isAncestor(template, this)) {
-                useTailRecursion = true;
-                StyleElement n = this;
-                while (n!=template) {
-                    if ((n.isInstruction() && n.getNextSibling()!=null) ||
-                    		 n.doesPostProcessing()) {
-                        useTailRecursion = false;
-                        break;
-                    }
-                    n = (StyleElement)n.getParentNode();
-                }
-                // System.err.println((useTailRecursion ? "" : "NOT ") + "Using tail recursion at line " + getLineNumber());
+        // Use a tail call if neither this instruction nor any ancestor instruction within the
+        // containing template has a following sibling. Avoid tail calls if called within any
+        // element that needs to do further processing after instantiating its children,
+        // e.g. a literal result element, which needs to write out the end tag. The called
+        // template need not be the containing template, so mutual recursion is handled too.
+
+        NodeImpl n = this;
+        while (!(n instanceof XSLTemplate)) {
+            if (!(n instanceof StyleElement) ||
+                    (((StyleElement)n).isInstruction() && n.getNextSibling()!=null) ||
+                    ((StyleElement)n).doesPostProcessing()) {
+                return;
             }
+            n = (NodeImpl)n.getParentNode();
+        }
+        enclosingTemplate = (XSLTemplate)n;
+        enclosingTemplate.setContainsTailCall();
+
+        Boolean timing = (Boolean)getPreparedStyleSheet().getTransformerFactory().
+                                getAttribute(FeatureKeys.TIMING);
+        if (timing!=null && timing.booleanValue()) {
+            System.err.println("Tail call to template " +
+                (calledTemplateName==null ? "(computed name)" : calledTemplateName) +
+                " at line " + getLineNumber() + " of " + getSystemId());
         }
-
     }
 
     private XSLTemplate findTemplate(int fingerprint)
@@ -185,14 +191,18 @@ public class XSLCallTemplate extends StyleElement {
 
         // Call the named template
 
-        if (useTailRecursion) {
+        // a tail call to a different template is not made when tracing, so that the trace
+        // listener sees each template entered and left
+
+        if (enclosingTemplate!=null &&
+                (target==enclosingTemplate || !context.getController().isTracing())) {
             if (params==null) {                 // bug 490967
                 params = new ParameterSet();
             }
-            context.setTailRecursion(params);
+            context.setTailCall((target==enclosingTemplate ? null : target), params);
             // we now just let the stack unwind until we get back to the xsl:template element;
-            // at that point the template will detect that there has been a tail-recursive call,
-            // and iterate to achieve the effect of calling itself.
+            // at that point the template will detect that there has been a tail call,
+            // and iterate to achieve the effect of calling the target template.
         } else {
             Bindery bindery = context.getBindery();
             bindery.openStackFrame(params);
@@ -51,6 +51,10 @@ public class XSLCopyOf extends StyleElement {
         }
     }
 
+    public boolean isDocumentIndependent() {
+        return select!=null && isDocumentIndependent(select);
+    }
+
     public void validate() throws TransformerConfigurationException {
         checkWithinTemplate();
         checkEmpty();
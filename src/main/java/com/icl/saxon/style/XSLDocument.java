@@ -43,6 +43,14 @@ public class XSLDocument extends XSLGeneralOutput {
         return true;
     }
 
+    /**
+    * xsl:document writes to a secondary output destination, so it has side effects
+    */
+
+    public boolean hasSideEffects() {
+        return true;
+    }
+
     /**
     * Determine whether this type of element is allowed to contain a template-body
     * @return true: yes, it may contain a template-body
@@ -77,29 +85,40 @@ public class XSLDocument extends XSLGeneralOutput {
         Properties details =  new Properties(prevProps);
         updateOutputProperties(details, context);
         Result result = null;
-        FileOutputStream stream;
+        FileOutputStream stream = null;
+        ByteArrayOutputStream buffer = null;
 
         // following code to create any directory that doesn't exist is courtesy of
         // Brett Knights [brett@knightsofthenet.com]
         // Modified by MHK to work with JDK 1.1
 
         String outFileName = href.evaluateAsString(context);
-        try {
-		    File outFile = new File(outFileName);
-	        if (!outFile.exists()) {
-	            String parent = outFile.getParent();        // always returns null with Microsoft JVM?
-	            if (parent!=null && !Version.isPreJDK12()) {
-    				File parentPath = new File(parent);
-    				if (parentPath != null && !parentPath.exists()) {
- 						parentPath.mkdirs();
-    				}
-				    outFile.createNewFile();                // JDK 1.2 method
-	            }
-		    }
-		    stream = new FileOutputStream(outFile);
-            result = new StreamResult(stream);
-        } catch (java.io.IOException err) {
-            throw new TransformerException("Failed to create output file " + outFileName, err);
+
+        // if the file can be written in the background, serialize the output to memory;
+        // the directory and file are created when it is written
+
+        AsyncOutputManager async = (nextInChain==null ? c.getAsyncOutputManager() : null);
+        if (async != null) {
+            buffer = new ByteArrayOutputStream(4096);
+            result = new StreamResult(buffer);
+        } else {
+            try {
+    		    File outFile = new File(outFileName);
+    	        if (!outFile.exists()) {
+    	            String parent = outFile.getParent();        // always returns null with Microsoft JVM?
+    	            if (parent!=null && !Version.isPreJDK12()) {
+        				File parentPath = new File(parent);
+        				if (parentPath != null && !parentPath.exists()) {
+     						parentPath.mkdirs();
+        				}
+    				    outFile.createNewFile();                // JDK 1.2 method
+    	            }
+    		    }
+    		    stream = new FileOutputStream(outFile);
+                result = new StreamResult(stream);
+            } catch (java.io.IOException err) {
+                throw new TransformerException("Failed to create output file " + outFileName, err);
+            }
         }
 
         if (nextInChain != null) {
@@ -116,10 +135,14 @@ public class XSLDocument extends XSLGeneralOutput {
         c.changeOutputDestination(details, result);
         processChildren(context);
         c.resetOutputDestination(oldOutputter);
-        try {
-            stream.close();
-        } catch (java.io.IOException err) {
-            throw new TransformerException("Failed to close output file", err);
+        if (async != null) {
+            async.write(new File(outFileName), buffer);
+        } else {
+            try {
+                stream.close();
+            } catch (java.io.IOException err) {
+                throw new TransformerException("Failed to close output file", err);
+            }
         }
     }
 
@@ -76,7 +76,7 @@ public class XSLForEach extends StyleElement {
             selection = new LookaheadEnumerator(selection);
         }
 
-        Context c = context.newContext();
+        Context c = context.newReusableContext();
         c.setLastPositionFinder((LastPositionFinder)selection);
         int position = 1;
 
@@ -102,6 +102,7 @@ public class XSLForEach extends StyleElement {
                 context.setReturnValue(c.getReturnValue());
             }
         }
+        c.releaseContext();
         context.setCurrentTemplate(saveCurrent);
     }
 
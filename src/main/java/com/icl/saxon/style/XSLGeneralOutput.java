@@ -11,7 +11,6 @@ import com.icl.saxon.output.SaxonOutputKeys;
 import com.icl.saxon.tree.AttributeCollection;
 
 import javax.xml.transform.*;
-import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.sax.TransformerHandler;
 import java.util.Enumeration;
 import java.util.Hashtable;
@@ -267,16 +266,12 @@ abstract class XSLGeneralOutput extends StyleElement {
     protected TransformerHandler prepareNextStylesheet(String href, Context context)
     throws TransformerException {
 
-        //TODO: should cache the results, we are recompiling the referenced
-        //stylesheet each time it's used
-
         TransformerFactoryImpl factory =
             getPreparedStyleSheet().getTransformerFactory();
         URIResolver resolver = context.getController().getURIResolver();
         Source source = resolver.resolve(href, getSystemId());
-        SAXSource saxSource = factory.getSAXSource(source, true);
 
-        Templates next = factory.newTemplates(source);
+        Templates next = factory.getCachedTemplates(source);
         TransformerHandler nextTransformer = factory.newTransformerHandler(next);
         return nextTransformer;
     }
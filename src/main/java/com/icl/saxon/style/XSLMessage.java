@@ -28,6 +28,14 @@ public class XSLMessage extends StyleElement {
         return true;
     }
 
+    /**
+    * xsl:message writes to the message emitter, and may terminate the transformation
+    */
+
+    public boolean hasSideEffects() {
+        return true;
+    }
+
     /**
     * Determine whether this type of element is allowed to contain a template-body
     * @return true: yes, it may contain a template-body
@@ -211,8 +211,11 @@ public class XSLNumber extends StyleElement {
             return;
         }
 
-        if (numberer==null) {
-            numberer = makeNumberer(lang.evaluateAsString(context));
+        // a numberer chosen at run-time is not saved, since the lang attribute may
+        // have a different value next time, perhaps on another thread
+        Numberer numb = numberer;
+        if (numb==null) {
+            numb = makeNumberer(lang.evaluateAsString(context));
         }
 
         if (letterValue==null) {
@@ -237,7 +240,7 @@ public class XSLNumber extends StyleElement {
             nf = formatter;
         }
 
-        String s = nf.format(vec, gpsize, gpseparator, letterVal, numberer);
+        String s = nf.format(vec, gpsize, gpseparator, letterVal, numb);
         context.getOutputter().writeContent(s);
     }
 
@@ -69,6 +69,12 @@ public class XSLStyleSheet extends StyleElement {
                 // count of the maximum umber of local variables in any template
     private int largestStackFrame = 0;
 
+                // set if any expression calls an extension function
+    private boolean usesExtensionFunctions = false;
+
+                // set if no instruction in the stylesheet has side effects
+    private boolean sideEffectFree = false;
+
 
     /**
     * Create link to the owning PreparedStyleSheet object
@@ -250,6 +256,14 @@ public class XSLStyleSheet extends StyleElement {
         return numberOfVariables++;
     }
 
+    /**
+    * Get the number of slots allocated for global variables and parameters
+    */
+
+    public int getNumberOfGlobalVariables() {
+        return numberOfVariables;
+    }
+
     /**
     * Ensure there is enuogh space for local variables or parameters in any template
     */
@@ -260,6 +274,44 @@ public class XSLStyleSheet extends StyleElement {
         }
     }
 
+    /**
+    * Note that an expression in the stylesheet calls an extension function
+    */
+
+    public void setUsesExtensionFunctions() {
+        usesExtensionFunctions = true;
+    }
+
+    /**
+    * Determine whether the templates in this stylesheet can be instantiated in any order,
+    * or concurrently, without changing the result. This is true if no instruction has side
+    * effects (see StyleElement.hasSideEffects()) and no extension functions are called.
+    * Only meaningful once the stylesheet has been preprocessed.
+    */
+
+    public boolean isSideEffectFree() {
+        return sideEffectFree;
+    }
+
+    /**
+    * Get the global variables whose values are the same in every transformation
+    * (see StyleElement.isDocumentIndependent()), in order of declaration. Variables that
+    * are overridden by others of higher import precedence are not included.
+    * @return a Vector of XSLVariable objects
+    */
+
+    public Vector getDocumentIndependentVariables() {
+        Vector list = new Vector();
+        for (int i=0; i<topLevel.size(); i++) {
+            Object s = topLevel.elementAt(i);
+            if (s instanceof XSLVariable && !((XSLVariable)s).redundant &&
+                    ((XSLVariable)s).isDocumentIndependent()) {
+                list.addElement(s);
+            }
+        }
+        return list;
+    }
+
     /**
     * Prepare the attributes on the stylesheet element
     */
@@ -374,6 +426,16 @@ public class XSLStyleSheet extends StyleElement {
             }
         }
 
+        // Determine whether templates may be instantiated on parallel threads
+
+        sideEffectFree = !usesExtensionFunctions;
+        for (int i=0; sideEffectFree && i<topLevel.size(); i++) {
+            Object s = topLevel.elementAt(i);
+            if (s instanceof StyleElement && ((StyleElement)s).hasSideEffects()) {
+                sideEffectFree = false;
+            }
+        }
+
     }
 
     /**
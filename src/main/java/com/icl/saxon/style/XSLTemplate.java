@@ -22,6 +22,7 @@ public class XSLTemplate extends StyleElement implements NodeHandler {
     protected double priority;
     protected Procedure procedure = new Procedure();
     protected boolean needsStackFrame;
+    protected boolean containsTailCall = false;
 
     /**
     * Determine whether this type of element is allowed to contain a template-body
@@ -61,7 +62,16 @@ public class XSLTemplate extends StyleElement implements NodeHandler {
     }
 
     public boolean needsStackFrame() {
-        return this.needsStackFrame;
+        // a tail call replaces the current stack frame, so there must be one of our own
+        return this.needsStackFrame || this.containsTailCall;
+    }
+
+    /**
+    * Record that the template contains an xsl:call-template instruction in tail position
+    */
+
+    protected void setContainsTailCall() {
+        containsTailCall = true;
     }
 
     public void prepareAttributes() throws TransformerConfigurationException {
@@ -223,12 +233,17 @@ public class XSLTemplate extends StyleElement implements NodeHandler {
     */
 
     protected void expand(Context context) throws TransformerException {
+        XSLTemplate body = this;
 	    ParameterSet p;
 	    do {
     		context.setTailRecursion(null);
-    		processChildren(context);
+    		body.processChildren(context);
     		p = context.getTailRecursion();
     		if (p!=null) {
+    		    XSLTemplate next = context.getTailCallTarget();
+    		    if (next!=null) {
+    		        body = next;        // tail call to another template: reuse the stack frame
+    		    }
     		    context.getBindery().closeStackFrame();
     		    context.getBindery().openStackFrame(p);
     		}
@@ -56,6 +56,10 @@ public class XSLText extends StyleElement {
         }
     }
 
+    public boolean isDocumentIndependent() {
+        return true;
+    }
+
     public void validate() throws TransformerConfigurationException {
         checkWithinTemplate();
         NodeImpl node = (NodeImpl)getFirstChild();
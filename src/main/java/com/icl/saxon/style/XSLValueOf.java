@@ -87,6 +87,10 @@ public final class XSLValueOf extends StyleElement {
 
     }
 
+    public boolean isDocumentIndependent() {
+        return select!=null && isDocumentIndependent(select);
+    }
+
     public void validate() throws TransformerConfigurationException {
         checkWithinTemplate();
         checkEmpty();
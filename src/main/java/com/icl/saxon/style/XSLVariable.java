@@ -77,6 +77,21 @@ public class XSLVariable extends XSLGeneralVariable implements Binding {
     }
 
 
+    /**
+    * Determine whether the value is the same in every transformation. Global variables
+    * with this property are evaluated once only, when the stylesheet is compiled.
+    */
+
+    public boolean isDocumentIndependent() {
+        if (assignable) {
+            return false;
+        }
+        if (select!=null) {
+            return isDocumentIndependent(select);
+        }
+        return childrenAreDocumentIndependent();
+    }
+
     /**
     * Process the variable declaration
     */
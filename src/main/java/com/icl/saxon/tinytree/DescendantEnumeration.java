@@ -1,13 +1,20 @@
 package com.icl.saxon.tinytree;
 import com.icl.saxon.om.AxisEnumeration;
 import com.icl.saxon.om.NodeInfo;
+import com.icl.saxon.pattern.AnyNodeTest;
+import com.icl.saxon.pattern.NameTest;
 import com.icl.saxon.pattern.NodeTest;
+import com.icl.saxon.pattern.NodeTypeTest;
 
 /**
 * This class supports both the descendant:: and descendant-or-self:: axes, which are
 * identical except for the route to the first candidate node.
 * It enumerates descendants of the specified node.
-* The calling code must ensure that the start node is not an attribute or namespace node.
+* The calling code must ensure that the start node is not an attribute or namespace node.<P>
+* Once the document has been built, the enumeration uses the document's index of subtree
+* extents to find the end of the subtree, and for a named element test it reads the elements
+* with that name from the document's index of element names, instead of examining each
+* descendant. The number of descendants can then usually be found without enumerating them.
 */
 
 final class DescendantEnumeration implements AxisEnumeration {
@@ -20,6 +27,10 @@ final class DescendantEnumeration implements AxisEnumeration {
     NodeTest test;
     int last = -1;
     TinyNodeImpl parentNode;
+    int first;                  // the first candidate node
+    int end = -1;               // the node after the last descendant, if known
+    int[] postings = null;      // the elements with the required name, if known
+    int position;               // the position of nextNodeNr in postings
 
     protected DescendantEnumeration(TinyDocumentImpl doc, TinyNodeImpl node,
                                     NodeTest nodeTest, boolean includeSelf) {
@@ -29,6 +40,20 @@ final class DescendantEnumeration implements AxisEnumeration {
         test = nodeTest;
         nextNodeNr = node.nodeNr;
         startDepth = doc.depth[nextNodeNr];
+        first = (includeSelf ? node.nodeNr : node.nodeNr + 1);
+
+        int[] ends = doc.getSubtreeEnd();
+        if (ends!=null) {
+            end = ends[node.nodeNr];
+            if (nodeTest instanceof NameTest && nodeTest.getNodeType()==NodeInfo.ELEMENT) {
+                postings = doc.getElementPostings(((NameTest)nodeTest).getFingerprint());
+                position = NamePostings.search(postings, first);
+                nextNodeNr = (position<postings.length && postings[position]<end ?
+                                    postings[position] : -1);
+                return;
+            }
+        }
+
         if (includeSelf) {          // descendant-or-self:: axis
             // no action
         } else {                    // descendant:: axis
@@ -58,10 +83,16 @@ final class DescendantEnumeration implements AxisEnumeration {
     }
 
     private void advance() {
+        if (postings!=null) {
+            position++;
+            nextNodeNr = (position<postings.length && postings[position]<end ?
+                                postings[position] : -1);
+            return;
+        }
         do {
             nextNodeNr++;
             if (nextNodeNr >= document.numberOfNodes ||
-                document.depth[nextNodeNr] <= startDepth) {
+                (end>=0 ? nextNodeNr >= end : document.depth[nextNodeNr] <= startDepth)) {
                 nextNodeNr = -1;
                 return;
             }
@@ -87,6 +118,21 @@ final class DescendantEnumeration implements AxisEnumeration {
 
     public int getLastPosition() {
         if (last>=0) return last;
+        if (end>=0) {
+            if (postings!=null) {
+                last = NamePostings.search(postings, end) - NamePostings.search(postings, first);
+                return last;
+            }
+            if (test instanceof AnyNodeTest) {
+                last = end - first;
+                return last;
+            }
+            if (test instanceof NodeTypeTest && test.getNodeType()==NodeInfo.ELEMENT) {
+                int[] before = document.getElementsBefore();
+                last = before[end] - before[first];
+                return last;
+            }
+        }
         DescendantEnumeration enm =
             new DescendantEnumeration(document, startNode, test, includeSelf);
         last = 0;
@@ -1,11 +1,17 @@
 package com.icl.saxon.tinytree;
+import com.icl.saxon.pattern.AnyNodeTest;
+import com.icl.saxon.pattern.NameTest;
 import com.icl.saxon.pattern.NodeTest;
+import com.icl.saxon.pattern.NodeTypeTest;
 import com.icl.saxon.om.NodeInfo;
 import com.icl.saxon.om.AxisEnumeration;
 
 /**
 * Enumerate the following axis starting at a given node.
-* The start node must not be a namespace or attribute node.
+* The start node must not be a namespace or attribute node.<P>
+* Once the document has been built, the enumeration uses the document's index of subtree
+* extents to skip the descendants of the start node, and for a named element test it reads
+* the elements with that name from the document's index of element names.
 */
 
 final class FollowingEnumeration implements AxisEnumeration {
@@ -16,6 +22,9 @@ final class FollowingEnumeration implements AxisEnumeration {
     private NodeTest test;
     int last = -1;
     boolean includeDescendants;
+    private int first = -1;             // the first candidate node, if the index is available
+    private int[] postings = null;      // the elements with the required name, if known
+    private int position;               // the position of nextNodeNr in postings
 
     public FollowingEnumeration(TinyDocumentImpl doc, TinyNodeImpl node,
                                  NodeTest nodeTest, boolean includeDescendants) {
@@ -26,17 +35,34 @@ final class FollowingEnumeration implements AxisEnumeration {
         this.includeDescendants = includeDescendants;
         int depth = doc.depth[nextNodeNr];
 
-        // skip the descendant nodes if any
-        if (includeDescendants) {
-            nextNodeNr++;
+        int[] ends = doc.getSubtreeEnd();
+        if (ends!=null) {
+            first = (includeDescendants ? node.nodeNr + 1 : ends[node.nodeNr]);
+            if (nodeTest instanceof NameTest && nodeTest.getNodeType()==NodeInfo.ELEMENT) {
+                postings = doc.getElementPostings(((NameTest)nodeTest).getFingerprint());
+                position = NamePostings.search(postings, first);
+                nextNodeNr = (position<postings.length ? postings[position] : -1);
+                return;
+            }
+            nextNodeNr = first;
+            if (nextNodeNr >= doc.numberOfNodes) {
+                nextNodeNr = -1;
+                return;
+            }
         } else {
-            do {
+
+            // skip the descendant nodes if any
+            if (includeDescendants) {
                 nextNodeNr++;
-                if (nextNodeNr >= doc.numberOfNodes) {
-                    nextNodeNr = -1;
-                    return;
-                }
-            } while (doc.depth[nextNodeNr] > depth);
+            } else {
+                do {
+                    nextNodeNr++;
+                    if (nextNodeNr >= doc.numberOfNodes) {
+                        nextNodeNr = -1;
+                        return;
+                    }
+                } while (doc.depth[nextNodeNr] > depth);
+            }
         }
 
         if (!test.matches(doc.nodeType[nextNodeNr], doc.nameCode[nextNodeNr])) {
@@ -45,6 +71,11 @@ final class FollowingEnumeration implements AxisEnumeration {
     }
 
     private void advance() {
+        if (postings!=null) {
+            position++;
+            nextNodeNr = (position<postings.length ? postings[position] : -1);
+            return;
+        }
         do {
             nextNodeNr++;
             if (nextNodeNr >= document.numberOfNodes) {
@@ -82,6 +113,22 @@ final class FollowingEnumeration implements AxisEnumeration {
 
     public int getLastPosition() {
         if (last >= 0) return last;
+        if (first >= 0) {
+            if (postings!=null) {
+                last = postings.length - NamePostings.search(postings, first);
+                return last;
+            }
+            if (test instanceof AnyNodeTest) {
+                last = Math.max(0, document.numberOfNodes - first);
+                return last;
+            }
+            if (test instanceof NodeTypeTest && test.getNodeType()==NodeInfo.ELEMENT) {
+                int[] before = document.getElementsBefore();
+                last = (first >= document.numberOfNodes ? 0 :
+                            before[document.numberOfNodes] - before[first]);
+                return last;
+            }
+        }
         FollowingEnumeration enm =
             new FollowingEnumeration(document, startNode, test, includeDescendants);
         last = 0;
@@ -0,0 +1,90 @@
+package com.icl.saxon.tinytree;
+
+/**
+* An IDTable maps the ID values in a TinyDocument to the node numbers of the elements that
+* have them. It is an open-addressing hash table held in two parallel arrays, so no objects are
+* allocated for the entries. The table is built in one go and is not modified afterwards, so it
+* can be read by several threads at once.
+*/
+
+final class IDTable {
+
+    private String[] keys;
+    private int[] values;
+    private int mask;
+
+    /**
+    * Create an IDTable
+    * @param size the number of ID values that will be added
+    */
+
+    IDTable(int size) {
+        int capacity = 16;
+        while (capacity < size*2) {
+            capacity <<= 1;
+        }
+        keys = new String[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+    * Add an ID value. If the value is already present, the existing entry is kept: the
+    * XPath spec (5.2.1) says that the first element with a given ID is the one selected.
+    * @param id the ID value
+    * @param nodeNr the node number of the element having this ID
+    */
+
+    void put(String id, int nodeNr) {
+        int i = hash(id);
+        while (keys[i]!=null) {
+            if (keys[i].equals(id)) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = id;
+        values[i] = nodeNr;
+    }
+
+    /**
+    * Get the node number of the element with a given ID
+    * @return the node number, or -1 if there is no such element
+    */
+
+    int get(String id) {
+        int i = hash(id);
+        while (keys[i]!=null) {
+            if (keys[i].equals(id)) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int hash(String id) {
+        int h = id.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael H. Kay.
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
@@ -0,0 +1,193 @@
+package com.icl.saxon.tinytree;
+
+/**
+* NamePostings holds, for each name used in a document, the numbers of the nodes with that
+* name, in ascending order. It is built in two passes over the nodes: the first counts the
+* nodes with each name, the second adds them. Once built it is never changed, so it can be
+* shared by several threads.<P>
+* The names are held in an open-addressing hash table keyed by fingerprint.
+*/
+
+final class NamePostings {
+
+    private static final int[] EMPTY = new int[0];
+
+    private int[] keys = new int[64];           // fingerprint+1 in each used slot, 0 if empty
+    private int[] counts = new int[64];
+    private int[][] lists = new int[64][];
+    private int used = 0;
+
+    /**
+    * Count a node with a given name: first pass
+    */
+
+    void count(int fingerprint) {
+        if ((used+1)*2 > keys.length) {
+            rehash();
+        }
+        int slot = find(fingerprint);
+        if (keys[slot]==0) {
+            keys[slot] = fingerprint + 1;
+            used++;
+        }
+        counts[slot]++;
+    }
+
+    /**
+    * Allocate the lists, once all the nodes have been counted
+    */
+
+    void allocate() {
+        for (int s=0; s<keys.length; s++) {
+            if (keys[s]!=0) {
+                lists[s] = new int[counts[s]];
+                counts[s] = 0;
+            }
+        }
+    }
+
+    /**
+    * Add a node with a given name: second pass. The nodes must be added in ascending order,
+    * and each must have been counted.
+    */
+
+    void add(int fingerprint, int nodeNr) {
+        int slot = find(fingerprint);
+        lists[slot][counts[slot]++] = nodeNr;
+    }
+
+    /**
+    * Get the nodes with a given name
+    * @return the node numbers, in ascending order. The array must not be modified.
+    */
+
+    int[] get(int fingerprint) {
+        int slot = find(fingerprint);
+        return (keys[slot]==0 ? EMPTY : lists[slot]);
+    }
+
+    /**
+    * Search a list of node numbers
+    * @param list a list of node numbers, in ascending order
+    * @param nodeNr the node number to search for
+    * @return the position of the first entry that is greater than or equal to nodeNr,
+    * which is the length of the list if there is none
+    */
+
+    static int search(int[] list, int nodeNr) {
+        int low = 0;
+        int high = list.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (list[mid] < nodeNr) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+    * Search a list of node numbers, starting at a given position. Entries near the starting
+    * position are examined first, so a sequence of searches for ascending node numbers
+    * is fast when the entries are close together.
+    * @return the position of the first entry at or after the starting position that is
+    * greater than or equal to nodeNr, which is the length of the list if there is none
+    */
+
+    static int search(int[] list, int from, int nodeNr) {
+        int low = from;
+        int high = from;
+        int step = 1;
+        while (high < list.length && list[high] < nodeNr) {
+            low = high + 1;
+            high = low + step;
+            step *= 2;
+        }
+        if (high > list.length) {
+            high = list.length;
+        }
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (list[mid] < nodeNr) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+    * Find the node numbers that appear in two ranges of lists of node numbers. The shorter
+    * range is read in full; the other is searched for each of its entries.
+    * @return the node numbers that are in both ranges, in ascending order
+    */
+
+    static int[] intersect(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo) {
+        if (aTo-aFrom > bTo-bFrom) {
+            return intersect(b, bFrom, bTo, a, aFrom, aTo);
+        }
+        int[] result = new int[aTo-aFrom];
+        int n = 0;
+        int j = bFrom;
+        for (int i=aFrom; i<aTo && j<bTo; i++) {
+            j = search(b, j, a[i]);
+            if (j<bTo && b[j]==a[i]) {
+                result[n++] = a[i];
+            }
+        }
+        if (n < result.length) {
+            int[] r2 = new int[n];
+            System.arraycopy(result, 0, r2, 0, n);
+            result = r2;
+        }
+        return result;
+    }
+
+    private int find(int fingerprint) {
+        int mask = keys.length - 1;
+        int h = fingerprint * 0x9e3779b1;
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (keys[slot]!=0 && keys[slot]!=fingerprint+1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new int[oldKeys.length * 2];
+        counts = new int[keys.length];
+        lists = new int[keys.length][];
+        for (int s=0; s<oldKeys.length; s++) {
+            if (oldKeys[s]!=0) {
+                int slot = find(oldKeys[s]-1);
+                keys[slot] = oldKeys[s];
+                counts[slot] = oldCounts[s];
+            }
+        }
+    }
+
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael H. Kay.
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
@@ -0,0 +1,83 @@
+package com.icl.saxon.tinytree;
+import com.icl.saxon.om.AxisEnumeration;
+import com.icl.saxon.om.NodeInfo;
+
+/**
+* A NodeListEnumeration enumerates the nodes whose numbers are held in part of an array,
+* in ascending order: for example, a range of one of the document's lists of the elements
+* with a given name.
+*/
+
+final class NodeListEnumeration implements AxisEnumeration {
+
+    TinyDocumentImpl document;
+    int[] nodes;
+    int from;
+    int next;
+    int to;
+
+    /**
+    * Create an enumeration of nodes
+    * @param doc the document containing the nodes
+    * @param nodes an array of node numbers, in ascending order. The array is not copied,
+    * and must not be modified.
+    * @param from the position in the array of the first node
+    * @param to the position in the array after the last node
+    */
+
+    protected NodeListEnumeration(TinyDocumentImpl doc, int[] nodes, int from, int to) {
+        document = doc;
+        this.nodes = nodes;
+        this.from = from;
+        this.next = from;
+        this.to = to;
+    }
+
+    public boolean hasMoreElements() {
+        return next < to;
+    }
+
+    public NodeInfo nextElement() {
+        return document.getNode(nodes[next++]);
+    }
+
+    public boolean isSorted() {
+        return true;
+    }
+
+    public boolean isReverseSorted() {
+        return false;
+    }
+
+    public boolean isPeer() {
+        return false;
+    }
+
+    /**
+    * Get the last position, that is the number of nodes in the enumeration
+    */
+
+    public int getLastPosition() {
+        return to - from;
+    }
+
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael H. Kay.
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
@@ -0,0 +1,408 @@
+package com.icl.saxon.tinytree;
+import com.icl.saxon.om.Axis;
+import com.icl.saxon.om.DocumentStatistics;
+import com.icl.saxon.om.NodeInfo;
+
+/**
+* PathJoin evaluates a path made up of child and descendant steps that select elements by
+* name, such as a//b/c[@x], a set of nodes at a time. The result of each step is held as an
+* array of node numbers in ascending order, with no duplicates; the next step is applied to
+* the whole set at once, so that overlapping subtrees are examined only once and the final
+* result is in document order without being sorted.<P>
+* Each step is either a structural join or a nested loop. A join reads the list of the elements
+* with the required name (from the document's index of element names) in step with the set of
+* context nodes, using the extent of each subtree and the depth of each node to decide whether
+* an element is a child or descendant of a context node. A nested loop visits each context node
+* in turn: for the descendant axis it searches the list of named elements for the range lying
+* within the subtree, and for the child axis it reads the children. The cheaper is chosen for
+* each step, from the number of context nodes and the number of candidate elements, and for
+* the child axis the average number of children (the fan-out recorded in the statistics of the
+* document, if they were collected).<P>
+* The elements selected by a step are then restricted to those having the required attributes.
+* A test for the presence of an attribute intersects the elements with the list of the owners
+* of that attribute. A test for its value either does the same with the list of the owners
+* having that value, taken from an index of the attribute's values that is built on first use,
+* or reads the attributes of each element; the index is used if the statistics of the document
+* predict that it will be much smaller than the set of elements. If statistics were collected,
+* the tests are applied in order of the number of elements they are expected to accept, most
+* selective first.<P>
+* A PathJoin can only be used once the document has been built.
+*/
+
+final class PathJoin {
+
+    private TinyDocumentImpl document;
+    private DocumentStatistics statistics;      // null unless they were collected
+    private int[] ends;
+
+    /**
+    * Create a PathJoin for a document
+    * @param doc the document, which must be complete
+    */
+
+    PathJoin(TinyDocumentImpl doc) {
+        document = doc;
+        statistics = doc.getStatistics();
+        ends = doc.getSubtreeEnd();
+    }
+
+    /**
+    * Evaluate a path
+    * @param origin the node number of the node at which the path starts
+    * @param axes for each step, the axis: Axis.CHILD or Axis.DESCENDANT
+    * @param names for each step, the fingerprint of the name of the elements selected
+    * @param attributes for each step, the fingerprints of the attributes that the selected
+    * elements must have
+    * @param values for each step, the value each attribute must have, or null if any will do
+    * @param explain if not null, a description of the strategy used for each step is
+    * appended to it
+    * @return the node numbers of the selected elements, in ascending order
+    */
+
+    int[] select(int origin, byte[] axes, int[] names, int[][] attributes, String[][] values,
+                 StringBuffer explain) {
+        DocumentStatistics stats = statistics;
+        int[] nodes = new int[] {origin};
+        for (int s=0; s<names.length && nodes.length>0; s++) {
+            nodes = step(nodes, axes[s]==Axis.DESCENDANT, names[s], explain);
+            int[] order = orderConditions(attributes[s], values[s], stats);
+            for (int c=0; c<order.length && nodes.length>0; c++) {
+                int a = order[c];
+                nodes = restrict(nodes, attributes[s][a], values[s][a], stats, explain);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+    * Decide the order in which to apply the attribute tests of a step: the order written,
+    * unless statistics are available, in which case the most selective test comes first
+    * @return the positions of the tests, in the order they are to be applied
+    */
+
+    private static int[] orderConditions(int[] attributes, String[] values,
+                                         DocumentStatistics stats) {
+        int[] order = new int[attributes.length];
+        int[] estimate = new int[attributes.length];
+        for (int a=0; a<attributes.length; a++) {
+            order[a] = a;
+            if (stats != null) {
+                estimate[a] = estimateMatches(attributes[a], values[a], stats);
+            }
+        }
+        // insertion sort, which keeps tests with equal estimates in the order written
+        for (int i=1; i<order.length; i++) {
+            int o = order[i];
+            int j = i;
+            while (j>0 && estimate[order[j-1]] > estimate[o]) {
+                order[j] = order[j-1];
+                j--;
+            }
+            order[j] = o;
+        }
+        return order;
+    }
+
+    /**
+    * Estimate the number of elements in the document that satisfy an attribute test
+    */
+
+    private static int estimateMatches(int attribute, String value, DocumentStatistics stats) {
+        int count = stats.getAttributeCount(attribute);
+        if (value==null || count==0) {
+            return count;
+        }
+        return count / stats.getDistinctValues(attribute);
+    }
+
+    /**
+    * Restrict a set of elements to those that have a given attribute, possibly with a given value
+    */
+
+    private int[] restrict(int[] nodes, int attribute, String value, DocumentStatistics stats,
+                           StringBuffer explain) {
+        String test = "[@" + document.getNamePool().getDisplayName(attribute) +
+                        (value==null ? "" : "='" + value + "'") + "]";
+        if (value==null) {
+            int[] owners = document.getAttributePostings(attribute);
+            if (explain != null) {
+                explain.append("    " + test + ": intersect with the " + owners.length +
+                                " owners of the attribute\n");
+            }
+            return NamePostings.intersect(nodes, 0, nodes.length, owners, 0, owners.length);
+        }
+        if (stats != null && estimateMatches(attribute, value, stats) * 4 < nodes.length) {
+            int[] owners = document.getAttributeValuePostings(attribute, value);
+            if (explain != null) {
+                explain.append("    " + test + ": intersect with the " + owners.length +
+                                " owners of the value, from the index of values\n");
+            }
+            return NamePostings.intersect(nodes, 0, nodes.length, owners, 0, owners.length);
+        }
+        if (explain != null) {
+            explain.append("    " + test + ": read the attributes of " + nodes.length +
+                            " elements\n");
+        }
+        return valuesByScan(nodes, attribute, value);
+    }
+
+    /**
+    * Restrict a set of elements to those having an attribute with a given value, by reading
+    * the attributes of each element
+    */
+
+    private int[] valuesByScan(int[] nodes, int attribute, String value) {
+        int[] offset = document.offset;
+        int[] attParent = document.attParent;
+        int[] attCode = document.attCode;
+        String[] attValue = document.attValue;
+        int[] result = new int[nodes.length];
+        int n = 0;
+        for (int i=0; i<nodes.length; i++) {
+            int node = nodes[i];
+            int a = offset[node];
+            if (a < 0) {
+                continue;
+            }
+            while (a < document.numberOfAttributes && attParent[a] == node) {
+                if ((attCode[a] & 0xfffff) == attribute) {
+                    if (attValue[a].equals(value)) {
+                        result[n++] = node;
+                    }
+                    break;
+                }
+                a++;
+            }
+        }
+        return trim(result, n);
+    }
+
+    /**
+    * Apply one step to a set of context nodes
+    */
+
+    private int[] step(int[] context, boolean descendant, int name, StringBuffer explain) {
+
+        // find how many of the context nodes are not within the subtree of an earlier
+        // context node, and the range of node numbers covered by their subtrees
+
+        int outer = 0;
+        int high = 0;
+        for (int i=0; i<context.length; i++) {
+            if (context[i] >= high) {
+                outer++;
+                high = ends[context[i]];
+            }
+        }
+        int[] candidates = document.getElementPostings(name);
+        int from = NamePostings.search(candidates, context[0] + 1);
+        int to = NamePostings.search(candidates, from, high);
+
+        // estimate the cost of each strategy, as a number of nodes examined
+
+        int joinCost = context.length + (to - from);
+        String strategy;
+        int[] result;
+        if (descendant) {
+            int searchCost = outer * (log2(to - from) + 1);
+            if (searchCost < joinCost) {
+                strategy = "search the candidates for each subtree";
+                result = descendantsBySearch(context, candidates, from);
+            } else {
+                strategy = "structural join";
+                result = descendantsByJoin(context, candidates, from, to);
+            }
+        } else {
+            // the children can only be read in order if no context node contains another
+            if (outer == context.length && context.length * averageChildren() < joinCost) {
+                strategy = "read the children of each context node";
+                result = childrenByScan(context, name);
+            } else {
+                strategy = "structural join";
+                result = childrenByJoin(context, candidates, from, to);
+            }
+        }
+        if (explain != null) {
+            explain.append("  " + (descendant ? "descendant::" : "child::") +
+                            document.getNamePool().getDisplayName(name) + ": " +
+                            context.length + " context nodes, " + (to - from) +
+                            " candidates; " + strategy + "; " + result.length + " selected\n");
+        }
+        return result;
+    }
+
+    /**
+    * Find the candidates that are descendants of a context node, by searching the candidates
+    * for the range that lies within each subtree
+    */
+
+    private int[] descendantsBySearch(int[] context, int[] candidates, int from) {
+        int[] result = new int[16];
+        int n = 0;
+        int high = 0;
+        int p = from;
+        for (int i=0; i<context.length; i++) {
+            int c = context[i];
+            if (c < high) {
+                continue;           // within the subtree of an earlier context node
+            }
+            high = ends[c];
+            p = NamePostings.search(candidates, p, c + 1);
+            int q = NamePostings.search(candidates, p, high);
+            if (q > p) {
+                if (n + q - p > result.length) {
+                    int[] r2 = new int[Math.max(result.length * 2, n + q - p)];
+                    System.arraycopy(result, 0, r2, 0, n);
+                    result = r2;
+                }
+                System.arraycopy(candidates, p, result, n, q - p);
+                n += q - p;
+                p = q;
+            }
+        }
+        return trim(result, n);
+    }
+
+    /**
+    * Find the candidates that are descendants of a context node, by reading the candidates and
+    * the context nodes together in document order
+    */
+
+    private int[] descendantsByJoin(int[] context, int[] candidates, int from, int to) {
+        int[] result = new int[to - from];
+        int n = 0;
+        int high = 0;           // the end of the subtree of the outermost open context node
+        int i = 0;
+        for (int p=from; p<to; p++) {
+            int node = candidates[p];
+            while (i<context.length && context[i]<node) {
+                if (ends[context[i]] > high) {
+                    high = ends[context[i]];
+                }
+                i++;
+            }
+            if (node < high) {
+                result[n++] = node;
+            }
+        }
+        return trim(result, n);
+    }
+
+    /**
+    * Find the candidates that are children of a context node, by reading the candidates and the
+    * context nodes together in document order. A stack holds the context nodes whose subtrees
+    * contain the current candidate: its parent is a context node only if it is the top of the
+    * stack.
+    */
+
+    private int[] childrenByJoin(int[] context, int[] candidates, int from, int to) {
+        short[] depth = document.depth;
+        int[] result = new int[to - from];
+        int n = 0;
+        int[] open = new int[20];
+        int top = 0;
+        int i = 0;
+        for (int p=from; p<to; p++) {
+            int node = candidates[p];
+            while (i<context.length && context[i]<node) {
+                int c = context[i++];
+                while (top>0 && ends[open[top-1]]<=c) {
+                    top--;
+                }
+                if (top==open.length) {
+                    int[] o2 = new int[top*2];
+                    System.arraycopy(open, 0, o2, 0, top);
+                    open = o2;
+                }
+                open[top++] = c;
+            }
+            while (top>0 && ends[open[top-1]]<=node) {
+                top--;
+            }
+            if (top>0 && depth[open[top-1]]==depth[node]-1) {
+                result[n++] = node;
+            }
+        }
+        return trim(result, n);
+    }
+
+    /**
+    * Find the children of the context nodes that have a given name, by reading the children
+    * of each context node. No context node may be a descendant of another.
+    */
+
+    private int[] childrenByScan(int[] context, int name) {
+        byte[] nodeType = document.nodeType;
+        int[] nameCode = document.nameCode;
+        int[] result = new int[16];
+        int n = 0;
+        for (int i=0; i<context.length; i++) {
+            int c = context[i];
+            int child = (c+1 < document.numberOfNodes && document.depth[c+1] > document.depth[c] ?
+                            c+1 : -1);
+            while (child >= 0) {
+                if (nodeType[child]==NodeInfo.ELEMENT && (nameCode[child] & 0xfffff)==name) {
+                    if (n==result.length) {
+                        int[] r2 = new int[n*2];
+                        System.arraycopy(result, 0, r2, 0, n);
+                        result = r2;
+                    }
+                    result[n++] = child;
+                }
+                child = document.next[child];
+            }
+        }
+        return trim(result, n);
+    }
+
+    /**
+    * Estimate the number of children of an element: the average fan-out recorded in the
+    * statistics if there are any, otherwise the number of nodes per element
+    */
+
+    private double averageChildren() {
+        if (statistics != null) {
+            return statistics.getAverageFanOut();
+        }
+        int elements = document.getElementsBefore()[document.numberOfNodes];
+        return document.numberOfNodes / (elements + 1) + 1;
+    }
+
+    private static int log2(int n) {
+        int log = 0;
+        while (n > 1) {
+            n >>>= 1;
+            log++;
+        }
+        return log;
+    }
+
+    private static int[] trim(int[] nodes, int n) {
+        if (n < nodes.length) {
+            int[] n2 = new int[n];
+            System.arraycopy(nodes, 0, n2, 0, n);
+            return n2;
+        }
+        return nodes;
+    }
+
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael H. Kay.
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
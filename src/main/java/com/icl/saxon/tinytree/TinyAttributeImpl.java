@@ -63,6 +63,14 @@ final class TinyAttributeImpl extends TinyNodeImpl implements Attr {
         return document.attValue[nodeNr];
     }
 
+    /**
+    * Get the numeric value of the attribute, remembering it if the document caches numeric values
+    */
+
+    public double getNumericValue() {
+        return getNumericValue(document.getNumericValueCache(true));
+    }
+
 	/**
 	* Get the fingerprint of the node, used for matching names
 	*/
@@ -2,6 +2,7 @@ package com.icl.saxon.tinytree;
 import com.icl.saxon.Context;
 import com.icl.saxon.expr.SingletonNodeSet;
 import com.icl.saxon.om.Builder;
+import com.icl.saxon.om.DocumentStatistics;
 import com.icl.saxon.om.Name;
 import com.icl.saxon.om.NodeInfo;
 import org.xml.sax.Attributes;
@@ -25,6 +26,8 @@ public class TinyBuilder extends Builder
     private int attributeNodeNr = 0;
     private int namespaceNodeNr = 0;
     private boolean ended = false;
+    private ValueDictionary dictionary = null;  // used only if values are to be shared
+    private DocumentStatistics statistics = null;   // used only if statistics are to be collected
 
     /*NEXT*/ private int[] prevAtDepth = new int[100];
 
@@ -74,6 +77,17 @@ public class TinyBuilder extends Builder
         if (lineNumbering) {
             doc.setLineNumbering();
         }
+        doc.setNumericValueCaching(cacheNumbers);
+
+        // values can't be shared in preview mode, because the tree is truncated as it is built
+        if (shareValues && previewManager==null) {
+            dictionary = new ValueDictionary(doc);
+        }
+
+        // nor are statistics collected, as they would describe nodes that have been removed
+        if (collectStatistics && previewManager==null) {
+            statistics = new DocumentStatistics();
+        }
 
         doc.addNode(NodeInfo.ROOT, 0, 0, 0, -1);
         /*NEXT*/ prevAtDepth[0] = 0;
@@ -101,6 +115,19 @@ public class TinyBuilder extends Builder
         /*NEXT*/     doc.next[prev] = -1;
         /*NEXT*/ }
         /*NEXT*/ prevAtDepth[currentDepth] = -1;
+        if (statistics!=null) {
+            int parents = 0;
+            for (int i=1; i<doc.numberOfNodes; i++) {
+                if (doc.depth[i] > doc.depth[i-1]) {
+                    parents++;
+                }
+            }
+            statistics.setNodeCounts(doc.numberOfNodes, parents);
+            doc.setStatistics(statistics);
+            statistics = null;
+        }
+        doc.setComplete();
+        dictionary = null;
 
         //namePool.diagnosticDump();
 
@@ -134,16 +161,26 @@ public class TinyBuilder extends Builder
         int firstAtt = (numAtts==0 ? -1 : doc.numberOfAttributes);
 
 		doc.addNode(NodeInfo.ELEMENT, currentDepth, firstAtt, firstNS, nameCode);
+        if (statistics!=null) {
+            statistics.addElement(nameCode & 0xfffff);
+        }
 
         for (int i=0; i<numAtts; i++) {
         	int anamecode = namePool.allocate(
         						Name.getPrefix(attributes.getQName(i)),
                                 attributes.getURI(i),
                                 attributes.getLocalName(i));
+            String value = attributes.getValue(i);
+            if (dictionary!=null) {
+                value = dictionary.shareAttributeValue(value);
+            }
+            if (statistics!=null) {
+                statistics.addAttribute(anamecode & 0xfffff, value);
+            }
             doc.addAttribute(   nodeNr,
             					anamecode,
                                 attributes.getType(i),
-                                attributes.getValue(i) );
+                                value );
         }
 
 
@@ -220,8 +257,13 @@ public class TinyBuilder extends Builder
          // System.err.println("Characters: " + new String(ch, start, len));
         TinyDocumentImpl doc = (TinyDocumentImpl)currentDocument;
         if (len>0) {
-            int bufferStart = doc.charBufferLength;
-            doc.appendChars(ch, start, len);
+            int bufferStart;
+            if (dictionary==null) {
+                bufferStart = doc.charBufferLength;
+                doc.appendChars(ch, start, len);
+            } else {
+                bufferStart = dictionary.addText(ch, start, len);
+            }
             doc.addNode(NodeInfo.TEXT, currentDepth, bufferStart, len, -1);
 
             /*NEXT*/ int prev = prevAtDepth[currentDepth];
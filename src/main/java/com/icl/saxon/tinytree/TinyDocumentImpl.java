@@ -4,6 +4,7 @@ import com.icl.saxon.expr.NodeSetExtent;
 import com.icl.saxon.om.*;
 import com.icl.saxon.output.Outputter;
 import com.icl.saxon.pattern.AnyNodeTest;
+import com.icl.saxon.pattern.NameTest;
 import com.icl.saxon.sort.LocalOrderComparer;
 import com.icl.saxon.tree.LineNumberMap;
 import com.icl.saxon.tree.SystemIdMap;
@@ -13,7 +14,11 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 
 import javax.xml.transform.TransformerException;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 
 /**
@@ -26,7 +31,9 @@ import java.util.Hashtable;
 public final class TinyDocumentImpl extends TinyParentNodeImpl
     implements DocumentInfo, Document {
 
-    private Hashtable idTable = null;
+    private volatile IDTable idTable = null;  // built when first needed
+    private int[] idAttributes = null;      // the attributes of type ID, if any
+    private int numberOfIDs = 0;
     private NamePool namePool;
     private Hashtable elementList = null;
     private boolean usesNamespaces = false;
@@ -47,8 +54,31 @@ public final class TinyDocumentImpl extends TinyParentNodeImpl
     protected int[] offset = new int[4000];
     protected int[] length = new int[4000];
     protected int[] nameCode = new int[4000];
-    // the prior array indexes preceding-siblings; it is constructed only when required
-    protected int[] prior = null;
+    // the prior array indexes preceding-siblings; it is constructed only when required,
+    // and published only when complete, so that it can be used by parallel threads
+    protected volatile int[] prior = null;
+    // the positions of elements among their siblings, for positional patterns; built only
+    // when required, and only once the whole document has been built
+    private volatile SiblingPositions siblingPositions = null;
+    private boolean complete = false;
+    // for each node, the node number that follows its last descendant, and the number of
+    // element nodes that precede it; for each element name, the elements with that name;
+    // and for each attribute name, the elements having an attribute with that name.
+    // Built when first required, once the whole document has been built
+    private volatile int[] subtreeEnd = null;
+    private int[] elementsBefore = null;
+    private volatile NamePostings elementPostings = null;
+    private volatile NamePostings attributePostings = null;
+    // for each attribute name, the elements having each value of the attribute: built when
+    // first required for a path expression such as //a[@x='value']
+    private volatile HashMap attributeValuePostings = null;
+    // statistics about the contents of the document, if they were requested
+    private DocumentStatistics statistics = null;
+    // the numeric values of nodes and attributes, if caching of numeric values was requested;
+    // filled in as each value is first used, once the whole document has been built
+    private boolean cacheNumbers = false;
+    private volatile AtomicLongArray nodeNumbers = null;
+    private volatile AtomicLongArray attNumbers = null;
 
     protected int numberOfAttributes = 0;
     protected int[] attParent = new int[100];
@@ -220,6 +250,12 @@ public final class TinyDocumentImpl extends TinyParentNodeImpl
         // kill the prior index, to be rebuilt when needed
         prior = null;
 
+        // forget any IDs on the attributes that have been removed
+        while (numberOfIDs>0 && idAttributes[numberOfIDs-1]>=numberOfAttributes) {
+            numberOfIDs--;
+        }
+        idTable = null;
+
         // add a dummy node at the end, because some axes such as "following"
         // can otherwise walk off the end
 
@@ -239,16 +275,315 @@ public final class TinyDocumentImpl extends TinyParentNodeImpl
     }
 
     private synchronized void makePriorIndex() {
-        prior = new int[numberOfNodes];
+        if (prior!=null) return;
+        int[] index = new int[numberOfNodes];
         for (int i=0; i<numberOfNodes; i++) {
-            prior[i] = -1;
+            index[i] = -1;
         }
         for (int i=0; i<numberOfNodes; i++) {
             int nextNode = next[i];
             if (nextNode!=-1) {
-                prior[nextNode] = i;
+                index[nextNode] = i;
+            }
+        }
+        prior = index;
+    }
+
+    /**
+    * Mark the document as complete: called by the TinyBuilder at the end of the document
+    */
+
+    protected void setComplete() {
+        complete = true;
+    }
+
+    /**
+    * Get the index of subtree extents, building it if this has not already been done. It is
+    * built in one pass over the nodes, using a stack of the nodes whose subtrees are still open.
+    * @return an array giving, for each node, the number of the first node after it that is not
+    * one of its descendants; or null if the document is still being built (in preview mode)
+    */
+
+    protected int[] getSubtreeEnd() {
+        int[] index = subtreeEnd;
+        if (index==null && complete) {
+            synchronized(this) {
+                index = subtreeEnd;
+                if (index==null) {
+                    index = new int[numberOfNodes];
+                    int[] before = new int[numberOfNodes+1];
+                    int[] open = new int[20];
+                    int top = 0;
+                    int elements = 0;
+                    for (int i=0; i<numberOfNodes; i++) {
+                        while (top>0 && depth[open[top-1]] >= depth[i]) {
+                            index[open[--top]] = i;
+                        }
+                        if (top==open.length) {
+                            int[] o2 = new int[top*2];
+                            System.arraycopy(open, 0, o2, 0, top);
+                            open = o2;
+                        }
+                        open[top++] = i;
+                        before[i] = elements;
+                        if (nodeType[i]==NodeInfo.ELEMENT) {
+                            elements++;
+                        }
+                    }
+                    while (top>0) {
+                        index[open[--top]] = numberOfNodes;
+                    }
+                    before[numberOfNodes] = elements;
+                    elementsBefore = before;
+                    subtreeEnd = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+    * Get the number of element nodes that precede each node
+    * @return an array with one entry for each node, and a final entry giving the total
+    * number of elements; or null if the document is still being built (in preview mode)
+    */
+
+    protected int[] getElementsBefore() {
+        return (getSubtreeEnd()==null ? null : elementsBefore);
+    }
+
+    /**
+    * Get the element nodes with a given name, building the index of element names if this
+    * has not already been done
+    * @return the node numbers of the elements, in document order, or null if the document
+    * is still being built (in preview mode). The array must not be modified.
+    */
+
+    protected int[] getElementPostings(int fingerprint) {
+        NamePostings index = elementPostings;
+        if (index==null) {
+            if (!complete) {
+                return null;
+            }
+            synchronized(this) {
+                index = elementPostings;
+                if (index==null) {
+                    index = new NamePostings();
+                    for (int i=0; i<numberOfNodes; i++) {
+                        if (nodeType[i]==NodeInfo.ELEMENT) {
+                            index.count(nameCode[i] & 0xfffff);
+                        }
+                    }
+                    index.allocate();
+                    for (int i=0; i<numberOfNodes; i++) {
+                        if (nodeType[i]==NodeInfo.ELEMENT) {
+                            index.add(nameCode[i] & 0xfffff, i);
+                        }
+                    }
+                    elementPostings = index;
+                }
+            }
+        }
+        return index.get(fingerprint);
+    }
+
+    /**
+    * Get the element nodes that have an attribute with a given name, building the index of
+    * attribute names if this has not already been done
+    * @return the node numbers of the elements, in document order, or null if the document
+    * is still being built (in preview mode). The array must not be modified.
+    */
+
+    protected int[] getAttributePostings(int fingerprint) {
+        NamePostings index = attributePostings;
+        if (index==null) {
+            if (!complete) {
+                return null;
+            }
+            synchronized(this) {
+                index = attributePostings;
+                if (index==null) {
+                    // attributes are held in document order of their parent elements
+                    index = new NamePostings();
+                    for (int i=0; i<numberOfAttributes; i++) {
+                        index.count(attCode[i] & 0xfffff);
+                    }
+                    index.allocate();
+                    for (int i=0; i<numberOfAttributes; i++) {
+                        index.add(attCode[i] & 0xfffff, attParent[i]);
+                    }
+                    attributePostings = index;
+                }
+            }
+        }
+        return index.get(fingerprint);
+    }
+
+    /**
+    * Get the elements that have an attribute with a given name and value, building the index
+    * of the values of attributes with that name if this has not already been done
+    * @return the node numbers of the elements, in document order, or null if the document
+    * is still being built (in preview mode). The array must not be modified.
+    */
+
+    protected int[] getAttributeValuePostings(int fingerprint, String value) {
+        Integer key = new Integer(fingerprint);
+        HashMap indexes = attributeValuePostings;
+        HashMap index = (indexes==null ? null : (HashMap)indexes.get(key));
+        if (index==null) {
+            if (!complete) {
+                return null;
+            }
+            synchronized(this) {
+                indexes = attributeValuePostings;
+                index = (indexes==null ? null : (HashMap)indexes.get(key));
+                if (index==null) {
+                    index = makeAttributeValueIndex(fingerprint);
+                    // the table of indexes is replaced, not changed, so that it can be
+                    // read without locking
+                    HashMap newIndexes = (indexes==null ? new HashMap() : new HashMap(indexes));
+                    newIndexes.put(key, index);
+                    attributeValuePostings = newIndexes;
+                }
+            }
+        }
+        int[] list = (int[])index.get(value);
+        return (list==null ? new int[0] : list);
+    }
+
+    /**
+    * Build the index of the values of the attributes with a given name
+    * @return a HashMap from each value to the node numbers of the elements having it
+    */
+
+    private HashMap makeAttributeValueIndex(int fingerprint) {
+        // count the elements having each value, then list them
+        HashMap counts = new HashMap();
+        for (int i=0; i<numberOfAttributes; i++) {
+            if ((attCode[i] & 0xfffff) == fingerprint) {
+                int[] count = (int[])counts.get(attValue[i]);
+                if (count==null) {
+                    counts.put(attValue[i], new int[] {1});
+                } else {
+                    count[0]++;
+                }
+            }
+        }
+        HashMap index = new HashMap();
+        for (int i=0; i<numberOfAttributes; i++) {
+            if ((attCode[i] & 0xfffff) == fingerprint) {
+                int[] count = (int[])counts.get(attValue[i]);
+                int[] list = (int[])index.get(attValue[i]);
+                if (list==null) {
+                    list = new int[count[0]];
+                    index.put(attValue[i], list);
+                    count[0] = 0;
+                }
+                list[count[0]++] = attParent[i];
+            }
+        }
+        return index;
+    }
+
+    /**
+    * Set the statistics collected while the document was built
+    */
+
+    protected void setStatistics(DocumentStatistics stats) {
+        statistics = stats;
+    }
+
+    /**
+    * Get the statistics collected while the document was built
+    * @return the statistics, or null if they were not collected
+    */
+
+    public DocumentStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+    * Request that the numeric values of nodes and attributes be remembered once they
+    * have been computed
+    */
+
+    protected void setNumericValueCaching(boolean onOrOff) {
+        cacheNumbers = onOrOff;
+    }
+
+    /**
+    * Get the cache of numeric values for the nodes, or for the attributes, of this document.
+    * Each entry holds the bits of a double, inverted, so that an entry of zero means the value
+    * is not yet known: no number computed from a string has all its bits set. The entries are
+    * held in an AtomicLongArray rather than a double[] because a double is not guaranteed to
+    * be written atomically, and the document may be shared by parallel threads.
+    * @param attributes true for the cache of attribute values, false for other nodes
+    * @return the cache, or null if values are not to be cached, or if the document is still
+    * being built (in preview mode)
+    */
+
+    protected AtomicLongArray getNumericValueCache(boolean attributes) {
+        if (!cacheNumbers || !complete) {
+            return null;
+        }
+        AtomicLongArray cache = (attributes ? attNumbers : nodeNumbers);
+        if (cache==null) {
+            synchronized(this) {
+                cache = (attributes ? attNumbers : nodeNumbers);
+                if (cache==null) {
+                    if (attributes) {
+                        cache = attNumbers = new AtomicLongArray(numberOfAttributes);
+                    } else {
+                        cache = nodeNumbers = new AtomicLongArray(numberOfNodes);
+                    }
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+    * Get the index of sibling positions, building it if this has not already been done.
+    * It is built in one pass over the children of each element, following the next[] chain.
+    * @return the index, or null if the document is still being built (in preview mode)
+    */
+
+    protected SiblingPositions getSiblingPositions() {
+        SiblingPositions index = siblingPositions;
+        if (index==null && complete) {
+            synchronized(this) {
+                index = siblingPositions;
+                if (index==null) {
+                    index = new SiblingPositions(numberOfNodes);
+                    int[] children = new int[20];
+                    int[] fingerprints = new int[20];
+                    for (int i=0; i<numberOfNodes; i++) {
+                        if ((nodeType[i]==NodeInfo.ELEMENT || nodeType[i]==NodeInfo.ROOT) &&
+                                i+1<numberOfNodes && depth[i+1]>depth[i]) {
+                            int n = 0;
+                            for (int c=i+1; c>=0; c=next[c]) {
+                                if (nodeType[c]==NodeInfo.ELEMENT) {
+                                    if (n==children.length) {
+                                        int[] c2 = new int[n*2];
+                                        System.arraycopy(children, 0, c2, 0, n);
+                                        children = c2;
+                                        int[] f2 = new int[n*2];
+                                        System.arraycopy(fingerprints, 0, f2, 0, n);
+                                        fingerprints = f2;
+                                    }
+                                    children[n] = c;
+                                    fingerprints[n] = nameCode[c] & 0xfffff;
+                                    n++;
+                                }
+                            }
+                            index.addChildren(children, fingerprints, n);
+                        }
+                    }
+                    siblingPositions = index;
+                }
             }
         }
+        return index;
     }
 
 
@@ -260,11 +595,15 @@ public final class TinyDocumentImpl extends TinyParentNodeImpl
         numberOfAttributes++;
 
         if (type0.equals("ID")) {
-        	if (idTable==null) {
-        		idTable = new Hashtable();
-        	}
-			NodeInfo e = getNode(parent0);
-            registerID(e, value0);
+            // just remember the attribute: the ID table is built only if it is used
+            if (idAttributes==null) {
+                idAttributes = new int[20];
+            } else if (numberOfIDs==idAttributes.length) {
+                int[] a2 = new int[numberOfIDs*2];
+                System.arraycopy(idAttributes, 0, a2, 0, numberOfIDs);
+                idAttributes = a2;
+            }
+            idAttributes[numberOfIDs++] = numberOfAttributes-1;
         }
     }
 
@@ -464,56 +803,105 @@ public final class TinyDocumentImpl extends TinyParentNodeImpl
     //}
 
     /**
-    * Get a list of all elements with a given name. This is implemented
+    * Get a list of all elements with a given name. Once the document has been built, this
+    * reads the index of element names. Before that (in preview mode) it is implemented
     * as a memo function: the first time it is called for a particular
     * element type, it remembers the result for next time.
     */
 
     protected AxisEnumeration getAllElements(int fingerprint) {
-    	Integer key = new Integer(fingerprint);
-    	if (elementList==null) {
-    	    elementList = new Hashtable();
-    	}
-        NodeSetExtent list = (NodeSetExtent)elementList.get(key);
-        if (list==null) {
-            list = new NodeSetExtent(LocalOrderComparer.getInstance());
-            list.setSorted(true);
-            for (int i=1; i<numberOfNodes; i++) {
-                if (nodeType[i]==NodeInfo.ELEMENT &&
-                        (nameCode[i] & 0xfffff ) == fingerprint) {
-                    list.append(getNode(i));
+        if (complete) {
+            // use the index of element names
+            return new DescendantEnumeration(this, this, new NameTest(NodeInfo.ELEMENT, fingerprint), false);
+        }
+        synchronized(this) {
+        	Integer key = new Integer(fingerprint);
+        	if (elementList==null) {
+        	    elementList = new Hashtable();
+        	}
+            NodeSetExtent list = (NodeSetExtent)elementList.get(key);
+            if (list==null) {
+                list = new NodeSetExtent(LocalOrderComparer.getInstance());
+                list.setSorted(true);
+                for (int i=1; i<numberOfNodes; i++) {
+                    if (nodeType[i]==NodeInfo.ELEMENT &&
+                            (nameCode[i] & 0xfffff ) == fingerprint) {
+                        list.append(getNode(i));
+                    }
                 }
+                elementList.put(key, list);
             }
-            elementList.put(key, list);
+            return (AxisEnumeration)list.enumerate();
         }
-        return (AxisEnumeration)list.enumerate();
     }
 
     /**
-    * Register a unique element ID. Fails if there is already an element with that ID.
-    * @param e The NodeInfo (always an element) having a particular unique ID value
-    * @param id The unique ID value
+    * Get the table of ID values, building it if this has not already been done. It is built
+    * in one pass over the attributes of type ID.
     */
 
-    private void registerID(NodeInfo e, String id) {
-        // the XPath spec (5.2.1) says ignore the second ID if it's not unique
-        NodeInfo old = (NodeInfo)idTable.get(id);
-        if (old==null) {
-            idTable.put(id, e);
+    private IDTable getIDTable() {
+        IDTable table = idTable;
+        if (table==null) {
+            synchronized(this) {
+                table = idTable;
+                if (table==null) {
+                    table = new IDTable(numberOfIDs);
+                    for (int i=0; i<numberOfIDs; i++) {
+                        int a = idAttributes[i];
+                        table.put(attValue[a], attParent[a]);
+                    }
+                    idTable = table;
+                }
+            }
         }
-
+        return table;
     }
 
     /**
     * Get the element with a given ID.
-    * @param id The unique ID of the required element, previously registered using registerID()
+    * @param id The unique ID of the required element
     * @return The NodeInfo (always an Element) for the given ID if one has been registered,
     * otherwise null.
     */
 
     public NodeInfo selectID(String id) {
-        if (idTable==null) return null;			// no ID values found
-        return (NodeInfo)idTable.get(id);
+        if (numberOfIDs==0) return null;			// no ID values found
+        int nr = getIDTable().get(id);
+        return (nr<0 ? null : getNode(nr));
+    }
+
+    /**
+    * Get the elements with any of a list of IDs
+    * @param ids the required ID values, as Strings
+    * @return the elements having these IDs, in document order, without duplicates
+    */
+
+    public NodeInfo[] selectIDs(Vector ids) {
+        if (numberOfIDs==0) return new NodeInfo[0];
+        IDTable table = getIDTable();
+        int[] numbers = new int[ids.size()];
+        int found = 0;
+        for (int i=0; i<ids.size(); i++) {
+            int nr = table.get((String)ids.elementAt(i));
+            if (nr>=0) {
+                numbers[found++] = nr;
+            }
+        }
+
+        // node numbers are in document order, so sorting them puts the nodes in order
+        Arrays.sort(numbers, 0, found);
+        int distinct = 0;
+        for (int i=0; i<found; i++) {
+            if (distinct==0 || numbers[i]!=numbers[distinct-1]) {
+                numbers[distinct++] = numbers[i];
+            }
+        }
+        NodeInfo[] nodes = new NodeInfo[distinct];
+        for (int i=0; i<distinct; i++) {
+            nodes[i] = getNode(numbers[i]);
+        }
+        return nodes;
     }
 
     /**
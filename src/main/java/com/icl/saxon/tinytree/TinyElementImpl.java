@@ -3,6 +3,7 @@ import com.icl.saxon.om.Axis;
 import com.icl.saxon.om.AxisEnumeration;
 import com.icl.saxon.om.Namespace;
 import com.icl.saxon.om.NodeInfo;
+import com.icl.saxon.om.SiblingPositions;
 import com.icl.saxon.output.Outputter;
 import com.icl.saxon.pattern.AnyNodeTest;
 import com.icl.saxon.tree.DOMExceptionImpl;
@@ -40,6 +41,28 @@ final class TinyElementImpl extends TinyParentNodeImpl
         return ELEMENT;
     }
 
+    /**
+    * Get the position of this element among its element siblings, counting from one
+    * @param sameName true to count only the siblings with the same name
+    * @return the position, or -1 if the document is still being built
+    */
+
+    public int getSiblingPosition(boolean sameName) {
+        SiblingPositions index = document.getSiblingPositions();
+        return (index==null ? -1 : index.getPosition(nodeNr, sameName));
+    }
+
+    /**
+    * Get the number of element siblings of this element, including itself
+    * @param sameName true to count only the siblings with the same name
+    * @return the number, or -1 if the document is still being built
+    */
+
+    public int getSiblingCount(boolean sameName) {
+        SiblingPositions index = document.getSiblingPositions();
+        return (index==null ? -1 : index.getCount(nodeNr, sameName));
+    }
+
     /**
     * Get the base URI of this element node. This will be the same as the System ID unless
     * xml:base has been used.
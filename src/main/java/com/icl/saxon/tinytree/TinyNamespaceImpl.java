@@ -28,6 +28,14 @@ final class TinyNamespaceImpl extends TinyNodeImpl {
         nameCode = document.getNamePool().allocate("", "", getLocalName());
     }
 
+    /**
+    * Get the numeric value of the namespace node. This is never cached.
+    */
+
+    public double getNumericValue() {
+        return getNumericValue(null);
+    }
+
     /**
     * Get the namespace code (a numeric representation of the prefix and URI)
     */
@@ -1,11 +1,14 @@
 package com.icl.saxon.tinytree;
+import com.icl.saxon.expr.Value;
 import com.icl.saxon.om.*;
 import com.icl.saxon.output.Outputter;
 import com.icl.saxon.pattern.NameTest;
 import com.icl.saxon.pattern.NodeTest;
+import com.icl.saxon.pattern.NodeTypeTest;
 import org.w3c.dom.Node;
 
 import javax.xml.transform.TransformerException;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 
 /**
@@ -38,6 +41,55 @@ abstract class TinyNodeImpl extends AbstractNode {
         }
     }
 
+    /**
+    * Count the nodes that satisfy a node test on the preceding and ancestor axes of this node.
+    * Once the document has been built, this is answered from the document's indexes for a test
+    * on element names or on elements; otherwise -1 is returned.
+    */
+
+    public int countPrecedingOrAncestor(NodeTest test) {
+        short type = getNodeType();
+        if (type==ATTRIBUTE || type==NAMESPACE || test.getNodeType()!=ELEMENT) {
+            return -1;
+        }
+        if (test instanceof NameTest) {
+            int[] postings = document.getElementPostings(((NameTest)test).getFingerprint());
+            return (postings==null ? -1 : NamePostings.search(postings, nodeNr));
+        }
+        if (test instanceof NodeTypeTest) {
+            int[] before = document.getElementsBefore();
+            return (before==null ? -1 : before[nodeNr]);
+        }
+        return -1;
+    }
+
+    /**
+    * Get the numeric value of the node, remembering it if the document caches numeric values
+    */
+
+    public double getNumericValue() {
+        return getNumericValue(document.getNumericValueCache(false));
+    }
+
+    /**
+    * Get the numeric value of the node, using a given cache
+    * @param cache the cache in which the entry for this node is at position nodeNr, or null
+    * if the value is not to be cached
+    */
+
+    protected final double getNumericValue(AtomicLongArray cache) {
+        if (cache==null) {
+            return Value.stringToNumber(getStringValue());
+        }
+        long entry = cache.get(nodeNr);
+        if (entry!=0) {
+            return Double.longBitsToDouble(~entry);
+        }
+        double value = Value.stringToNumber(getStringValue());
+        cache.set(nodeNr, ~Double.doubleToRawLongBits(value));
+        return value;
+    }
+
     /**
     * Set the parent of this node. Providing this information is useful,
     * if it is known, because otherwise getParent() has to search backwards
@@ -115,6 +167,15 @@ abstract class TinyNodeImpl extends AbstractNode {
         return (long)nodeNr << 32;
     }
 
+    /**
+    * Get the node number. For a node other than an attribute or namespace, this is
+    * its index in the node arrays of the TinyDocumentImpl.
+    */
+
+    public int getNodeNumber() {
+        return nodeNr;
+    }
+
     /**
     * Determine the relative position of this node and another node, in document order.
     * The other node will always be in the same document.
@@ -430,6 +491,14 @@ abstract class TinyNodeImpl extends AbstractNode {
         return document;
     }
 
+    /**
+    * Get the statistics collected while the document was built, if any
+    */
+
+    public DocumentStatistics getDocumentStatistics() {
+        return document.getStatistics();
+    }
+
     /**
     * Output all namespace nodes associated with this element. Does nothing if
     * the node is not an element.
@@ -1,4 +1,6 @@
 package com.icl.saxon.tinytree;
+import com.icl.saxon.om.AxisEnumeration;
+import com.icl.saxon.om.CharSlice;
 import com.icl.saxon.om.NodeInfo;
 import com.icl.saxon.output.Outputter;
 
@@ -22,6 +24,25 @@ abstract class TinyParentNodeImpl extends TinyNodeImpl {
                 document.depth[nodeNr+1] > document.depth[nodeNr]);
     }
 
+    /**
+    * Select the elements reached from this node by a sequence of child and descendant steps,
+    * each selecting the elements with a given name that have all of a given set of attributes,
+    * possibly with given values. Once the document has been built, this is done a set of
+    * nodes at a time using the document's indexes of names and subtree extents: see PathJoin.
+    * @return the selected elements, in document order; or null if the document is still being
+    * built (in preview mode)
+    */
+
+    public AxisEnumeration selectElements(byte[] axes, int[] names, int[][] attributes,
+                                          String[][] values, StringBuffer explain) {
+        if (document.getSubtreeEnd()==null) {
+            return null;
+        }
+        int[] nodes = new PathJoin(document).select(nodeNr, axes, names, attributes, values,
+                                                    explain);
+        return new NodeListEnumeration(document, nodes, 0, nodes.length);
+    }
+
     /**
     * Return the string-value of the node, that is, the concatenation
     * of the character content of all descendent elements and text nodes.
@@ -51,6 +72,45 @@ abstract class TinyParentNodeImpl extends TinyNodeImpl {
         return sb.toString();
     }
 
+    /**
+    * Return the string-value of the node as a view of the text nodes in the document's
+    * character buffer, without copying the characters
+    */
+
+    public CharSequence getStringValueCS() {
+        int level = document.depth[nodeNr];
+        int[] starts = new int[4];
+        int[] lengths = new int[4];
+        int ranges = 0;
+
+        int next = nodeNr+1;
+        while (next < document.numberOfNodes && document.depth[next] > level) {
+            if (document.nodeType[next]==NodeInfo.TEXT) {
+                int start = document.offset[next];
+                int length = document.length[next];
+                if (ranges>0 && starts[ranges-1] + lengths[ranges-1] == start) {
+                    // the text follows on from the previous text node in the buffer
+                    lengths[ranges-1] += length;
+                } else {
+                    if (ranges==starts.length) {
+                        int[] s2 = new int[ranges*2];
+                        System.arraycopy(starts, 0, s2, 0, ranges);
+                        starts = s2;
+                        int[] l2 = new int[ranges*2];
+                        System.arraycopy(lengths, 0, l2, 0, ranges);
+                        lengths = l2;
+                    }
+                    starts[ranges] = start;
+                    lengths[ranges] = length;
+                    ranges++;
+                }
+            }
+            next++;
+        }
+        if (ranges==0) return "";
+        return new CharSlice(document.charBuffer, starts, lengths, ranges);
+    }
+
     /**
     * Copy the string-value of this node to a given outputter
     */
@@ -1,4 +1,5 @@
 package com.icl.saxon.tinytree;
+import com.icl.saxon.om.CharSlice;
 import com.icl.saxon.output.Outputter;
 import com.icl.saxon.Version;
 import com.icl.saxon.tree.DOMExceptionImpl;
@@ -29,6 +30,14 @@ final class TinyTextImpl extends TinyNodeImpl implements Text {
         return new String(document.charBuffer, start, len);
     }
 
+    /**
+    * Get the string value of the node, as a view of the document's character buffer
+    */
+
+    public CharSequence getStringValueCS() {
+        return new CharSlice(document.charBuffer, document.offset[nodeNr], document.length[nodeNr]);
+    }
+
     /**
     * Return the type of node.
     * @return Node.TEXT
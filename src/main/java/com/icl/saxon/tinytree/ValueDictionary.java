@@ -0,0 +1,137 @@
+package com.icl.saxon.tinytree;
+
+/**
+* A ValueDictionary is used by the TinyBuilder, when value sharing is requested, to store
+* repeated values only once. Attribute values that have been seen before are replaced by the
+* String already held in the document; the characters of a short text node that has been
+* seen before are not appended to the character buffer again, and the node refers to the
+* earlier copy instead.<P>
+* The dictionary has a fixed size, so that its cost is bounded however many distinct values
+* the document contains. Each table is open-addressing with a short probe sequence: when
+* no free slot is found, the new value displaces the one in its home slot, so the dictionary
+* adapts as the vocabulary of the document changes. It is discarded when the document
+* has been built.
+*/
+
+final class ValueDictionary {
+
+    /**
+    * Values longer than this are never shared
+    */
+
+    static final int MAX_LENGTH = 64;
+
+    private static final int SIZE = 4096;       // must be a power of two
+    private static final int MASK = SIZE - 1;
+    private static final int PROBES = 8;
+
+    private TinyDocumentImpl document;
+
+    private String[] attValues = new String[SIZE];
+
+    private int[] textHash = new int[SIZE];
+    private int[] textStart = new int[SIZE];
+    private int[] textLength = new int[SIZE];   // zero marks an empty slot
+
+    ValueDictionary(TinyDocumentImpl doc) {
+        document = doc;
+    }
+
+    /**
+    * Get the shared copy of an attribute value
+    * @return a String equal to the supplied value: the one seen earlier, if there was one
+    */
+
+    String shareAttributeValue(String value) {
+        if (value.length() > MAX_LENGTH) {
+            return value;
+        }
+        int h = value.hashCode();
+        int home = (h ^ (h >>> 16)) & MASK;
+        for (int p=0; p<PROBES; p++) {
+            int slot = (home + p) & MASK;
+            String s = attValues[slot];
+            if (s==null) {
+                attValues[slot] = value;
+                return value;
+            }
+            if (s.equals(value)) {
+                return s;
+            }
+        }
+        attValues[home] = value;
+        return value;
+    }
+
+    /**
+    * Add the characters of a text node to the document, unless the same characters have
+    * been added before
+    * @return the offset of the characters in the document's character buffer
+    */
+
+    int addText(char[] ch, int start, int len) {
+        if (len > MAX_LENGTH) {
+            return append(ch, start, len);
+        }
+        int h = 0;
+        for (int i=start; i<start+len; i++) {
+            h = 31*h + ch[i];
+        }
+        int home = (h ^ (h >>> 16)) & MASK;
+        char[] buffer = document.charBuffer;
+        for (int p=0; p<PROBES; p++) {
+            int slot = (home + p) & MASK;
+            if (textLength[slot]==0) {
+                return record(slot, h, ch, start, len);
+            }
+            if (textHash[slot]==h && textLength[slot]==len) {
+                int s = textStart[slot];
+                boolean same = true;
+                for (int i=0; i<len; i++) {
+                    if (buffer[s+i]!=ch[start+i]) {
+                        same = false;
+                        break;
+                    }
+                }
+                if (same) {
+                    return s;
+                }
+            }
+        }
+        return record(home, h, ch, start, len);
+    }
+
+    private int record(int slot, int h, char[] ch, int start, int len) {
+        int offset = append(ch, start, len);
+        textHash[slot] = h;
+        textStart[slot] = offset;
+        textLength[slot] = len;
+        return offset;
+    }
+
+    private int append(char[] ch, int start, int len) {
+        int offset = document.charBufferLength;
+        document.appendChars(ch, start, len);
+        return offset;
+    }
+
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael H. Kay.
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
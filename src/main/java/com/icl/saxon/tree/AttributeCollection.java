@@ -10,23 +10,29 @@ import org.xml.sax.Attributes;
     *
     * It is extremely similar (both in interface and in implementation) to the SAX2 Attributes
     * class, but was defined before SAX2 was available.
+    *
+    * The attributes are held in parallel arrays of name codes, type codes and values. The
+    * type array is not allocated while all the attributes are of type CDATA. In a tree built
+    * by the TreeBuilder, the values are held in an AttributeValueStore shared by the whole
+    * document, and a String is created only when a value is requested.
     */
 
 public final class AttributeCollection implements Attributes
 {
 
-    // we use a single array for economy. The elements of this array are arranged
-    // in groups of three, being respectively the nameCode, the
-    // type, and the value
-
 	private NamePool namePool;
-    private Object[] list = null;
+    private int[] codes = null;             // name codes
+    private byte[] types = null;            // type codes, or null if all are CDATA
+    private String[] otherTypes = null;     // types not in TYPE_NAMES, if any
+    private String[] values = null;         // the values, unless they are in a store
+    private AttributeValueStore store = null;
+    private int[] offsets = null;           // the start of each value in the store
     private int used = 0;
 
-    private static int RECSIZE = 3;
-    private static int NAMECODE = 0;
-    private static int TYPE = 1;
-    private static int VALUE = 2;
+    private static final String[] TYPE_NAMES =
+        {"CDATA", "ID", "IDREF", "IDREFS", "NMTOKEN", "NMTOKENS",
+         "ENTITY", "ENTITIES", "NOTATION", "ENUMERATION"};
+    private static final byte OTHER_TYPE = -1;
 
     /**
     * Create an empty attribute list.
@@ -34,8 +40,6 @@ public final class AttributeCollection implements Attributes
 
     public AttributeCollection (NamePool pool) {
     	namePool = pool;
-    	list = null;
-    	used = 0;
  	}
 
     /**
@@ -44,8 +48,8 @@ public final class AttributeCollection implements Attributes
 
     public AttributeCollection (NamePool pool, int n) {
     	namePool = pool;
-        list = new Object[n*RECSIZE];
-        used = 0;
+        codes = new int[n];
+        values = new String[n];
     }
 
     /**
@@ -54,11 +58,26 @@ public final class AttributeCollection implements Attributes
 
     public AttributeCollection (AttributeCollection atts) {
     	this.namePool = atts.namePool;
-        this.list = new Object[atts.used];
-        if (atts.used > 0 ) {
-            System.arraycopy(atts.list, 0, this.list, 0, atts.used);
-        }
         this.used = atts.used;
+        if (used > 0) {
+            codes = copy(atts.codes, used);
+            if (atts.types!=null) {
+                types = new byte[used];
+                System.arraycopy(atts.types, 0, types, 0, used);
+            }
+            if (atts.otherTypes!=null) {
+                otherTypes = new String[used];
+                System.arraycopy(atts.otherTypes, 0, otherTypes, 0, used);
+            }
+            if (atts.store!=null) {
+                // the store is never changed, so it can be shared
+                store = atts.store;
+                offsets = copy(atts.offsets, used+1);
+            } else {
+                values = new String[used];
+                System.arraycopy(atts.values, 0, values, 0, used);
+            }
+        }
     }
 
     /**
@@ -66,21 +85,98 @@ public final class AttributeCollection implements Attributes
     */
 
     public AttributeCollection (NamePool pool, Attributes atts) {
+        this(pool, atts, null);
+    }
+
+    /**
+    * Create a new attribute collection as a copy of a SAX attribute list, putting the
+    * values into a given store
+    * @param store the store to hold the values, or null to hold them as Strings
+    */
+
+    AttributeCollection (NamePool pool, Attributes atts, AttributeValueStore store) {
     	namePool = pool;
         int len = atts.getLength();
-        used = len*RECSIZE;
-        this.list = new Object[used];
+        used = len;
+        codes = new int[len];
+        if (store==null) {
+            values = new String[len];
+        } else {
+            this.store = store;
+            offsets = new int[len+1];
+        }
 
         for (int a=0; a<len; a++) {
-            int j = a*RECSIZE;
             String qname = atts.getQName(a);
             String prefix = Name.getPrefix(qname);
             String uri = atts.getURI(a);
             String localName = atts.getLocalName(a);
-            int nameCode = namePool.allocate(prefix, uri, localName);
-            list[j+NAMECODE] = new Integer(nameCode);
-            list[j+TYPE] = atts.getType(a);
-            list[j+VALUE] = atts.getValue(a);
+            codes[a] = namePool.allocate(prefix, uri, localName);
+            setType(a, atts.getType(a));
+            if (store==null) {
+                values[a] = atts.getValue(a);
+            } else {
+                offsets[a] = store.append(atts.getValue(a));
+            }
+        }
+        if (store!=null) {
+            offsets[len] = store.getLength();
+        }
+    }
+
+    private static int[] copy(int[] a, int n) {
+        int[] a2 = new int[n];
+        System.arraycopy(a, 0, a2, 0, n);
+        return a2;
+    }
+
+    /**
+    * Record the type of an attribute
+    */
+
+    private void setType(int index, String type) {
+        byte code = OTHER_TYPE;
+        for (byte t=0; t<TYPE_NAMES.length; t++) {
+            if (TYPE_NAMES[t].equals(type)) {
+                code = t;
+                break;
+            }
+        }
+        if (code==0 && types==null) {
+            return;             // still all CDATA
+        }
+        if (types==null || types.length < codes.length) {
+            byte[] t2 = new byte[codes.length];
+            if (types!=null) {
+                System.arraycopy(types, 0, t2, 0, types.length);
+            }
+            types = t2;
+        }
+        types[index] = code;
+        if (code==OTHER_TYPE) {
+            if (otherTypes==null || otherTypes.length < codes.length) {
+                String[] o2 = new String[codes.length];
+                if (otherTypes!=null) {
+                    System.arraycopy(otherTypes, 0, o2, 0, otherTypes.length);
+                }
+                otherTypes = o2;
+            }
+            otherTypes[index] = type;
+        }
+    }
+
+    /**
+    * Take the values out of the shared store, so that the list can be modified
+    */
+
+    private void detachValues() {
+        if (store!=null) {
+            values = new String[codes==null ? 0 : codes.length];
+            for (int i=0; i<used; i++) {
+                values[i] = store.getString(offsets[i], offsets[i+1]);
+            }
+            store = null;
+            offsets = null;
         }
     }
 
@@ -94,19 +190,25 @@ public final class AttributeCollection implements Attributes
 
     public void addAttribute (int nameCode, String type, String value)
     {
-       if (list==null) {
-            list = new Object[5*RECSIZE];
+        detachValues();
+        if (codes==null) {
+            codes = new int[5];
+            values = new String[5];
             used = 0;
         }
-        if (list.length == used) {
-        	int newsize = (used==0 ? 5*RECSIZE : used*2);
-            Object[] newlist = new Object[newsize];
-            System.arraycopy(list, 0, newlist, 0, used);
-            list = newlist;
+        if (codes.length == used) {
+        	int newsize = (used==0 ? 5 : used*2);
+            int[] c2 = new int[newsize];
+            System.arraycopy(codes, 0, c2, 0, used);
+            codes = c2;
+            String[] v2 = new String[newsize];
+            System.arraycopy(values, 0, v2, 0, used);
+            values = v2;
         }
-        list[used++] = new Integer(nameCode);
-        list[used++] = type;
-        list[used++] = value;
+        codes[used] = nameCode;
+        values[used] = value;
+        setType(used, type);
+        used++;
     }
 
     /**
@@ -133,15 +235,7 @@ public final class AttributeCollection implements Attributes
 
     public void setAttribute(String prefix, String uri, String localName, String type, String value)
     {
-    	int nameCode = namePool.allocate(prefix, uri, localName);
-    	int offset = findByFingerprint(nameCode&0xfffff);
-        if (offset<0) {
-            addAttribute(prefix, uri, localName, type, value);
-        } else {
-            list[offset + NAMECODE] = new Integer(nameCode);
-			list[offset + TYPE] = type;
-            list[offset + VALUE] = value;
-        }
+    	setAttribute(namePool.allocate(prefix, uri, localName), type, value);
     }
 
     /**
@@ -153,13 +247,17 @@ public final class AttributeCollection implements Attributes
 
     public void setAttribute(int nameCode, String type, String value)
     {
-    	int offset = findByFingerprint(nameCode&0xfffff);
-        if (offset<0) {
+    	int index = findByFingerprint(nameCode&0xfffff);
+        if (index<0) {
             addAttribute(nameCode, type, value);
         } else {
-            list[offset + NAMECODE] = new Integer(nameCode);
-			list[offset + TYPE] = type;
-            list[offset + VALUE] = value;
+            detachValues();
+            codes[index] = nameCode;
+            values[index] = value;
+            if (types!=null) {
+                types[index] = 0;
+            }
+            setType(index, type);
         }
     }
 
@@ -170,6 +268,13 @@ public final class AttributeCollection implements Attributes
     public void clear ()
     {
         used = 0;
+        types = null;
+        otherTypes = null;
+        if (store!=null) {
+            store = null;
+            offsets = null;
+            codes = null;
+        }
     }
 
     /**
@@ -178,11 +283,29 @@ public final class AttributeCollection implements Attributes
 
     public void compact() {
         if (used==0) {
-            list = null;
-        } else if (list.length > used) {
-            Object[] newlist = new Object[used];
-            System.arraycopy(list, 0, newlist, 0, used);
-            list = newlist;
+            codes = null;
+            types = null;
+            otherTypes = null;
+            values = null;
+            store = null;
+            offsets = null;
+        } else if (codes.length > used) {
+            codes = copy(codes, used);
+            if (types!=null) {
+                byte[] t2 = new byte[used];
+                System.arraycopy(types, 0, t2, 0, used);
+                types = t2;
+            }
+            if (otherTypes!=null) {
+                String[] o2 = new String[used];
+                System.arraycopy(otherTypes, 0, o2, 0, used);
+                otherTypes = o2;
+            }
+            if (values!=null) {
+                String[] v2 = new String[used];
+                System.arraycopy(values, 0, v2, 0, used);
+                values = v2;
+            }
         }
     }
 
@@ -199,7 +322,7 @@ public final class AttributeCollection implements Attributes
 
     public int getLength ()
     {
-        return (list==null ? 0 : used / RECSIZE );
+        return used;
     }
 
     /**
@@ -212,11 +335,8 @@ public final class AttributeCollection implements Attributes
 
     public int getNameCode (int index)
     {
-        int offset = index*RECSIZE;
-        if (list==null) return -1;
-        if (offset >= used) return -1;
-
-        return ((Integer)list[offset+NAMECODE]).intValue();
+        if (index<0 || index >= used) return -1;
+        return codes[index];
     }
 
     /**
@@ -229,10 +349,8 @@ public final class AttributeCollection implements Attributes
 
     public String getQName (int index)
     {
-        int offset = index*RECSIZE;
-        if (list==null) return null;
-        if (offset >= used) return null;
-        return namePool.getDisplayName(getNameCode(index));
+        if (index<0 || index >= used) return null;
+        return namePool.getDisplayName(codes[index]);
     }
 
     /**
@@ -245,9 +363,8 @@ public final class AttributeCollection implements Attributes
 
     public String getLocalName (int index)
     {
-        if (list==null) return null;
-        if (index*RECSIZE >= used) return null;
-        return namePool.getLocalName(getNameCode(index));
+        if (index<0 || index >= used) return null;
+        return namePool.getLocalName(codes[index]);
     }
 
     /**
@@ -260,9 +377,8 @@ public final class AttributeCollection implements Attributes
 
     public String getURI (int index)
     {
-        if (list==null) return null;
-        if (index*RECSIZE >= used) return null;
-        return namePool.getURI(getNameCode(index));
+        if (index<0 || index >= used) return null;
+        return namePool.getURI(codes[index]);
     }
 
 
@@ -278,10 +394,10 @@ public final class AttributeCollection implements Attributes
 
     public String getType (int index)
     {
-        int offset = index*RECSIZE;
-        if (list==null) return null;
-        if (offset >= used) return null;
-        return (String)list[offset+TYPE];
+        if (index<0 || index >= used) return null;
+        if (types==null) return TYPE_NAMES[0];
+        byte code = types[index];
+        return (code==OTHER_TYPE ? otherTypes[index] : TYPE_NAMES[code]);
     }
 
     /**
@@ -294,8 +410,7 @@ public final class AttributeCollection implements Attributes
 
     public String getType (String uri, String localname)
     {
-        int offset = findByName(uri, localname);
-        return ( offset<0 ? null : (String)list[offset+TYPE]);
+        return getType(findByName(uri, localname));
     }
 
     /**
@@ -307,10 +422,11 @@ public final class AttributeCollection implements Attributes
     */
 
     public String getValue (int index) {
-        int offset = index*RECSIZE;
-        if (list==null) return null;
-        if (offset >= used) return null;
-        return (String)list[offset+VALUE];
+        if (index<0 || index >= used) return null;
+        if (store!=null) {
+            return store.getString(offsets[index], offsets[index+1]);
+        }
+        return values[index];
     }
 
     /**
@@ -323,8 +439,7 @@ public final class AttributeCollection implements Attributes
 
     public String getValue (String uri, String localname)
     {
-        int offset = findByName(uri, localname);
-        return ( offset<0 ? null : (String)list[offset+VALUE]);
+        return getValue(findByName(uri, localname));
     }
 
 	/**
@@ -332,8 +447,7 @@ public final class AttributeCollection implements Attributes
 	*/
 
 	public String getValueByFingerprint(int fingerprint) {
-		int offset = findByFingerprint(fingerprint);
-        return ( offset<0 ? null : (String)list[offset+VALUE]);
+        return getValue(findByFingerprint(fingerprint));
     }
 
     /**
@@ -345,8 +459,7 @@ public final class AttributeCollection implements Attributes
 
     public int getIndex (String name)
     {
-        int offset = findByDisplayName(name);
-        return ( offset<0 ? -1 : offset / RECSIZE);
+        return findByDisplayName(name);
     }
 
     /**
@@ -359,8 +472,7 @@ public final class AttributeCollection implements Attributes
 
     public int getIndex (String uri, String localname)
     {
-        int offset = findByName(uri, localname);
-        return ( offset<0 ? -1 : offset / RECSIZE);
+        return findByName(uri, localname);
     }
 
 	/**
@@ -368,8 +480,7 @@ public final class AttributeCollection implements Attributes
 	*/
 
 	public int getIndexByFingerprint(int fingerprint) {
-		int offset = findByFingerprint(fingerprint);
-        return ( offset<0 ? -1 : offset / RECSIZE);
+        return findByFingerprint(fingerprint);
     }
 
     /**
@@ -383,8 +494,7 @@ public final class AttributeCollection implements Attributes
 
     public String getType (String name)
     {
-        int offset = findByDisplayName(name);
-        return ( offset<0 ? null : (String)list[offset+TYPE]);
+        return getType(findByDisplayName(name));
     }
 
 
@@ -396,8 +506,7 @@ public final class AttributeCollection implements Attributes
 
     public String getValue (String name)
     {
-        int offset = findByDisplayName(name);
-        return ( offset<0 ? null : (String)list[offset+VALUE]);
+        return getValue(findByDisplayName(name));
     }
 
     //////////////////////////////////////////////////////////////////////
@@ -406,7 +515,7 @@ public final class AttributeCollection implements Attributes
 
     /**
     * Find an attribute by name
-    * @return the offset of the attribute, or -1 if absent
+    * @return the index of the attribute, or -1 if absent
     */
 
     private int findByName(String uri, String localName) {
@@ -418,13 +527,12 @@ public final class AttributeCollection implements Attributes
 
     /**
     * Find an attribute by fingerprint
-    * @return the offset of the attribute, or -1 if absent
+    * @return the index of the attribute, or -1 if absent
     */
 
     private int findByFingerprint(int fingerprint) {
-        if (list==null) return -1;
-        for (int i=0; i<used; i+=RECSIZE) {
-            if (fingerprint==(((Integer)list[i+NAMECODE]).intValue()&0xfffff)) {
+        for (int i=0; i<used; i++) {
+            if (fingerprint==(codes[i]&0xfffff)) {
                 return i;
             }
         }
@@ -433,19 +541,19 @@ public final class AttributeCollection implements Attributes
 
     /**
     * Find an attribute by display name
-    * @return the offset of the attribute
+    * @return the index of the attribute, or -1 if absent
     */
 
     private int findByDisplayName(String qname) {
-        if (list==null) return -1;
+        if (used==0) return -1;
         String prefix = Name.getPrefix(qname);
         if (prefix.equals("")) {
         	return findByName("", qname);
         } else {
             String localName = Name.getLocalName(qname);
-            for (int i=0; i<getLength(); i++) {
-            	String lname=namePool.getLocalName(getNameCode(i));
-				String ppref=namePool.getPrefix(getNameCode(i));
+            for (int i=0; i<used; i++) {
+            	String lname=namePool.getLocalName(codes[i]);
+				String ppref=namePool.getPrefix(codes[i]);
                 if (localName.equals(lname) && prefix.equals(ppref)) {
                     return i;
                 }
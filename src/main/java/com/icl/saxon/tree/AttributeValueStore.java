@@ -0,0 +1,98 @@
+package com.icl.saxon.tree;
+
+/**
+* An AttributeValueStore holds the values of all the attributes in one document, one after
+* another in a single character array. An AttributeCollection that uses the store records
+* only where each value starts, and creates a String for a value when it is asked for one.
+* This avoids keeping a String object for every attribute in the tree.<P>
+* Values are only ever appended, so a value never changes once it has been added: the store
+* can be read by several threads once the document has been built.
+*/
+
+final class AttributeValueStore {
+
+    private char[] chars;
+    private int used = 0;
+
+    /**
+    * Create an empty store
+    * @param size the initial capacity, in characters
+    */
+
+    AttributeValueStore(int size) {
+        chars = new char[size];
+    }
+
+    /**
+    * Add a value to the store
+    * @param value the attribute value
+    * @return the offset of the value in the store. The value ends where the next one starts.
+    */
+
+    int append(String value) {
+        int start = used;
+        int len = value.length();
+        if (used + len > chars.length) {
+            int newsize = chars.length * 2;
+            while (used + len > newsize) {
+                newsize *= 2;
+            }
+            char[] c2 = new char[newsize];
+            System.arraycopy(chars, 0, c2, 0, used);
+            chars = c2;
+        }
+        value.getChars(0, len, chars, used);
+        used += len;
+        return start;
+    }
+
+    /**
+    * Get the current end of the store, which is where the next value will start
+    */
+
+    int getLength() {
+        return used;
+    }
+
+    /**
+    * Get a value from the store
+    * @param start the offset of the start of the value
+    * @param end the offset of the end of the value
+    */
+
+    String getString(int start, int end) {
+        return new String(chars, start, end-start);
+    }
+
+    /**
+    * Release the unused space at the end of the store: called when the document is complete
+    */
+
+    void compact() {
+        if (chars.length > used) {
+            char[] c2 = new char[used];
+            System.arraycopy(chars, 0, c2, 0, used);
+            chars = c2;
+        }
+    }
+
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael H. Kay.
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
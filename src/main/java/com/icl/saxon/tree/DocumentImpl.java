@@ -5,6 +5,7 @@ import com.icl.saxon.om.AxisEnumeration;
 import com.icl.saxon.om.DocumentInfo;
 import com.icl.saxon.om.NamePool;
 import com.icl.saxon.om.NodeInfo;
+import com.icl.saxon.om.SiblingPositions;
 import com.icl.saxon.output.Outputter;
 import com.icl.saxon.sort.LocalOrderComparer;
 import org.w3c.dom.*;
@@ -26,7 +27,9 @@ public final class DocumentImpl extends ParentNodeImpl
 
     private ElementImpl documentElement;
 
-    private Hashtable idTable = null;
+    private volatile Hashtable idTable = null;
+    private volatile SiblingPositions siblingPositions = null;
+    private boolean complete = false;
     //private int documentNumber;
     private Hashtable entityTable = null;
     private Hashtable elementList = null;
@@ -256,7 +259,7 @@ public final class DocumentImpl extends ParentNodeImpl
     * Get a list of all elements with a given name fingerprint
     */
 
-    protected AxisEnumeration getAllElements(int fingerprint) {
+    protected synchronized AxisEnumeration getAllElements(int fingerprint) {
         Integer elkey = new Integer(fingerprint);
         if (elementList==null) {
             elementList = new Hashtable();
@@ -278,14 +281,74 @@ public final class DocumentImpl extends ParentNodeImpl
         return (AxisEnumeration)list.enumerate();
     }
 
+    /**
+    * Mark the document as complete: called by the TreeBuilder at the end of the document
+    */
+
+    protected void setComplete() {
+        complete = true;
+    }
+
+    /**
+    * Get the index of sibling positions, building it if this has not already been done.
+    * The index is keyed by the sequence numbers of the elements.
+    * @return the index, or null if the document is still being built (in preview mode)
+    */
+
+    protected SiblingPositions getSiblingPositions() {
+        SiblingPositions positions = siblingPositions;
+        if (positions==null && complete) {
+            synchronized(this) {
+                positions = siblingPositions;
+                if (positions==null) {
+                    int max = 0;
+                    for (NodeImpl n = this; n!=null; n = n.getNextInDocument(this)) {
+                        if (n instanceof ParentNodeImpl && ((ParentNodeImpl)n).sequence > max) {
+                            max = ((ParentNodeImpl)n).sequence;
+                        }
+                    }
+                    positions = new SiblingPositions(max+1);
+                    int[] children = new int[20];
+                    int[] fingerprints = new int[20];
+                    for (NodeImpl n = this; n!=null; n = n.getNextInDocument(this)) {
+                        if (n instanceof ParentNodeImpl) {
+                            ParentNodeImpl p = (ParentNodeImpl)n;
+                            int k = 0;
+                            for (NodeImpl c = p.getNthChild(0); c!=null; c = p.getNthChild(c.index+1)) {
+                                if (c.getNodeType()==ELEMENT) {
+                                    if (k==children.length) {
+                                        int[] c2 = new int[k*2];
+                                        System.arraycopy(children, 0, c2, 0, k);
+                                        children = c2;
+                                        int[] f2 = new int[k*2];
+                                        System.arraycopy(fingerprints, 0, f2, 0, k);
+                                        fingerprints = f2;
+                                    }
+                                    children[k] = ((ParentNodeImpl)c).sequence;
+                                    fingerprints[k] = c.getFingerprint();
+                                    k++;
+                                }
+                            }
+                            if (k>0) {
+                                positions.addChildren(children, fingerprints, k);
+                            }
+                        }
+                    }
+                    siblingPositions = positions;
+                }
+            }
+        }
+        return positions;
+    }
+
     /**
     * Index all the ID attributes. This is done the first time the id() function
     * is used on this document
     */
 
-    private void indexIDs() {
+    private synchronized void indexIDs() {
         if (idTable!=null) return;      // ID's are already indexed
-        idTable = new Hashtable();
+        Hashtable table = new Hashtable();
 
         NodeImpl curr = this;
         NodeImpl root = curr;
@@ -295,25 +358,27 @@ public final class DocumentImpl extends ParentNodeImpl
                 Attributes atts = e.getAttributeList();
                 for (int i=0; i<atts.getLength(); i++) {
                     if ("ID".equals(atts.getType(i))) {
-                        registerID(e, atts.getValue(i));
+                        registerID(table, e, atts.getValue(i));
                     }
                 }
             }
             curr = curr.getNextInDocument(root);
         }
+        idTable = table;        // publish the index only when it is complete
     }
 
     /**
     * Register a unique element ID. Fails if there is already an element with that ID.
+    * @param table The ID index being built
     * @param e The Element having a particular unique ID value
     * @param id The unique ID value
     */
 
-    private void registerID(NodeInfo e, String id) {
+    private static void registerID(Hashtable table, NodeInfo e, String id) {
         // the XPath spec (5.2.1) says ignore the second ID if it's not unique
-        Object old = idTable.get(id);
+        Object old = table.get(id);
         if (old==null) {
-            idTable.put(id, e);
+            table.put(id, e);
         }
 
     }
@@ -5,6 +5,7 @@ import com.icl.saxon.om.NamespaceException;
 import com.icl.saxon.om.NamePool;
 import com.icl.saxon.om.Namespace;
 import com.icl.saxon.om.Name;
+import com.icl.saxon.om.SiblingPositions;
 import com.icl.saxon.expr.NodeSetExtent;
 import com.icl.saxon.output.Outputter;
 import com.icl.saxon.pattern.NameTest;
@@ -270,6 +271,28 @@ public class ElementImpl extends ParentNodeImpl
         return ELEMENT;
     }
 
+    /**
+    * Get the position of this element among its element siblings, counting from one
+    * @param sameName true to count only the siblings with the same name
+    * @return the position, or -1 if the document is still being built
+    */
+
+    public int getSiblingPosition(boolean sameName) {
+        SiblingPositions index = ((DocumentImpl)getDocumentRoot()).getSiblingPositions();
+        return (index==null ? -1 : index.getPosition(sequence, sameName));
+    }
+
+    /**
+    * Get the number of element siblings of this element, including itself
+    * @param sameName true to count only the siblings with the same name
+    * @return the number, or -1 if the document is still being built
+    */
+
+    public int getSiblingCount(boolean sameName) {
+        SiblingPositions index = ((DocumentImpl)getDocumentRoot()).getSiblingPositions();
+        return (index==null ? -1 : index.getCount(sequence, sameName));
+    }
+
     /**
     * Get the attribute list for this element.
     * @return The attribute list. This will not include any
@@ -40,6 +40,15 @@ abstract class ParentNodeImpl extends NodeImpl {
         return ((long)sequence)<<32;
     }
 
+    /**
+    * Get the node number: the sequence number allocated to this element or document
+    * node when the tree was built
+    */
+
+    public int getNodeNumber() {
+        return sequence;
+    }
+
     /**
     * Determine if the node has any children.
     */
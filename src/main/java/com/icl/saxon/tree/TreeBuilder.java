@@ -31,6 +31,7 @@ public class TreeBuilder extends Builder
     private Vector arrays = new Vector();       // reusable arrays for creating nodes
     private boolean previousText;
     private StringBuffer charBuffer;
+    private AttributeValueStore attributeValues;
 
     private int nextNodeNumber = 1;
 
@@ -92,6 +93,7 @@ public class TreeBuilder extends Builder
         doc.sequence = 0;
         charBuffer = new StringBuffer(estimatedLength);
         doc.setCharacterBuffer(charBuffer);
+        attributeValues = new AttributeValueStore(4000);
         if (lineNumbering) {
             doc.setLineNumbering();
         }
@@ -107,11 +109,14 @@ public class TreeBuilder extends Builder
     {
         if (currentNode==null) return;	// can be called twice on an error path
         currentNode.compact(size[depth]);
+        ((DocumentImpl)currentDocument).setComplete();
         currentNode = null;
+        attributeValues.compact();
 
         // we're not going to use this Builder again so give the garbage collector
         // something to play with
         arrays = null;
+        attributeValues = null;
 
         //long endTime = (new Date()).getTime();
         //System.err.println("Build time: " + (endTime-startTime) + " milliseconds");
@@ -145,7 +150,7 @@ public class TreeBuilder extends Builder
         if (numAtts==0) {
             atts = emptyAttributeCollection;
         } else {
-            atts = new AttributeCollection(namePool, attributes);
+            atts = new AttributeCollection(namePool, attributes, attributeValues);
         }
                 // System.err.println("TreeBuilder.locator = " + locator);
                 // System.err.println("TreeBuilder.baseURI = " + baseURI);
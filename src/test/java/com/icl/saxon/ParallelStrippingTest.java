@@ -0,0 +1,123 @@
+package com.icl.saxon;
+import com.icl.saxon.om.DocumentInfo;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+* Tests that instantiating templates on parallel threads gives the same output as sequential
+* processing when the stylesheet strips whitespace from the source document, whether the
+* source is a Saxon tree or a DOM, both of which are stripped lazily as they are navigated.
+*/
+
+public class ParallelStrippingTest {
+
+    private static final int GROUPS = 256;
+    private static final int NAMES = 40;
+
+    @Test
+    public void strippedTreeGivesSequentialOutput() throws Exception {
+        String xsl = stylesheet();
+        DocumentInfo doc = buildTree(source());
+        String expected = transform(xsl, new DOMSource((Node)doc), 0);
+        for (int run=0; run<20; run++) {
+            assertEquals(expected, transform(xsl, new DOMSource((Node)doc), 8), "run " + run);
+        }
+    }
+
+    @Test
+    public void strippedDOMGivesSequentialOutput() throws Exception {
+        String xsl = stylesheet();
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(
+                            new InputSource(new StringReader(source())));
+        String expected = transform(xsl, new DOMSource(doc), 0);
+        for (int run=0; run<20; run++) {
+            assertEquals(expected, transform(xsl, new DOMSource(doc), 8), "run " + run);
+        }
+    }
+
+    private String transform(String xsl, DOMSource source, int threads) throws Exception {
+        TransformerFactoryImpl factory = new TransformerFactoryImpl();
+        factory.setAttribute(FeatureKeys.PARALLEL_THREADS, new Integer(threads));
+        Transformer t = factory.newTransformer(new StreamSource(new StringReader(xsl)));
+        StringWriter out = new StringWriter();
+        t.transform(source, new StreamResult(out));
+        return out.toString();
+    }
+
+    private static DocumentInfo buildTree(String xml) throws Exception {
+        Controller c = (Controller)new TransformerFactoryImpl().newTransformer();
+        return c.makeBuilder().build(new SAXSource(new InputSource(new StringReader(xml))));
+    }
+
+    /**
+    * A document with many distinct element names, each element holding whitespace
+    * text nodes
+    */
+
+    private static String source() {
+        StringBuffer sb = new StringBuffer("<doc>");
+        for (int g=0; g<GROUPS; g++) {
+            sb.append("<g>");
+            for (int n=0; n<NAMES; n++) {
+                sb.append("<e" + g + "_" + n + "> <x/> </e" + g + "_" + n + ">");
+            }
+            sb.append("</g>");
+        }
+        sb.append("</doc>");
+        return sb.toString();
+    }
+
+    /**
+    * A stylesheet that strips whitespace from all elements except half of the names,
+    * and reports the number of text nodes in each element
+    */
+
+    private static String stylesheet() {
+        StringBuffer preserved = new StringBuffer();
+        for (int g=0; g<GROUPS; g++) {
+            for (int n=0; n<NAMES; n+=2) {
+                preserved.append(" e" + g + "_" + n);
+            }
+        }
+        return "<xsl:stylesheet version='1.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>" +
+            "<xsl:strip-space elements='*'/>" +
+            "<xsl:preserve-space elements='" + preserved + "'/>" +
+            "<xsl:template match='/'><out><xsl:apply-templates select='doc/g'/></out></xsl:template>" +
+            "<xsl:template match='*'>" +
+            "<xsl:copy><xsl:value-of select='count(text())'/><xsl:apply-templates select='*'/></xsl:copy>" +
+            "</xsl:template>" +
+            "</xsl:stylesheet>";
+    }
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael H. Kay.
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//
@@ -0,0 +1,269 @@
+package com.icl.saxon.sql;
+import com.icl.saxon.TransformerFactoryImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+* Tests of the SQL extension elements against an in-memory H2 database. The connections
+* used by the stylesheets come from a pool that records the calls made on them, and the
+* stylesheets call back into this class (as extension functions) to see what has happened
+* so far.
+*/
+
+public class SQLExtensionTest {
+
+    private static final String DRIVER = "org.h2.Driver";
+    private static final String STYLESHEET_START =
+        "<xsl:stylesheet version='1.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'" +
+        " xmlns:sql='http://icl.com/saxon/extensions/com.icl.saxon.sql.SQLElementFactory'" +
+        " xmlns:T='java:com.icl.saxon.sql.SQLExtensionTest'" +
+        " extension-element-prefixes='sql' exclude-result-prefixes='T'>" +
+        "<xsl:param name='db'/>" +
+        "<xsl:template match='/'>" +
+        "<sql:connect driver='" + DRIVER + "' database='{$db}' user='sa' password=''/>";
+    private static final String STYLESHEET_END =
+        "<sql:close/></xsl:template></xsl:stylesheet>";
+
+    private static int counter = 0;
+    private static RecordingPool pool;
+    private static Connection observer;
+
+    private String database;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        database = "jdbc:h2:mem:saxon" + (++counter) + ";DB_CLOSE_DELAY=-1";
+        observer = DriverManager.getConnection(database, "sa", "");
+        pool = new RecordingPool();
+        SQLConnect.setConnectionPool(pool);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        SQLConnect.setConnectionPool(new DefaultConnectionPool());
+        Statement s = observer.createStatement();
+        s.execute("SHUTDOWN");
+        s.close();
+        observer.close();
+    }
+
+    @Test
+    public void queryStreamsRowsWithFetchSize() throws Exception {
+        update("CREATE TABLE t (id INT, name VARCHAR(20))");
+        for (int i=1; i<=300; i++) {
+            update("INSERT INTO t VALUES (" + i + ", 'n" + i + "')");
+        }
+        String xsl = STYLESHEET_START +
+            "<out><sql:query table='t' column='id, name' where='id &lt;= 250'" +
+            "            fetch-size='25'>" +
+            "<r id='{col[1]}' name='{col[2]}' read='{T:rowsRead()}'/>" +
+            "</sql:query></out>" +
+            STYLESHEET_END;
+        String out = transform(xsl, "<doc/>");
+
+        assertEquals(List.of(25), pool.fetchSizes);
+
+        Matcher m = Pattern.compile("<r id=\"(\\d+)\" name=\"(n\\d+)\" read=\"(\\d+)\"/>")
+                            .matcher(out);
+        int rows = 0;
+        while (m.find()) {
+            rows++;
+            assertEquals(rows, Integer.parseInt(m.group(1)));
+            assertEquals("n" + rows, m.group(2));
+            // each row is processed as soon as it is read, with at most one read ahead
+            int read = Integer.parseInt(m.group(3));
+            assertTrue(read <= rows + 1, "row " + rows + " processed after " + read + " reads");
+        }
+        assertEquals(250, rows);
+    }
+
+    @Test
+    public void insertSendsBatchesAndCommitsAtIntervals() throws Exception {
+        update("CREATE TABLE u (name VARCHAR(20))");
+        StringBuffer source = new StringBuffer("<items>");
+        for (int i=1; i<=10; i++) {
+            source.append("<item>v" + i + "</item>");
+        }
+        source.append("</items>");
+        String xsl = STYLESHEET_START +
+            "<xsl:for-each select='//item'>" +
+            "<sql:insert table='u' batch-size='4' commit-interval='8'>" +
+            "<sql:column name='name' select='.'/>" +
+            "</sql:insert>" +
+            "</xsl:for-each>" +
+            "<before-close commits='{T:commits()}' visible='{T:visibleRows()}'/>" +
+            STYLESHEET_END;
+        String out = transform(xsl, source.toString());
+
+        // rows 1-4 and 5-8 are sent as batches, and committed after row 8; rows 9 and 10
+        // are sent and committed by sql:close
+        assertTrue(out.contains("<before-close commits=\"1\" visible=\"8\"/>"), out);
+        assertEquals(10, pool.addBatchCalls);
+        assertEquals(3, pool.executeBatchCalls);
+        assertEquals(2, pool.commitCalls);
+        assertEquals(10, countRows("u"));
+    }
+
+    @Test
+    public void defaultPoolReusesConnectionsOnlyWithTheSamePassword() throws Exception {
+        DefaultConnectionPool defaultPool = new DefaultConnectionPool();
+        Connection c1 = defaultPool.getConnection(DRIVER, database, "sa", "");
+        defaultPool.releaseConnection(c1);
+        Connection c2 = defaultPool.getConnection(DRIVER, database, "sa", "");
+        assertSame(c1, c2);
+
+        Connection c3 = defaultPool.getConnection(DRIVER, database, "sa", "");
+        assertNotSame(c2, c3);
+        defaultPool.releaseConnection(c2);
+        defaultPool.releaseConnection(c3);
+
+        // an idle connection is not handed to a request with the wrong password: the pool
+        // must open a new connection, which the database refuses
+        assertThrows(SQLException.class,
+                     () -> defaultPool.getConnection(DRIVER, database, "sa", "wrong"));
+    }
+
+    // Extension functions called from the stylesheets
+
+    public static int rowsRead() {
+        return pool.nextCalls;
+    }
+
+    public static int commits() {
+        return pool.commitCalls;
+    }
+
+    public static int visibleRows() throws SQLException {
+        return countRows("u");
+    }
+
+    private String transform(String xsl, String xml) throws Exception {
+        Transformer t = new TransformerFactoryImpl().newTransformer(
+                            new StreamSource(new StringReader(xsl)));
+        t.setParameter("db", database);
+        StringWriter out = new StringWriter();
+        t.transform(new StreamSource(new StringReader(xml)), new StreamResult(out));
+        return out.toString();
+    }
+
+    private static void update(String sql) throws SQLException {
+        Statement s = observer.createStatement();
+        s.executeUpdate(sql);
+        s.close();
+    }
+
+    private static int countRows(String table) throws SQLException {
+        Statement s = observer.createStatement();
+        ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM " + table);
+        rs.next();
+        int n = rs.getInt(1);
+        s.close();
+        return n;
+    }
+
+    /**
+    * A connection pool that opens a new connection, not in auto-commit mode, for each request,
+    * and counts the calls made on it and on the statements and result sets obtained from it
+    */
+
+    private static class RecordingPool implements SQLConnectionPool {
+
+        List<Integer> fetchSizes = new ArrayList<Integer>();
+        int nextCalls = 0;
+        int addBatchCalls = 0;
+        int executeBatchCalls = 0;
+        int commitCalls = 0;
+
+        public Connection getConnection(String driver, String database, String user,
+                                        String password) throws SQLException {
+            Connection c = DriverManager.getConnection(database, user, password);
+            c.setAutoCommit(false);
+            return (Connection)wrap(c, Connection.class);
+        }
+
+        public void releaseConnection(Connection connection) throws SQLException {
+            connection.close();
+        }
+
+        private Object wrap(final Object target, Class type) {
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class[] {type},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                    throws Throwable {
+                        String name = method.getName();
+                        if (name.equals("setFetchSize")) {
+                            fetchSizes.add((Integer)args[0]);
+                        } else if (name.equals("next")) {
+                            nextCalls++;
+                        } else if (name.equals("addBatch")) {
+                            addBatchCalls++;
+                        } else if (name.equals("executeBatch")) {
+                            executeBatchCalls++;
+                        } else if (name.equals("commit")) {
+                            commitCalls++;
+                        }
+                        Object result;
+                        try {
+                            result = method.invoke(target, args);
+                        } catch (InvocationTargetException err) {
+                            throw err.getTargetException();
+                        }
+                        if (result instanceof PreparedStatement) {
+                            return wrap(result, PreparedStatement.class);
+                        } else if (result instanceof Statement) {
+                            return wrap(result, Statement.class);
+                        } else if (result instanceof ResultSet) {
+                            return wrap(result, ResultSet.class);
+                        }
+                        return result;
+                    }
+                });
+        }
+    }
+}
+
+//
+// The contents of this file are subject to the Mozilla Public License Version 1.0 (the "License");
+// you may not use this file except in compliance with the License. You may obtain a copy of the
+// License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an "AS IS" basis,
+// WITHOUT WARRANTY OF ANY KIND, either express or implied.
+// See the License for the specific language governing rights and limitations under the License.
+//
+// The Original Code is: all this file.
+//
+// The Initial Developer of the Original Code is
+// Michael H. Kay.
+//
+// Portions created by (your name) are Copyright (C) (your legal entity). All Rights Reserved.
+//
+// Contributor(s): none.
+//